@@ -2,6 +2,10 @@ package com.onloupe.configuration;
 
 import java.util.Properties;
 
+import com.onloupe.core.logging.CallerInfoPolicy;
+import com.onloupe.core.logging.LogFilter;
+import com.onloupe.core.logging.MessageSuppressor;
+import com.onloupe.core.messaging.QueueWaitStrategy;
 import com.onloupe.core.util.TypeUtils;
 import com.onloupe.model.system.ApplicationType;
 import com.onloupe.model.system.Version;
@@ -41,6 +45,12 @@ public final class PublisherConfiguration {
 		setPromotionLevelName(props.getProperty("Publisher.PromotionLevelName"));
 		setForceSynchronous(Boolean.valueOf(props.getProperty("Publisher.ForceSynchronous", String.valueOf(forceSynchronous))));
 		setMaxQueueLength(Integer.valueOf(props.getProperty("Publisher.MaxQueueLength", String.valueOf(maxQueueLength))));
+		setQueueWaitStrategy(TypeUtils.safeEnum(QueueWaitStrategy.class, props.getProperty("Publisher.QueueWaitStrategy", String.valueOf(queueWaitStrategy))));
+		setDispatchBatchSize(Integer.valueOf(props.getProperty("Publisher.DispatchBatchSize", String.valueOf(dispatchBatchSize))));
+		setDispatchBatchTimeBudget(Integer.valueOf(props.getProperty("Publisher.DispatchBatchTimeBudget", String.valueOf(dispatchBatchTimeBudget))));
+		setCaptureCallerInfo(props.getProperty("Publisher.CaptureCallerInfo", captureCallerInfo));
+		setLogFilter(props.getProperty("Publisher.LogFilter", logFilter));
+		setMessageSuppression(props.getProperty("Publisher.MessageSuppression", messageSuppression));
 		setEnableAnonymousMode(Boolean.valueOf(props.getProperty("Publisher.EnableAnonymousMode", String.valueOf(enableAnonymousMode))));
 		setEnableDebugMode(Boolean.valueOf(props.getProperty("Publisher.EnableDebugMode", String.valueOf(enableDebugMode))));
 	}
@@ -60,6 +70,12 @@ public final class PublisherConfiguration {
 		this.promotionLevelName = builder.promotionLevelName;
 		this.forceSynchronous = builder.forceSynchronous;
 		this.maxQueueLength = builder.maxQueueLength;
+		this.queueWaitStrategy = builder.queueWaitStrategy;
+		this.dispatchBatchSize = builder.dispatchBatchSize;
+		this.dispatchBatchTimeBudget = builder.dispatchBatchTimeBudget;
+		this.captureCallerInfo = builder.captureCallerInfo;
+		this.logFilter = builder.logFilter;
+		this.messageSuppression = builder.messageSuppression;
 		this.enableAnonymousMode = builder.enableAnonymousMode;
 		this.enableDebugMode = builder.enableDebugMode;
 	}
@@ -345,6 +361,175 @@ public final class PublisherConfiguration {
 		this.maxQueueLength = value;
 	}
 
+	/**
+	 * How the publisher waits for new messages when its queue is empty.
+	 * 
+	 * The default, BLOCK, uses no CPU while idle. PARK and YIELD trade a little
+	 * idle CPU for lower hand-off latency, and SPIN dedicates a core to the
+	 * publisher for the lowest latency possible.
+	 */
+	private QueueWaitStrategy queueWaitStrategy = QueueWaitStrategy.BLOCK;
+
+	/**
+	 * Gets the queue wait strategy.
+	 *
+	 * @return the queue wait strategy
+	 */
+	public QueueWaitStrategy getQueueWaitStrategy() {
+		return this.queueWaitStrategy;
+	}
+
+	/**
+	 * Sets the queue wait strategy.
+	 *
+	 * @param value the new queue wait strategy
+	 */
+	public void setQueueWaitStrategy(QueueWaitStrategy value) {
+		this.queueWaitStrategy = value;
+	}
+
+	/**
+	 * The maximum number of queued messages the publisher will dispatch together.
+	 * 
+	 * When greater than one the publisher drains up to this many messages from
+	 * its queue at once, stamps them in sequence and hands them to each messenger
+	 * as a single batch. This cuts lock traffic and context switches during bursts
+	 * of logging. A value of one dispatches each message individually.
+	 */
+	private int dispatchBatchSize = 1;
+
+	/**
+	 * Gets the dispatch batch size.
+	 *
+	 * @return the dispatch batch size
+	 */
+	public int getDispatchBatchSize() {
+		return this.dispatchBatchSize;
+	}
+
+	/**
+	 * Sets the dispatch batch size.
+	 *
+	 * @param value the new dispatch batch size
+	 */
+	public void setDispatchBatchSize(int value) {
+		this.dispatchBatchSize = value;
+	}
+
+	/**
+	 * The maximum number of milliseconds the publisher will spend gathering a
+	 * single dispatch batch.
+	 * 
+	 * Only used when the dispatch batch size is greater than one. Once the time
+	 * budget runs out the batch is dispatched even if it isn't full.
+	 */
+	private int dispatchBatchTimeBudget = 5;
+
+	/**
+	 * Gets the dispatch batch time budget.
+	 *
+	 * @return the dispatch batch time budget
+	 */
+	public int getDispatchBatchTimeBudget() {
+		return this.dispatchBatchTimeBudget;
+	}
+
+	/**
+	 * Sets the dispatch batch time budget.
+	 *
+	 * @param value the new dispatch batch time budget
+	 */
+	public void setDispatchBatchTimeBudget(int value) {
+		this.dispatchBatchTimeBudget = value;
+	}
+
+	/**
+	 * Which log messages have the class, method, file and line they were logged
+	 * from captured.
+	 * 
+	 * Finding the caller means inspecting the call stack, the most expensive part
+	 * of logging a message. Each setting is Always, Never or the least severe
+	 * severity to capture, and can be given for the default and for categories,
+	 * such as "Warning; com.acme.billing=Always". Messages that aren't captured
+	 * record their category as their class instead. See CallerInfoPolicy.
+	 */
+	private String captureCallerInfo = "Always";
+
+	/**
+	 * Gets the capture caller info.
+	 *
+	 * @return the capture caller info
+	 */
+	public String getCaptureCallerInfo() {
+		return this.captureCallerInfo;
+	}
+
+	/**
+	 * Sets the capture caller info.
+	 *
+	 * @param value the new capture caller info
+	 */
+	public void setCaptureCallerInfo(String value) {
+		this.captureCallerInfo = value;
+	}
+
+	/**
+	 * Which log messages are logged at all.
+	 * 
+	 * Messages that aren't are dropped before any work is done for them. Each
+	 * setting is All, None or the least severe severity to log, and can be given
+	 * for the default and for categories, such as
+	 * "Information; com.acme.billing=Verbose; org.hibernate=Warning". See
+	 * LogFilter; it can be changed while running with Log.setLogFilter.
+	 */
+	private String logFilter = "All";
+
+	/**
+	 * Gets the log filter.
+	 *
+	 * @return the log filter
+	 */
+	public String getLogFilter() {
+		return this.logFilter;
+	}
+
+	/**
+	 * Sets the log filter.
+	 *
+	 * @param value the new log filter
+	 */
+	public void setLogFilter(String value) {
+		this.logFilter = value;
+	}
+
+	/**
+	 * How often the same log message is logged before repeats are suppressed.
+	 * 
+	 * Suppressed repeats are counted and reported by one message at the end of
+	 * each window. Each setting is Off or a count and a window, and can be given
+	 * for the default and for categories, such as "Off; com.acme.db=20/10s". See
+	 * MessageSuppressor.
+	 */
+	private String messageSuppression = "Off";
+
+	/**
+	 * Gets the message suppression.
+	 *
+	 * @return the message suppression
+	 */
+	public String getMessageSuppression() {
+		return this.messageSuppression;
+	}
+
+	/**
+	 * Sets the message suppression.
+	 *
+	 * @param value the new message suppression
+	 */
+	public void setMessageSuppression(String value) {
+		this.messageSuppression = value;
+	}
+
 	/**
 	 * When true, the Agent will record session data without collecting
 	 * personally-identifying information.
@@ -420,6 +605,50 @@ public final class PublisherConfiguration {
 			setMaxQueueLength(2000);
 		}
 
+		if (getDispatchBatchSize() <= 0) {
+			setDispatchBatchSize(1);
+		} else if (getDispatchBatchSize() > getMaxQueueLength()) {
+			setDispatchBatchSize(getMaxQueueLength());
+		}
+
+		if (getDispatchBatchTimeBudget() <= 0) {
+			setDispatchBatchTimeBudget(5);
+		}
+
+		if (getQueueWaitStrategy() == null) {
+			setQueueWaitStrategy(QueueWaitStrategy.BLOCK);
+		}
+
+		if (TypeUtils.isBlank(getCaptureCallerInfo())) {
+			setCaptureCallerInfo("Always");
+		} else {
+			try {
+				new CallerInfoPolicy(getCaptureCallerInfo());
+			} catch (IllegalArgumentException e) {
+				setCaptureCallerInfo("Always");
+			}
+		}
+
+		if (TypeUtils.isBlank(getLogFilter())) {
+			setLogFilter("All");
+		} else {
+			try {
+				new LogFilter(getLogFilter());
+			} catch (IllegalArgumentException e) {
+				setLogFilter("All");
+			}
+		}
+
+		if (TypeUtils.isBlank(getMessageSuppression())) {
+			setMessageSuppression("Off");
+		} else {
+			try {
+				new MessageSuppressor(getMessageSuppression());
+			} catch (IllegalArgumentException e) {
+				setMessageSuppression("Off");
+			}
+		}
+
 		if (TypeUtils.isBlank(getProductName())) {
 			setProductName(null);
 		}
@@ -474,6 +703,24 @@ public final class PublisherConfiguration {
 		/** The max queue length. */
 		private int maxQueueLength;
 		
+		/** The queue wait strategy. */
+		private QueueWaitStrategy queueWaitStrategy = QueueWaitStrategy.BLOCK;
+		
+		/** The dispatch batch size. */
+		private int dispatchBatchSize = 1;
+		
+		/** The dispatch batch time budget. */
+		private int dispatchBatchTimeBudget = 5;
+		
+		/** The capture caller info. */
+		private String captureCallerInfo = "Always";
+		
+		/** The log filter. */
+		private String logFilter = "All";
+		
+		/** The message suppression. */
+		private String messageSuppression = "Off";
+		
 		/** The enable anonymous mode. */
 		private boolean enableAnonymousMode;
 		
@@ -585,6 +832,72 @@ public final class PublisherConfiguration {
 			return this;
 		}
 
+		/**
+		 * Queue wait strategy.
+		 *
+		 * @param queueWaitStrategy the queue wait strategy
+		 * @return the builder
+		 */
+		public Builder queueWaitStrategy(QueueWaitStrategy queueWaitStrategy) {
+			this.queueWaitStrategy = queueWaitStrategy;
+			return this;
+		}
+
+		/**
+		 * Dispatch batch size.
+		 *
+		 * @param dispatchBatchSize the dispatch batch size
+		 * @return the builder
+		 */
+		public Builder dispatchBatchSize(int dispatchBatchSize) {
+			this.dispatchBatchSize = dispatchBatchSize;
+			return this;
+		}
+
+		/**
+		 * Dispatch batch time budget.
+		 *
+		 * @param dispatchBatchTimeBudget the dispatch batch time budget
+		 * @return the builder
+		 */
+		public Builder dispatchBatchTimeBudget(int dispatchBatchTimeBudget) {
+			this.dispatchBatchTimeBudget = dispatchBatchTimeBudget;
+			return this;
+		}
+
+		/**
+		 * Capture caller info.
+		 *
+		 * @param captureCallerInfo the capture caller info
+		 * @return the builder
+		 */
+		public Builder captureCallerInfo(String captureCallerInfo) {
+			this.captureCallerInfo = captureCallerInfo;
+			return this;
+		}
+
+		/**
+		 * Log filter.
+		 *
+		 * @param logFilter the log filter
+		 * @return the builder
+		 */
+		public Builder logFilter(String logFilter) {
+			this.logFilter = logFilter;
+			return this;
+		}
+
+		/**
+		 * Message suppression.
+		 *
+		 * @param messageSuppression the message suppression
+		 * @return the builder
+		 */
+		public Builder messageSuppression(String messageSuppression) {
+			this.messageSuppression = messageSuppression;
+			return this;
+		}
+
 		/**
 		 * Enable anonymous mode.
 		 *
@@ -2,6 +2,8 @@ package com.onloupe.configuration;
 
 import java.util.Properties;
 
+import com.onloupe.core.data.CompressionCodec;
+import com.onloupe.core.messaging.FileDurability;
 import com.onloupe.core.util.TypeUtils;
 
 
@@ -10,6 +12,9 @@ import com.onloupe.core.util.TypeUtils;
  */
 public final class SessionFileConfiguration implements IMessengerConfiguration {
 
+	/** The default compression block size. */
+	private static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 128 * 1024;
+
 	/**
 	 * Instantiates a new session file configuration.
 	 */
@@ -34,6 +39,17 @@ public final class SessionFileConfiguration implements IMessengerConfiguration {
 		setMinimumFreeDisk(Integer.valueOf(props.getProperty("SessionFile.MinimumFreeDisk", String.valueOf(minimumFreeDisk))));
 		setForceSynchronous(Boolean.valueOf(props.getProperty("SessionFile.ForceSynchronous", String.valueOf(forceSynchronous))));
 		setMaxQueueLength(Integer.valueOf(props.getProperty("SessionFile.MaxQueueLength", String.valueOf(maxQueueLength))));
+		setGroupCommitWindow(Integer.valueOf(props.getProperty("SessionFile.GroupCommitWindow", String.valueOf(groupCommitWindow))));
+		setDurability(TypeUtils.safeEnum(FileDurability.class, props.getProperty("SessionFile.Durability", String.valueOf(durability))));
+		setCompressionCodec(TypeUtils.safeEnum(CompressionCodec.class, props.getProperty("SessionFile.CompressionCodec", String.valueOf(compressionCodec))));
+		setCompressionWorkers(Integer.valueOf(props.getProperty("SessionFile.CompressionWorkers", String.valueOf(compressionWorkers))));
+		setCompressionBlockSize(Integer.valueOf(props.getProperty("SessionFile.CompressionBlockSize", String.valueOf(compressionBlockSize))));
+		setCompressionLevel(Integer.valueOf(props.getProperty("SessionFile.CompressionLevel", String.valueOf(compressionLevel))));
+		setPreallocationSize(Integer.valueOf(props.getProperty("SessionFile.PreallocationSize", String.valueOf(preallocationSize))));
+		setEnableStringTable(Boolean.valueOf(props.getProperty("SessionFile.EnableStringTable", String.valueOf(enableStringTable))));
+		setEnableFileIndex(Boolean.valueOf(props.getProperty("SessionFile.EnableFileIndex", String.valueOf(enableFileIndex))));
+		setFileIndexPacketInterval(Integer.valueOf(props.getProperty("SessionFile.FileIndexPacketInterval", String.valueOf(fileIndexPacketInterval))));
+		setFileIndexTimeInterval(Integer.valueOf(props.getProperty("SessionFile.FileIndexTimeInterval", String.valueOf(fileIndexTimeInterval))));
 		setFolder(props.getProperty("SessionFile.Folder"));
 	}
 	
@@ -54,6 +70,17 @@ public final class SessionFileConfiguration implements IMessengerConfiguration {
 		this.minimumFreeDisk = builder.minimumFreeDisk;
 		this.forceSynchronous = builder.forceSynchronous;
 		this.maxQueueLength = builder.maxQueueLength;
+		this.groupCommitWindow = builder.groupCommitWindow;
+		this.durability = builder.durability;
+		this.compressionCodec = builder.compressionCodec;
+		this.compressionWorkers = builder.compressionWorkers;
+		this.compressionBlockSize = builder.compressionBlockSize;
+		this.compressionLevel = builder.compressionLevel;
+		this.preallocationSize = builder.preallocationSize;
+		this.enableStringTable = builder.enableStringTable;
+		this.enableFileIndex = builder.enableFileIndex;
+		this.fileIndexPacketInterval = builder.fileIndexPacketInterval;
+		this.fileIndexTimeInterval = builder.fileIndexTimeInterval;
 		this.enabled = builder.enabled;
 	}
 	
@@ -371,6 +398,309 @@ public final class SessionFileConfiguration implements IMessengerConfiguration {
 		this.maxQueueLength = value;
 	}
 
+	/**
+	 * The number of milliseconds a write-through commit is held open so commits
+	 * from other threads can join it.
+	 * 
+	 * When greater than zero, write-through packets that arrive within the window
+	 * are written together and committed with a single flush to disk, then all of
+	 * their callers are released at once. This trades a little latency per commit
+	 * for much better throughput when many threads log synchronously. Zero (the
+	 * default) commits each write-through packet on its own.
+	 */
+	private int groupCommitWindow = 0;
+
+	/**
+	 * Gets the group commit window.
+	 *
+	 * @return the group commit window
+	 */
+	public int getGroupCommitWindow() {
+		return this.groupCommitWindow;
+	}
+
+	/**
+	 * Sets the group commit window.
+	 *
+	 * @param value the new group commit window
+	 */
+	public void setGroupCommitWindow(int value) {
+		this.groupCommitWindow = value;
+	}
+
+	/**
+	 * How hard the session file works to get data onto the disk.
+	 * 
+	 * PER_WRITE (the default) syncs every write to the file, ON_FLUSH syncs each
+	 * time the file is flushed (including for write-through requests), PERIODIC
+	 * syncs at most once per auto flush interval and NONE leaves it to the
+	 * operating system. When group commit is enabled, PER_WRITE syncs once per
+	 * group commit instead of on every write.
+	 */
+	private FileDurability durability = FileDurability.PER_WRITE;
+
+	/**
+	 * Gets the durability.
+	 *
+	 * @return the durability
+	 */
+	public FileDurability getDurability() {
+		return this.durability;
+	}
+
+	/**
+	 * Sets the durability.
+	 *
+	 * @param value the new durability
+	 */
+	public void setDurability(FileDurability value) {
+		this.durability = value;
+	}
+
+	/**
+	 * How the packets in the session file are compressed.
+	 * 
+	 * GZIP (the default) uses deflate at the compression level, and is the only
+	 * codec older readers understand. LZ uses much less CPU for somewhat larger
+	 * files, and NONE stores the packets uncompressed. The codec is recorded in
+	 * each file so readers pick the right one automatically.
+	 */
+	private CompressionCodec compressionCodec = CompressionCodec.GZIP;
+
+	/**
+	 * Gets the compression codec.
+	 *
+	 * @return the compression codec
+	 */
+	public CompressionCodec getCompressionCodec() {
+		return this.compressionCodec;
+	}
+
+	/**
+	 * Sets the compression codec.
+	 *
+	 * @param value the new compression codec
+	 */
+	public void setCompressionCodec(CompressionCodec value) {
+		this.compressionCodec = value;
+	}
+
+	/**
+	 * The number of threads used to compress the session file.
+	 * 
+	 * When greater than zero, data written to the session file is cut into blocks
+	 * which are compressed on this many background threads so compression doesn't
+	 * hold up the thread writing packets. The file format is unchanged. Zero (the
+	 * default) compresses on the writing thread. Only used with the GZIP codec.
+	 */
+	private int compressionWorkers = 0;
+
+	/**
+	 * Gets the compression workers.
+	 *
+	 * @return the compression workers
+	 */
+	public int getCompressionWorkers() {
+		return this.compressionWorkers;
+	}
+
+	/**
+	 * Sets the compression workers.
+	 *
+	 * @param value the new compression workers
+	 */
+	public void setCompressionWorkers(int value) {
+		this.compressionWorkers = value;
+	}
+
+	/**
+	 * The number of bytes of uncompressed data in each compression block.
+	 * 
+	 * Only used when compressing on background threads. Larger blocks compress a
+	 * little better and cost less to hand off, smaller blocks reach the disk
+	 * sooner between flushes. The default is 128 KB.
+	 */
+	private int compressionBlockSize = DEFAULT_COMPRESSION_BLOCK_SIZE;
+
+	/**
+	 * Gets the compression block size.
+	 *
+	 * @return the compression block size
+	 */
+	public int getCompressionBlockSize() {
+		return this.compressionBlockSize;
+	}
+
+	/**
+	 * Sets the compression block size.
+	 *
+	 * @param value the new compression block size
+	 */
+	public void setCompressionBlockSize(int value) {
+		this.compressionBlockSize = value;
+	}
+
+	/**
+	 * The compression level for the GZIP codec, from 0 (none) to 9 (best).
+	 * 
+	 * The default of -1 uses the standard deflate level, which is a good balance
+	 * between speed and size. 1 is the fastest level that still compresses.
+	 */
+	private int compressionLevel = -1;
+
+	/**
+	 * Gets the compression level.
+	 *
+	 * @return the compression level
+	 */
+	public int getCompressionLevel() {
+		return this.compressionLevel;
+	}
+
+	/**
+	 * Sets the compression level.
+	 *
+	 * @param value the new compression level
+	 */
+	public void setCompressionLevel(int value) {
+		this.compressionLevel = value;
+	}
+
+	/**
+	 * The number of bytes the session file is grown by at a time when writing
+	 * through a memory mapping.
+	 * 
+	 * When greater than zero, each session file is preallocated this many bytes at
+	 * a time and the packet stream is copied into a memory mapped window of the
+	 * file instead of being written with a system call each time. The file is
+	 * truncated to its real length when it's closed. Zero (the default) writes the
+	 * file normally.
+	 */
+	private int preallocationSize = 0;
+
+	/**
+	 * Gets the preallocation size.
+	 *
+	 * @return the preallocation size
+	 */
+	public int getPreallocationSize() {
+		return this.preallocationSize;
+	}
+
+	/**
+	 * Sets the preallocation size.
+	 *
+	 * @param value the new preallocation size
+	 */
+	public void setPreallocationSize(int value) {
+		this.preallocationSize = value;
+	}
+
+	/**
+	 * Write repeated strings in session files as references to a string table.
+	 * 
+	 * When enabled, the first time a name (such as a category, class, method or
+	 * thread name) is written to a session file it's given an ID, and from then on
+	 * only the ID is written. This makes files smaller and cheaper to compress, but
+	 * they use a newer format (2.3) that older readers can't open, so it's off by
+	 * default.
+	 */
+	private boolean enableStringTable = false;
+
+	/**
+	 * Gets the enable string table.
+	 *
+	 * @return the enable string table
+	 */
+	public boolean getEnableStringTable() {
+		return this.enableStringTable;
+	}
+
+	/**
+	 * Sets the enable string table.
+	 *
+	 * @param value the new enable string table
+	 */
+	public void setEnableStringTable(boolean value) {
+		this.enableStringTable = value;
+	}
+
+	/**
+	 * Write a sparse index alongside each session file.
+	 * 
+	 * The index lets a reader start near a sequence number or time instead of
+	 * decompressing the whole file. Every so often the compressor is reset and a
+	 * checkpoint recorded in the index, and the threads and other shared packets
+	 * are written again after it, which costs a little space. Files stay readable
+	 * by older readers, and the index can be rebuilt from the file if it's lost.
+	 */
+	private boolean enableFileIndex = false;
+
+	/**
+	 * Gets the enable file index.
+	 *
+	 * @return the enable file index
+	 */
+	public boolean getEnableFileIndex() {
+		return this.enableFileIndex;
+	}
+
+	/**
+	 * Sets the enable file index.
+	 *
+	 * @param value the new enable file index
+	 */
+	public void setEnableFileIndex(boolean value) {
+		this.enableFileIndex = value;
+	}
+
+	/**
+	 * The number of packets between checkpoints in the file index.
+	 */
+	private int fileIndexPacketInterval = 10000;
+
+	/**
+	 * Gets the file index packet interval.
+	 *
+	 * @return the file index packet interval
+	 */
+	public int getFileIndexPacketInterval() {
+		return this.fileIndexPacketInterval;
+	}
+
+	/**
+	 * Sets the file index packet interval.
+	 *
+	 * @param value the new file index packet interval
+	 */
+	public void setFileIndexPacketInterval(int value) {
+		this.fileIndexPacketInterval = value;
+	}
+
+	/**
+	 * The most seconds between checkpoints in the file index, or zero to go by
+	 * the number of packets alone.
+	 */
+	private int fileIndexTimeInterval = 60;
+
+	/**
+	 * Gets the file index time interval.
+	 *
+	 * @return the file index time interval
+	 */
+	public int getFileIndexTimeInterval() {
+		return this.fileIndexTimeInterval;
+	}
+
+	/**
+	 * Sets the file index time interval.
+	 *
+	 * @param value the new file index time interval
+	 */
+	public void setFileIndexTimeInterval(int value) {
+		this.fileIndexTimeInterval = value;
+	}
+
 	/**
 	 * When false, the session file is disabled even if otherwise configured.
 	 * 
@@ -442,6 +772,54 @@ public final class SessionFileConfiguration implements IMessengerConfiguration {
 		} else if (getMaxQueueLength() > 50000) {
 			setMaxQueueLength(50000);
 		}
+
+		if (getGroupCommitWindow() < 0) {
+			setGroupCommitWindow(0);
+		}
+
+		if (getDurability() == null) {
+			setDurability(FileDurability.PER_WRITE);
+		}
+
+		if (getCompressionCodec() == null) {
+			setCompressionCodec(CompressionCodec.GZIP);
+		}
+
+		if (getCompressionWorkers() < 0) {
+			setCompressionWorkers(0);
+		} else if (getCompressionWorkers() > 64) {
+			setCompressionWorkers(64);
+		}
+
+		if (getCompressionBlockSize() <= 0) {
+			setCompressionBlockSize(DEFAULT_COMPRESSION_BLOCK_SIZE);
+		} else if (getCompressionBlockSize() < 4096) {
+			setCompressionBlockSize(4096);
+		} else if (getCompressionBlockSize() > 16 * 1024 * 1024) {
+			setCompressionBlockSize(16 * 1024 * 1024);
+		}
+
+		if ((getCompressionLevel() < -1) || (getCompressionLevel() > 9)) {
+			setCompressionLevel(-1);
+		}
+
+		if (getPreallocationSize() < 0) {
+			setPreallocationSize(0);
+		} else if ((getPreallocationSize() > 0) && (getPreallocationSize() < 64 * 1024)) {
+			setPreallocationSize(64 * 1024);
+		} else if (getPreallocationSize() > 256 * 1024 * 1024) {
+			setPreallocationSize(256 * 1024 * 1024);
+		}
+
+		if (getFileIndexPacketInterval() <= 0) {
+			setFileIndexPacketInterval(10000);
+		} else if (getFileIndexPacketInterval() < 100) {
+			setFileIndexPacketInterval(100);
+		}
+
+		if (getFileIndexTimeInterval() < 0) {
+			setFileIndexTimeInterval(0);
+		}
 	}
 
 	/**
@@ -490,6 +868,39 @@ public final class SessionFileConfiguration implements IMessengerConfiguration {
 		/** The max queue length. */
 		private int maxQueueLength;
 		
+		/** The group commit window. */
+		private int groupCommitWindow;
+		
+		/** The durability. */
+		private FileDurability durability = FileDurability.PER_WRITE;
+		
+		/** The compression codec. */
+		private CompressionCodec compressionCodec = CompressionCodec.GZIP;
+		
+		/** The compression workers. */
+		private int compressionWorkers;
+		
+		/** The compression block size. */
+		private int compressionBlockSize = DEFAULT_COMPRESSION_BLOCK_SIZE;
+		
+		/** The compression level. */
+		private int compressionLevel = -1;
+		
+		/** The preallocation size. */
+		private int preallocationSize;
+		
+		/** The enable string table. */
+		private boolean enableStringTable;
+		
+		/** The enable file index. */
+		private boolean enableFileIndex;
+		
+		/** The file index packet interval. */
+		private int fileIndexPacketInterval = 10000;
+		
+		/** The file index time interval. */
+		private int fileIndexTimeInterval = 60;
+		
 		/** The enabled. */
 		private boolean enabled;
 
@@ -620,6 +1031,127 @@ public final class SessionFileConfiguration implements IMessengerConfiguration {
 			return this;
 		}
 
+		/**
+		 * Group commit window.
+		 *
+		 * @param groupCommitWindow the group commit window
+		 * @return the builder
+		 */
+		public Builder groupCommitWindow(int groupCommitWindow) {
+			this.groupCommitWindow = groupCommitWindow;
+			return this;
+		}
+
+		/**
+		 * Durability.
+		 *
+		 * @param durability the durability
+		 * @return the builder
+		 */
+		public Builder durability(FileDurability durability) {
+			this.durability = durability;
+			return this;
+		}
+
+		/**
+		 * Compression codec.
+		 *
+		 * @param compressionCodec the compression codec
+		 * @return the builder
+		 */
+		public Builder compressionCodec(CompressionCodec compressionCodec) {
+			this.compressionCodec = compressionCodec;
+			return this;
+		}
+
+		/**
+		 * Compression workers.
+		 *
+		 * @param compressionWorkers the compression workers
+		 * @return the builder
+		 */
+		public Builder compressionWorkers(int compressionWorkers) {
+			this.compressionWorkers = compressionWorkers;
+			return this;
+		}
+
+		/**
+		 * Compression block size.
+		 *
+		 * @param compressionBlockSize the compression block size
+		 * @return the builder
+		 */
+		public Builder compressionBlockSize(int compressionBlockSize) {
+			this.compressionBlockSize = compressionBlockSize;
+			return this;
+		}
+
+		/**
+		 * Compression level.
+		 *
+		 * @param compressionLevel the compression level
+		 * @return the builder
+		 */
+		public Builder compressionLevel(int compressionLevel) {
+			this.compressionLevel = compressionLevel;
+			return this;
+		}
+
+		/**
+		 * Preallocation size.
+		 *
+		 * @param preallocationSize the preallocation size
+		 * @return the builder
+		 */
+		public Builder preallocationSize(int preallocationSize) {
+			this.preallocationSize = preallocationSize;
+			return this;
+		}
+
+		/**
+		 * Enable string table.
+		 *
+		 * @param enableStringTable the enable string table
+		 * @return the builder
+		 */
+		public Builder enableStringTable(boolean enableStringTable) {
+			this.enableStringTable = enableStringTable;
+			return this;
+		}
+
+		/**
+		 * Enable file index.
+		 *
+		 * @param enableFileIndex the enable file index
+		 * @return the builder
+		 */
+		public Builder enableFileIndex(boolean enableFileIndex) {
+			this.enableFileIndex = enableFileIndex;
+			return this;
+		}
+
+		/**
+		 * File index packet interval.
+		 *
+		 * @param fileIndexPacketInterval the file index packet interval
+		 * @return the builder
+		 */
+		public Builder fileIndexPacketInterval(int fileIndexPacketInterval) {
+			this.fileIndexPacketInterval = fileIndexPacketInterval;
+			return this;
+		}
+
+		/**
+		 * File index time interval.
+		 *
+		 * @param fileIndexTimeInterval the file index time interval
+		 * @return the builder
+		 */
+		public Builder fileIndexTimeInterval(int fileIndexTimeInterval) {
+			this.fileIndexTimeInterval = fileIndexTimeInterval;
+			return this;
+		}
+
 		/**
 		 * Enabled.
 		 *
@@ -0,0 +1,359 @@
+package com.onloupe.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.onloupe.agent.logging.MessageSourceProvider;
+
+
+/**
+ * Finds the frame of the call stack that logged a message, the work behind
+ * CommonCentralLogic.findMessageSource.
+ *
+ * On Java 9 and later the stack is walked with StackWalker one frame at a
+ * time, stopping at the caller, so the frames beyond it are never looked at.
+ * StackWalker is used through method handles so the agent still builds and
+ * runs on Java 8, where the whole stack trace is taken from a Throwable
+ * instead. Either way the frame picked is turned into a MessageSourceProvider
+ * once per call site and reused after that.
+ */
+final class CallerLocator {
+
+	/** The most frames to look at before giving up on finding the caller. */
+	private static final int MAX_FRAMES = 200;
+
+	/** The most call sites to keep the message source of. */
+	private static final int MAX_CACHED_SOURCES = 4096;
+
+	/** Loupe's own package, which is never the caller. */
+	private static final String LOUPE_PACKAGE = "com.onloupe";
+
+	/** The message source of each call site seen, by the frame of the call. */
+	private static final ConcurrentHashMap<StackTraceElement, MessageSourceProvider> sources = new ConcurrentHashMap<StackTraceElement, MessageSourceProvider>();
+
+	/** StackWalker.walk on a walker, returning the frame picked, or null before Java 9. */
+	private static final MethodHandle WALK;
+
+	/** StackWalker.StackFrame.getClassName. */
+	private static final MethodHandle GET_CLASS_NAME;
+
+	/** StackWalker.StackFrame.getMethodName. */
+	private static final MethodHandle GET_METHOD_NAME;
+
+	/** StackWalker.StackFrame.toStackTraceElement. */
+	private static final MethodHandle TO_STACK_TRACE_ELEMENT;
+
+	static {
+		MethodHandle walk = null;
+		MethodHandle getClassName = null;
+		MethodHandle getMethodName = null;
+		MethodHandle toStackTraceElement = null;
+		try {
+			// walk is caller sensitive, so it can't be found with a public lookup.
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+			Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+			Object walker = walkerClass.getMethod("getInstance").invoke(null);
+			walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+					.bindTo(walker).asType(MethodType.methodType(StackTraceElement.class, Function.class));
+			getClassName = lookup.findVirtual(frameClass, "getClassName", MethodType.methodType(String.class))
+					.asType(MethodType.methodType(String.class, Object.class));
+			getMethodName = lookup.findVirtual(frameClass, "getMethodName", MethodType.methodType(String.class))
+					.asType(MethodType.methodType(String.class, Object.class));
+			toStackTraceElement = lookup
+					.findVirtual(frameClass, "toStackTraceElement", MethodType.methodType(StackTraceElement.class))
+					.asType(MethodType.methodType(StackTraceElement.class, Object.class));
+		} catch (Exception e) {
+			// before Java 9, so we'll use stack traces.
+			walk = null;
+		}
+
+		WALK = walk;
+		GET_CLASS_NAME = getClassName;
+		GET_METHOD_NAME = getMethodName;
+		TO_STACK_TRACE_ELEMENT = toStackTraceElement;
+	}
+
+	/**
+	 * Instantiates a new caller locator.
+	 */
+	private CallerLocator() {
+
+	}
+
+	/**
+	 * Indicates if the stack is walked with StackWalker.
+	 *
+	 * @return true, if StackWalker is available
+	 */
+	static boolean isWalkerAvailable() {
+		return WALK != null;
+	}
+
+	/**
+	 * Find the source of a message logged by the current thread.
+	 *
+	 * @param skipFrames the number of frames to skip above the caller of this
+	 *                   method before looking for the source
+	 * @param exclusions the starts of class names that aren't the source, if any
+	 * @return the message source
+	 */
+	static MessageSourceProvider locate(int skipFrames, Set<String> exclusions) {
+		return (WALK != null) ? walkStack(skipFrames + 1, exclusions) : traceStack(skipFrames + 1, exclusions);
+	}
+
+	/**
+	 * Find the source of the code that threw an exception.
+	 *
+	 * @param throwable  the exception
+	 * @param exclusions the starts of class names that aren't the source, if any
+	 * @return the message source
+	 */
+	static MessageSourceProvider locate(Throwable throwable, Set<String> exclusions) {
+		return select(throwable.getStackTrace(), 0, exclusions);
+	}
+
+	/**
+	 * Find the source of a message by walking the stack with StackWalker.
+	 *
+	 * @param skipFrames the number of frames to skip above the caller of this
+	 *                   method
+	 * @param exclusions the exclusions
+	 * @return the message source
+	 */
+	static MessageSourceProvider walkStack(int skipFrames, Set<String> exclusions) {
+		// the first frame walked is this method's.
+		Function<Stream<?>, Object> walker = frames -> {
+			FrameSelector selector = new FrameSelector(exclusions);
+			Iterator<?> iterator = frames.skip(skipFrames + 1).limit(MAX_FRAMES).iterator();
+			try {
+				while (iterator.hasNext()) {
+					Object frame = iterator.next();
+					if (selector.offer(frame, (String) GET_CLASS_NAME.invokeExact(frame),
+							(String) GET_METHOD_NAME.invokeExact(frame))) {
+						break;
+					}
+				}
+
+				Object frame = selector.getSelection();
+				return (frame != null) ? (StackTraceElement) TO_STACK_TRACE_ELEMENT.invokeExact(frame) : null;
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		};
+
+		try {
+			return getSource((StackTraceElement) WALK.invokeExact((Function<?, ?>) walker));
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Find the source of a message from a stack trace of the current thread.
+	 *
+	 * @param skipFrames the number of frames to skip above the caller of this
+	 *                   method
+	 * @param exclusions the exclusions
+	 * @return the message source
+	 */
+	static MessageSourceProvider traceStack(int skipFrames, Set<String> exclusions) {
+		// the first frame of the trace is this method's.
+		return select(new Throwable().getStackTrace(), skipFrames + 1, exclusions);
+	}
+
+	/**
+	 * Pick the source of a message from a stack trace.
+	 *
+	 * @param stackTrace the stack trace
+	 * @param firstFrame the index of the first frame that could be the source
+	 * @param exclusions the exclusions
+	 * @return the message source
+	 */
+	private static MessageSourceProvider select(StackTraceElement[] stackTrace, int firstFrame,
+			Set<String> exclusions) {
+		FrameSelector selector = new FrameSelector(exclusions);
+		int lastFrame = Math.min(stackTrace.length, firstFrame + MAX_FRAMES);
+		for (int index = firstFrame; index < lastFrame; index++) {
+			StackTraceElement element = stackTrace[index];
+
+			// probably not necessary, but better safe.
+			if (element != null && selector.offer(element, element.getClassName(), element.getMethodName())) {
+				break;
+			}
+		}
+		return getSource((StackTraceElement) selector.getSelection());
+	}
+
+	/**
+	 * Get the message source for a frame, reusing the one made for the same call
+	 * site before.
+	 *
+	 * @param element the frame, or null if there wasn't one
+	 * @return the message source
+	 */
+	private static MessageSourceProvider getSource(StackTraceElement element) {
+		if (element == null) {
+			return new MessageSourceProvider();
+		}
+
+		MessageSourceProvider source = sources.get(element);
+		if (source == null) {
+			source = new MessageSourceProvider(element);
+
+			// once full we stop adding, a program only has so many call sites.
+			if (sources.size() < MAX_CACHED_SOURCES) {
+				sources.putIfAbsent(element, source);
+			}
+		}
+		return source;
+	}
+
+	/**
+	 * Indicates if a string contains another, ignoring case, without making
+	 * lower case copies.
+	 *
+	 * @param str   the string
+	 * @param value the string to look for
+	 * @return true, if found
+	 */
+	private static boolean containsIgnoreCase(String str, String value) {
+		for (int index = str.length() - value.length(); index >= 0; index--) {
+			if (str.regionMatches(true, index, value, 0, value.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Indicates if a string starts with another, ignoring case.
+	 *
+	 * @param str    the string
+	 * @param prefix the prefix
+	 * @return true, if it does
+	 */
+	private static boolean startsWithIgnoreCase(String str, String prefix) {
+		return str.regionMatches(true, 0, prefix, 0, prefix.length());
+	}
+
+	/**
+	 * Picks the source of a message from frames offered to it from the innermost
+	 * out.
+	 */
+	private static final class FrameSelector {
+
+		/** The exclusions. */
+		private final Set<String> exclusions;
+
+		/** The frame picked as the source. */
+		private Object selectedFrame;
+
+		/** Not excluded, but low likelihood of being meaningful. */
+		private Object firstTierCandidate;
+
+		/** Excluded by the exclusions, but not Loupe. */
+		private Object secondTierCandidate;
+
+		/** Core system, last resort. */
+		private Object thirdTierCandidate;
+
+		/**
+		 * Instantiates a new frame selector.
+		 *
+		 * @param exclusions the exclusions, if any
+		 */
+		FrameSelector(Set<String> exclusions) {
+			this.exclusions = exclusions;
+		}
+
+		/**
+		 * Consider the next frame out.
+		 *
+		 * @param frame      the frame
+		 * @param className  the name of the frame's class
+		 * @param methodName the name of the frame's method
+		 * @return true if the frame is the source, so there's no need to look further
+		 */
+		boolean offer(Object frame, String className, String methodName) {
+			// probably not necessary, but better safe.
+			if (className == null || className.isEmpty() || methodName == null || methodName.isEmpty()) {
+				return false;
+			}
+
+			if (startsWithIgnoreCase(className, "java") || startsWithIgnoreCase(className, "sun")
+					|| startsWithIgnoreCase(className, "jdk.")) {
+				// this means we have drilled down into the core system packages,
+				// so we probably missed our mark and will save this as a last resort.
+				// since we want the innermost, we'll use the first reference.
+				if (this.thirdTierCandidate == null) {
+					this.thirdTierCandidate = frame;
+				}
+			} else if (startsWithIgnoreCase(className, LOUPE_PACKAGE)) {
+				// our own frames are never the source.
+				return false;
+			} else if (!isExcluded(className)) {
+				// these are not necessarily excluded but not necessarily useful.
+				if (containsIgnoreCase(className, "log") || containsIgnoreCase(className, "slf")
+						|| methodName.equals("<init>") || methodName.equals("<clinit>")) {
+					if (this.firstTierCandidate == null) {
+						this.firstTierCandidate = frame;
+					}
+				} else {
+					// This is our guy.
+					this.selectedFrame = frame;
+					return true;
+				}
+			} else if (this.secondTierCandidate == null) {
+				// this was excluded but is the top level non-system, non-loupe reference.
+				this.secondTierCandidate = frame;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Get the frame picked as the source, falling back to the best candidate when
+		 * no frame was clearly the source.
+		 *
+		 * @return the frame, or null if there were no candidates
+		 */
+		Object getSelection() {
+			if (this.selectedFrame != null) {
+				return this.selectedFrame;
+			}
+
+			return (this.firstTierCandidate != null) ? this.firstTierCandidate
+					: (this.secondTierCandidate != null) ? this.secondTierCandidate : this.thirdTierCandidate;
+		}
+
+		/**
+		 * Checks if a class is excluded.
+		 *
+		 * @param className the class name
+		 * @return true, if is excluded
+		 */
+		private boolean isExcluded(String className) {
+			if (this.exclusions == null) {
+				return false;
+			}
+
+			for (String exclusion : this.exclusions) {
+				if (startsWithIgnoreCase(className, exclusion)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
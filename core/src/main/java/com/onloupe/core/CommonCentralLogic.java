@@ -3,7 +3,6 @@ package com.onloupe.core;
 import java.lang.reflect.Method;
 import java.util.Formatter;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 
@@ -165,119 +164,14 @@ public final class CommonCentralLogic {
 	 * @return The index of the stack frame chosen
 	 */
 	public static MessageSourceProvider findMessageSource(int skipFrames, Throwable throwable, Set<String> exclusions) {
-		MessageSourceProvider provider = new MessageSourceProvider();
-		
-		if (exclusions == null) {
-			exclusions = new HashSet<>();
-		}
-		
-		exclusions.add("com.onloupe");
-
 		try {
-			StackTraceElement[] stackTrace;
-			
-			if (throwable != null) {
-				stackTrace = throwable.getStackTrace();
-				skipFrames = 0;
-			} else {
-				stackTrace = Thread.currentThread().getStackTrace();
-				skipFrames = skipFrames + 2;
-			}
-
-			StackTraceElement selectedFrame = null;
-			
-			// not excluded, but low likelihood of being meaningful
-			StackTraceElement firstTierCandidate = null;
-			// excluded loupe internals or appender defined exclusions
-			StackTraceElement secondTierCandidate = null;
-			// excluded core system, last resort
-			StackTraceElement thirdTierCandidate = null;
-
-			// we don't want to walk more than 200 elements.
-			int maxTraversalIndex = (stackTrace.length > 200) ? 200 : (stackTrace.length - 1);
-
-			// start at length-1 because the first index is 0, walk backwards.
-			for (int stackIndex = skipFrames; stackIndex < maxTraversalIndex; stackIndex++) {
-				StackTraceElement stackTraceElement = stackTrace[stackIndex];
-
-				// probably not necessary, but better safe.
-				if (stackTraceElement == null)
-					continue;
-
-				String elementClassName = stackTraceElement.getClassName();
-				String elementMethodName = stackTraceElement.getMethodName();
-				
-				// probably not necessary, but better safe.
-				if (TypeUtils.isBlank(elementClassName) || TypeUtils.isBlank(elementMethodName))
-					continue;
-				
-				if (TypeUtils.startsWithIgnoreCase(elementClassName, "java")
-						|| TypeUtils.startsWithIgnoreCase(elementClassName, "sun")) {
-					// this means we have drilled down into the core system packages,
-					// so we probably missed our mark and will save this as a last resort.
-					// since we want the innermost, we'll use the first reference.
-					// low priority for selection.
-					if (thirdTierCandidate == null) {
-						thirdTierCandidate = stackTraceElement;
-					}
-				} else {
-					// If no exclusion criteria matches, we can suppose
-					// that this is the innermost execution of the client code.
-					if (!isExcluded(elementClassName, exclusions)) {
-						// these are not necessarily excluded but not necessarily useful, assign
-						// high priority for selection.
-						if (elementClassName.toLowerCase().contains("log") || elementClassName.toLowerCase().contains("slf")
-							|| elementMethodName.equalsIgnoreCase("<init>") || elementMethodName.equalsIgnoreCase("<clinit>")) {
-							if (firstTierCandidate == null) {
-								firstTierCandidate = stackTraceElement;
-							}
-						} else {
-							// This is our guy. End the loop.
-							selectedFrame = stackTraceElement;
-							break;
-						}
-					} else if (!TypeUtils.startsWithIgnoreCase(elementClassName, "com.onloupe")) {
-						// this was excluded but is the top level non-system, non-loupe reference,
-						// mid priority for selection.
-						if (secondTierCandidate == null) {
-							secondTierCandidate = stackTraceElement;
-						}
-					}
-				}
-			}
-
-			if (selectedFrame == null) {
-				// we were unable to positively identify client code, so
-				// let's evaluate our other candidates by priority.
-				selectedFrame = (firstTierCandidate != null) ? firstTierCandidate
-						: (secondTierCandidate != null) ? secondTierCandidate : thirdTierCandidate;
-			}
-
-			provider = new MessageSourceProvider(selectedFrame);
+			// Loupe's own frames are always skipped, so the exclusions are left as they are.
+			return (throwable != null) ? CallerLocator.locate(throwable, exclusions)
+					: CallerLocator.locate(skipFrames + 1, exclusions);
 		} catch (Exception e) {
 			// do nothing, will return the base provider with default definitions.
+			return new MessageSourceProvider();
 		}
-
-		return provider;
-	}
-	
-	/**
-	 * Checks if is excluded.
-	 *
-	 * @param fqcn the fqcn
-	 * @param exclusions the exclusions
-	 * @return true, if is excluded
-	 */
-	private static boolean isExcluded(String fqcn, Set<String> exclusions) {
-		// no exclusions defined, therefore exclude nothing.
-		if (exclusions == null || exclusions.isEmpty())
-			return false;
-		
-		// no fqcn, therefore we can't use it.
-		if (TypeUtils.isBlank(fqcn))
-			return true;
-		
-		return exclusions.stream().anyMatch(exclusion -> TypeUtils.startsWithIgnoreCase(fqcn, exclusion));
 	}
 
 	/**
@@ -315,9 +209,9 @@ public final class CommonCentralLogic {
 		// we want here.
 		if (format == null || format.length() > 0) {
 			try {
-				// ReSharper disable AssignNullToNotNullAttribute
-				resultString = String.format(locale, format, args);
-				// ReSharper restore AssignNullToNotNullAttribute
+				// the format string is parsed once, with String.format for anything unusual.
+				resultString = (format != null) ? FormatTemplate.format(locale, format, args)
+						: String.format(locale, format, args);
 			} catch (RuntimeException ex) {
 				// Catch all exceptions.
 				formattingException = ex;
@@ -0,0 +1,377 @@
+package com.onloupe.core;
+
+import java.math.BigInteger;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A format string parsed once so messages logged with it can be formatted
+ * without String.format, which parses the format string again every time.
+ *
+ * The common conversions, %s, %d, %n and %% with or without an argument index
+ * like %2$s, are rendered directly; format strings with anything else are left
+ * to String.format so the output is always the same as it would give. Format
+ * strings without any % conversions can use {} placeholders instead, which are
+ * filled in with the arguments in order as SLF4J does, with \{} for a literal
+ * {}.
+ */
+final class FormatTemplate {
+
+	/** The most format strings to keep parsed. */
+	private static final int MAX_CACHED_TEMPLATES = 2048;
+
+	/** The largest builder to keep for the next message on a thread. */
+	private static final int MAX_BUILDER_CAPACITY = 16 * 1024;
+
+	/** The size of a new builder. */
+	private static final int INITIAL_BUILDER_CAPACITY = 256;
+
+	/** The conversion of an argument with %s or {}. */
+	private static final char STRING = 's';
+
+	/** The conversion of an argument with %d. */
+	private static final char INTEGER = 'd';
+
+	/** Each format string seen, parsed. */
+	private static final ConcurrentHashMap<String, FormatTemplate> templates = new ConcurrentHashMap<String, FormatTemplate>();
+
+	/** Whether each locale writes digits the usual way, so %d can be done directly. */
+	private static final ConcurrentHashMap<Locale, Boolean> asciiDigitLocales = new ConcurrentHashMap<Locale, Boolean>();
+
+	/** The builder each thread formats into, or null while it's in use. */
+	private static final ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(INITIAL_BUILDER_CAPACITY);
+		}
+	};
+
+	/** The format string, for the ones left to String.format. */
+	private final String format;
+
+	/** The text before each argument, and after the last. Null if left to String.format. */
+	private final String[] literals;
+
+	/** The index of the argument for each placeholder. */
+	private final int[] argIndexes;
+
+	/** The conversion for each placeholder. */
+	private final char[] conversions;
+
+	/** True for {} placeholders, which are left as they are when there's no argument. */
+	private final boolean braces;
+
+	/**
+	 * Instantiates a new format template.
+	 *
+	 * @param format      the format string
+	 * @param literals    the literals, or null to use String.format
+	 * @param argIndexes  the arg indexes
+	 * @param conversions the conversions
+	 * @param braces      true for {} placeholders
+	 */
+	private FormatTemplate(String format, String[] literals, int[] argIndexes, char[] conversions, boolean braces) {
+		this.format = format;
+		this.literals = literals;
+		this.argIndexes = argIndexes;
+		this.conversions = conversions;
+		this.braces = braces;
+	}
+
+	/**
+	 * Format a message.
+	 *
+	 * @param locale the locale
+	 * @param format the format string
+	 * @param args   the arguments
+	 * @return the message
+	 * @throws java.util.IllegalFormatException if the format string and arguments
+	 *                                          don't go together
+	 */
+	static String format(Locale locale, String format, Object... args) {
+		FormatTemplate template = templates.get(format);
+		if (template == null) {
+			template = parse(format);
+
+			// once full we stop adding, programs only have so many format strings.
+			if (templates.size() < MAX_CACHED_TEMPLATES) {
+				templates.putIfAbsent(format, template);
+			}
+		}
+		return template.render(locale, args);
+	}
+
+	/**
+	 * Render the template with arguments.
+	 *
+	 * @param locale the locale
+	 * @param args   the arguments
+	 * @return the message
+	 */
+	private String render(Locale locale, Object[] args) {
+		if (this.literals == null || !canRender(locale, args)) {
+			return String.format(locale, this.format, args);
+		}
+
+		// a toString that logs something would get here again, so it gets its own.
+		StringBuilder builder = builders.get();
+		boolean reused = (builder != null);
+		if (reused) {
+			builders.set(null);
+		} else {
+			builder = new StringBuilder(INITIAL_BUILDER_CAPACITY);
+		}
+
+		try {
+			for (int index = 0; index < this.argIndexes.length; index++) {
+				builder.append(this.literals[index]);
+				int argIndex = this.argIndexes[index];
+				if (argIndex >= args.length) {
+					// only braces get this far without enough arguments.
+					builder.append("{}");
+				} else if (this.conversions[index] == INTEGER) {
+					appendInteger(builder, args[argIndex]);
+				} else {
+					builder.append(String.valueOf(args[argIndex]));
+				}
+			}
+			builder.append(this.literals[this.argIndexes.length]);
+			return builder.toString();
+		} finally {
+			if (reused) {
+				if (builder.capacity() > MAX_BUILDER_CAPACITY) {
+					builder = new StringBuilder(INITIAL_BUILDER_CAPACITY);
+				} else {
+					builder.setLength(0);
+				}
+				builders.set(builder);
+			}
+		}
+	}
+
+	/**
+	 * Indicates if the arguments can be rendered directly with the same result as
+	 * String.format; if not it's left to String.format, which may well throw.
+	 *
+	 * @param locale the locale
+	 * @param args   the arguments
+	 * @return true, if the template can render them
+	 */
+	private boolean canRender(Locale locale, Object[] args) {
+		boolean checkedLocale = false;
+		for (int index = 0; index < this.argIndexes.length; index++) {
+			int argIndex = this.argIndexes[index];
+			if (argIndex >= args.length) {
+				if (!this.braces) {
+					return false;
+				}
+				continue;
+			}
+
+			Object arg = args[argIndex];
+			if (this.conversions[index] == INTEGER) {
+				if (!(arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte
+						|| arg instanceof BigInteger)) {
+					return false;
+				}
+
+				if (!checkedLocale) {
+					if (!hasAsciiDigits(locale)) {
+						return false;
+					}
+					checkedLocale = true;
+				}
+			} else if (arg instanceof Formattable && !this.braces) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Append an integer argument the way %d does.
+	 *
+	 * @param builder the builder
+	 * @param arg     the argument
+	 */
+	private static void appendInteger(StringBuilder builder, Object arg) {
+		if (arg instanceof BigInteger) {
+			builder.append(arg.toString());
+		} else {
+			builder.append(((Number) arg).longValue());
+		}
+	}
+
+	/**
+	 * Indicates if a locale writes numbers with the digits 0 to 9, otherwise %d
+	 * translates them.
+	 *
+	 * @param locale the locale, or null for no localization
+	 * @return true, if it does
+	 */
+	private static boolean hasAsciiDigits(Locale locale) {
+		if (locale == null) {
+			return true;
+		}
+
+		Boolean ascii = asciiDigitLocales.get(locale);
+		if (ascii == null) {
+			ascii = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+			asciiDigitLocales.put(locale, ascii);
+		}
+		return ascii;
+	}
+
+	/**
+	 * Parse a format string.
+	 *
+	 * @param format the format string
+	 * @return the template
+	 */
+	static FormatTemplate parse(String format) {
+		if (format.indexOf('%') >= 0) {
+			return parsePercent(format);
+		}
+
+		if (format.contains("{}")) {
+			return parseBraces(format);
+		}
+
+		// nothing to fill in.
+		return new FormatTemplate(format, new String[] { format }, new int[0], new char[0], false);
+	}
+
+	/**
+	 * Parse a format string with % conversions.
+	 *
+	 * @param format the format string
+	 * @return the template
+	 */
+	private static FormatTemplate parsePercent(String format) {
+		List<String> literals = new ArrayList<String>();
+		List<Integer> argIndexes = new ArrayList<Integer>();
+		StringBuilder conversions = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		int ordinaryIndex = 0;
+		int length = format.length();
+		int position = 0;
+		while (position < length) {
+			char c = format.charAt(position++);
+			if (c != '%') {
+				literal.append(c);
+				continue;
+			}
+
+			// an optional argument index, then the conversion.
+			int argIndex = -1;
+			int digitsEnd = position;
+			while (digitsEnd < length && Character.isDigit(format.charAt(digitsEnd))) {
+				digitsEnd++;
+			}
+
+			if (digitsEnd > position && digitsEnd < length && format.charAt(digitsEnd) == '$') {
+				try {
+					argIndex = Integer.parseInt(format.substring(position, digitsEnd)) - 1;
+				} catch (NumberFormatException e) {
+					return complex(format);
+				}
+
+				if (argIndex < 0) {
+					return complex(format);
+				}
+				position = digitsEnd + 1;
+			}
+
+			if (position >= length) {
+				return complex(format);
+			}
+
+			char conversion = format.charAt(position++);
+			if (argIndex < 0 && conversion == '%') {
+				literal.append('%');
+			} else if (argIndex < 0 && conversion == 'n') {
+				literal.append(System.lineSeparator());
+			} else if (conversion == STRING || conversion == INTEGER) {
+				literals.add(literal.toString());
+				literal.setLength(0);
+				argIndexes.add((argIndex >= 0) ? argIndex : ordinaryIndex++);
+				conversions.append(conversion);
+			} else {
+				// flags, widths, precisions and the other conversions.
+				return complex(format);
+			}
+		}
+		literals.add(literal.toString());
+
+		return create(format, literals, argIndexes, conversions, false);
+	}
+
+	/**
+	 * Parse a format string with {} placeholders.
+	 *
+	 * @param format the format string
+	 * @return the template
+	 */
+	private static FormatTemplate parseBraces(String format) {
+		List<String> literals = new ArrayList<String>();
+		List<Integer> argIndexes = new ArrayList<Integer>();
+		StringBuilder conversions = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		int length = format.length();
+		int position = 0;
+		while (position < length) {
+			char c = format.charAt(position);
+			if (c == '\\' && format.startsWith("{}", position + 1)) {
+				literal.append("{}");
+				position += 3;
+			} else if (c == '{' && position + 1 < length && format.charAt(position + 1) == '}') {
+				literals.add(literal.toString());
+				literal.setLength(0);
+				argIndexes.add(argIndexes.size());
+				conversions.append(STRING);
+				position += 2;
+			} else {
+				literal.append(c);
+				position++;
+			}
+		}
+		literals.add(literal.toString());
+
+		return create(format, literals, argIndexes, conversions, true);
+	}
+
+	/**
+	 * Create a template from its parsed parts.
+	 *
+	 * @param format      the format string
+	 * @param literals    the literals
+	 * @param argIndexes  the arg indexes
+	 * @param conversions the conversions
+	 * @param braces      true for {} placeholders
+	 * @return the template
+	 */
+	private static FormatTemplate create(String format, List<String> literals, List<Integer> argIndexes,
+			CharSequence conversions, boolean braces) {
+		int[] indexes = new int[argIndexes.size()];
+		for (int index = 0; index < indexes.length; index++) {
+			indexes[index] = argIndexes.get(index);
+		}
+		return new FormatTemplate(format, literals.toArray(new String[literals.size()]), indexes,
+				conversions.toString().toCharArray(), braces);
+	}
+
+	/**
+	 * Create a template that leaves the format string to String.format.
+	 *
+	 * @param format the format string
+	 * @return the template
+	 */
+	private static FormatTemplate complex(String format) {
+		return new FormatTemplate(format, null, null, null, false);
+	}
+}
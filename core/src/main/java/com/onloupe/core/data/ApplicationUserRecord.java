@@ -0,0 +1,186 @@
+package com.onloupe.core.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.onloupe.core.serialization.GenericPacket;
+
+
+/**
+ * An application user read from a GLF file by GLFPacketReader.
+ */
+public class ApplicationUserRecord {
+
+	/** The id. */
+	private final UUID id;
+
+	/** The key. */
+	private final String key;
+
+	/** The fully qualified user name. */
+	private final String fullyQualifiedUserName;
+
+	/** The caption. */
+	private final String caption;
+
+	/** The title. */
+	private final String title;
+
+	/** The organization. */
+	private final String organization;
+
+	/** The role. */
+	private final String role;
+
+	/** The tenant. */
+	private final String tenant;
+
+	/** The time zone code. */
+	private final String timeZoneCode;
+
+	/** The email address. */
+	private final String emailAddress;
+
+	/** The phone. */
+	private final String phone;
+
+	/** The properties. */
+	private final Map<String, String> properties;
+
+	/**
+	 * Instantiates a new application user record from an application user packet.
+	 *
+	 * @param packet the packet
+	 */
+	ApplicationUserRecord(GenericPacket packet) {
+		this.id = GLFPacketReader.getGuid(packet, "ID");
+		this.key = GLFPacketReader.getString(packet, "Key");
+		this.fullyQualifiedUserName = GLFPacketReader.getString(packet, "UserName");
+		this.caption = GLFPacketReader.getString(packet, "Caption");
+		this.title = GLFPacketReader.getString(packet, "Title");
+		this.organization = GLFPacketReader.getString(packet, "Organization");
+		this.role = GLFPacketReader.getString(packet, "Role");
+		this.tenant = GLFPacketReader.getString(packet, "Tenant");
+		this.timeZoneCode = GLFPacketReader.getString(packet, "TimeZoneCode");
+		this.emailAddress = GLFPacketReader.getString(packet, "EmailAddress");
+		this.phone = GLFPacketReader.getString(packet, "Phone");
+
+		String[] names = GLFPacketReader.getStringArray(packet, "PropertyNames");
+		String[] values = GLFPacketReader.getStringArray(packet, "PropertyValues");
+		Map<String, String> properties = new HashMap<String, String>();
+		for (int index = 0; index < Math.min(names.length, values.length); index++) {
+			properties.put(names[index], values[index]);
+		}
+		this.properties = Collections.unmodifiableMap(properties);
+	}
+
+	/**
+	 * The unique id of the application user, which log messages refer to it by.
+	 *
+	 * @return the id
+	 */
+	public final UUID getId() {
+		return this.id;
+	}
+
+	/**
+	 * Gets the key.
+	 *
+	 * @return the key
+	 */
+	public final String getKey() {
+		return this.key;
+	}
+
+	/**
+	 * Gets the fully qualified user name.
+	 *
+	 * @return the fully qualified user name
+	 */
+	public final String getFullyQualifiedUserName() {
+		return this.fullyQualifiedUserName;
+	}
+
+	/**
+	 * Gets the caption.
+	 *
+	 * @return the caption
+	 */
+	public final String getCaption() {
+		return this.caption;
+	}
+
+	/**
+	 * Gets the title.
+	 *
+	 * @return the title
+	 */
+	public final String getTitle() {
+		return this.title;
+	}
+
+	/**
+	 * Gets the organization.
+	 *
+	 * @return the organization
+	 */
+	public final String getOrganization() {
+		return this.organization;
+	}
+
+	/**
+	 * Gets the role.
+	 *
+	 * @return the role
+	 */
+	public final String getRole() {
+		return this.role;
+	}
+
+	/**
+	 * Gets the tenant.
+	 *
+	 * @return the tenant
+	 */
+	public final String getTenant() {
+		return this.tenant;
+	}
+
+	/**
+	 * Gets the time zone code.
+	 *
+	 * @return the time zone code
+	 */
+	public final String getTimeZoneCode() {
+		return this.timeZoneCode;
+	}
+
+	/**
+	 * Gets the email address.
+	 *
+	 * @return the email address
+	 */
+	public final String getEmailAddress() {
+		return this.emailAddress;
+	}
+
+	/**
+	 * Gets the phone.
+	 *
+	 * @return the phone
+	 */
+	public final String getPhone() {
+		return this.phone;
+	}
+
+	/**
+	 * The application specific properties of the user.
+	 *
+	 * @return the properties
+	 */
+	public final Map<String, String> getProperties() {
+		return this.properties;
+	}
+}
@@ -0,0 +1,41 @@
+package com.onloupe.core.data;
+
+
+/**
+ * How the packet stream in a session file is compressed. The codec is recorded
+ * in the file header so readers can pick the matching decoder.
+ */
+public enum CompressionCodec {
+
+	/** Deflate in the GZip format (the default, and the only codec older readers understand). */
+	GZIP,
+
+	/** No compression, the packets are stored as they are. */
+	NONE,
+
+	/** A fast LZ77 codec that trades some size for much less CPU than deflate. */
+	LZ;
+
+	/** The Constant SIZE. */
+	public static final int SIZE = java.lang.Integer.SIZE;
+
+	/**
+	 * Gets the value.
+	 *
+	 * @return the value
+	 */
+	public int getValue() {
+		return this.ordinal();
+	}
+
+	/**
+	 * For value.
+	 *
+	 * @param value the value
+	 * @return the compression codec, or null if the value isn't a codec we know
+	 */
+	public static CompressionCodec forValue(int value) {
+		CompressionCodec[] values = values();
+		return (value >= 0 && value < values.length) ? values[value] : null;
+	}
+}
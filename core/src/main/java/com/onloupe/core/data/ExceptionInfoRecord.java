@@ -0,0 +1,83 @@
+package com.onloupe.core.data;
+
+import com.onloupe.model.data.IExceptionInfo;
+
+
+/**
+ * An exception attached to a log message read from a GLF file.
+ */
+public class ExceptionInfoRecord implements IExceptionInfo {
+
+	/** The type name. */
+	private final String typeName;
+
+	/** The message. */
+	private final String message;
+
+	/** The source. */
+	private final String source;
+
+	/** The stack trace. */
+	private final String stackTrace;
+
+	/** The inner exception. */
+	private final IExceptionInfo innerException;
+
+	/**
+	 * Instantiates a new exception info record.
+	 *
+	 * @param typeName       the type name
+	 * @param message        the message
+	 * @param source         the source
+	 * @param stackTrace     the stack trace
+	 * @param innerException the inner exception, or null if there is none
+	 */
+	ExceptionInfoRecord(String typeName, String message, String source, String stackTrace,
+			IExceptionInfo innerException) {
+		this.typeName = typeName;
+		this.message = message;
+		this.source = source;
+		this.stackTrace = stackTrace;
+		this.innerException = innerException;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.data.IExceptionInfo#getTypeName()
+	 */
+	@Override
+	public final String getTypeName() {
+		return this.typeName;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.data.IExceptionInfo#getMessage()
+	 */
+	@Override
+	public final String getMessage() {
+		return this.message;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.data.IExceptionInfo#getSource()
+	 */
+	@Override
+	public final String getSource() {
+		return this.source;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.data.IExceptionInfo#getStackTrace()
+	 */
+	@Override
+	public final String getStackTrace() {
+		return this.stackTrace;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.data.IExceptionInfo#getInnerException()
+	 */
+	@Override
+	public final IExceptionInfo getInnerException() {
+		return this.innerException;
+	}
+}
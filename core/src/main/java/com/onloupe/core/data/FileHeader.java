@@ -31,6 +31,12 @@ public class FileHeader {
 	/** Default value for serialization protocol minor version. */
 	public static short defaultMinorVersion = 2;
 
+	/**
+	 * The serialization protocol minor version that added the string table. It
+	 * isn't the default since older readers can't read it.
+	 */
+	public static final short stringTableMinorVersion = 3;
+
 	/** The Type code. */
 	private long _TypeCode;
 	
@@ -43,8 +49,15 @@ public class FileHeader {
 	/** The Data offset. */
 	private int _DataOffset;
 	
-	/** The Data checksum. */
-	private int _DataChecksum;
+	/**
+	 * The compression codec. This occupies what used to be a data checksum that
+	 * was never calculated and always written as zero, which is the GZip codec, so
+	 * existing files read the same way they always have.
+	 */
+	private short _CompressionCodec;
+
+	/** Reserved, always written as zero. */
+	private short _Reserved;
 
 	/**
 	 * Create a new empty file header.
@@ -88,7 +101,8 @@ public class FileHeader {
 		this._MajorVersion = BinarySerializer.deserializeShort(rawData);
 		this._MinorVersion = BinarySerializer.deserializeShort(rawData);
 		this._DataOffset = BinarySerializer.deserializeInt(rawData);
-		this._DataChecksum = BinarySerializer.deserializeInt(rawData);
+		this._CompressionCodec = BinarySerializer.deserializeShort(rawData);
+		this._Reserved = BinarySerializer.deserializeShort(rawData);
 	}
 
 	/**
@@ -102,7 +116,8 @@ public class FileHeader {
 		buffer.put(BinarySerializer.serializeValue(this._MajorVersion));
 		buffer.put(BinarySerializer.serializeValue(this._MinorVersion));
 		buffer.put(BinarySerializer.serializeValue(this._DataOffset));
-		buffer.put(BinarySerializer.serializeValue(this._DataChecksum));
+		buffer.put(BinarySerializer.serializeValue(this._CompressionCodec));
+		buffer.put(BinarySerializer.serializeValue(this._Reserved));
 
 		// we should have exactly filled our header to size.
 		assert buffer.remaining() == 0;
@@ -183,22 +198,48 @@ public class FileHeader {
 		this._DataOffset = value;
 	}
 
+	/**
+	 * The codec the packet stream after the session header is compressed with.
+	 *
+	 * @return the compression codec, or null if it's one we don't know
+	 */
+	public final CompressionCodec getCompressionCodec() {
+		return CompressionCodec.forValue(this._CompressionCodec);
+	}
+
+	/**
+	 * Sets the compression codec.
+	 *
+	 * @param value the new compression codec
+	 */
+	public final void setCompressionCodec(CompressionCodec value) {
+		this._CompressionCodec = (short) value.getValue();
+	}
+
 	/**
 	 * A checksum of the file header.
 	 *
 	 * @return the data checksum
+	 * @deprecated The checksum was never calculated, and these bytes now hold the
+	 *             compression codec; use {@link #getCompressionCodec()} instead.
 	 */
+	@Deprecated
 	public final int getDataChecksum() {
-		return this._DataChecksum;
+		return (this._CompressionCodec << 16) | (this._Reserved & 0xFFFF);
 	}
 
 	/**
 	 * Sets the data checksum.
 	 *
 	 * @param value the new data checksum
+	 * @deprecated The checksum was never calculated, and these bytes now hold the
+	 *             compression codec; use
+	 *             {@link #setCompressionCodec(CompressionCodec)} instead.
 	 */
+	@Deprecated
 	public final void setDataChecksum(int value) {
-		this._DataChecksum = value;
+		this._CompressionCodec = (short) (value >>> 16);
+		this._Reserved = (short) value;
 	}
 
 	/**
@@ -244,4 +285,16 @@ public class FileHeader {
 	public static boolean supportsFragments(int majorVersion, int minorVersion) {
 		return (majorVersion > 1);
 	}
+
+	/**
+	 * Indicates if the supplied file version writes repeated strings as
+	 * references to a string table built up through the packet stream.
+	 *
+	 * @param majorVersion the major version
+	 * @param minorVersion the minor version
+	 * @return true, if successful
+	 */
+	public static boolean supportsStringTable(int majorVersion, int minorVersion) {
+		return ((majorVersion > 2) || ((majorVersion == 2) && (minorVersion >= stringTableMinorVersion)));
+	}
 }
\ No newline at end of file
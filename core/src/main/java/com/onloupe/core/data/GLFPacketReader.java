@@ -0,0 +1,406 @@
+package com.onloupe.core.data;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.onloupe.core.serialization.GenericPacket;
+import com.onloupe.core.serialization.GibraltarSerializationException;
+import com.onloupe.core.serialization.IPacket;
+import com.onloupe.core.serialization.IPacketFilter;
+import com.onloupe.core.serialization.PacketReader;
+import com.onloupe.core.util.IOUtils;
+import com.onloupe.model.log.ILogMessage;
+
+
+/**
+ * Reads the packets of a GLF file one at a time.
+ *
+ * The packet stream is decompressed as it's read and only the current packet
+ * is held in memory, along with the packet definitions and the threads,
+ * application users and metrics that later packets refer to, so the memory
+ * used doesn't depend on the size of the file. Packets come back as
+ * GenericPacket, or as typed records from the records, logMessages and
+ * metricSamples streams. The reader can only be read through once, whichever
+ * way it's read.
+ *
+ * A file that's still being written, or wasn't closed, ends at the last whole
+ * packet that was flushed. To start part way through a file, open the reader
+ * from a SessionIndex checkpoint instead.
+ */
+public class GLFPacketReader implements Iterator<IPacket>, Closeable {
+
+	/** The type name of log message packets. */
+	private static final String LOG_MESSAGE_TYPE = "LogMessagePacket";
+
+	/** The type name of thread info packets. */
+	private static final String THREAD_INFO_TYPE = "ThreadInfoPacket";
+
+	/** The type name of application user packets. */
+	private static final String APPLICATION_USER_TYPE = "ApplicationUserPacket";
+
+	/** The type name of the base of all metric sample packets. */
+	private static final String METRIC_SAMPLE_TYPE = "MetricSamplePacket";
+
+	/** The type name of the base of all metric packets. */
+	private static final String METRIC_TYPE = "MetricPacket";
+
+	/** The type name of the base of all metric definition packets. */
+	private static final String METRIC_DEFINITION_TYPE = "MetricDefinitionPacket";
+
+	/** The decompressed packet stream. */
+	private final InputStream stream;
+
+	/** The packet reader. */
+	private final PacketReader packetReader;
+
+	/** The next packet, once hasNext has read it. */
+	private IPacket nextPacket;
+
+	/** True once the end of the packet stream has been reached. */
+	private boolean endOfStream;
+
+	/** The threads read so far, by thread index. */
+	private final Map<Long, ThreadInfoRecord> threads = new HashMap<Long, ThreadInfoRecord>();
+
+	/** The application users read so far, by id. */
+	private final Map<UUID, ApplicationUserRecord> applicationUsers = new HashMap<UUID, ApplicationUserRecord>();
+
+	/** The metric packets read so far, by id. */
+	private final Map<UUID, GenericPacket> metrics = new HashMap<UUID, GenericPacket>();
+
+	/** The metric definition packets read so far, by id. */
+	private final Map<UUID, GenericPacket> metricDefinitions = new HashMap<UUID, GenericPacket>();
+
+	/**
+	 * Open the packet stream of a GLF file.
+	 *
+	 * @param reader the reader for the file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public GLFPacketReader(GLFReader reader) throws IOException {
+		this(reader, reader.openPacketStream());
+	}
+
+	/**
+	 * Open the packet stream of a GLF file at a checkpoint of its index.
+	 *
+	 * @param reader     the reader for the file
+	 * @param index      the index of the file
+	 * @param checkpoint the checkpoint to start reading at
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	GLFPacketReader(GLFReader reader, SessionIndex index, SessionIndexCheckpoint checkpoint) throws IOException {
+		this(reader, reader.openPacketStream(checkpoint.getOffset(), checkpoint.getDictionary()));
+		try {
+			IOUtils.skipFully(this.stream, checkpoint.getSkip());
+		} catch (IOException e) {
+			IOUtils.closeQuietly(this.stream);
+			throw e;
+		}
+		index.prime(this.packetReader, checkpoint);
+	}
+
+	/**
+	 * Read a packet stream of a GLF file.
+	 *
+	 * @param reader       the reader for the file
+	 * @param packetStream the decompressed packet stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private GLFPacketReader(GLFReader reader, InputStream packetStream) throws IOException {
+		this.stream = new BufferedInputStream(packetStream);
+		try {
+			this.packetReader = new PacketReader(this.stream, true, reader.getMajorVersion(),
+					reader.getMinorVersion());
+		} catch (NoSuchMethodException | SecurityException e) {
+			IOUtils.closeQuietly(this.stream);
+			throw new IOException("Unable to create the packet reader", e);
+		}
+	}
+
+	/**
+	 * Indicates if there's another packet in the file, reading it if it hasn't
+	 * been read already.
+	 *
+	 * @return true, if there's another packet
+	 */
+	@Override
+	public boolean hasNext() {
+		if (this.nextPacket == null && !this.endOfStream) {
+			try {
+				this.nextPacket = readNext();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.endOfStream = (this.nextPacket == null);
+		}
+		return this.nextPacket != null;
+	}
+
+	/**
+	 * Read the next packet from the file.
+	 *
+	 * @return the packet
+	 */
+	@Override
+	public IPacket next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		IPacket packet = this.nextPacket;
+		this.nextPacket = null;
+		return packet;
+	}
+
+	/**
+	 * Sets a filter to skip packets with as they're read, such as a
+	 * LogMessageFilter. Packets the filter leaves out are skipped without being
+	 * read in full, which is much faster than reading every packet and filtering
+	 * the stream.
+	 *
+	 * @param value the filter, or null to read every packet
+	 */
+	public void setFilter(IPacketFilter value) {
+		this.packetReader.setFilter(value);
+	}
+
+	/**
+	 * The packets of the file, as a sequential stream.
+	 *
+	 * @return the stream of packets
+	 */
+	public Stream<IPacket> packets() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * The log messages, threads, application users and metric samples of the
+	 * file, in the order they were written, as LogMessageRecord,
+	 * ThreadInfoRecord, ApplicationUserRecord and MetricSampleRecord. Every other
+	 * packet is left out.
+	 *
+	 * @return the stream of records
+	 */
+	public Stream<Object> records() {
+		return packets().map(this::toRecord).filter(record -> record != null);
+	}
+
+	/**
+	 * The log messages of the file, in the order they were written.
+	 *
+	 * @return the stream of log messages
+	 */
+	public Stream<ILogMessage> logMessages() {
+		return records().filter(record -> record instanceof ILogMessage).map(record -> (ILogMessage) record);
+	}
+
+	/**
+	 * The metric samples of the file, in the order they were written.
+	 *
+	 * @return the stream of metric samples
+	 */
+	public Stream<MetricSampleRecord> metricSamples() {
+		return records().filter(record -> record instanceof MetricSampleRecord)
+				.map(record -> (MetricSampleRecord) record);
+	}
+
+	/**
+	 * Performs application-defined tasks associated with freeing, releasing, or
+	 * resetting managed resources.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.endOfStream = true;
+		this.nextPacket = null;
+		this.stream.close();
+	}
+
+	/**
+	 * Read the next packet, or return null at the end of the data.
+	 *
+	 * @return the packet
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private IPacket readNext() throws IOException {
+		try {
+			IPacket packet;
+			do {
+				// every packet starts with its length, which is never zero, so a zero is
+				// the preallocated space after the data of a file that wasn't closed.
+				this.stream.mark(1);
+				int firstByte = this.stream.read();
+				if (firstByte <= 0) {
+					return null;
+				}
+				this.stream.reset();
+
+				packet = this.packetReader.read(); // null if the filter left it out.
+			} while (packet == null);
+			return packet;
+		} catch (EOFException e) {
+			// the last packet, or the compressed block it's in, hadn't been completely
+			// written.
+			return null;
+		} catch (IOException | GibraltarSerializationException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new GibraltarSerializationException("Unable to read the next packet", e);
+		}
+	}
+
+	/**
+	 * Turn a packet into its record, keeping track of the packets later ones will
+	 * refer to.
+	 *
+	 * @param packet the packet
+	 * @return the record, or null if the packet isn't one that has a record
+	 */
+	private Object toRecord(IPacket packet) {
+		if (!(packet instanceof GenericPacket)) {
+			return null;
+		}
+
+		GenericPacket genericPacket = (GenericPacket) packet;
+		String typeName = genericPacket.getPacketDefinition().getTypeName();
+		if (LOG_MESSAGE_TYPE.equals(typeName)) {
+			ThreadInfoRecord thread = this.threads.get(getLong(genericPacket, "ThreadIndex"));
+			UUID applicationUserId = getGuid(genericPacket, "ApplicationUserId");
+			return new LogMessageRecord(genericPacket, thread,
+					applicationUserId == null ? null : this.applicationUsers.get(applicationUserId));
+		} else if (THREAD_INFO_TYPE.equals(typeName)) {
+			// threads and users are written again after each index checkpoint, but they're
+			// only new the first time.
+			ThreadInfoRecord thread = new ThreadInfoRecord(genericPacket);
+			return (this.threads.put(thread.getThreadIndex(), thread) == null) ? thread : null;
+		} else if (APPLICATION_USER_TYPE.equals(typeName)) {
+			ApplicationUserRecord applicationUser = new ApplicationUserRecord(genericPacket);
+			return (this.applicationUsers.put(applicationUser.getId(), applicationUser) == null) ? applicationUser
+					: null;
+		} else if (isA(genericPacket, METRIC_SAMPLE_TYPE)) {
+			GenericPacket metric = this.metrics.get(getGuid(genericPacket, "metricPacketId"));
+			GenericPacket metricDefinition = (metric == null) ? null
+					: this.metricDefinitions.get(getGuid(metric, "definitionId"));
+			return new MetricSampleRecord(genericPacket, metric, metricDefinition);
+		} else if (isA(genericPacket, METRIC_TYPE)) {
+			this.metrics.put(getGuid(genericPacket, "ID"), genericPacket);
+		} else if (isA(genericPacket, METRIC_DEFINITION_TYPE)) {
+			this.metricDefinitions.put(getGuid(genericPacket, "ID"), genericPacket);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Checks if the packet is, or derives from, the named packet type.
+	 *
+	 * @param packet   the packet
+	 * @param typeName the type name
+	 * @return true, if the packet is of the type
+	 */
+	private static boolean isA(GenericPacket packet, String typeName) {
+		for (GenericPacket level = packet; level != null; level = level.getBasePacket()) {
+			if (typeName.equals(level.getPacketDefinition().getTypeName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets a string field.
+	 *
+	 * @param packet    the packet
+	 * @param fieldName the field name
+	 * @return the value, or null if the packet doesn't have the field
+	 */
+	static String getString(GenericPacket packet, String fieldName) {
+		return (String) packet.getFieldValue(fieldName);
+	}
+
+	/**
+	 * Gets a string array field.
+	 *
+	 * @param packet    the packet
+	 * @param fieldName the field name
+	 * @return the value, or an empty array if the packet doesn't have the field
+	 */
+	static String[] getStringArray(GenericPacket packet, String fieldName) {
+		String[] value = (String[]) packet.getFieldValue(fieldName);
+		return (value == null) ? new String[0] : value;
+	}
+
+	/**
+	 * Gets an integer field, which may have been written as an int or a long.
+	 *
+	 * @param packet    the packet
+	 * @param fieldName the field name
+	 * @return the value, or zero if the packet doesn't have the field
+	 */
+	static long getLong(GenericPacket packet, String fieldName) {
+		Object value = packet.getFieldValue(fieldName);
+		return (value == null) ? 0 : ((Number) value).longValue();
+	}
+
+	/**
+	 * Gets a double field.
+	 *
+	 * @param packet    the packet
+	 * @param fieldName the field name
+	 * @return the value, or zero if the packet doesn't have the field
+	 */
+	static double getDouble(GenericPacket packet, String fieldName) {
+		Object value = packet.getFieldValue(fieldName);
+		return (value == null) ? 0 : ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Gets a boolean field.
+	 *
+	 * @param packet    the packet
+	 * @param fieldName the field name
+	 * @return the value, or false if the packet doesn't have the field
+	 */
+	static boolean getBool(GenericPacket packet, String fieldName) {
+		return Boolean.TRUE.equals(packet.getFieldValue(fieldName));
+	}
+
+	/**
+	 * Gets a GUID field.
+	 *
+	 * @param packet    the packet
+	 * @param fieldName the field name
+	 * @return the value, or null if the packet doesn't have the field
+	 */
+	static UUID getGuid(GenericPacket packet, String fieldName) {
+		return (UUID) packet.getFieldValue(fieldName);
+	}
+
+	/**
+	 * Gets a timestamp field.
+	 *
+	 * @param packet    the packet
+	 * @param fieldName the field name
+	 * @return the value, or null if the packet doesn't have the field
+	 */
+	static OffsetDateTime getTimestamp(GenericPacket packet, String fieldName) {
+		return (OffsetDateTime) packet.getFieldValue(fieldName);
+	}
+}
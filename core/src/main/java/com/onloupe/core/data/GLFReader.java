@@ -1,10 +1,16 @@
 package com.onloupe.core.data;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import com.onloupe.core.serialization.FragmentStorageSummary;
 import com.onloupe.core.util.FileUtils;
@@ -15,6 +21,21 @@ import com.onloupe.core.util.FileUtils;
  */
 public class GLFReader {
 	
+	/** The buffer size for reading the packet stream. */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/** The size of the GZip header. */
+	private static final int GZIP_HEADER_SIZE = 10;
+
+	/** The size of the GZip trailer, which may legitimately end with zeros. */
+	private static final int GZIP_TRAILER_SIZE = 8;
+
+	/** The most bytes a packet length takes. */
+	private static final int MAX_PACKET_LENGTH_BYTES = 5;
+
+	/** The file. */
+	private RandomAccessFile file;
+	
 	/** The file header. */
 	private FileHeader fileHeader;
 	
@@ -54,6 +75,7 @@ public class GLFReader {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public GLFReader(RandomAccessFile file) throws IOException {
+		this.file = file;
 		FileChannel channel = file.getChannel();
 		this.fileHeader = check(channel.map(MapMode.READ_ONLY, 0, FileHeader.HEADER_SIZE));
 		this.sessionStream = this.fileHeader != null;
@@ -184,6 +206,269 @@ public class GLFReader {
 		return this.fileHeader;
 	}
 
+	/**
+	 * Open the packet stream that follows the session header, decompressed with
+	 * whatever codec the file header says it was written with. The stream reads
+	 * independently of the file's position and closing it doesn't close the file.
+	 * A GZip stream stops at the end of its data, so the preallocated space of a
+	 * file that wasn't closed isn't taken for corrupt compressed data; it ends
+	 * with an EOFException instead, like any unfinished GZip stream.
+	 *
+	 * @return the decompressed packet stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final InputStream openPacketStream() throws IOException {
+		return openPacketStream(getDataOffset(), null);
+	}
+
+	/**
+	 * Open the packet stream part way through, at a point the compressed data can
+	 * be decompressed from without what came before it, such as a checkpoint in
+	 * a SessionIndex. For a GZip file that's the start of the data, a point the
+	 * writer reset the compressor at, or any point it flushed at along with the
+	 * last 32KB of data before it as the dictionary.
+	 *
+	 * @param offset     the offset in the file to start decompressing at
+	 * @param dictionary the data before the offset that later data may refer to,
+	 *                   or null if there isn't any
+	 * @return the decompressed packet stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final InputStream openPacketStream(long offset, byte[] dictionary) throws IOException {
+		CompressionCodec codec = this.fileHeader.getCompressionCodec();
+		InputStream rawStream = new BufferedInputStream(openDataStream(offset), READ_BUFFER_SIZE);
+		switch (codec) {
+		case NONE:
+			return rawStream;
+		case LZ:
+			return new LZInputStream(rawStream);
+		default:
+			if (offset == getDataOffset()) {
+				return new GZIPInputStream(rawStream, READ_BUFFER_SIZE);
+			}
+
+			// past the header, it's just deflated data.
+			final Inflater inflater = new Inflater(true);
+			if (dictionary != null && dictionary.length > 0) {
+				inflater.setDictionary(dictionary);
+			}
+			return new InflaterInputStream(rawStream, inflater, READ_BUFFER_SIZE) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						inflater.end();
+					}
+				}
+			};
+		}
+	}
+
+	/**
+	 * Open the compressed data of the packet stream, from an offset up to the end
+	 * of the data. A GZip stream stops at the end of its data, as for
+	 * openPacketStream.
+	 *
+	 * @param offset the offset in the file to start reading at
+	 * @return the compressed data
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	InputStream openDataStream(long offset) throws IOException {
+		if (!this.sessionStream) {
+			throw new IOException("The file isn't a session file, so it has no packet stream.");
+		}
+
+		CompressionCodec codec = this.fileHeader.getCompressionCodec();
+		if (codec == null) {
+			throw new IOException("The packet stream was written with a compression codec this reader doesn't support.");
+		}
+
+		FileChannel channel = this.file.getChannel();
+		ChannelInputStream channelStream = new ChannelInputStream(channel, offset);
+		if (codec == CompressionCodec.GZIP) {
+			channelStream.setEnd(findCompressedEnd(channel, getDataOffset(), channel.size()));
+		}
+		return channelStream;
+	}
+
+	/**
+	 * The offset in the file the packet stream starts at.
+	 *
+	 * @return the data offset
+	 */
+	final long getDataOffset() {
+		return this.fileHeader.getDataOffset();
+	}
+
+	/**
+	 * Find the end of the data in the file. A file written with preallocation
+	 * that wasn't closed has zeros after its data, up to the end of the last
+	 * chunk allocated. For uncompressed and LZ files the end is found by walking
+	 * the packets or blocks until one is empty or runs past the end of the file.
+	 * For GZip files it's the last byte that isn't zero, since every flush ends
+	 * with a non-zero marker; anything after the last flush is incomplete anyway.
+	 *
+	 * @return the offset just past the last complete data, which is the length
+	 *         of the file if it doesn't end with preallocated space
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final long findDataEnd() throws IOException {
+		if (!this.sessionStream) {
+			throw new IOException("The file isn't a session file, so it has no packet stream.");
+		}
+
+		FileChannel channel = this.file.getChannel();
+		long fileLength = channel.size();
+		long dataOffset = this.fileHeader.getDataOffset();
+		CompressionCodec codec = this.fileHeader.getCompressionCodec();
+		if ((codec == null) || (fileLength <= dataOffset)) {
+			return fileLength;
+		}
+
+		switch (codec) {
+		case NONE:
+			return findPacketsEnd(channel, dataOffset, fileLength);
+		case LZ:
+			return findBlocksEnd(channel, dataOffset, fileLength);
+		default:
+			return findCompressedEnd(channel, dataOffset, fileLength);
+		}
+	}
+
+	/**
+	 * Walk an uncompressed packet stream to the end of the last complete packet.
+	 *
+	 * @param channel    the channel
+	 * @param dataOffset the data offset
+	 * @param fileLength the file length
+	 * @return the end of the data
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static long findPacketsEnd(FileChannel channel, long dataOffset, long fileLength) throws IOException {
+		InputStream input = new BufferedInputStream(new ChannelInputStream(channel, dataOffset), READ_BUFFER_SIZE);
+		long position = dataOffset;
+		while (true) {
+			// each packet starts with its length, seven bits at a time, and packets are never empty.
+			long packetLength = 0;
+			int lengthBytes = 0;
+			int value;
+			do {
+				value = input.read();
+				if (value < 0) {
+					return position;
+				}
+				packetLength |= (long) (value & 0x7f) << (7 * lengthBytes);
+				lengthBytes++;
+			} while (((value & 0x80) != 0) && (lengthBytes < MAX_PACKET_LENGTH_BYTES));
+
+			if ((packetLength == 0) || (position + lengthBytes + packetLength > fileLength)) {
+				return position;
+			}
+
+			for (long remaining = packetLength; remaining > 0;) {
+				long skipped = input.skip(remaining);
+				if (skipped <= 0) {
+					return position;
+				}
+				remaining -= skipped;
+			}
+
+			position += lengthBytes + packetLength;
+		}
+	}
+
+	/**
+	 * Walk an LZ block stream to the end of the last complete block.
+	 *
+	 * @param channel    the channel
+	 * @param dataOffset the data offset
+	 * @param fileLength the file length
+	 * @return the end of the data
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static long findBlocksEnd(FileChannel channel, long dataOffset, long fileLength) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(LZOutputStream.BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		long position = dataOffset;
+		while (position + LZOutputStream.BLOCK_HEADER_SIZE <= fileLength) {
+			header.clear();
+			if (!readFully(channel, header, position)) {
+				break;
+			}
+
+			// blocks are never empty and never grow.
+			int blockLength = header.getInt(0);
+			int compressedLength = header.getInt(4);
+			if ((blockLength <= 0) || (blockLength > LZOutputStream.BLOCK_SIZE) || (compressedLength <= 0)
+					|| (compressedLength > blockLength)
+					|| (position + LZOutputStream.BLOCK_HEADER_SIZE + compressedLength > fileLength)) {
+				break;
+			}
+
+			position += LZOutputStream.BLOCK_HEADER_SIZE + compressedLength;
+		}
+
+		return position;
+	}
+
+	/**
+	 * Find the end of a GZip stream by skipping back over the zeros at the end of
+	 * the file.
+	 *
+	 * @param channel    the channel
+	 * @param dataOffset the data offset
+	 * @param fileLength the file length
+	 * @return the end of the data
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static long findCompressedEnd(FileChannel channel, long dataOffset, long fileLength) throws IOException {
+		long minimum = Math.min(fileLength, dataOffset + GZIP_HEADER_SIZE);
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		long end = fileLength;
+		while (end > minimum) {
+			int count = (int) Math.min(buffer.capacity(), end - minimum);
+			buffer.clear();
+			buffer.limit(count);
+			if (!readFully(channel, buffer, end - count)) {
+				return fileLength;
+			}
+
+			for (int index = count - 1; index >= 0; index--) {
+				if (buffer.get(index) != 0) {
+					end = end - count + index + 1;
+
+					// a few zeros could just be the end of the trailer of a finished stream.
+					return (fileLength - end <= GZIP_TRAILER_SIZE) ? fileLength : end;
+				}
+			}
+
+			end -= count;
+		}
+
+		return minimum;
+	}
+
+	/**
+	 * Read from a position in a channel until the buffer is full.
+	 *
+	 * @param channel  the channel
+	 * @param buffer   the buffer
+	 * @param position the position
+	 * @return true if the buffer was filled, false if the end of the channel was
+	 *         reached first
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, position);
+			if (count < 0) {
+				return false;
+			}
+			position += count;
+		}
+		return true;
+	}
+
 	/**
 	 * The session header for the stream.
 	 *
@@ -193,4 +478,78 @@ public class GLFReader {
 		return this.sessionHeader;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Reads a file channel from a position of its own, without moving the
+	 * channel.
+	 */
+	private static class ChannelInputStream extends InputStream {
+
+		/** The channel. */
+		private final FileChannel channel;
+
+		/** The position of the next byte to read. */
+		private long position;
+
+		/** The position to stop reading at. */
+		private long end = Long.MAX_VALUE;
+
+		/**
+		 * Instantiates a new channel input stream.
+		 *
+		 * @param channel  the channel
+		 * @param position the position to start reading at
+		 */
+		ChannelInputStream(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+		/**
+		 * Stop reading at a position before the end of the channel.
+		 *
+		 * @param end the position to stop reading at
+		 */
+		void setEnd(long end) {
+			this.end = end;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (this.position >= this.end) {
+				return -1;
+			}
+
+			len = (int) Math.min(len, this.end - this.position);
+			int count = this.channel.read(ByteBuffer.wrap(b, off, len), this.position);
+			if (count > 0) {
+				this.position += count;
+			}
+			return count;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#skip(long)
+		 */
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = Math.max(0, Math.min(n, Math.min(this.channel.size(), this.end) - this.position));
+			this.position += skipped;
+			return skipped;
+		}
+	}
+}
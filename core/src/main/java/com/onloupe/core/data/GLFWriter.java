@@ -1,17 +1,24 @@
 package com.onloupe.core.data;
 
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.UUID;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 import com.onloupe.agent.SessionSummary;
+import com.onloupe.core.messaging.IMessengerPacket;
+import com.onloupe.core.serialization.ICachedPacket;
 import com.onloupe.core.serialization.IPacket;
 import com.onloupe.core.serialization.PacketWriter;
 import com.onloupe.core.util.IOUtils;
@@ -26,6 +33,9 @@ public class GLFWriter implements Closeable {
 	/** The Constant BUFFER_FLUSH_THRESHOLD. */
 	private static final int BUFFER_FLUSH_THRESHOLD = 16 * 1024;
 
+	/** The buffer size when the packet stream isn't compressed. */
+	private static final int UNCOMPRESSED_BUFFER_SIZE = 64 * 1024;
+
 	/** The file channel. */
 	private FileChannel fileChannel;
 	
@@ -49,6 +59,63 @@ public class GLFWriter implements Closeable {
 	
 	/** The previous buffer size. */
 	private int previousBufferSize;
+	
+	/** True to sync the file to disk after every write to it. */
+	private boolean syncOnWrite;
+	
+	/** The number of times the file has been synced to disk. */
+	private long syncCount;
+	
+	/** True to sync the file to disk before it's closed. */
+	private boolean syncOnClose;
+	
+	/** The compression codec. */
+	private CompressionCodec compressionCodec = CompressionCodec.GZIP;
+	
+	/** The compression level. */
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	
+	/** The number of background threads to compress with, zero to compress inline. */
+	private int compressionWorkers;
+	
+	/** The compression block size. */
+	private int compressionBlockSize = 128 * 1024;
+	
+	/** The number of bytes to grow the file by when writing through a mapping, zero to write normally. */
+	private int preallocationSize;
+	
+	/** The stream to write the index to, if the file is indexed. */
+	private OutputStream indexStream;
+
+	/** The index writer, once the packet stream is open. */
+	private SessionIndexWriter indexWriter;
+
+	/** The number of packets between index checkpoints. */
+	private int indexPacketInterval = SessionIndex.DEFAULT_PACKET_INTERVAL;
+
+	/** The number of milliseconds between index checkpoints, by packet timestamp, zero for no limit. */
+	private long indexTimeInterval;
+
+	/** The number of packets written since the last index checkpoint. */
+	private int packetsSinceCheckpoint;
+
+	/** The timestamp of the last index checkpoint. */
+	private OffsetDateTime lastCheckpointTimestamp;
+
+	/** The compressed stream, beneath the output stream. */
+	private OutputStream compressedStream;
+
+	/** The mapped stream the file is written through, if preallocating. */
+	private MappedFileOutputStream mappedStream;
+	
+	/** The length of the data written to the file so far. */
+	private long length;
+	
+	/** The major version. */
+	private int majorVersion;
+	
+	/** The minor version. */
+	private int minorVersion;
 
 	/**
 	 * Initialize the GLF writer for the provided session which has already been
@@ -138,6 +205,8 @@ public class GLFWriter implements Closeable {
 			throws NoSuchMethodException, SecurityException, IOException {
 		this.fileChannel = file.getChannel();
 		this.sessionSummary = sessionSummary;
+		this.majorVersion = majorVersion;
+		this.minorVersion = minorVersion;
 		
 		// initialize the stream with the file header and session header
 		this.fileHeader = new FileHeader(majorVersion, minorVersion);
@@ -164,10 +233,9 @@ public class GLFWriter implements Closeable {
 
 		this.fileChannel.write(ByteBuffer.wrap(this.fileHeader.rawData()));
 		this.fileChannel.write(ByteBuffer.wrap(sessionHeader));
+		this.length = this.fileHeader.getDataOffset();
 
-		this.outputStream = new DataOutputStream(new GZIPOutputStream(Channels.newOutputStream(this.fileChannel), true));
-
-		this.packetWriter = new PacketWriter(this.outputStream, majorVersion, minorVersion);
+		// the compressed stream is opened when it's first needed so it can be configured first.
 	}
 
 	/**
@@ -177,12 +245,24 @@ public class GLFWriter implements Closeable {
 	 * @throws Exception the exception
 	 */
 	public void write(IPacket packet) throws Exception {
-		this.packetWriter.write(packet);
+		PacketWriter packetWriter = openPacketWriter();
+
+		// cached packets are written again after a checkpoint, so they don't get one.
+		if ((this.indexWriter != null) && (packet instanceof IMessengerPacket) && !(packet instanceof ICachedPacket)) {
+			checkpoint((IMessengerPacket) packet);
+		}
+
+		packetWriter.write(packet);
 
 		int currentBufferSize = this.outputStream.size();
 		if (this.autoFlush || ((currentBufferSize - previousBufferSize) >= BUFFER_FLUSH_THRESHOLD)) {
 			previousBufferSize = currentBufferSize;
-			flush();
+			if (this.autoFlush || this.compressionWorkers <= 0 || this.compressionCodec != CompressionCodec.GZIP) {
+				flush();
+			}
+			// otherwise blocks go out as the workers finish them; waiting for them here
+			// would put compression right back on this thread. The header catches up on
+			// the next flush, once the data it counts is in the file.
 		}
 
 	}
@@ -205,14 +285,240 @@ public class GLFWriter implements Closeable {
 		this.autoFlush = value;
 	}
 
+	/**
+	 * Gets the sync on write.
+	 *
+	 * @return the sync on write
+	 */
+	public final boolean getSyncOnWrite() {
+		return this.syncOnWrite;
+	}
+
+	/**
+	 * Sets whether every write to the file is synced to disk before it returns.
+	 *
+	 * @param value the new sync on write
+	 */
+	public final void setSyncOnWrite(boolean value) {
+		this.syncOnWrite = value;
+	}
+
+	/**
+	 * Gets the sync on close.
+	 *
+	 * @return the sync on close
+	 */
+	public final boolean getSyncOnClose() {
+		return this.syncOnClose;
+	}
+
+	/**
+	 * Sets whether the file is synced to disk as it's closed.
+	 *
+	 * @param value the new sync on close
+	 */
+	public final void setSyncOnClose(boolean value) {
+		this.syncOnClose = value;
+	}
+
+	/**
+	 * Gets the compression codec.
+	 *
+	 * @return the compression codec
+	 */
+	public final CompressionCodec getCompressionCodec() {
+		return this.compressionCodec;
+	}
+
+	/**
+	 * Sets the codec the packet stream is compressed with and records it in the
+	 * file header. Only takes effect if set before the first packet is written.
+	 *
+	 * @param value the new compression codec
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final void setCompressionCodec(CompressionCodec value) throws IOException {
+		if (this.packetWriter != null || value == this.compressionCodec) {
+			return;
+		}
+
+		this.compressionCodec = value;
+		this.fileHeader.setCompressionCodec(value);
+		this.fileChannel.write(ByteBuffer.wrap(this.fileHeader.rawData()), 0);
+	}
+
+	/**
+	 * Gets the compression level.
+	 *
+	 * @return the compression level
+	 */
+	public final int getCompressionLevel() {
+		return this.compressionLevel;
+	}
+
+	/**
+	 * Sets the compression level for the GZip codec, from 0 to 9 or -1 for the
+	 * default. Only takes effect if set before the first packet is written.
+	 *
+	 * @param value the new compression level
+	 */
+	public final void setCompressionLevel(int value) {
+		this.compressionLevel = value;
+	}
+
+	/**
+	 * Gets the compression workers.
+	 *
+	 * @return the compression workers
+	 */
+	public final int getCompressionWorkers() {
+		return this.compressionWorkers;
+	}
+
+	/**
+	 * Sets the number of background threads to compress with the GZip codec, or
+	 * zero to compress on the thread writing packets. Only takes effect if set
+	 * before the first packet is written.
+	 *
+	 * @param value the new compression workers
+	 */
+	public final void setCompressionWorkers(int value) {
+		this.compressionWorkers = value;
+	}
+
+	/**
+	 * Gets the compression block size.
+	 *
+	 * @return the compression block size
+	 */
+	public final int getCompressionBlockSize() {
+		return this.compressionBlockSize;
+	}
+
+	/**
+	 * Sets the number of uncompressed bytes in each block compressed in the
+	 * background. Only takes effect if set before the first packet is written.
+	 *
+	 * @param value the new compression block size
+	 */
+	public final void setCompressionBlockSize(int value) {
+		this.compressionBlockSize = value;
+	}
+
+	/**
+	 * Gets the preallocation size.
+	 *
+	 * @return the preallocation size
+	 */
+	public final int getPreallocationSize() {
+		return this.preallocationSize;
+	}
+
+	/**
+	 * Sets the number of bytes to grow the file by at a time, writing the packet
+	 * stream through a memory mapping of the file, or zero to write it normally.
+	 * Only takes effect if set before the first packet is written.
+	 *
+	 * @param value the new preallocation size
+	 */
+	public final void setPreallocationSize(int value) {
+		this.preallocationSize = value;
+	}
+
+	/**
+	 * Sets the stream to write an index of the file to as it's written, so
+	 * readers can start part way through the file. See SessionIndex. The stream
+	 * is closed with the writer. Only takes effect if set before the first
+	 * packet is written.
+	 *
+	 * @param value the index stream, or null to not index the file
+	 */
+	public final void setIndexStream(OutputStream value) {
+		if (this.packetWriter == null) {
+			this.indexStream = value;
+		}
+	}
+
+	/**
+	 * Gets the index packet interval.
+	 *
+	 * @return the index packet interval
+	 */
+	public final int getIndexPacketInterval() {
+		return this.indexPacketInterval;
+	}
+
+	/**
+	 * Sets the number of packets between index checkpoints.
+	 *
+	 * @param value the new index packet interval
+	 */
+	public final void setIndexPacketInterval(int value) {
+		this.indexPacketInterval = value;
+	}
+
+	/**
+	 * Gets the index time interval.
+	 *
+	 * @return the index time interval
+	 */
+	public final long getIndexTimeInterval() {
+		return this.indexTimeInterval;
+	}
+
+	/**
+	 * Sets the number of milliseconds between index checkpoints, going by the
+	 * timestamps of the packets, or zero to go by the number of packets alone.
+	 *
+	 * @param value the new index time interval
+	 */
+	public final void setIndexTimeInterval(long value) {
+		this.indexTimeInterval = value;
+	}
+
+	/**
+	 * The length of the data written to the file so far. This doesn't include
+	 * data still buffered for compression or any space preallocated past the end
+	 * of the data, and unlike the file's length it doesn't need a system call.
+	 *
+	 * @return the length
+	 */
+	public final long getLength() {
+		return this.length;
+	}
+
 	/**
 	 * Flush.
 	 *
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	public final void flush() throws IOException {
+		// the data goes out first so the header never counts anything that isn't in the file.
+		openPacketWriter().getOutputStream().flush();
 		updateSessionHeader();
-		this.packetWriter.getOutputStream().flush();
+	}
+
+	/**
+	 * Force everything written to the file so far out to the disk. This does not
+	 * flush buffered packets; call flush first for that.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final void sync() throws IOException {
+		if (this.mappedStream != null) {
+			this.mappedStream.force();
+		}
+		this.fileChannel.force(false);
+		this.syncCount++;
+	}
+
+	/**
+	 * Gets the number of times the file has been synced to disk.
+	 *
+	 * @return the sync count
+	 */
+	public final long getSyncCount() {
+		return this.syncCount;
 	}
 
 	/**
@@ -233,6 +539,25 @@ public class GLFWriter implements Closeable {
 		}
 	}
 
+	/**
+	 * Truncate a session file that was written with preallocation but never
+	 * closed back to the end of its data.
+	 *
+	 * @param sourceFile the source file
+	 * @param updateFile the update file
+	 * @return true if the file was truncated
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static boolean truncateToDataEnd(GLFReader sourceFile, RandomAccessFile updateFile) throws IOException {
+		long dataEnd = sourceFile.findDataEnd();
+		if (dataEnd < updateFile.length()) {
+			updateFile.getChannel().truncate(dataEnd);
+			return true;
+		}
+
+		return false;
+	}
+
 	/**
 	 * Gets the session header.
 	 *
@@ -275,8 +600,22 @@ public class GLFWriter implements Closeable {
 		this.sessionHeader.setErrorCount(this.sessionSummary.getErrorCount());
 		this.sessionHeader.setWarningCount(this.sessionSummary.getWarningCount());
 
-		byte[] header = this.sessionHeader.rawData();
-		this.fileChannel.write(ByteBuffer.wrap(header), FileHeader.HEADER_SIZE);
+		// usually only the end date and counts have changed, and we can just rewrite them in place.
+		ByteBuffer changes = this.sessionHeader.changedRawData();
+		if (changes == null) {
+			byte[] header = this.sessionHeader.rawData();
+			this.fileChannel.write(ByteBuffer.wrap(header), FileHeader.HEADER_SIZE);
+		} else if (changes.hasRemaining()) {
+			while (changes.hasRemaining()) {
+				this.fileChannel.write(changes, FileHeader.HEADER_SIZE + changes.position());
+			}
+		} else {
+			return; // nothing has changed since we last wrote it.
+		}
+
+		if (this.syncOnWrite) {
+			sync();
+		}
 	}
 
 	/**
@@ -315,5 +654,203 @@ public class GLFWriter implements Closeable {
 		// and we create our own PacketWriter, so handle that, too
 		IOUtils.closeQuietly(this.packetWriter);
 		IOUtils.closeQuietly(this.outputStream);
+		IOUtils.closeQuietly(this.indexWriter != null ? this.indexWriter : this.indexStream);
+	}
+
+	/**
+	 * Add an index checkpoint before a packet, if it's been long enough since the
+	 * last one. The compressor is reset so the data after the checkpoint can be
+	 * decompressed on its own, and the cached packets are written again after it
+	 * for readers that start there.
+	 *
+	 * @param packet the packet about to be written
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void checkpoint(IMessengerPacket packet) throws IOException {
+		OffsetDateTime timestamp = packet.getTimestamp();
+		if (timestamp == null) {
+			return;
+		}
+
+		this.packetsSinceCheckpoint++;
+		if ((this.lastCheckpointTimestamp != null) && (this.packetsSinceCheckpoint <= this.indexPacketInterval)
+				&& ((this.indexTimeInterval <= 0) || (Duration.between(this.lastCheckpointTimestamp, timestamp)
+						.toMillis() < this.indexTimeInterval))) {
+			return;
+		}
+
+		if (this.compressedStream instanceof ParallelGZIPOutputStream) {
+			((ParallelGZIPOutputStream) this.compressedStream).fullFlush();
+		} else if (this.compressedStream instanceof RestartableGZIPOutputStream) {
+			((RestartableGZIPOutputStream) this.compressedStream).fullFlush();
+		} else {
+			// uncompressed data can be read from anywhere, and LZ blocks stand alone.
+			this.compressedStream.flush();
+		}
+
+		// the index gets the definitions and strings first, so it never has a
+		// checkpoint without them. Repeated messages and stack traces are written
+		// again after the checkpoint, so the index only keeps their place.
+		PacketWriter packetWriter = this.packetWriter;
+		while (this.indexWriter.getDefinitionCount() < packetWriter.getDefinitionCount()) {
+			this.indexWriter.addDefinition(packetWriter.getDefinition(this.indexWriter.getDefinitionCount()));
+		}
+		while (this.indexWriter.getStringCount() < packetWriter.getStringCount()) {
+			int id = this.indexWriter.getStringCount();
+			this.indexWriter.addString(packetWriter.isRepeatedString(id) ? null : packetWriter.getString(id));
+		}
+		this.indexWriter.addCheckpoint(new SessionIndexCheckpoint(packet.getSequence(), timestamp, this.length, 0, null,
+				packetWriter.getDefinitionCount(), packetWriter.getStringCount(), packetWriter.getReferenceTime()));
+
+		packetWriter.clearPacketCache();
+		this.lastCheckpointTimestamp = timestamp;
+		this.packetsSinceCheckpoint = 1;
+	}
+
+	/**
+	 * Open the compressed stream and the packet writer on it, if they aren't
+	 * already.
+	 *
+	 * @return the packet writer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private PacketWriter openPacketWriter() throws IOException {
+		if (this.packetWriter == null) {
+			final int level = this.compressionLevel;
+			OutputStream fileStream;
+			if (this.preallocationSize > 0) {
+				this.mappedStream = new MappedFileOutputStream(this.fileChannel, this.length, this.preallocationSize,
+						this.syncOnWrite || this.syncOnClose);
+				fileStream = new ChannelOutputStream(this.mappedStream);
+			} else {
+				fileStream = new ChannelOutputStream(Channels.newOutputStream(this.fileChannel));
+			}
+
+			OutputStream compressedStream;
+			switch (this.compressionCodec) {
+			case NONE:
+				// buffer so the file sees whole blocks (and syncs) rather than every packet.
+				compressedStream = this.mappedStream != null ? fileStream
+						: new BufferedOutputStream(fileStream, UNCOMPRESSED_BUFFER_SIZE);
+				break;
+			case LZ:
+				compressedStream = new LZOutputStream(fileStream);
+				break;
+			default:
+				if (this.compressionWorkers > 0) {
+					compressedStream = new ParallelGZIPOutputStream(fileStream, this.compressionWorkers,
+							this.compressionBlockSize, level);
+				} else {
+					compressedStream = new RestartableGZIPOutputStream(fileStream, level);
+				}
+				break;
+			}
+
+			this.compressedStream = compressedStream;
+			this.outputStream = new DataOutputStream(compressedStream);
+			try {
+				this.packetWriter = new PacketWriter(this.outputStream, this.majorVersion, this.minorVersion);
+			} catch (NoSuchMethodException e) {
+				throw new IOException("Unable to create the packet writer.", e);
+			}
+
+			if (this.indexStream != null) {
+				this.indexWriter = new SessionIndexWriter(this.indexStream,
+						SessionIndex.identify(this.sessionHeader), this.compressionCodec);
+			}
+		}
+
+		return this.packetWriter;
+	}
+
+	/**
+	 * Writes the compressed stream to the file, keeping track of its length and
+	 * syncing as configured.
+	 */
+	private class ChannelOutputStream extends FilterOutputStream {
+
+		/**
+		 * Instantiates a new channel output stream.
+		 *
+		 * @param out the stream that writes to the file
+		 */
+		ChannelOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterOutputStream#write(int)
+		 */
+		@Override
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			GLFWriter.this.length++;
+			if (GLFWriter.this.syncOnWrite) {
+				sync();
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterOutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			GLFWriter.this.length += len;
+			if (GLFWriter.this.syncOnWrite) {
+				sync();
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterOutputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			// this is our last chance, once we close the channel is gone.
+			if (GLFWriter.this.fileChannel.isOpen() && (GLFWriter.this.syncOnWrite || GLFWriter.this.syncOnClose)) {
+				sync();
+			}
+			super.close();
+		}
+	}
+
+	/**
+	 * Compresses with GZip at a chosen level, and can reset the compressor part
+	 * way through so the data after that can be decompressed on its own.
+	 */
+	private static class RestartableGZIPOutputStream extends GZIPOutputStream {
+
+		/**
+		 * Instantiates a new restartable GZip output stream, which flushes with a
+		 * sync flush.
+		 *
+		 * @param out   the underlying stream
+		 * @param level the compression level
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		RestartableGZIPOutputStream(OutputStream out, int level) throws IOException {
+			super(out, true);
+			this.def.setLevel(level);
+		}
+
+		/**
+		 * Flushes like flush, but with a full flush so nothing after it refers
+		 * back to what came before.
+		 *
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		void fullFlush() throws IOException {
+			if (!this.def.finished()) {
+				int length;
+				while ((length = this.def.deflate(this.buf, 0, this.buf.length, Deflater.FULL_FLUSH)) > 0) {
+					this.out.write(this.buf, 0, length);
+					if (length < this.buf.length) {
+						break;
+					}
+				}
+			}
+			this.out.flush();
+		}
 	}
-}
\ No newline at end of file
+}
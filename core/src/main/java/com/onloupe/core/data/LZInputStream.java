@@ -0,0 +1,245 @@
+package com.onloupe.core.data;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Decompresses a stream written by LZOutputStream.
+ */
+public class LZInputStream extends FilterInputStream {
+
+	/** The block header. */
+	private final byte[] header = new byte[LZOutputStream.BLOCK_HEADER_SIZE];
+
+	/** The compressed block. */
+	private final byte[] compressed = new byte[LZOutputStream.maxCompressedLength(LZOutputStream.BLOCK_SIZE)];
+
+	/** The decompressed block. */
+	private final byte[] block = new byte[LZOutputStream.BLOCK_SIZE];
+
+	/** The number of bytes in the decompressed block. */
+	private int blockLength;
+
+	/** The position of the next byte to read in the decompressed block. */
+	private int position;
+
+	/**
+	 * Instantiates a new LZ input stream.
+	 *
+	 * @param in the compressed stream
+	 */
+	public LZInputStream(InputStream in) {
+		super(in);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		if (this.position == this.blockLength && !readBlock()) {
+			return -1;
+		}
+		return this.block[this.position++] & 0xff;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return 0;
+		}
+
+		if (this.position == this.blockLength && !readBlock()) {
+			return -1;
+		}
+
+		int count = Math.min(len, this.blockLength - this.position);
+		System.arraycopy(this.block, this.position, b, off, count);
+		this.position += count;
+		return count;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#skip(long)
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			if (this.position == this.blockLength && !readBlock()) {
+				break;
+			}
+			int count = (int) Math.min(n - skipped, this.blockLength - this.position);
+			this.position += count;
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		return this.blockLength - this.position;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterInputStream#markSupported()
+	 */
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Read and decompress the next block.
+	 *
+	 * @return false if we're at the end of the stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private boolean readBlock() throws IOException {
+		int headerRead = readFully(this.header, LZOutputStream.BLOCK_HEADER_SIZE);
+		if (headerRead == 0) {
+			return false;
+		} else if (headerRead < LZOutputStream.BLOCK_HEADER_SIZE) {
+			throw new EOFException("The stream ends part way through a block header.");
+		}
+
+		int length = readInt(this.header, 0);
+		int compressedLength = readInt(this.header, 4);
+		if ((length == 0) && (compressedLength == 0)) {
+			// blocks are never empty, so this is the preallocated space after the
+			// last block of a file that wasn't closed.
+			return false;
+		} else if ((length <= 0) || (length > LZOutputStream.BLOCK_SIZE) || (compressedLength <= 0)
+				|| (compressedLength > this.compressed.length)) {
+			throw new IOException("The stream has a corrupt block header.");
+		}
+
+		if (compressedLength == length) {
+			// it was stored as is.
+			if (readFully(this.block, length) < length) {
+				throw new EOFException("The stream ends part way through a block.");
+			}
+		} else {
+			if (readFully(this.compressed, compressedLength) < compressedLength) {
+				throw new EOFException("The stream ends part way through a block.");
+			}
+			if (decompress(this.compressed, compressedLength, this.block) != length) {
+				throw new IOException("The stream has a corrupt block.");
+			}
+		}
+
+		this.blockLength = length;
+		this.position = 0;
+		return true;
+	}
+
+	/**
+	 * Read from the underlying stream until we have the requested number of bytes
+	 * or it ends.
+	 *
+	 * @param buffer the buffer
+	 * @param length the number of bytes wanted
+	 * @return the number of bytes read
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private int readFully(byte[] buffer, int length) throws IOException {
+		int total = 0;
+		while (total < length) {
+			int count = this.in.read(buffer, total, length - total);
+			if (count < 0) {
+				break;
+			}
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Decompress a block.
+	 *
+	 * @param source       the compressed data
+	 * @param sourceLength the length of the compressed data
+	 * @param target       where to write the decompressed data
+	 * @return the number of bytes decompressed
+	 * @throws IOException Signals that the block is corrupt.
+	 */
+	static int decompress(byte[] source, int sourceLength, byte[] target) throws IOException {
+		int input = 0;
+		int output = 0;
+		try {
+			while (true) {
+				int token = source[input++] & 0xff;
+
+				int literalLength = token >>> 4;
+				if (literalLength == 15) {
+					int next;
+					do {
+						next = source[input++] & 0xff;
+						literalLength += next;
+					} while (next == 255);
+				}
+				System.arraycopy(source, input, target, output, literalLength);
+				input += literalLength;
+				output += literalLength;
+
+				if (input >= sourceLength) {
+					// the block always ends with literals.
+					break;
+				}
+
+				int offset = (source[input++] & 0xff) | ((source[input++] & 0xff) << 8);
+				int matchLength = token & 0x0f;
+				if (matchLength == 15) {
+					int next;
+					do {
+						next = source[input++] & 0xff;
+						matchLength += next;
+					} while (next == 255);
+				}
+				matchLength += LZOutputStream.MIN_MATCH;
+
+				int reference = output - offset;
+				if ((offset == 0) || (reference < 0)) {
+					throw new IOException("The stream has a corrupt block.");
+				}
+
+				if (offset >= matchLength) {
+					System.arraycopy(target, reference, target, output, matchLength);
+					output += matchLength;
+				} else {
+					// the match overlaps what it's writing, so it has to go a byte at a time.
+					for (int index = 0; index < matchLength; index++) {
+						target[output++] = target[reference++];
+					}
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("The stream has a corrupt block.", e);
+		}
+
+		return output;
+	}
+
+	/**
+	 * Read four bytes as an int, least significant first.
+	 *
+	 * @param buffer the buffer
+	 * @param offset the offset
+	 * @return the int
+	 */
+	private static int readInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8) | ((buffer[offset + 2] & 0xff) << 16)
+				| ((buffer[offset + 3] & 0xff) << 24);
+	}
+}
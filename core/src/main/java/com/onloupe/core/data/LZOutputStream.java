@@ -0,0 +1,275 @@
+package com.onloupe.core.data;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+
+/**
+ * Compresses a stream with a simple, fast LZ77 codec.
+ *
+ * Data is buffered into blocks of up to BLOCK_SIZE bytes; each block is written
+ * with its uncompressed and compressed lengths (both four bytes, least
+ * significant first) followed by the compressed bytes. If a block doesn't get
+ * any smaller it's stored as is, which the reader knows because the two
+ * lengths are the same. Flushing writes out whatever is buffered as a block so
+ * it's readable right away.
+ *
+ * Within a block the encoding follows the LZ4 block layout: a run of literals
+ * followed by a match, each run introduced by a token byte holding the literal
+ * count in the high four bits and the match length (less the minimum of four)
+ * in the low four bits, with 255s extending either count. Matches are a two
+ * byte offset back into the block. The block always ends with literals.
+ */
+public class LZOutputStream extends FilterOutputStream {
+
+	/** The largest block we buffer before compressing. */
+	public static final int BLOCK_SIZE = 64 * 1024;
+
+	/** The size of the block header. */
+	static final int BLOCK_HEADER_SIZE = 8;
+
+	/** The shortest match worth encoding. */
+	static final int MIN_MATCH = 4;
+
+	/** The furthest back a match can refer. */
+	private static final int MAX_OFFSET = 65535;
+
+	/** Matches can't start this close to the end of a block, so it ends with literals. */
+	private static final int MATCH_FIND_LIMIT = 12;
+
+	/** Matches can't run this close to the end of a block. */
+	private static final int LAST_LITERALS = 5;
+
+	/** The number of bits in the hash of four bytes. */
+	private static final int HASH_BITS = 14;
+
+	/** The block being filled. */
+	private final byte[] block = new byte[BLOCK_SIZE];
+
+	/** The compressed block with its header. */
+	private final byte[] compressed = new byte[BLOCK_HEADER_SIZE + maxCompressedLength(BLOCK_SIZE)];
+
+	/** Where we last saw each hash of four bytes. */
+	private final int[] hashTable = new int[1 << HASH_BITS];
+
+	/** The number of bytes in the block being filled. */
+	private int blockLength;
+
+	/**
+	 * Instantiates a new LZ output stream.
+	 *
+	 * @param out the underlying stream
+	 */
+	public LZOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterOutputStream#write(int)
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		this.block[this.blockLength++] = (byte) b;
+		if (this.blockLength == BLOCK_SIZE) {
+			writeBlock();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterOutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		while (len > 0) {
+			int count = Math.min(len, BLOCK_SIZE - this.blockLength);
+			System.arraycopy(b, off, this.block, this.blockLength, count);
+			this.blockLength += count;
+			off += count;
+			len -= count;
+
+			if (this.blockLength == BLOCK_SIZE) {
+				writeBlock();
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.FilterOutputStream#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeBlock();
+		this.out.flush();
+	}
+
+	/**
+	 * Compress and write out the current block, if there's anything in it.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void writeBlock() throws IOException {
+		if (this.blockLength == 0) {
+			return;
+		}
+
+		int compressedLength = compress(this.block, this.blockLength, this.compressed, BLOCK_HEADER_SIZE,
+				this.hashTable);
+		if (compressedLength >= this.blockLength) {
+			// it didn't help, so store it.
+			compressedLength = this.blockLength;
+			System.arraycopy(this.block, 0, this.compressed, BLOCK_HEADER_SIZE, this.blockLength);
+		}
+
+		writeInt(this.compressed, 0, this.blockLength);
+		writeInt(this.compressed, 4, compressedLength);
+
+		// the header and data go out together so the block is written in one piece.
+		this.out.write(this.compressed, 0, BLOCK_HEADER_SIZE + compressedLength);
+		this.blockLength = 0;
+	}
+
+	/**
+	 * The most space compressing the specified number of bytes can take.
+	 *
+	 * @param length the uncompressed length
+	 * @return the maximum compressed length
+	 */
+	static int maxCompressedLength(int length) {
+		return length + (length / 255) + 16;
+	}
+
+	/**
+	 * Compress a block of data.
+	 *
+	 * @param source       the data to compress, starting at the beginning
+	 * @param sourceLength the number of bytes to compress
+	 * @param target       where to write the compressed data, which must have room
+	 *                     for maxCompressedLength bytes
+	 * @param targetOffset the offset to start writing at
+	 * @param hashTable    a scratch table of 2^14 entries
+	 * @return the number of bytes written
+	 */
+	static int compress(byte[] source, int sourceLength, byte[] target, int targetOffset, int[] hashTable) {
+		Arrays.fill(hashTable, -1);
+
+		int position = 0;
+		int anchor = 0; // the start of the literals not yet written
+		int output = targetOffset;
+		int matchFindLimit = sourceLength - MATCH_FIND_LIMIT;
+		int matchLimit = sourceLength - LAST_LITERALS;
+		int misses = 0;
+
+		while (position < matchFindLimit) {
+			int sequence = readInt(source, position);
+			int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+			int reference = hashTable[hash];
+			hashTable[hash] = position;
+
+			if ((reference < 0) || (position - reference > MAX_OFFSET) || (readInt(source, reference) != sequence)) {
+				// skip ahead faster the longer we go without a match, data that doesn't compress goes by quickly.
+				position += 1 + (misses++ >>> 6);
+				continue;
+			}
+			misses = 0;
+
+			// we have a match, see how far it goes.
+			int matchLength = MIN_MATCH;
+			while ((position + matchLength < matchLimit) && (source[reference + matchLength] == source[position
+					+ matchLength])) {
+				matchLength++;
+			}
+
+			output = writeSequence(source, anchor, position - anchor, position - reference, matchLength, target,
+					output);
+			position += matchLength;
+			anchor = position;
+		}
+
+		// and the rest goes out as literals.
+		int literalLength = sourceLength - anchor;
+		int token = Math.min(literalLength, 15) << 4;
+		target[output++] = (byte) token;
+		output = writeLength(literalLength, target, output);
+		System.arraycopy(source, anchor, target, output, literalLength);
+		output += literalLength;
+
+		return output - targetOffset;
+	}
+
+	/**
+	 * Write a run of literals followed by a match.
+	 *
+	 * @param source        the source
+	 * @param literalStart  the offset of the literals in the source
+	 * @param literalLength the number of literals
+	 * @param offset        how far back the match is
+	 * @param matchLength   the length of the match
+	 * @param target        the target
+	 * @param output        the offset to write at
+	 * @return the offset after what was written
+	 */
+	private static int writeSequence(byte[] source, int literalStart, int literalLength, int offset,
+			int matchLength, byte[] target, int output) {
+		int matchCode = matchLength - MIN_MATCH;
+		target[output++] = (byte) ((Math.min(literalLength, 15) << 4) | Math.min(matchCode, 15));
+		output = writeLength(literalLength, target, output);
+		System.arraycopy(source, literalStart, target, output, literalLength);
+		output += literalLength;
+
+		target[output++] = (byte) offset;
+		target[output++] = (byte) (offset >>> 8);
+		return writeLength(matchCode, target, output);
+	}
+
+	/**
+	 * Write the part of a length that didn't fit in its four bits of the token.
+	 *
+	 * @param length the length
+	 * @param target the target
+	 * @param output the offset to write at
+	 * @return the offset after what was written
+	 */
+	private static int writeLength(int length, byte[] target, int output) {
+		if (length >= 15) {
+			length -= 15;
+			while (length >= 255) {
+				target[output++] = (byte) 255;
+				length -= 255;
+			}
+			target[output++] = (byte) length;
+		}
+		return output;
+	}
+
+	/**
+	 * Read four bytes as an int, least significant first.
+	 *
+	 * @param buffer the buffer
+	 * @param offset the offset
+	 * @return the int
+	 */
+	private static int readInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8) | ((buffer[offset + 2] & 0xff) << 16)
+				| ((buffer[offset + 3] & 0xff) << 24);
+	}
+
+	/**
+	 * Write an int into a buffer, least significant byte first.
+	 *
+	 * @param buffer the buffer
+	 * @param offset the offset
+	 * @param value  the value
+	 */
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >> 8);
+		buffer[offset + 2] = (byte) (value >> 16);
+		buffer[offset + 3] = (byte) (value >> 24);
+	}
+}
@@ -0,0 +1,183 @@
+package com.onloupe.core.data;
+
+import java.time.OffsetDateTime;
+import java.util.function.Predicate;
+
+import com.onloupe.core.serialization.IPacketFilter;
+import com.onloupe.core.serialization.PacketDefinition;
+import com.onloupe.model.log.LogMessageSeverity;
+
+
+/**
+ * Picks out the log messages to read from a GLF file by severity, category,
+ * thread and time. Give it to GLFPacketReader.setFilter and log messages that
+ * don't match are skipped as soon as a field they don't match on is read,
+ * without reading the rest of the message. Every other kind of packet is still
+ * read, since later messages may refer to it.
+ *
+ * Each condition that's set has to match; one that isn't set matches every
+ * message. The filter is worked out for each packet type when the reader first
+ * reads it, so changes made after it's been given to a reader may not apply.
+ */
+public class LogMessageFilter implements IPacketFilter {
+
+	/** The type name of log message packets. */
+	private static final String LOG_MESSAGE_TYPE = "LogMessagePacket";
+
+	/** The least severe severity to read, if any. */
+	private LogMessageSeverity minimumSeverity;
+
+	/** The start of the category names to read, if any. */
+	private String categoryPrefix;
+
+	/** The id of the thread to read messages of, if any. */
+	private Long threadId;
+
+	/** The earliest time to read messages from, if any. */
+	private OffsetDateTime startTime;
+
+	/** The time to read messages until, if any. */
+	private OffsetDateTime endTime;
+
+	/**
+	 * Gets the minimum severity.
+	 *
+	 * @return the minimum severity
+	 */
+	public final LogMessageSeverity getMinimumSeverity() {
+		return this.minimumSeverity;
+	}
+
+	/**
+	 * Sets the least severe messages to read; WARNING reads warnings, errors and
+	 * critical messages.
+	 *
+	 * @param value the new minimum severity, or null for any severity
+	 */
+	public final void setMinimumSeverity(LogMessageSeverity value) {
+		this.minimumSeverity = value;
+	}
+
+	/**
+	 * Gets the category prefix.
+	 *
+	 * @return the category prefix
+	 */
+	public final String getCategoryPrefix() {
+		return this.categoryPrefix;
+	}
+
+	/**
+	 * Sets the start of the category names of the messages to read, such as
+	 * "Loupe.Data" for Loupe.Data and Loupe.Data.Index.
+	 *
+	 * @param value the new category prefix, or null for any category
+	 */
+	public final void setCategoryPrefix(String value) {
+		this.categoryPrefix = value;
+	}
+
+	/**
+	 * Gets the thread id.
+	 *
+	 * @return the thread id
+	 */
+	public final Long getThreadId() {
+		return this.threadId;
+	}
+
+	/**
+	 * Sets the id of the thread to read the messages of.
+	 *
+	 * @param value the new thread id, or null for any thread
+	 */
+	public final void setThreadId(Long value) {
+		this.threadId = value;
+	}
+
+	/**
+	 * Gets the start time.
+	 *
+	 * @return the start time
+	 */
+	public final OffsetDateTime getStartTime() {
+		return this.startTime;
+	}
+
+	/**
+	 * Sets the earliest time to read messages from, inclusive.
+	 *
+	 * @param value the new start time, or null to read from the start
+	 */
+	public final void setStartTime(OffsetDateTime value) {
+		this.startTime = value;
+	}
+
+	/**
+	 * Gets the end time.
+	 *
+	 * @return the end time
+	 */
+	public final OffsetDateTime getEndTime() {
+		return this.endTime;
+	}
+
+	/**
+	 * Sets the time to read messages until, exclusive.
+	 *
+	 * @param value the new end time, or null to read to the end
+	 */
+	public final void setEndTime(OffsetDateTime value) {
+		this.endTime = value;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.core.serialization.IPacketFilter#getFieldTest(com.onloupe.core.serialization.PacketDefinition, java.lang.String)
+	 */
+	@Override
+	public Predicate<Object> getFieldTest(PacketDefinition definition, String fieldName) {
+		if (!LOG_MESSAGE_TYPE.equals(definition.getTypeName())) {
+			return null;
+		}
+
+		// copies, so the tests don't change under a reader that's using them.
+		switch (fieldName) {
+		case "Severity":
+			if (this.minimumSeverity != null) {
+				// the more severe, the lower the value.
+				int maximumValue = this.minimumSeverity.getSeverity();
+				return value -> {
+					int severity = ((Number) value).intValue();
+					return severity > 0 && severity <= maximumValue;
+				};
+			}
+			break;
+		case "CategoryName":
+			if (this.categoryPrefix != null) {
+				String prefix = this.categoryPrefix;
+				return value -> value != null && ((String) value).startsWith(prefix);
+			}
+			break;
+		case "ThreadId":
+			if (this.threadId != null) {
+				long id = this.threadId;
+				return value -> ((Number) value).longValue() == id;
+			}
+			break;
+		case "TimeStamp":
+			if (this.startTime != null || this.endTime != null) {
+				OffsetDateTime start = this.startTime;
+				OffsetDateTime end = this.endTime;
+				return value -> {
+					OffsetDateTime timestamp = (OffsetDateTime) value;
+					return (start == null || !timestamp.isBefore(start)) && (end == null || timestamp.isBefore(end));
+				};
+			}
+			break;
+		default:
+			break;
+		}
+
+		return null;
+	}
+}
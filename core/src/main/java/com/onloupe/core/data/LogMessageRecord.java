@@ -0,0 +1,336 @@
+package com.onloupe.core.data;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import com.onloupe.core.serialization.GenericPacket;
+import com.onloupe.core.util.TypeUtils;
+import com.onloupe.model.IThreadInfo;
+import com.onloupe.model.data.IExceptionInfo;
+import com.onloupe.model.log.ILogMessage;
+import com.onloupe.model.log.LogMessageSeverity;
+
+
+/**
+ * A log message read from a GLF file by GLFPacketReader.
+ */
+public class LogMessageRecord implements ILogMessage {
+
+	/** The id. */
+	private final UUID id;
+
+	/** The sequence. */
+	private final long sequence;
+
+	/** The timestamp. */
+	private final OffsetDateTime timestamp;
+
+	/** The severity. */
+	private final LogMessageSeverity severity;
+
+	/** The log system. */
+	private final String logSystem;
+
+	/** The category name. */
+	private final String categoryName;
+
+	/** The user name. */
+	private final String userName;
+
+	/** The caption. */
+	private final String caption;
+
+	/** The description. */
+	private final String description;
+
+	/** The details. */
+	private final String details;
+
+	/** The method name. */
+	private final String methodName;
+
+	/** The class name. */
+	private final String className;
+
+	/** The file name. */
+	private final String fileName;
+
+	/** The line number. */
+	private final int lineNumber;
+
+	/** The thread id. */
+	private final long threadId;
+
+	/** The thread, if it was in the file. */
+	private final ThreadInfoRecord threadInfo;
+
+	/** The application user, if there is one. */
+	private final ApplicationUserRecord applicationUser;
+
+	/** The outermost exception, if there is one. */
+	private final IExceptionInfo exception;
+
+	/**
+	 * Instantiates a new log message record from a log message packet.
+	 *
+	 * @param packet          the packet
+	 * @param threadInfo      the thread the message was logged on, if it's known
+	 * @param applicationUser the application user of the message, if it has one
+	 */
+	LogMessageRecord(GenericPacket packet, ThreadInfoRecord threadInfo, ApplicationUserRecord applicationUser) {
+		this.id = GLFPacketReader.getGuid(packet, "ID");
+		this.sequence = GLFPacketReader.getLong(packet, "Sequence");
+		this.timestamp = GLFPacketReader.getTimestamp(packet, "TimeStamp");
+		this.severity = LogMessageSeverity.forInt((int) GLFPacketReader.getLong(packet, "Severity"));
+		this.logSystem = GLFPacketReader.getString(packet, "LogSystem");
+		this.categoryName = GLFPacketReader.getString(packet, "CategoryName");
+		this.userName = GLFPacketReader.getString(packet, "UserName");
+		this.caption = GLFPacketReader.getString(packet, "Caption");
+		this.description = GLFPacketReader.getString(packet, "Description");
+		this.details = GLFPacketReader.getString(packet, "Details");
+		this.methodName = GLFPacketReader.getString(packet, "MethodName");
+		this.className = GLFPacketReader.getString(packet, "ClassName");
+		this.fileName = GLFPacketReader.getString(packet, "FileName");
+		this.lineNumber = (int) GLFPacketReader.getLong(packet, "LineNumber");
+		this.threadId = GLFPacketReader.getLong(packet, "ThreadId");
+		this.threadInfo = threadInfo;
+		this.applicationUser = applicationUser;
+
+		// the exceptions were written outermost first as parallel arrays, so link
+		// them up from the innermost out.
+		String[] typeNames = GLFPacketReader.getStringArray(packet, "TypeNames");
+		String[] messages = GLFPacketReader.getStringArray(packet, "Messages");
+		String[] sources = GLFPacketReader.getStringArray(packet, "Sources");
+		String[] stackTraces = GLFPacketReader.getStringArray(packet, "StackTraces");
+		IExceptionInfo exception = null;
+		for (int index = typeNames.length - 1; index >= 0; index--) {
+			exception = new ExceptionInfoRecord(typeNames[index], valueAt(messages, index), valueAt(sources, index),
+					valueAt(stackTraces, index), exception);
+		}
+		this.exception = exception;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getId()
+	 */
+	@Override
+	public final UUID getId() {
+		return this.id;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getSequence()
+	 */
+	@Override
+	public final long getSequence() {
+		return this.sequence;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getTimestamp()
+	 */
+	@Override
+	public final OffsetDateTime getTimestamp() {
+		return this.timestamp;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getSeverity()
+	 */
+	@Override
+	public final LogMessageSeverity getSeverity() {
+		return this.severity;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getLogSystem()
+	 */
+	@Override
+	public final String getLogSystem() {
+		return this.logSystem;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getCategoryName()
+	 */
+	@Override
+	public final String getCategoryName() {
+		return this.categoryName;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getUserName()
+	 */
+	@Override
+	public final String getUserName() {
+		return this.userName;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getCaption()
+	 */
+	@Override
+	public final String getCaption() {
+		return this.caption;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getDescription()
+	 */
+	@Override
+	public final String getDescription() {
+		return this.description;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getDetails()
+	 */
+	@Override
+	public final String getDetails() {
+		return this.details;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getMethodName()
+	 */
+	@Override
+	public final String getMethodName() {
+		return this.methodName;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getClassName()
+	 */
+	@Override
+	public final String getClassName() {
+		return this.className;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getFileName()
+	 */
+	@Override
+	public final String getFileName() {
+		return this.fileName;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getLineNumber()
+	 */
+	@Override
+	public final int getLineNumber() {
+		return this.lineNumber;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getHasException()
+	 */
+	@Override
+	public final boolean getHasException() {
+		return this.exception != null;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getException()
+	 */
+	@Override
+	public final IExceptionInfo getException() {
+		return this.exception;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getThreadId()
+	 */
+	@Override
+	public final long getThreadId() {
+		return this.threadId;
+	}
+
+	/**
+	 * Gets the thread the message was logged on.
+	 *
+	 * @return the thread, or null if it wasn't in the file
+	 */
+	public final IThreadInfo getThreadInfo() {
+		return this.threadInfo;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getThreadName()
+	 */
+	@Override
+	public final String getThreadName() {
+		return (this.threadInfo != null) && (TypeUtils.isNotBlank(this.threadInfo.getThreadName()))
+				? this.threadInfo.getThreadName()
+				: String.valueOf(this.threadId);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getDomainId()
+	 */
+	@Override
+	public final int getDomainId() {
+		return (this.threadInfo == null) ? 0 : this.threadInfo.getDomainId();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getDomainName()
+	 */
+	@Override
+	public final String getDomainName() {
+		return (this.threadInfo == null) ? null : this.threadInfo.getDomainName();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#isThreadPoolThread()
+	 */
+	@Override
+	public final boolean isThreadPoolThread() {
+		return (this.threadInfo == null) ? false : this.threadInfo.isThreadPoolThread();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getHasThreadInfo()
+	 */
+	@Override
+	public final boolean getHasThreadInfo() {
+		return this.threadInfo != null;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getHasMethodInfo()
+	 */
+	@Override
+	public final boolean getHasMethodInfo() {
+		return !TypeUtils.isBlank(this.className);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.log.ILogMessage#getHasSourceLocation()
+	 */
+	@Override
+	public final boolean getHasSourceLocation() {
+		return !TypeUtils.isBlank(this.fileName);
+	}
+
+	/**
+	 * Gets the application user the message was logged for.
+	 *
+	 * @return the application user, or null if there isn't one
+	 */
+	public final ApplicationUserRecord getApplicationUser() {
+		return this.applicationUser;
+	}
+
+	/**
+	 * Gets a value from one of the parallel exception arrays, which may be
+	 * shorter than the type names if the file is damaged.
+	 *
+	 * @param values the values
+	 * @param index  the index
+	 * @return the value
+	 */
+	private static String valueAt(String[] values, int index) {
+		return index < values.length ? values[index] : null;
+	}
+}
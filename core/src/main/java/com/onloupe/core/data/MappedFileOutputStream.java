@@ -0,0 +1,159 @@
+package com.onloupe.core.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+
+/**
+ * Appends to a file through a memory mapped window instead of a system call
+ * per write.
+ *
+ * The file is grown a chunk at a time by mapping the next chunk past the data
+ * written so far; writes just copy into the mapping, and once a window fills
+ * the next chunk is mapped. The space past the end of the data is left as
+ * zeros, and the file is truncated to the length of the data when the stream
+ * is closed. If the process ends before then, the end of the data has to be
+ * found from the packet stream (see GLFReader.findDataEnd).
+ */
+public class MappedFileOutputStream extends OutputStream {
+
+	/** The file channel. */
+	private final FileChannel channel;
+
+	/** The number of bytes mapped at a time. */
+	private final int chunkSize;
+
+	/** True to force each window to disk as we finish with it. */
+	private final boolean forceWindows;
+
+	/** The window being written into. */
+	private MappedByteBuffer window;
+
+	/** The length of the data written to the file so far. */
+	private long position;
+
+	/** The closed. */
+	private boolean closed;
+
+	/**
+	 * Instantiates a new mapped file output stream.
+	 *
+	 * @param channel      the file channel, which has to be open for writing
+	 * @param position     the position in the file to start writing at
+	 * @param chunkSize    the number of bytes to grow the file by at a time
+	 * @param forceWindows true to force each window to disk once it's full, for
+	 *                     files that will be synced (mapped data isn't
+	 *                     guaranteed to be written by syncing the file)
+	 */
+	public MappedFileOutputStream(FileChannel channel, long position, int chunkSize, boolean forceWindows) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("The chunk size must be greater than zero.");
+		}
+
+		this.channel = channel;
+		this.position = position;
+		this.chunkSize = chunkSize;
+		this.forceWindows = forceWindows;
+	}
+
+	/**
+	 * The length of the data written to the file so far, not counting the space
+	 * preallocated past it.
+	 *
+	 * @return the position
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#write(int)
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		if ((this.window == null) || !this.window.hasRemaining()) {
+			nextWindow();
+		}
+
+		this.window.put((byte) b);
+		this.position++;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if ((this.window == null) || !this.window.hasRemaining()) {
+				nextWindow();
+			}
+
+			int count = Math.min(len, this.window.remaining());
+			this.window.put(b, off, count);
+			this.position += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Force everything written so far out to the disk.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void force() throws IOException {
+		if (this.window != null) {
+			this.window.force();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+
+		this.closed = true;
+		if (this.window != null) {
+			if (this.forceWindows) {
+				this.window.force();
+			}
+			this.window = null;
+		}
+
+		// some platforms won't truncate a file that's still mapped, and we can't
+		// unmap it ourselves; the end can still be found from the packet stream.
+		try {
+			if (this.channel.size() > this.position) {
+				this.channel.truncate(this.position);
+			}
+		} catch (IOException ex) {
+			// leave the file as it is.
+		}
+	}
+
+	/**
+	 * Map the next chunk of the file past the data written so far, growing the
+	 * file as needed.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void nextWindow() throws IOException {
+		if (this.closed) {
+			throw new IOException("The stream has been closed.");
+		}
+
+		if ((this.window != null) && this.forceWindows) {
+			this.window.force();
+		}
+
+		this.window = this.channel.map(MapMode.READ_WRITE, this.position, this.chunkSize);
+	}
+}
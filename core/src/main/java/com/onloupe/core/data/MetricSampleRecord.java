@@ -0,0 +1,181 @@
+package com.onloupe.core.data;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import com.onloupe.core.serialization.GenericPacket;
+
+
+/**
+ * A metric sample read from a GLF file by GLFPacketReader.
+ *
+ * Sampled metrics have a raw value, and for some sample types a base value.
+ * Event metrics have a value for each of the value definitions of the metric
+ * instead, which are found by name.
+ */
+public class MetricSampleRecord {
+
+	/** The packet the sample was read from. */
+	private final GenericPacket packet;
+
+	/** The id. */
+	private final UUID id;
+
+	/** The metric id. */
+	private final UUID metricId;
+
+	/** The sequence. */
+	private final long sequence;
+
+	/** The timestamp. */
+	private final OffsetDateTime timestamp;
+
+	/** The metric type name, if the metric is known. */
+	private final String metricTypeName;
+
+	/** The category name, if the metric is known. */
+	private final String categoryName;
+
+	/** The counter name, if the metric is known. */
+	private final String counterName;
+
+	/** The instance name, if the metric is known. */
+	private final String instanceName;
+
+	/**
+	 * Instantiates a new metric sample record from a metric sample packet.
+	 *
+	 * @param packet           the packet
+	 * @param metric           the metric packet the sample is for, if it was in
+	 *                         the file
+	 * @param metricDefinition the definition packet of the metric, if it was in
+	 *                         the file
+	 */
+	MetricSampleRecord(GenericPacket packet, GenericPacket metric, GenericPacket metricDefinition) {
+		this.packet = packet;
+		this.id = GLFPacketReader.getGuid(packet, "Id");
+		this.metricId = GLFPacketReader.getGuid(packet, "metricPacketId");
+		this.sequence = GLFPacketReader.getLong(packet, "Sequence");
+		this.timestamp = GLFPacketReader.getTimestamp(packet, "TimeStamp");
+		this.instanceName = (metric == null) ? null : GLFPacketReader.getString(metric, "instanceName");
+		if (metricDefinition != null) {
+			this.metricTypeName = GLFPacketReader.getString(metricDefinition, "MetricTypeName");
+			this.categoryName = GLFPacketReader.getString(metricDefinition, "CategoryName");
+			this.counterName = GLFPacketReader.getString(metricDefinition, "CounterName");
+		} else {
+			this.metricTypeName = null;
+			this.categoryName = null;
+			this.counterName = null;
+		}
+	}
+
+	/**
+	 * Gets the unique id of the sample.
+	 *
+	 * @return the id
+	 */
+	public final UUID getId() {
+		return this.id;
+	}
+
+	/**
+	 * Gets the id of the metric the sample is for.
+	 *
+	 * @return the metric id
+	 */
+	public final UUID getMetricId() {
+		return this.metricId;
+	}
+
+	/**
+	 * Gets the sequence number of the sample within the session.
+	 *
+	 * @return the sequence
+	 */
+	public final long getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * Gets the timestamp of the sample.
+	 *
+	 * @return the timestamp
+	 */
+	public final OffsetDateTime getTimestamp() {
+		return this.timestamp;
+	}
+
+	/**
+	 * Gets the type name of the metric.
+	 *
+	 * @return the metric type name, or null if the metric wasn't in the file
+	 */
+	public final String getMetricTypeName() {
+		return this.metricTypeName;
+	}
+
+	/**
+	 * Gets the category name of the metric.
+	 *
+	 * @return the category name, or null if the metric wasn't in the file
+	 */
+	public final String getCategoryName() {
+		return this.categoryName;
+	}
+
+	/**
+	 * Gets the counter name of the metric.
+	 *
+	 * @return the counter name, or null if the metric wasn't in the file
+	 */
+	public final String getCounterName() {
+		return this.counterName;
+	}
+
+	/**
+	 * Gets the instance name of the metric.
+	 *
+	 * @return the instance name, or null if the metric wasn't in the file
+	 */
+	public final String getInstanceName() {
+		return this.instanceName;
+	}
+
+	/**
+	 * Gets the exact time a sampled metric's raw value was determined.
+	 *
+	 * @return the raw timestamp, or null if this isn't a sampled metric
+	 */
+	public final OffsetDateTime getRawTimestamp() {
+		return GLFPacketReader.getTimestamp(this.packet, "rawTimeStamp");
+	}
+
+	/**
+	 * Gets the raw value of a sampled metric.
+	 *
+	 * @return the raw value, or zero if this isn't a sampled metric
+	 */
+	public final double getRawValue() {
+		return GLFPacketReader.getDouble(this.packet, "rawValue");
+	}
+
+	/**
+	 * Gets the base value of a sampled metric, for the sample types that have
+	 * one.
+	 *
+	 * @return the base value, or zero if the sample doesn't have one
+	 */
+	public final double getBaseValue() {
+		return GLFPacketReader.getDouble(this.packet, "baseValue");
+	}
+
+	/**
+	 * Gets one of the values of an event metric sample.
+	 *
+	 * @param name the name of the value definition
+	 * @return the value, or null if the sample has no value with the name
+	 */
+	public final Object getValue(String name) {
+		return this.packet.getFieldValue(name);
+	}
+}
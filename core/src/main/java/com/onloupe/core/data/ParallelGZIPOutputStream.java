@@ -0,0 +1,424 @@
+package com.onloupe.core.data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.onloupe.core.util.GibraltarThreadFactory;
+
+
+/**
+ * A GZip output stream that compresses on a pool of worker threads.
+ *
+ * The data written is cut into blocks which are deflated independently (each
+ * primed with the tail of the block before it so the compression ratio holds
+ * up) and then written out in order. Every block ends on a byte boundary with
+ * a sync flush, so together they form one ordinary GZip member that any GZip
+ * reader can decompress, just like the output of a GZIPOutputStream in sync
+ * flush mode. The thread writing to the stream only copies data into the
+ * current block and writes out blocks that have finished compressing.
+ *
+ * Blocks, their compressed output and the deflaters are reused, so a stream
+ * that's flushed often doesn't keep making new ones.
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+	/** The GZip header, the same one GZIPOutputStream writes. */
+	private static final byte[] HEADER = { (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	/** An empty, final fixed Huffman block to end the deflate stream. */
+	private static final byte[] FINAL_BLOCK = { 0x03, 0x00 };
+
+	/** The most data deflate can refer back to, so all we need to prime a block. */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	/** How long an idle compression thread hangs around. */
+	private static final long WORKER_KEEP_ALIVE_SECONDS = 10;
+
+	/** The underlying stream. */
+	private final OutputStream out;
+
+	/** The compression level. */
+	private final int level;
+
+	/** The block size. */
+	private final int blockSize;
+
+	/** The most blocks we'll let be in flight before we wait for one to finish. */
+	private final int maxPendingBlocks;
+
+	/** The workers that compress blocks. */
+	private final ThreadPoolExecutor executor;
+
+	/** Blocks submitted for compression, in the order they have to be written. */
+	private final ArrayDeque<Future<CompressedBlock>> pendingBlocks = new ArrayDeque<Future<CompressedBlock>>();
+
+	/** The checksum of all of the uncompressed data. */
+	private final CRC32 crc = new CRC32();
+
+	/** The total number of uncompressed bytes. */
+	private long totalIn;
+
+	/** The block being filled. */
+	private byte[] block;
+
+	/** The number of bytes in the block being filled. */
+	private int blockLength;
+
+	/** The last block submitted, used to prime the next one. */
+	private byte[] previousBlock;
+
+	/** The number of bytes in the last block submitted. */
+	private int previousBlockLength;
+
+	/** Blocks that are no longer needed, to fill again. */
+	private final ArrayDeque<byte[]> freeBlocks = new ArrayDeque<byte[]>();
+
+	/** Buffers for compressed data that has been written out, to compress into again. */
+	private final ConcurrentLinkedQueue<byte[]> freeOutputs = new ConcurrentLinkedQueue<byte[]>();
+
+	/** Deflaters not in use by a worker, one for each worker at most. */
+	private final ConcurrentLinkedQueue<Deflater> freeDeflaters = new ConcurrentLinkedQueue<Deflater>();
+
+	/** The last block written out, still needed until the one after it is compressed. */
+	private byte[] lastWrittenBlock;
+
+	/** The finished. */
+	private volatile boolean finished;
+
+	/**
+	 * Instantiates a new parallel GZip output stream and writes the GZip header.
+	 *
+	 * @param out       the underlying stream
+	 * @param workers   the number of threads to compress with
+	 * @param blockSize the number of uncompressed bytes in each block
+	 * @param level     the compression level, from 0 to 9 or -1 for the default
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, int workers, int blockSize, int level) throws IOException {
+		if (workers <= 0) {
+			throw new IllegalArgumentException("There must be at least one compression worker.");
+		}
+
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("The block size must be positive.");
+		}
+
+		this.out = out;
+		this.level = level;
+		this.blockSize = blockSize;
+		this.maxPendingBlocks = workers * 2;
+		this.block = new byte[blockSize];
+
+		// the threads go away when idle so an abandoned stream can't keep the process alive.
+		this.executor = new ThreadPoolExecutor(workers, workers, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new GibraltarThreadFactory("Loupe Compression"));
+		this.executor.allowCoreThreadTimeOut(true);
+
+		this.out.write(HEADER);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#write(int)
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		this.block[this.blockLength++] = (byte) b;
+		if (this.blockLength == this.blockSize) {
+			submitBlock();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		while (len > 0) {
+			int count = Math.min(len, this.blockSize - this.blockLength);
+			System.arraycopy(b, off, this.block, this.blockLength, count);
+			this.blockLength += count;
+			off += count;
+			len -= count;
+
+			if (this.blockLength == this.blockSize) {
+				submitBlock();
+			}
+		}
+	}
+
+	/**
+	 * Compresses whatever is in the current block and waits until everything
+	 * written so far is in the underlying stream, then flushes it.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		submitBlock();
+		writeBlocks(0);
+		this.out.flush();
+	}
+
+	/**
+	 * Flushes like flush, and compresses the next block without the ones before
+	 * it, so the data from here on can be decompressed without them.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void fullFlush() throws IOException {
+		flush();
+		this.previousBlock = null;
+		this.previousBlockLength = 0;
+	}
+
+	/**
+	 * Finishes writing the compressed data without closing the underlying
+	 * stream.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void finish() throws IOException {
+		if (this.finished) {
+			return;
+		}
+
+		try {
+			submitBlock();
+			writeBlocks(0);
+
+			// the trailer goes out in one write so the stream beneath sees it all at once.
+			byte[] trailer = Arrays.copyOf(FINAL_BLOCK, FINAL_BLOCK.length + 8);
+			writeInt(trailer, FINAL_BLOCK.length, (int) this.crc.getValue());
+			writeInt(trailer, FINAL_BLOCK.length + 4, (int) this.totalIn); // the size is only kept modulo 2^32
+			this.out.write(trailer);
+			this.out.flush();
+		} finally {
+			this.finished = true;
+			this.executor.shutdown();
+			endDeflaters();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			this.executor.shutdownNow();
+			this.out.close();
+		}
+	}
+
+	/**
+	 * Hand the current block off to be compressed and write out any blocks that
+	 * are done.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void submitBlock() throws IOException {
+		if (this.blockLength == 0) {
+			return;
+		}
+
+		this.crc.update(this.block, 0, this.blockLength);
+		this.totalIn += this.blockLength;
+
+		final byte[] input = this.block;
+		final int inputLength = this.blockLength;
+		final byte[] dictionary = this.previousBlock;
+		final int dictionaryLength = Math.min(this.previousBlockLength, DICTIONARY_SIZE);
+		final int dictionaryOffset = this.previousBlockLength - dictionaryLength;
+		this.pendingBlocks.add(this.executor.submit(new Callable<CompressedBlock>() {
+			@Override
+			public CompressedBlock call() {
+				return compress(input, inputLength, dictionary, dictionaryOffset, dictionaryLength);
+			}
+		}));
+
+		// the block now belongs to the worker, so we start another.
+		this.previousBlock = input;
+		this.previousBlockLength = inputLength;
+		this.block = this.freeBlocks.poll();
+		if (this.block == null) {
+			this.block = new byte[this.blockSize];
+		}
+		this.blockLength = 0;
+
+		writeBlocks(this.maxPendingBlocks);
+	}
+
+	/**
+	 * Write out completed blocks in order, waiting for blocks to finish until no
+	 * more than the specified number are still pending.
+	 *
+	 * @param maxPending the number of blocks that may be left pending
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void writeBlocks(int maxPending) throws IOException {
+		while (!this.pendingBlocks.isEmpty()) {
+			Future<CompressedBlock> next = this.pendingBlocks.peek();
+			if (!next.isDone() && this.pendingBlocks.size() <= maxPending) {
+				break;
+			}
+
+			CompressedBlock compressed;
+			try {
+				compressed = next.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a block to be compressed.");
+			} catch (ExecutionException e) {
+				throw new IOException("Unable to compress block.", e.getCause());
+			}
+
+			this.pendingBlocks.remove();
+			this.out.write(compressed.data, 0, compressed.length);
+			this.freeOutputs.add(compressed.data);
+
+			// blocks finish in order, so the one before this is no longer needed
+			// to compress or to prime anything.
+			if (this.lastWrittenBlock != null) {
+				this.freeBlocks.add(this.lastWrittenBlock);
+			}
+			this.lastWrittenBlock = compressed.input;
+		}
+	}
+
+	/**
+	 * Deflate one block, ending with a sync flush so the next block can follow it
+	 * directly.
+	 *
+	 * @param input            the input
+	 * @param inputLength      the input length
+	 * @param dictionary       the block before this one, if any
+	 * @param dictionaryOffset the offset of the dictionary within its block
+	 * @param dictionaryLength the dictionary length
+	 * @return the compressed block
+	 */
+	private CompressedBlock compress(byte[] input, int inputLength, byte[] dictionary, int dictionaryOffset,
+			int dictionaryLength) {
+		Deflater deflater = this.freeDeflaters.poll();
+		if (deflater == null) {
+			deflater = new Deflater(this.level, true);
+		}
+
+		try {
+			if (dictionaryLength > 0) {
+				deflater.setDictionary(dictionary, dictionaryOffset, dictionaryLength);
+			}
+			deflater.setInput(input, 0, inputLength);
+
+			byte[] output = this.freeOutputs.poll();
+			int minimumLength = inputLength + (inputLength >> 3) + 64;
+			if (output == null || output.length < minimumLength) {
+				output = new byte[minimumLength];
+			}
+			int outputLength = 0;
+			while (true) {
+				outputLength += deflater.deflate(output, outputLength, output.length - outputLength,
+						Deflater.SYNC_FLUSH);
+
+				// if it filled the buffer there may be more to come.
+				if (outputLength < output.length) {
+					break;
+				}
+				output = Arrays.copyOf(output, output.length * 2);
+			}
+
+			return new CompressedBlock(input, output, outputLength);
+		} finally {
+			deflater.reset();
+			this.freeDeflaters.add(deflater);
+
+			// once finished nobody will end it for us.
+			if (this.finished) {
+				endDeflaters();
+			}
+		}
+	}
+
+	/**
+	 * Free the native memory of the deflaters that aren't in use.
+	 */
+	private void endDeflaters() {
+		Deflater deflater;
+		while ((deflater = this.freeDeflaters.poll()) != null) {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Write an int into a buffer, least significant byte first.
+	 *
+	 * @param buffer the buffer
+	 * @param offset the offset to write at
+	 * @param value  the value
+	 */
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >> 8);
+		buffer[offset + 2] = (byte) (value >> 16);
+		buffer[offset + 3] = (byte) (value >> 24);
+	}
+
+	/**
+	 * Ensure open.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void ensureOpen() throws IOException {
+		if (this.finished) {
+			throw new IOException("The stream has already been finished.");
+		}
+	}
+
+	/**
+	 * A block of compressed data.
+	 */
+	private static class CompressedBlock {
+
+		/** The block it was compressed from. */
+		private final byte[] input;
+
+		/** The data. */
+		private final byte[] data;
+
+		/** The length. */
+		private final int length;
+
+		/**
+		 * Instantiates a new compressed block.
+		 *
+		 * @param input  the block it was compressed from
+		 * @param data   the data
+		 * @param length the length
+		 */
+		CompressedBlock(byte[] input, byte[] data, int length) {
+			this.input = input;
+			this.data = data;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,526 @@
+package com.onloupe.core.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.onloupe.core.serialization.GibraltarSerializationException;
+import com.onloupe.core.util.GibraltarThreadFactory;
+import com.onloupe.core.util.IOUtils;
+import com.onloupe.model.log.ILogMessage;
+
+
+/**
+ * Reads the log messages of many GLF files at once, decoding the files in
+ * parallel and merging their messages into one stream in sequence or
+ * timestamp order.
+ *
+ * The files can be the fragments of one session, whose sequence numbers carry
+ * on from one to the next, or of many sessions, which are best merged by
+ * timestamp. Each file is read by a task on the executor that decodes batches
+ * of messages into a short queue and gives its thread up when the queue is
+ * full, so any number of files can share a few threads and the memory used is
+ * a few batches per file. Every file has to be read in order for the merge to
+ * work, so they're all open until they've been read or the reader is closed.
+ */
+public class ParallelSessionReader implements Iterator<ILogMessage>, Closeable {
+
+	/** Orders messages by sequence, for the fragments of one session. */
+	public static final Comparator<ILogMessage> SEQUENCE_ORDER = Comparator.comparingLong(ILogMessage::getSequence);
+
+	/** Orders messages by when they were logged, then by sequence. */
+	public static final Comparator<ILogMessage> TIMESTAMP_ORDER = Comparator
+			.comparing((ILogMessage message) -> message.getTimestamp().toInstant())
+			.thenComparingLong(ILogMessage::getSequence);
+
+	/** The default number of messages decoded at a time. */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	/** The default number of decoded batches a file can have waiting. */
+	public static final int DEFAULT_QUEUE_DEPTH = 4;
+
+	/** How long the reader's own threads wait for more work before they go. */
+	private static final int WORKER_KEEP_ALIVE_SECONDS = 10;
+
+	/** The order messages are merged in. */
+	private final Comparator<ILogMessage> order;
+
+	/** The executor the files are read on. */
+	private final ExecutorService executor;
+
+	/** True if the executor was created by the reader, so it's shut down with it. */
+	private final boolean ownsExecutor;
+
+	/** The files being read. */
+	private final List<Source> sources = new ArrayList<Source>();
+
+	/** The next message from each file that hasn't ended, in merge order. */
+	private PriorityQueue<Cursor> cursors;
+
+	/** The filter each file is read with, if any. */
+	private LogMessageFilter filter;
+
+	/** The number of messages decoded at a time. */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/** The number of decoded batches a file can have waiting. */
+	private int queueDepth = DEFAULT_QUEUE_DEPTH;
+
+	/** True once the reader has been closed. */
+	private volatile boolean closed;
+
+	/**
+	 * Read files on threads of the reader's own, which go when it's closed.
+	 *
+	 * @param files   the files to read
+	 * @param order   the order to merge messages in, such as SEQUENCE_ORDER
+	 * @param threads the number of files to decode at once
+	 */
+	public ParallelSessionReader(List<File> files, Comparator<ILogMessage> order, int threads) {
+		this(files, order, createExecutor(threads), true);
+	}
+
+	/**
+	 * Read files on an executor, which is left running when the reader is closed.
+	 *
+	 * @param files    the files to read
+	 * @param order    the order to merge messages in, such as SEQUENCE_ORDER
+	 * @param executor the executor to decode files on
+	 */
+	public ParallelSessionReader(List<File> files, Comparator<ILogMessage> order, ExecutorService executor) {
+		this(files, order, executor, false);
+	}
+
+	/**
+	 * Instantiates a new parallel session reader.
+	 *
+	 * @param files        the files to read
+	 * @param order        the order to merge messages in
+	 * @param executor     the executor to decode files on
+	 * @param ownsExecutor true to shut the executor down when the reader is closed
+	 */
+	private ParallelSessionReader(List<File> files, Comparator<ILogMessage> order, ExecutorService executor,
+			boolean ownsExecutor) {
+		this.order = order;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		for (File file : files) {
+			this.sources.add(new Source(file));
+		}
+	}
+
+	/**
+	 * Sets the filter to read each file with. Only takes effect if set before the
+	 * first message is read.
+	 *
+	 * @param value the filter, or null to read every message
+	 */
+	public final void setFilter(LogMessageFilter value) {
+		this.filter = value;
+	}
+
+	/**
+	 * Gets the batch size.
+	 *
+	 * @return the batch size
+	 */
+	public final int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * Sets the number of messages decoded at a time. Only takes effect if set
+	 * before the first message is read.
+	 *
+	 * @param value the new batch size
+	 */
+	public final void setBatchSize(int value) {
+		if (value <= 0) {
+			throw new IllegalArgumentException("The batch size must be positive.");
+		}
+		this.batchSize = value;
+	}
+
+	/**
+	 * Gets the queue depth.
+	 *
+	 * @return the queue depth
+	 */
+	public final int getQueueDepth() {
+		return this.queueDepth;
+	}
+
+	/**
+	 * Sets the number of decoded batches each file can have waiting, which with
+	 * the batch size bounds the memory used. Only takes effect if set before the
+	 * first message is read.
+	 *
+	 * @param value the new queue depth
+	 */
+	public final void setQueueDepth(int value) {
+		if (value <= 0) {
+			throw new IllegalArgumentException("The queue depth must be positive.");
+		}
+		this.queueDepth = value;
+	}
+
+	/**
+	 * Indicates if there's another message, waiting for the files to be decoded
+	 * as far as the next message in order.
+	 *
+	 * @return true, if there's another message
+	 */
+	@Override
+	public boolean hasNext() {
+		if (this.closed) {
+			return false;
+		}
+
+		if (this.cursors == null) {
+			start();
+		}
+		return !this.cursors.isEmpty();
+	}
+
+	/**
+	 * Read the next message in order.
+	 *
+	 * @return the message
+	 */
+	@Override
+	public ILogMessage next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		Cursor cursor = this.cursors.poll();
+		ILogMessage message = cursor.current();
+		if (cursor.advance()) {
+			this.cursors.add(cursor);
+		}
+		return message;
+	}
+
+	/**
+	 * The messages of all the files, merged, as a sequential stream.
+	 *
+	 * @return the stream of messages
+	 */
+	public Stream<ILogMessage> logMessages() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * Performs application-defined tasks associated with freeing, releasing, or
+	 * resetting managed resources. Files still being read are closed by their
+	 * tasks as soon as they notice.
+	 */
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+
+		this.closed = true;
+		for (Source source : this.sources) {
+			source.closeIfIdle();
+		}
+
+		if (this.ownsExecutor) {
+			this.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Start reading every file and wait for the first batch of each.
+	 */
+	private void start() {
+		this.cursors = new PriorityQueue<Cursor>(Math.max(1, this.sources.size()),
+				(left, right) -> this.order.compare(left.current(), right.current()));
+		for (Source source : this.sources) {
+			source.start();
+		}
+
+		for (Source source : this.sources) {
+			Cursor cursor = new Cursor(source);
+			if (cursor.advance()) {
+				this.cursors.add(cursor);
+			}
+		}
+	}
+
+	/**
+	 * Create an executor with threads that go away when idle, so a reader that's
+	 * never closed can't keep the process alive.
+	 *
+	 * @param threads the number of threads
+	 * @return the executor
+	 */
+	private static ExecutorService createExecutor(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("There must be at least one thread.");
+		}
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, WORKER_KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new GibraltarThreadFactory("Loupe Session Reader"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * A batch of decoded messages, or the end of a file.
+	 */
+	private static class Batch {
+
+		/** The messages, empty at the end of the file. */
+		final List<ILogMessage> messages;
+
+		/** What went wrong reading the file, if anything. */
+		final RuntimeException error;
+
+		/**
+		 * Instantiates a new batch.
+		 *
+		 * @param messages the messages
+		 * @param error    the error, or null
+		 */
+		Batch(List<ILogMessage> messages, RuntimeException error) {
+			this.messages = messages;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * One file, and the task that decodes it.
+	 */
+	private class Source implements Runnable {
+
+		/** The file. */
+		private final File file;
+
+		/** The decoded batches waiting to be merged. */
+		private BlockingQueue<Batch> batches;
+
+		/** True while the task is queued or running, which is when it owns the reader. */
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		/** True once the end of the file, or an error, has been queued. */
+		private volatile boolean ended;
+
+		/** The file being read, once the task has opened it. */
+		private RandomAccessFile randomAccessFile;
+
+		/** The packet reader, once the task has opened the file. */
+		private GLFPacketReader reader;
+
+		/** The messages of the file, once opened. */
+		private Iterator<ILogMessage> messages;
+
+		/**
+		 * Instantiates a new source.
+		 *
+		 * @param file the file
+		 */
+		Source(File file) {
+			this.file = file;
+		}
+
+		/**
+		 * Start decoding the file.
+		 */
+		void start() {
+			// one more than the depth, so the end always fits.
+			this.batches = new ArrayBlockingQueue<Batch>(ParallelSessionReader.this.queueDepth + 1);
+			schedule();
+		}
+
+		/**
+		 * Take the next batch, waiting for it to be decoded, and let the task decode
+		 * another in its place.
+		 *
+		 * @return the batch
+		 */
+		Batch take() {
+			Batch batch;
+			try {
+				batch = this.batches.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new GibraltarSerializationException("Interrupted waiting for " + this.file.getName(), e);
+			}
+
+			schedule();
+			return batch;
+		}
+
+		/**
+		 * Queue the task, unless it's already queued or there's nothing for it to do.
+		 */
+		void schedule() {
+			if (!this.ended && this.batches.remainingCapacity() > 1 && this.scheduled.compareAndSet(false, true)) {
+				try {
+					ParallelSessionReader.this.executor.execute(this);
+				} catch (RuntimeException e) {
+					this.scheduled.set(false);
+					end(e);
+				}
+			}
+		}
+
+		/**
+		 * Decode batches until the queue is full or the file ends.
+		 */
+		@Override
+		public void run() {
+			try {
+				while (!ParallelSessionReader.this.closed && !this.ended && this.batches.remainingCapacity() > 1) {
+					this.batches.add(readBatch());
+				}
+			} catch (IOException e) {
+				end(new UncheckedIOException(e));
+			} catch (RuntimeException e) {
+				end(e);
+			} finally {
+				if (this.ended || ParallelSessionReader.this.closed) {
+					closeReader();
+				}
+				this.scheduled.set(false);
+			}
+
+			// the merge may have taken a batch after the loop looked.
+			if (ParallelSessionReader.this.closed) {
+				closeIfIdle();
+			} else {
+				schedule();
+			}
+		}
+
+		/**
+		 * Close the file if the task isn't using it.
+		 */
+		void closeIfIdle() {
+			if (this.scheduled.compareAndSet(false, true)) {
+				closeReader();
+			}
+		}
+
+		/**
+		 * Decode the next batch, opening the file the first time.
+		 *
+		 * @return the batch
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private Batch readBatch() throws IOException {
+			if (this.messages == null) {
+				this.randomAccessFile = new RandomAccessFile(this.file, "r");
+				this.reader = new GLFPacketReader(new GLFReader(this.randomAccessFile));
+				this.reader.setFilter(ParallelSessionReader.this.filter);
+				this.messages = this.reader.logMessages().iterator();
+			}
+
+			int batchSize = ParallelSessionReader.this.batchSize;
+			List<ILogMessage> batch = new ArrayList<ILogMessage>(batchSize);
+			while (batch.size() < batchSize && this.messages.hasNext()) {
+				batch.add(this.messages.next());
+			}
+
+			if (batch.isEmpty()) {
+				this.ended = true;
+			}
+			return new Batch(batch, null);
+		}
+
+		/**
+		 * Queue an error as the end of the file.
+		 *
+		 * @param error the error
+		 */
+		private void end(RuntimeException error) {
+			if (!this.ended) {
+				this.ended = true;
+				this.batches.offer(new Batch(new ArrayList<ILogMessage>(0), error));
+			}
+		}
+
+		/**
+		 * Close the file.
+		 */
+		private void closeReader() {
+			IOUtils.closeQuietly(this.reader);
+			IOUtils.closeQuietly(this.randomAccessFile);
+			this.reader = null;
+			this.randomAccessFile = null;
+		}
+	}
+
+	/**
+	 * The position of the merge in one file.
+	 */
+	private static class Cursor {
+
+		/** The file. */
+		private final Source source;
+
+		/** The current batch. */
+		private List<ILogMessage> batch;
+
+		/** The index of the current message in the batch. */
+		private int index;
+
+		/**
+		 * Instantiates a new cursor, before the first message.
+		 *
+		 * @param source the file
+		 */
+		Cursor(Source source) {
+			this.source = source;
+		}
+
+		/**
+		 * Gets the current message.
+		 *
+		 * @return the message
+		 */
+		ILogMessage current() {
+			return this.batch.get(this.index);
+		}
+
+		/**
+		 * Move to the next message of the file.
+		 *
+		 * @return false at the end of the file
+		 */
+		boolean advance() {
+			this.index++;
+			if (this.batch == null || this.index >= this.batch.size()) {
+				Batch next = this.source.take();
+				if (next.error != null) {
+					throw next.error;
+				}
+				this.batch = next.messages;
+				this.index = 0;
+			}
+			return !this.batch.isEmpty();
+		}
+	}
+}
@@ -0,0 +1,528 @@
+package com.onloupe.core.data;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+
+/**
+ * Decompresses the packet stream of a GLF file while noting the points along
+ * the way it could be decompressed from without what came before, so
+ * SessionIndex can rebuild an index from the file alone.
+ *
+ * An uncompressed stream can be read from anywhere, and an LZ stream from the
+ * start of any block. A GZip stream can be read from wherever it was flushed,
+ * given the 32KB of data before it: every flush ends with an empty stored
+ * block, which is the bytes 00 00 FF FF on a byte boundary, so the compressed
+ * data is handed to the inflater a flush at a time and each time it's used all
+ * of one up we know exactly how much data came before it.
+ */
+abstract class RestartPointScanner extends InputStream {
+
+	/** The buffer size for reading the compressed data. */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/** The furthest back deflated data can refer. */
+	static final int WINDOW_SIZE = 32 * 1024;
+
+	/** The restart points found ahead of what's been asked for. */
+	private final ArrayDeque<RestartPoint> restartPoints = new ArrayDeque<RestartPoint>();
+
+	/**
+	 * Open a scanner on the packet stream of a GLF file.
+	 *
+	 * @param reader the reader for the file
+	 * @return the restart point scanner
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	static RestartPointScanner open(GLFReader reader) throws IOException {
+		InputStream dataStream = reader.openDataStream(reader.getDataOffset());
+		switch (reader.getFileHeader().getCompressionCodec()) {
+		case NONE:
+			return new UncompressedScanner(dataStream, reader.getDataOffset());
+		case LZ:
+			return new LZScanner(dataStream, reader.getDataOffset());
+		default:
+			return new GZipScanner(dataStream, reader.getDataOffset());
+		}
+	}
+
+	/**
+	 * Take the last restart point at or before a position in the decompressed
+	 * data, if there's one that hasn't been taken. Positions have to be asked
+	 * about in order, and not ahead of what's been read.
+	 *
+	 * @param position the position in the decompressed data
+	 * @return the restart point, or null if there isn't a new one
+	 */
+	RestartPoint restartPointBefore(long position) {
+		RestartPoint last = null;
+		while (!this.restartPoints.isEmpty() && this.restartPoints.peek().position <= position) {
+			last = this.restartPoints.remove();
+		}
+		return last;
+	}
+
+	/**
+	 * Note a restart point.
+	 *
+	 * @param restartPoint the restart point
+	 */
+	void addRestartPoint(RestartPoint restartPoint) {
+		RestartPoint last = this.restartPoints.peekLast();
+		if (last == null || last.position < restartPoint.position) {
+			this.restartPoints.add(restartPoint);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+	}
+
+	/**
+	 * A point in the packet stream it can be decompressed from.
+	 */
+	static class RestartPoint {
+
+		/** The position in the decompressed data. */
+		final long position;
+
+		/** The offset in the file to start decompressing at. */
+		final long offset;
+
+		/** The data before the offset that later data may refer to, if any. */
+		final byte[] dictionary;
+
+		/**
+		 * Instantiates a new restart point.
+		 *
+		 * @param position   the position in the decompressed data
+		 * @param offset     the offset in the file to start decompressing at
+		 * @param dictionary the dictionary, or null if there isn't one
+		 */
+		RestartPoint(long position, long offset, byte[] dictionary) {
+			this.position = position;
+			this.offset = offset;
+			this.dictionary = dictionary;
+		}
+	}
+
+	/**
+	 * An uncompressed packet stream, which can be read from anywhere.
+	 */
+	private static class UncompressedScanner extends RestartPointScanner {
+
+		/** The data. */
+		private final InputStream in;
+
+		/** The offset of the data in the file. */
+		private final long dataOffset;
+
+		/**
+		 * Instantiates a new uncompressed scanner.
+		 *
+		 * @param in         the data
+		 * @param dataOffset the offset of the data in the file
+		 */
+		UncompressedScanner(InputStream in, long dataOffset) {
+			this.in = new BufferedInputStream(in, READ_BUFFER_SIZE);
+			this.dataOffset = dataOffset;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.onloupe.core.data.RestartPointScanner#restartPointBefore(long)
+		 */
+		@Override
+		RestartPoint restartPointBefore(long position) {
+			return new RestartPoint(position, this.dataOffset + position, null);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return this.in.read(b, off, len);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+
+	/**
+	 * An LZ packet stream, which can be read from the start of any block.
+	 */
+	private static class LZScanner extends RestartPointScanner {
+
+		/** The decompressed data. */
+		private final LZInputStream in;
+
+		/** The offset in the file of the next compressed byte. */
+		private long offset;
+
+		/** The number of bytes decompressed so far. */
+		private long position;
+
+		/**
+		 * Instantiates a new LZ scanner.
+		 *
+		 * @param in         the compressed data
+		 * @param dataOffset the offset of the data in the file
+		 */
+		LZScanner(InputStream in, long dataOffset) {
+			final InputStream compressed = new BufferedInputStream(in, READ_BUFFER_SIZE);
+			this.offset = dataOffset;
+
+			// the LZ stream reads each block exactly, so counting what it reads tells us where each starts.
+			this.in = new LZInputStream(new InputStream() {
+				@Override
+				public int read() throws IOException {
+					int value = compressed.read();
+					if (value >= 0) {
+						LZScanner.this.offset++;
+					}
+					return value;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int count = compressed.read(b, off, len);
+					if (count > 0) {
+						LZScanner.this.offset += count;
+					}
+					return count;
+				}
+
+				@Override
+				public void close() throws IOException {
+					compressed.close();
+				}
+			});
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+
+			// an empty block means the next read starts a new one.
+			if (this.in.available() == 0) {
+				addRestartPoint(new RestartPoint(this.position, this.offset, null));
+			}
+
+			int count = this.in.read(b, off, len);
+			if (count > 0) {
+				this.position += count;
+			}
+			return count;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+
+	/**
+	 * A GZip packet stream, which can be read from wherever it was flushed.
+	 */
+	private static class GZipScanner extends RestartPointScanner {
+
+		/** The magic number at the start of a GZip stream. */
+		private static final int GZIP_MAGIC = 0x8b1f;
+
+		/** The header flag for extra fields. */
+		private static final int FEXTRA = 4;
+
+		/** The header flag for a file name. */
+		private static final int FNAME = 8;
+
+		/** The header flag for a comment. */
+		private static final int FCOMMENT = 16;
+
+		/** The header flag for a header CRC. */
+		private static final int FHCRC = 2;
+
+		/** The compressed data. */
+		private final InputStream in;
+
+		/** The inflater. */
+		private final Inflater inflater = new Inflater(true);
+
+		/** The compressed data read so far and not yet given to the inflater. */
+		private final byte[] input = new byte[READ_BUFFER_SIZE];
+
+		/** The number of bytes in the input buffer. */
+		private int inputLength;
+
+		/** The position in the input buffer of the next byte for the inflater. */
+		private int inputPosition;
+
+		/** The offset in the file of the start of the input buffer. */
+		private long inputOffset;
+
+		/** The offset in the file just past the flush the inflater has been given, or -1 if it hasn't. */
+		private long flushEnd = -1;
+
+		/** The last 32KB of decompressed data, as a ring. */
+		private final byte[] window = new byte[WINDOW_SIZE];
+
+		/**
+		 * Instantiates a new GZip scanner, reading past the GZip header.
+		 *
+		 * @param in         the compressed data
+		 * @param dataOffset the offset of the data in the file
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		GZipScanner(InputStream in, long dataOffset) throws IOException {
+			this.in = in;
+			this.inputOffset = dataOffset;
+
+			// the start is always a restart point, it's where the GZip stream starts.
+			addRestartPoint(new RestartPoint(0, dataOffset, null));
+			readHeader();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+
+			while (true) {
+				int count;
+				try {
+					count = this.inflater.inflate(b, off, len);
+				} catch (DataFormatException e) {
+					throw new ZipException(e.getMessage());
+				}
+
+				if (count > 0) {
+					addToWindow(b, off, count);
+					return count;
+				} else if (this.inflater.finished() || this.inflater.needsDictionary()) {
+					return -1;
+				} else if (this.inflater.needsInput()) {
+					if (this.flushEnd >= 0) {
+						// it's used up everything through the flush and given us all the data
+						// before it.
+						addRestartPoint(new RestartPoint(this.inflater.getBytesWritten(), this.flushEnd,
+								copyWindow()));
+						this.flushEnd = -1;
+					}
+
+					if (!giveInput()) {
+						return -1; // an unfinished file.
+					}
+				}
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				this.in.close();
+			} finally {
+				this.inflater.end();
+			}
+		}
+
+		/**
+		 * Give the inflater the compressed data up to the end of the next flush, or
+		 * as much as we have if there isn't one in what's been read.
+		 *
+		 * @return false if there's no more compressed data
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private boolean giveInput() throws IOException {
+			while (true) {
+				int flush = findFlush(this.inputPosition);
+				if (flush >= 0) {
+					int end = flush + 4;
+					this.inflater.setInput(this.input, this.inputPosition, end - this.inputPosition);
+					this.inputPosition = end;
+					this.flushEnd = this.inputOffset + end;
+					return true;
+				}
+
+				// hold back the end of the buffer in case it's the start of a flush.
+				int safeEnd = this.inputLength - 3;
+				if (safeEnd > this.inputPosition) {
+					this.inflater.setInput(this.input, this.inputPosition, safeEnd - this.inputPosition);
+					this.inputPosition = safeEnd;
+					return true;
+				}
+
+				if (!fillInput()) {
+					if (this.inputPosition < this.inputLength) {
+						this.inflater.setInput(this.input, this.inputPosition, this.inputLength - this.inputPosition);
+						this.inputPosition = this.inputLength;
+						return true;
+					}
+					return false;
+				}
+			}
+		}
+
+		/**
+		 * Find the end of the next flush in the input buffer.
+		 *
+		 * @param start the position to start looking from
+		 * @return the position of the 00 00 FF FF that ends the flush, or -1 if
+		 *         there isn't one
+		 */
+		private int findFlush(int start) {
+			byte[] buffer = this.input;
+			for (int index = start; index + 4 <= this.inputLength; index++) {
+				if (buffer[index + 3] == (byte) 0xff && buffer[index + 2] == (byte) 0xff && buffer[index + 1] == 0
+						&& buffer[index] == 0) {
+					return index;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Move what the inflater hasn't been given to the start of the input buffer
+		 * and read more after it. Only call once the inflater is done with what it
+		 * was given.
+		 *
+		 * @return false if there's no more to read
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private boolean fillInput() throws IOException {
+			int remaining = this.inputLength - this.inputPosition;
+			System.arraycopy(this.input, this.inputPosition, this.input, 0, remaining);
+			this.inputOffset += this.inputPosition;
+			this.inputPosition = 0;
+			this.inputLength = remaining;
+
+			int count = this.in.read(this.input, remaining, this.input.length - remaining);
+			if (count <= 0) {
+				return false;
+			}
+			this.inputLength += count;
+			return true;
+		}
+
+		/**
+		 * Read the next byte of the GZip header.
+		 *
+		 * @return the byte
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private int readHeaderByte() throws IOException {
+			if (this.inputPosition == this.inputLength && !fillInput()) {
+				throw new EOFException("The file ends part way through the GZip header.");
+			}
+			return this.input[this.inputPosition++] & 0xff;
+		}
+
+		/**
+		 * Read past the GZip header, leaving the input at the deflated data.
+		 *
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private void readHeader() throws IOException {
+			int magic = readHeaderByte() | (readHeaderByte() << 8);
+			if (magic != GZIP_MAGIC || readHeaderByte() != 8) {
+				throw new ZipException("The packet stream isn't in the GZip format.");
+			}
+
+			// flags, then the modification time, extra flags and operating system.
+			int flags = readHeaderByte();
+			for (int index = 0; index < 6; index++) {
+				readHeaderByte();
+			}
+
+			if ((flags & FEXTRA) != 0) {
+				int length = readHeaderByte() | (readHeaderByte() << 8);
+				for (int index = 0; index < length; index++) {
+					readHeaderByte();
+				}
+			}
+			if ((flags & FNAME) != 0) {
+				while (readHeaderByte() != 0) {
+					// skip the file name.
+				}
+			}
+			if ((flags & FCOMMENT) != 0) {
+				while (readHeaderByte() != 0) {
+					// skip the comment.
+				}
+			}
+			if ((flags & FHCRC) != 0) {
+				readHeaderByte();
+				readHeaderByte();
+			}
+		}
+
+		/**
+		 * Add decompressed data to the window.
+		 *
+		 * @param b   the buffer
+		 * @param off the offset of the data
+		 * @param len the length of the data
+		 */
+		private void addToWindow(byte[] b, int off, int len) {
+			if (len > WINDOW_SIZE) {
+				off += len - WINDOW_SIZE;
+				len = WINDOW_SIZE;
+			}
+
+			// where the data goes is where the total written so far, less this, leaves off.
+			int start = (int) ((this.inflater.getBytesWritten() - len) % WINDOW_SIZE);
+			int first = Math.min(len, WINDOW_SIZE - start);
+			System.arraycopy(b, off, this.window, start, first);
+			System.arraycopy(b, off + first, this.window, 0, len - first);
+		}
+
+		/**
+		 * Copy the window out in order, oldest first.
+		 *
+		 * @return the data, which is shorter than 32KB if there hasn't been that
+		 *         much yet
+		 */
+		private byte[] copyWindow() {
+			long total = this.inflater.getBytesWritten();
+			if (total < WINDOW_SIZE) {
+				return Arrays.copyOf(this.window, (int) total);
+			}
+
+			int start = (int) (total % WINDOW_SIZE);
+			byte[] copy = new byte[WINDOW_SIZE];
+			System.arraycopy(this.window, start, copy, 0, WINDOW_SIZE - start);
+			System.arraycopy(this.window, 0, copy, WINDOW_SIZE - start, start);
+			return copy;
+		}
+	}
+}
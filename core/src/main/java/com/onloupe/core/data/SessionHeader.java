@@ -4,14 +4,18 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 
+import org.apache.commons.codec.digest.DigestUtils;
+
 import com.onloupe.agent.SessionSummary;
 import com.onloupe.core.util.TypeUtils;
 import com.onloupe.model.data.ProcessorArchitecture;
@@ -216,6 +220,24 @@ public final class SessionHeader implements ISessionSummary {
 	/** The offset warning count. */
 	private int offsetWarningCount;
 
+	/** The offset file end date time, in the whole header. */
+	private int offsetFileEndDateTime;
+
+	/** The offset last file, in the whole header. */
+	private int offsetLastFile;
+
+	/** The whole header as last exported, with the updatable fields kept current. */
+	private byte[] lastHeader;
+
+	/** The offset of the first byte of the last header changed since it was last written. */
+	private int lastHeaderChangedOffset;
+
+	/** The buffer the changed part of the last header is handed out in. */
+	private ByteBuffer lastHeaderBuffer;
+
+	/** The digest used to recalculate the CRC of the last header. */
+	private MessageDigest crcDigest;
+
 	// cached serialized data (for when we're in a fixed representation and want
 	/** The last raw data. */
 	// performance)
@@ -438,17 +460,126 @@ public final class SessionHeader implements ISessionSummary {
 				rawData.write(BinarySerializer.serializeValue(this.fileID));
 				rawData.write(BinarySerializer.serializeValue(this.fileSequence));
 				rawData.write(BinarySerializer.serializeValue(this.fileStartDateTime));
+				this.offsetFileEndDateTime = rawData.size();
 				rawData.write(BinarySerializer.serializeValue(this.fileEndDateTime));
+				this.offsetLastFile = rawData.size();
 				rawData.write(BinarySerializer.serializeValue(this.lastFile));
 			}
 
 			// CRC CALC
 			// Now we need to calculate the header CRC
 			rawData.write(BinarySerializer.calculateCRC(rawData.toByteArray(), rawData.size()));
+
+			// keep a copy so the updatable fields can be changed in place from now on.
+			this.lastHeader = rawData.toByteArray();
+			this.lastHeaderChangedOffset = this.lastHeader.length;
 			return rawData.toByteArray();
 		}
 	}
 
+	/**
+	 * Get the part of the header that has changed since it was last exported or
+	 * written, for updating a file in place. Only the end date, the message
+	 * counts, the file end date and the last file flag can change in place; once
+	 * anything else changes (or one of the dates changes length) the whole header
+	 * has to be exported again with rawData.
+	 *
+	 * @return A buffer over the whole header positioned at the first byte that
+	 *         changed (with nothing remaining if nothing has), or null if the
+	 *         header has to be exported again. The buffer is reused by the next
+	 *         call, and the changes are considered written once it's returned.
+	 */
+	ByteBuffer changedRawData() {
+		synchronized (this.lock) {
+			if ((this.lastRawData == null) || (this.lastHeader == null)) {
+				return null;
+			}
+
+			// the CRC covers everything ahead of it, so it changes with anything else.
+			int crcOffset = this.lastHeader.length - Integer.BYTES;
+			if (this.lastHeaderChangedOffset < crcOffset) {
+				if (this.crcDigest == null) {
+					this.crcDigest = DigestUtils.getMd5Digest();
+				}
+
+				// same as BinarySerializer.calculateCRC, without copying the header.
+				this.crcDigest.update(this.lastHeader, 0, crcOffset);
+				System.arraycopy(this.crcDigest.digest(), 0, this.lastHeader, crcOffset, Integer.BYTES);
+			}
+
+			if ((this.lastHeaderBuffer == null) || (this.lastHeaderBuffer.array() != this.lastHeader)) {
+				this.lastHeaderBuffer = ByteBuffer.wrap(this.lastHeader);
+			}
+
+			this.lastHeaderBuffer.clear();
+			this.lastHeaderBuffer.position(this.lastHeaderChangedOffset);
+			this.lastHeaderChangedOffset = this.lastHeader.length;
+			return this.lastHeaderBuffer;
+		}
+	}
+
+	/**
+	 * Change an updatable field in the cached raw data (and the last header) in
+	 * place. The caller has to hold the lock and have checked that there is raw
+	 * data to change.
+	 *
+	 * @param offset the offset of the field
+	 * @param value  the serialized value, which has to be the same length as the
+	 *               current one
+	 */
+	private void updateRawData(int offset, byte[] value) {
+		System.arraycopy(value, 0, this.lastRawData, offset, value.length);
+		updateLastHeader(offset, value);
+	}
+
+	/**
+	 * Change a field of the last header in place, if we have one. The caller has
+	 * to hold the lock.
+	 *
+	 * @param offset the offset of the field
+	 * @param value  the serialized value, which has to be the same length as the
+	 *               current one
+	 */
+	private void updateLastHeader(int offset, byte[] value) {
+		if (this.lastHeader != null) {
+			System.arraycopy(value, 0, this.lastHeader, offset, value.length);
+			this.lastHeaderChangedOffset = Math.min(this.lastHeaderChangedOffset, offset);
+		}
+	}
+
+	/**
+	 * Change an updatable integer field in the cached raw data in place.
+	 *
+	 * @param offset the offset of the field
+	 * @param value  the value
+	 */
+	private void updateRawData(int offset, int value) {
+		for (int index = Integer.BYTES - 1; index >= 0; index--) {
+			this.lastRawData[offset + index] = (byte) value;
+			if (this.lastHeader != null) {
+				this.lastHeader[offset + index] = (byte) value;
+			}
+			value >>>= 8;
+		}
+
+		if (this.lastHeader != null) {
+			this.lastHeaderChangedOffset = Math.min(this.lastHeaderChangedOffset, offset);
+		}
+	}
+
+	/**
+	 * Get the length of the serialized string (or date) at the provided offset.
+	 *
+	 * @param data   the serialized data
+	 * @param offset the offset of the string
+	 * @return the length, including its length prefix
+	 */
+	private static int serializedStringLength(byte[] data, int offset) {
+		int length = ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+				| ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+		return Integer.BYTES + Math.max(length, 0);
+	}
+
 	/**
 	 * The major version of the binary format of the session header.
 	 *
@@ -960,16 +1091,20 @@ public final class SessionHeader implements ISessionSummary {
 		synchronized (this.lock) {
 			// this is an updatable field, so if we already have the raw data and can update
 			// it, lets do that.
-			if (this.lastRawData != null) {
+			if ((this.lastRawData != null) && !Objects.equals(this.sessionEndDateTime, value)) {
 				// protect against case that should never happen - we have the raw data, but not
 				// the offset to the value.
 				if (this.offsetSessionEndDateTime == 0) {
 					this.lastRawData = null;
 				} else {
-					// update the date at that point.
+					// update the date at that point, unless it's changed length (like a new offset)
 					byte[] binaryValue = BinarySerializer.serializeValue(value);
-					ByteBuffer.wrap(binaryValue).put(this.lastRawData, this.offsetSessionEndDateTime,
-							binaryValue.length);
+					if (binaryValue.length == serializedStringLength(this.lastRawData,
+							this.offsetSessionEndDateTime)) {
+						updateRawData(this.offsetSessionEndDateTime, binaryValue);
+					} else {
+						this.lastRawData = null;
+					}
 				}
 			}
 
@@ -1058,15 +1193,14 @@ public final class SessionHeader implements ISessionSummary {
 		synchronized (this.lock) {
 			// this is an updatable field, so if we already have the raw data and can update
 			// it, lets do that.
-			if (this.lastRawData != null) {
+			if ((this.lastRawData != null) && (this.messageCount != value)) {
 				// protect against case that should never happen - we have the raw data, but not
 				// the offset to the value.
 				if (this.offsetMessageCount == 0) {
 					this.lastRawData = null;
 				} else {
 					// update the number at that point.
-					byte[] binaryValue = BinarySerializer.serializeValue(value);
-					ByteBuffer.wrap(binaryValue).put(this.lastRawData, this.offsetMessageCount, binaryValue.length);
+					updateRawData(this.offsetMessageCount, value);
 				}
 			}
 
@@ -1093,15 +1227,14 @@ public final class SessionHeader implements ISessionSummary {
 		synchronized (this.lock) {
 			// this is an updatable field, so if we already have the raw data and can update
 			// it, lets do that.
-			if (this.lastRawData != null) {
+			if ((this.lastRawData != null) && (this.criticalCount != value)) {
 				// protect against case that should never happen - we have the raw data, but not
 				// the offset to the value.
 				if (this.offsetCriticalCount == 0) {
 					this.lastRawData = null;
 				} else {
 					// update the number at that point.
-					byte[] binaryValue = BinarySerializer.serializeValue(value);
-					ByteBuffer.wrap(binaryValue).put(this.lastRawData, this.offsetCriticalCount, binaryValue.length);
+					updateRawData(this.offsetCriticalCount, value);
 				}
 			}
 
@@ -1128,15 +1261,14 @@ public final class SessionHeader implements ISessionSummary {
 		synchronized (this.lock) {
 			// this is an updatable field, so if we already have the raw data and can update
 			// it, lets do that.
-			if (this.lastRawData != null) {
+			if ((this.lastRawData != null) && (this.errorCount != value)) {
 				// protect against case that should never happen - we have the raw data, but not
 				// the offset to the value.
 				if (this.offsetErrorCount == 0) {
 					this.lastRawData = null;
 				} else {
 					// update the number at that point.
-					byte[] binaryValue = BinarySerializer.serializeValue(value);
-					ByteBuffer.wrap(binaryValue).put(this.lastRawData, this.offsetErrorCount, binaryValue.length);
+					updateRawData(this.offsetErrorCount, value);
 				}
 			}
 
@@ -1163,15 +1295,14 @@ public final class SessionHeader implements ISessionSummary {
 		synchronized (this.lock) {
 			// this is an updatable field, so if we already have the raw data and can update
 			// it, lets do that.
-			if (this.lastRawData != null) {
+			if ((this.lastRawData != null) && (this.warningCount != value)) {
 				// protect against case that should never happen - we have the raw data, but not
 				// the offset to the value.
 				if (this.offsetWarningCount == 0) {
 					this.lastRawData = null;
 				} else {
 					// update the number at that point.
-					byte[] binaryValue = BinarySerializer.serializeValue(value);
-					ByteBuffer.wrap(binaryValue).put(this.lastRawData, this.offsetWarningCount, binaryValue.length);
+					updateRawData(this.offsetWarningCount, value);
 				}
 			}
 
@@ -1706,6 +1837,7 @@ public final class SessionHeader implements ISessionSummary {
 		synchronized (this.lock) {
 			this.fileID = value;
 			this.hasFileInfo = true;
+			this.lastHeader = null;
 		}
 	}
 
@@ -1726,6 +1858,7 @@ public final class SessionHeader implements ISessionSummary {
 	public void setFileStartDateTime(OffsetDateTime value) {
 		synchronized (this.lock) {
 			this.fileStartDateTime = value;
+			this.lastHeader = null;
 		}
 	}
 
@@ -1746,6 +1879,17 @@ public final class SessionHeader implements ISessionSummary {
 	 */
 	public void setFileEndDateTime(OffsetDateTime value) {
 		synchronized (this.lock) {
+			// this is an updatable field, so if we already have the header and can update it,
+			// lets do that.
+			if ((this.lastHeader != null) && this.hasFileInfo && !Objects.equals(this.fileEndDateTime, value)) {
+				byte[] binaryValue = BinarySerializer.serializeValue(value);
+				if (binaryValue.length == this.offsetLastFile - this.offsetFileEndDateTime) {
+					updateLastHeader(this.offsetFileEndDateTime, binaryValue);
+				} else {
+					this.lastHeader = null;
+				}
+			}
+
 			this.fileEndDateTime = value;
 		}
 	}
@@ -1767,6 +1911,7 @@ public final class SessionHeader implements ISessionSummary {
 	public void setFileSequence(int value) {
 		synchronized (this.lock) {
 			this.fileSequence = value;
+			this.lastHeader = null;
 		}
 	}
 
@@ -1837,6 +1982,10 @@ public final class SessionHeader implements ISessionSummary {
 	 */
 	public void setIsLastFile(boolean value) {
 		synchronized (this.lock) {
+			if ((this.lastHeader != null) && this.hasFileInfo && (this.lastFile != value)) {
+				updateLastHeader(this.offsetLastFile, BinarySerializer.serializeValue(value));
+			}
+
 			this.lastFile = value;
 		}
 	}
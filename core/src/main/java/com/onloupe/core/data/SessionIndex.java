@@ -0,0 +1,546 @@
+package com.onloupe.core.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.onloupe.core.serialization.FieldReader;
+import com.onloupe.core.serialization.GenericPacket;
+import com.onloupe.core.serialization.GibraltarSerializationException;
+import com.onloupe.core.serialization.IPacket;
+import com.onloupe.core.serialization.PacketDefinition;
+import com.onloupe.core.serialization.PacketReader;
+import com.onloupe.core.serialization.PacketStreamState;
+import com.onloupe.core.util.TimeConversion;
+
+
+/**
+ * A sparse index of the packet stream of a GLF file, so reading can start near
+ * a sequence number or time instead of decompressing the file from the start.
+ *
+ * The index is a list of checkpoints, each a point the packet stream can be
+ * decompressed from along with the sequence and timestamp of the first packet
+ * after it, plus the packet definitions and table strings the packets after
+ * the checkpoints rely on. GLFWriter writes one alongside the file as it goes
+ * (see SessionIndexWriter), resetting the compressor at each checkpoint and
+ * writing the threads, users and metrics again after it. Where that index is
+ * missing or doesn't belong to the file, it can be rebuilt from the file alone;
+ * a GZip checkpoint then carries the 32KB of data before it for the inflater,
+ * reading skips from there to the next packet, and messages after a rebuilt
+ * checkpoint may not have the thread they were logged on.
+ *
+ * The index file starts with the format version, the id of the file it's for
+ * and the codec, followed by definition, string and checkpoint records in the
+ * order they were written.
+ */
+public class SessionIndex {
+
+	/** The extension of index files, which go alongside their GLF file. */
+	public static final String INDEX_EXTENSION = "gli";
+
+	/** The number of packets between checkpoints of a rebuilt index. */
+	public static final int DEFAULT_PACKET_INTERVAL = 10000;
+
+	/** The version of the index file format. */
+	static final int FORMAT_VERSION = 1;
+
+	/** The record of a packet definition. */
+	static final int DEFINITION_RECORD = 1;
+
+	/** The record of a table string. */
+	static final int STRING_RECORD = 2;
+
+	/** The record of a checkpoint. */
+	static final int CHECKPOINT_RECORD = 3;
+
+	/** The id of the file the index is for. */
+	private final UUID fileId;
+
+	/** The codec of the file. */
+	private final CompressionCodec codec;
+
+	/** The packet definitions of the file, in the order they were written. */
+	private final List<PacketDefinition> definitions = new ArrayList<PacketDefinition>();
+
+	/** The table strings of the file, in the order they were written. */
+	private final List<String> strings = new ArrayList<String>();
+
+	/** The checkpoints, in the order they were written. */
+	private final List<SessionIndexCheckpoint> checkpoints = new ArrayList<SessionIndexCheckpoint>();
+
+	/**
+	 * Instantiates a new, empty session index.
+	 *
+	 * @param fileId the id of the file the index is for
+	 * @param codec  the codec of the file
+	 */
+	private SessionIndex(UUID fileId, CompressionCodec codec) {
+		this.fileId = fileId;
+		this.codec = codec;
+	}
+
+	/**
+	 * The index file that goes with a GLF file.
+	 *
+	 * @param sessionFile the session file
+	 * @return the index file
+	 */
+	public static File getIndexFile(File sessionFile) {
+		String name = sessionFile.getName();
+		int extension = name.lastIndexOf('.');
+		String baseName = (extension > 0) ? name.substring(0, extension) : name;
+		return new File(sessionFile.getParentFile(), baseName + "." + INDEX_EXTENSION);
+	}
+
+	/**
+	 * Load the index of a GLF file from alongside it, or if it's missing or
+	 * doesn't belong to the file rebuild it and save it for next time.
+	 *
+	 * @param sessionFile the session file
+	 * @param reader      the reader for the session file
+	 * @return the index
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static SessionIndex open(File sessionFile, GLFReader reader) throws IOException {
+		File indexFile = getIndexFile(sessionFile);
+		if (indexFile.isFile()) {
+			try (InputStream stream = new FileInputStream(indexFile)) {
+				SessionIndex index = read(stream, reader);
+				if (index != null) {
+					return index;
+				}
+			}
+		}
+
+		SessionIndex index = rebuild(reader, DEFAULT_PACKET_INTERVAL);
+		try {
+			index.save(indexFile);
+		} catch (IOException e) {
+			// we may not be able to write next to the file; the index is still good.
+			indexFile.delete();
+		}
+		return index;
+	}
+
+	/**
+	 * Read an index, checking that it's for the GLF file.
+	 *
+	 * @param stream the index
+	 * @param reader the reader for the session file
+	 * @return the index, or null if it isn't for the file or is damaged
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static SessionIndex read(InputStream stream, GLFReader reader) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+		FieldReader fieldReader;
+		try {
+			fieldReader = new FieldReader(input);
+		} catch (NoSuchMethodException e) {
+			throw new IOException("Unable to create the field reader.", e);
+		}
+
+		SessionIndex index;
+		try {
+			if (fieldReader.readPositiveInt() != FORMAT_VERSION) {
+				return null;
+			}
+
+			UUID fileId = fieldReader.readGuid();
+			CompressionCodec codec = CompressionCodec.forValue(fieldReader.readPositiveInt());
+			if (!fileId.equals(identify(reader.getSessionHeader()))
+					|| codec != reader.getFileHeader().getCompressionCodec()) {
+				return null;
+			}
+			index = new SessionIndex(fileId, codec);
+		} catch (EOFException e) {
+			return null;
+		}
+
+		long dataEnd = reader.findDataEnd();
+		try {
+			while (true) {
+				int recordType = fieldReader.readPositiveInt();
+				if (recordType == DEFINITION_RECORD) {
+					index.definitions.add(PacketDefinition.readPacketDefinition(fieldReader));
+				} else if (recordType == STRING_RECORD) {
+					index.strings.add(fieldReader.readString());
+				} else if (recordType == CHECKPOINT_RECORD) {
+					SessionIndexCheckpoint checkpoint = readCheckpoint(fieldReader, input);
+					if (checkpoint.getOffset() > dataEnd || checkpoint.getDefinitionCount() > index.definitions.size()
+							|| checkpoint.getStringCount() > index.strings.size()) {
+						return null; // it's for a different version of the file.
+					}
+					index.checkpoints.add(checkpoint);
+				} else {
+					return null;
+				}
+			}
+		} catch (EOFException e) {
+			// the end, or the last checkpoint was still being written.
+		} catch (GibraltarSerializationException | IllegalArgumentException e) {
+			return null;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Rebuild the index of a GLF file by reading through it.
+	 *
+	 * @param reader         the reader for the session file
+	 * @param packetInterval the number of packets between checkpoints
+	 * @return the index
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static SessionIndex rebuild(GLFReader reader, int packetInterval) throws IOException {
+		SessionIndex index = new SessionIndex(identify(reader.getSessionHeader()),
+				reader.getFileHeader().getCompressionCodec());
+
+		try (RestartPointScanner scanner = RestartPointScanner.open(reader)) {
+			PositionInputStream stream = new PositionInputStream(scanner);
+			PacketReader packetReader;
+			try {
+				packetReader = new PacketReader(stream, true, reader.getMajorVersion(), reader.getMinorVersion());
+			} catch (NoSuchMethodException e) {
+				throw new IOException("Unable to create the packet reader.", e);
+			}
+			PacketStreamState streamState = packetReader.getStreamState();
+
+			RestartPointScanner.RestartPoint restartPoint = null;
+			long skip = 0;
+			int definitionCount = 0;
+			int stringCount = 0;
+			LocalDateTime referenceTime = null;
+			long packetCount = packetInterval;
+			while (true) {
+				long position = stream.getPosition();
+				if (stream.peek() <= 0) {
+					break; // the end, or the preallocated space after it.
+				}
+
+				// a restart point is rarely at the start of a packet, so the checkpoint
+				// skips from the last one before it, with the state as of the packet.
+				RestartPointScanner.RestartPoint nextPoint = scanner.restartPointBefore(position);
+				if (nextPoint != null && restartPoint == null && packetCount >= packetInterval) {
+					restartPoint = nextPoint;
+					skip = position - nextPoint.position;
+					definitionCount = packetReader.getDefinitionCount();
+					stringCount = streamState.getStringCount();
+					referenceTime = streamState.getReferenceTime();
+				}
+
+				IPacket packet = readPacket(packetReader);
+				if (packet == null) {
+					break;
+				}
+				packetCount++;
+
+				// threads and the like are written again after checkpoints with their
+				// original sequence, so the checkpoint goes by the packet after them.
+				if (restartPoint != null && packet instanceof GenericPacket
+						&& !((GenericPacket) packet).getPacketDefinition().isCachable()) {
+					GenericPacket genericPacket = (GenericPacket) packet;
+					OffsetDateTime timestamp = GLFPacketReader.getTimestamp(genericPacket, "TimeStamp");
+					if (timestamp != null) {
+						index.checkpoints.add(new SessionIndexCheckpoint(
+								GLFPacketReader.getLong(genericPacket, "Sequence"), timestamp, restartPoint.offset,
+								skip, restartPoint.dictionary, definitionCount, stringCount, referenceTime));
+						restartPoint = null;
+						packetCount = 0;
+					}
+				}
+			}
+
+			for (int typeIndex = 0; typeIndex < packetReader.getDefinitionCount(); typeIndex++) {
+				index.definitions.add(packetReader.getDefinition(typeIndex));
+			}
+			for (int stringId = 0; stringId < streamState.getStringCount(); stringId++) {
+				index.strings.add(streamState.getString(stringId));
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Save the index to a file, replacing it.
+	 *
+	 * @param indexFile the index file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final void save(File indexFile) throws IOException {
+		try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+			write(stream);
+		}
+	}
+
+	/**
+	 * Write the index to a stream.
+	 *
+	 * @param stream the stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final void write(OutputStream stream) throws IOException {
+		SessionIndexWriter writer = new SessionIndexWriter(stream, this.fileId, this.codec);
+		for (SessionIndexCheckpoint checkpoint : this.checkpoints) {
+			while (writer.getDefinitionCount() < checkpoint.getDefinitionCount()) {
+				writer.addDefinition(this.definitions.get(writer.getDefinitionCount()));
+			}
+			while (writer.getStringCount() < checkpoint.getStringCount()) {
+				writer.addString(this.strings.get(writer.getStringCount()));
+			}
+			writer.addCheckpoint(checkpoint);
+		}
+	}
+
+	/**
+	 * The checkpoints, in the order they're in the file.
+	 *
+	 * @return the checkpoints
+	 */
+	public final List<SessionIndexCheckpoint> getCheckpoints() {
+		return Collections.unmodifiableList(this.checkpoints);
+	}
+
+	/**
+	 * Find the last checkpoint before the packet with a sequence number.
+	 *
+	 * @param sequence the sequence
+	 * @return the checkpoint, or null if the packet is before them all and has to
+	 *         be read from the start
+	 */
+	public final SessionIndexCheckpoint findSequence(long sequence) {
+		// sequences only go up, so we can search.
+		int low = 0;
+		int high = this.checkpoints.size() - 1;
+		SessionIndexCheckpoint found = null;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			SessionIndexCheckpoint checkpoint = this.checkpoints.get(middle);
+			if (checkpoint.getSequence() <= sequence) {
+				found = checkpoint;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find the last checkpoint before the first packet at or after a time.
+	 * Timestamps from different threads can be a little out of order, so this
+	 * only finds the checkpoint for a time if it's after the first packet of
+	 * the checkpoint.
+	 *
+	 * @param timestamp the timestamp
+	 * @return the checkpoint, or null if the time is before them all and the
+	 *         file has to be read from the start
+	 */
+	public final SessionIndexCheckpoint findTimestamp(OffsetDateTime timestamp) {
+		SessionIndexCheckpoint found = null;
+		for (SessionIndexCheckpoint checkpoint : this.checkpoints) {
+			if (!checkpoint.getTimestamp().isBefore(timestamp)) {
+				break;
+			}
+			found = checkpoint;
+		}
+		return found;
+	}
+
+	/**
+	 * Open a packet reader on the file at a checkpoint. The packets before the
+	 * one wanted are read too, so skip those by sequence or timestamp.
+	 *
+	 * @param reader     the reader for the session file
+	 * @param checkpoint the checkpoint, or null to read from the start
+	 * @return the packet reader
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final GLFPacketReader openReader(GLFReader reader, SessionIndexCheckpoint checkpoint) throws IOException {
+		return (checkpoint == null) ? new GLFPacketReader(reader) : new GLFPacketReader(reader, this, checkpoint);
+	}
+
+	/**
+	 * Give a packet reader starting at a checkpoint what came before it.
+	 *
+	 * @param packetReader the packet reader
+	 * @param checkpoint   the checkpoint
+	 */
+	final void prime(PacketReader packetReader, SessionIndexCheckpoint checkpoint) {
+		for (int index = packetReader.getDefinitionCount(); index < checkpoint.getDefinitionCount(); index++) {
+			packetReader.addDefinition(this.definitions.get(index));
+		}
+
+		PacketStreamState streamState = packetReader.getStreamState();
+		for (int index = streamState.getStringCount(); index < checkpoint.getStringCount(); index++) {
+			streamState.addString(this.strings.get(index));
+		}
+		streamState.setReferenceTime(checkpoint.getReferenceTime());
+	}
+
+	/**
+	 * The id an index uses to tell which file it's for: the file id of a session
+	 * fragment, or the session id of a whole session.
+	 *
+	 * @param sessionHeader the session header of the file
+	 * @return the id
+	 */
+	static UUID identify(SessionHeader sessionHeader) {
+		return sessionHeader.getHasFileInfo() ? sessionHeader.getFileId() : sessionHeader.getId();
+	}
+
+	/**
+	 * Read the rest of a checkpoint record.
+	 *
+	 * @param fieldReader the field reader
+	 * @param input       the stream the field reader reads, for the dictionary
+	 * @return the checkpoint
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static SessionIndexCheckpoint readCheckpoint(FieldReader fieldReader, DataInputStream input)
+			throws IOException {
+		long sequence = fieldReader.readPositiveLong();
+		OffsetDateTime timestamp = fieldReader.readDateTimeOffset();
+		long offset = fieldReader.readPositiveLong();
+		long skip = fieldReader.readPositiveLong();
+		int definitionCount = fieldReader.readPositiveInt();
+		int stringCount = fieldReader.readPositiveInt();
+		LocalDateTime referenceTime = null;
+		if (fieldReader.readBool()) {
+			referenceTime = TimeConversion.fromEpochTicks(fieldReader.readPositiveLong(), ZoneOffset.UTC)
+					.toLocalDateTime();
+		}
+
+		byte[] dictionary = null;
+		int dictionaryLength = fieldReader.readPositiveInt();
+		if (dictionaryLength > RestartPointScanner.WINDOW_SIZE) {
+			throw new IllegalArgumentException("The dictionary is longer than any deflate window.");
+		} else if (dictionaryLength > 0) {
+			dictionary = new byte[dictionaryLength];
+			input.readFully(dictionary);
+		}
+
+		return new SessionIndexCheckpoint(sequence, timestamp, offset, skip, dictionary, definitionCount, stringCount,
+				referenceTime);
+	}
+
+	/**
+	 * Read the next packet while rebuilding, treating a damaged or unfinished
+	 * end of the file as the end.
+	 *
+	 * @param packetReader the packet reader
+	 * @return the packet, or null at the end
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static IPacket readPacket(PacketReader packetReader) throws IOException {
+		try {
+			return packetReader.read();
+		} catch (EOFException | UncheckedIOException | GibraltarSerializationException e) {
+			return null;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Keeps track of how much of the decompressed stream the packet reader has
+	 * read, so packets can be matched up with restart points.
+	 */
+	private static class PositionInputStream extends FilterInputStream {
+
+		/** The number of bytes read so far. */
+		private long position;
+
+		/**
+		 * Instantiates a new position input stream.
+		 *
+		 * @param in the decompressed stream
+		 */
+		PositionInputStream(InputStream in) {
+			super(new BufferedInputStream(in));
+		}
+
+		/**
+		 * The number of bytes read so far.
+		 *
+		 * @return the position
+		 */
+		long getPosition() {
+			return this.position;
+		}
+
+		/**
+		 * Look at the next byte without reading it.
+		 *
+		 * @return the next byte, or -1 at the end
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		int peek() throws IOException {
+			this.in.mark(1);
+			int value = this.in.read();
+			this.in.reset();
+			return value;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			int value = this.in.read();
+			if (value >= 0) {
+				this.position++;
+			}
+			return value;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = this.in.read(b, off, len);
+			if (count > 0) {
+				this.position += count;
+			}
+			return count;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#skip(long)
+		 */
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = this.in.skip(n);
+			this.position += skipped;
+			return skipped;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#markSupported()
+		 */
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.onloupe.core.data;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+
+
+/**
+ * A point in the packet stream of a GLF file that reading can start from,
+ * recorded in a SessionIndex.
+ *
+ * Besides where to start decompressing, a checkpoint has what the packets after
+ * it depend on from before it: how many packet definitions and table strings
+ * had been written, and the reference time relative timestamps are written
+ * from. The definitions and strings themselves are kept once in the index.
+ */
+public class SessionIndexCheckpoint {
+
+	/** The sequence of the first packet after the checkpoint that has one. */
+	private final long sequence;
+
+	/** The timestamp of the first packet after the checkpoint that has one. */
+	private final OffsetDateTime timestamp;
+
+	/** The offset in the file to start decompressing at. */
+	private final long offset;
+
+	/** The number of decompressed bytes from the offset to the first packet. */
+	private final long skip;
+
+	/** The data before the offset that later data may refer to, if any. */
+	private final byte[] dictionary;
+
+	/** The number of packet definitions written before the checkpoint. */
+	private final int definitionCount;
+
+	/** The number of table strings written before the checkpoint. */
+	private final int stringCount;
+
+	/** The reference time of the packet stream, if a timestamp had been written. */
+	private final LocalDateTime referenceTime;
+
+	/**
+	 * Instantiates a new session index checkpoint.
+	 *
+	 * @param sequence        the sequence of the first packet after the checkpoint
+	 * @param timestamp       the timestamp of the first packet after the checkpoint
+	 * @param offset          the offset in the file to start decompressing at
+	 * @param skip            the number of decompressed bytes from the offset to
+	 *                        the first packet
+	 * @param dictionary      the data before the offset that later data may refer
+	 *                        to, or null if there isn't any
+	 * @param definitionCount the number of packet definitions written before the
+	 *                        checkpoint
+	 * @param stringCount     the number of table strings written before the
+	 *                        checkpoint
+	 * @param referenceTime   the reference time of the packet stream, or null if
+	 *                        no timestamp had been written
+	 */
+	SessionIndexCheckpoint(long sequence, OffsetDateTime timestamp, long offset, long skip, byte[] dictionary,
+			int definitionCount, int stringCount, LocalDateTime referenceTime) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.offset = offset;
+		this.skip = skip;
+		this.dictionary = dictionary;
+		this.definitionCount = definitionCount;
+		this.stringCount = stringCount;
+		this.referenceTime = referenceTime;
+	}
+
+	/**
+	 * Gets the sequence of the first packet after the checkpoint that has one.
+	 *
+	 * @return the sequence
+	 */
+	public final long getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * Gets the timestamp of the first packet after the checkpoint that has one.
+	 *
+	 * @return the timestamp
+	 */
+	public final OffsetDateTime getTimestamp() {
+		return this.timestamp;
+	}
+
+	/**
+	 * Gets the offset in the file to start decompressing at.
+	 *
+	 * @return the offset
+	 */
+	public final long getOffset() {
+		return this.offset;
+	}
+
+	/**
+	 * Gets the number of decompressed bytes from the offset to the first packet,
+	 * which is only more than zero in a rebuilt index.
+	 *
+	 * @return the skip
+	 */
+	final long getSkip() {
+		return this.skip;
+	}
+
+	/**
+	 * Gets the data before the offset that later data may refer to.
+	 *
+	 * @return the dictionary, or null if there isn't one
+	 */
+	final byte[] getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 * Gets the number of packet definitions written before the checkpoint.
+	 *
+	 * @return the definition count
+	 */
+	public final int getDefinitionCount() {
+		return this.definitionCount;
+	}
+
+	/**
+	 * Gets the number of table strings written before the checkpoint.
+	 *
+	 * @return the string count
+	 */
+	public final int getStringCount() {
+		return this.stringCount;
+	}
+
+	/**
+	 * Gets the reference time of the packet stream at the checkpoint.
+	 *
+	 * @return the reference time, or null if no timestamp had been written
+	 */
+	public final LocalDateTime getReferenceTime() {
+		return this.referenceTime;
+	}
+}
@@ -0,0 +1,177 @@
+package com.onloupe.core.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import com.onloupe.core.serialization.FieldWriter;
+import com.onloupe.core.serialization.PacketDefinition;
+import com.onloupe.core.util.TimeConversion;
+
+
+/**
+ * Appends to the index of a GLF file, in the format SessionIndex reads.
+ *
+ * Definitions and strings are buffered until the next checkpoint, then written
+ * out with it and flushed, so the index never has a checkpoint that depends on
+ * something it doesn't have. A process that stops part way through a write
+ * leaves at worst an incomplete last checkpoint, which the reader ignores.
+ */
+class SessionIndexWriter implements Closeable {
+
+	/** The stream. */
+	private final OutputStream stream;
+
+	/** The records written since the last checkpoint. */
+	private FieldWriter pending;
+
+	/** The number of packet definitions added so far. */
+	private int definitionCount;
+
+	/** The number of table strings added so far. */
+	private int stringCount;
+
+	/**
+	 * Start a new index, writing its header.
+	 *
+	 * @param stream the stream to write the index to, which should be empty
+	 * @param fileId the id of the file being indexed, from SessionIndex.identify
+	 * @param codec  the codec the file's packet stream is compressed with
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	SessionIndexWriter(OutputStream stream, UUID fileId, CompressionCodec codec) throws IOException {
+		this.stream = stream;
+
+		FieldWriter header = newFieldWriter();
+		header.writePositive(SessionIndex.FORMAT_VERSION);
+		header.write(fileId);
+		header.writePositive(codec.getValue());
+		this.stream.write(header.toArray());
+		this.stream.flush();
+	}
+
+	/**
+	 * The number of packet definitions added so far.
+	 *
+	 * @return the definition count
+	 */
+	public final int getDefinitionCount() {
+		return this.definitionCount;
+	}
+
+	/**
+	 * The number of table strings added so far.
+	 *
+	 * @return the string count
+	 */
+	public final int getStringCount() {
+		return this.stringCount;
+	}
+
+	/**
+	 * Add the next packet definition of the packet stream.
+	 *
+	 * @param definition the packet definition
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final void addDefinition(PacketDefinition definition) throws IOException {
+		FieldWriter writer = getPending();
+		writer.writePositive(SessionIndex.DEFINITION_RECORD);
+		definition.writeDefinition(writer);
+		this.definitionCount++;
+	}
+
+	/**
+	 * Add the next string of the packet stream's string table.
+	 *
+	 * @param value the string
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final void addString(String value) throws IOException {
+		FieldWriter writer = getPending();
+		writer.writePositive(SessionIndex.STRING_RECORD);
+		writer.write(value);
+		this.stringCount++;
+	}
+
+	/**
+	 * Add a checkpoint, writing it out along with the definitions and strings
+	 * added before it.
+	 *
+	 * @param checkpoint the checkpoint
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final void addCheckpoint(SessionIndexCheckpoint checkpoint) throws IOException {
+		if (checkpoint.getDefinitionCount() > this.definitionCount
+				|| checkpoint.getStringCount() > this.stringCount) {
+			throw new IllegalStateException(
+					"The checkpoint depends on packet definitions or strings that haven't been added to the index.");
+		}
+
+		FieldWriter writer = getPending();
+		writer.writePositive(SessionIndex.CHECKPOINT_RECORD);
+		writer.writePositive(checkpoint.getSequence());
+		writer.write(checkpoint.getTimestamp());
+		writer.writePositive(checkpoint.getOffset());
+		writer.writePositive(checkpoint.getSkip());
+		writer.writePositive(checkpoint.getDefinitionCount());
+		writer.writePositive(checkpoint.getStringCount());
+		writer.write(checkpoint.getReferenceTime() != null);
+		if (checkpoint.getReferenceTime() != null) {
+			writer.writePositive(TimeConversion.epochTicks(checkpoint.getReferenceTime().atOffset(ZoneOffset.UTC)));
+		}
+
+		// the dictionary follows as it is.
+		byte[] dictionary = checkpoint.getDictionary();
+		int dictionaryLength = (dictionary == null) ? 0 : dictionary.length;
+		writer.writePositive(dictionaryLength);
+		this.stream.write(writer.toArray());
+		if (dictionaryLength > 0) {
+			this.stream.write(dictionary);
+		}
+		this.stream.flush();
+		this.pending = null;
+	}
+
+	/**
+	 * Performs application-defined tasks associated with freeing, releasing, or
+	 * resetting managed resources. Anything added since the last checkpoint is
+	 * dropped, since nothing in the index needs it.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.stream.close();
+	}
+
+	/**
+	 * Gets the writer for the records since the last checkpoint.
+	 *
+	 * @return the field writer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private FieldWriter getPending() throws IOException {
+		if (this.pending == null) {
+			this.pending = newFieldWriter();
+		}
+		return this.pending;
+	}
+
+	/**
+	 * Create a field writer for the index, which is always written with the
+	 * default protocol so its strings are inline.
+	 *
+	 * @return the field writer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static FieldWriter newFieldWriter() throws IOException {
+		try {
+			return new FieldWriter();
+		} catch (NoSuchMethodException e) {
+			throw new IOException("Unable to create the field writer.", e);
+		}
+	}
+}
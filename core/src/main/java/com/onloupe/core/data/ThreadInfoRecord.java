@@ -0,0 +1,105 @@
+package com.onloupe.core.data;
+
+import com.onloupe.core.serialization.GenericPacket;
+import com.onloupe.model.IThreadInfo;
+
+
+/**
+ * A thread read from a GLF file by GLFPacketReader.
+ */
+public class ThreadInfoRecord implements IThreadInfo {
+
+	/** The thread index. */
+	private final long threadIndex;
+
+	/** The thread id. */
+	private final long threadId;
+
+	/** The thread name. */
+	private final String threadName;
+
+	/** The domain id. */
+	private final int domainId;
+
+	/** The domain name. */
+	private final String domainName;
+
+	/** The background. */
+	private final boolean background;
+
+	/** The thread pool thread. */
+	private final boolean threadPoolThread;
+
+	/**
+	 * Instantiates a new thread info record from a thread info packet.
+	 *
+	 * @param packet the packet
+	 */
+	ThreadInfoRecord(GenericPacket packet) {
+		this.threadIndex = GLFPacketReader.getLong(packet, "ThreadIndex");
+		this.threadId = GLFPacketReader.getLong(packet, "ThreadId");
+		this.threadName = GLFPacketReader.getString(packet, "ThreadName");
+		this.domainId = (int) GLFPacketReader.getLong(packet, "DomainId");
+		this.domainName = GLFPacketReader.getString(packet, "DomainName");
+		this.background = GLFPacketReader.getBool(packet, "IsBackground");
+		this.threadPoolThread = GLFPacketReader.getBool(packet, "IsThreadPoolThread");
+	}
+
+	/**
+	 * The index of the thread within the session, which log messages refer to it
+	 * by.
+	 *
+	 * @return the thread index
+	 */
+	public final long getThreadIndex() {
+		return this.threadIndex;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.IThreadInfo#getThreadId()
+	 */
+	@Override
+	public final long getThreadId() {
+		return this.threadId;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.IThreadInfo#getThreadName()
+	 */
+	@Override
+	public final String getThreadName() {
+		return this.threadName;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.IThreadInfo#getDomainId()
+	 */
+	@Override
+	public final int getDomainId() {
+		return this.domainId;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.IThreadInfo#getDomainName()
+	 */
+	@Override
+	public final String getDomainName() {
+		return this.domainName;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.IThreadInfo#isBackground()
+	 */
+	@Override
+	public final boolean isBackground() {
+		return this.background;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.model.IThreadInfo#isThreadPoolThread()
+	 */
+	@Override
+	public final boolean isThreadPoolThread() {
+		return this.threadPoolThread;
+	}
+}
@@ -0,0 +1,664 @@
+package com.onloupe.core.logging;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.onloupe.agent.IMessageSourceProvider;
+import com.onloupe.agent.logging.MessageSourceProvider;
+import com.onloupe.core.messaging.IMessengerPacket;
+import com.onloupe.core.util.GibraltarThreadFactory;
+import com.onloupe.core.util.SystemUtils;
+import com.onloupe.model.log.LogMessageSeverity;
+
+
+/**
+ * Writes log messages to Loupe from a background thread, so the threads that
+ * log them only have to queue them.
+ *
+ * Messages are copied into slots of a fixed size queue made when the writer is
+ * started, and a drainer thread takes as many as a batch at a time, makes
+ * their packets and writes them to Loupe together. Whatever needs the logging
+ * thread, like its caller information, has to be worked out before the message
+ * is queued. Messages keep the time they were logged, not the time they were
+ * written to Loupe; the publisher only moves a time forward if it would
+ * otherwise fall before a packet ahead of it.
+ *
+ * When the queue is four fifths full, messages less severe than the discard
+ * severity are discarded to keep room for the rest. When it's completely full,
+ * logging threads wait for room unless the writer never blocks, in which case
+ * the message is dropped. Both are counted.
+ *
+ * A batch with a message at least as severe as the flush severity is written
+ * waiting for commit, and the thread that logged the message waits until it
+ * has been, so errors reach the session file before the application carries
+ * on. The last of the queue is also written waiting for commit when the writer
+ * is closed.
+ */
+public class AsyncLogWriter implements Closeable {
+
+	/** The default number of messages the queue holds. */
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+	/** The default most messages to write to Loupe at once. */
+	public static final int DEFAULT_BATCH_SIZE = 128;
+
+	/** The default milliseconds to wait for the queue to drain when closed. */
+	public static final long DEFAULT_MAX_FLUSH_TIME = 1000;
+
+	/** The log system the messages come from. */
+	private final String logSystem;
+
+	/** The number of messages the queue holds. */
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+
+	/** The most messages to write to Loupe at once. */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/** Messages less severe than this are discarded when the queue is nearly full. */
+	private LogMessageSeverity discardSeverity = LogMessageSeverity.INFORMATION;
+
+	/** Batches with messages this severe or worse are written waiting for commit. */
+	private LogMessageSeverity flushSeverity;
+
+	/** True to drop messages rather than wait when the queue is full. */
+	private boolean neverBlock;
+
+	/** The milliseconds to wait for the queue to drain when closed. */
+	private long maxFlushTime = DEFAULT_MAX_FLUSH_TIME;
+
+	/** The lock over the queue. */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Signalled when a message is queued. */
+	private final Condition notEmpty = this.lock.newCondition();
+
+	/** Signalled when messages are taken off the queue. */
+	private final Condition notFull = this.lock.newCondition();
+
+	/** Signalled when a batch has been written or the drainer stops. */
+	private final Condition written = this.lock.newCondition();
+
+	/** The slots of the queue, null until started. */
+	private Entry[] entries;
+
+	/** The slot of the oldest message. */
+	private int head;
+
+	/** The number of messages queued. */
+	private int count;
+
+	/** The number of messages queued from which less severe ones are discarded. */
+	private int discardThreshold;
+
+	/** True once closed. */
+	private boolean closed;
+
+	/** The drainer thread. */
+	private Thread drainer;
+
+	/** True once the drainer thread has stopped. */
+	private boolean drained;
+
+	/** The number of messages ever queued. */
+	private long queuedTotal;
+
+	/** The number of messages ever taken off the queue and written. */
+	private long writtenTotal;
+
+	/** The zone messages are timestamped in, local as the publisher's are. */
+	private final ZoneId zone = ZoneId.systemDefault();
+
+	/** The messages dropped because the queue was full. */
+	private volatile long droppedCount;
+
+	/** The messages discarded because the queue was nearly full. */
+	private volatile long discardedCount;
+
+	/**
+	 * Instantiates a new async log writer.
+	 *
+	 * @param logSystem the log system the messages come from
+	 */
+	public AsyncLogWriter(String logSystem) {
+		this.logSystem = logSystem;
+	}
+
+	/**
+	 * Gets the number of messages the queue holds.
+	 *
+	 * @return the queue size
+	 */
+	public int getQueueSize() {
+		return this.queueSize;
+	}
+
+	/**
+	 * Sets the number of messages the queue holds, which takes effect when the
+	 * writer is started.
+	 *
+	 * @param value the new queue size
+	 */
+	public void setQueueSize(int value) {
+		this.queueSize = value;
+	}
+
+	/**
+	 * Gets the most messages written to Loupe at once.
+	 *
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * Sets the most messages written to Loupe at once, which takes effect when the
+	 * writer is started.
+	 *
+	 * @param value the new batch size
+	 */
+	public void setBatchSize(int value) {
+		this.batchSize = value;
+	}
+
+	/**
+	 * Gets the severity below which messages are discarded when the queue is
+	 * nearly full.
+	 *
+	 * @return the discard severity, or null if nothing is discarded
+	 */
+	public LogMessageSeverity getDiscardSeverity() {
+		return this.discardSeverity;
+	}
+
+	/**
+	 * Sets the severity below which messages are discarded when the queue is
+	 * nearly full.
+	 *
+	 * @param value the new discard severity, or null to discard nothing
+	 */
+	public void setDiscardSeverity(LogMessageSeverity value) {
+		this.discardSeverity = value;
+	}
+
+	/**
+	 * Gets the severity at which a batch is written waiting for commit.
+	 *
+	 * @return the flush severity, or null if batches are only queued
+	 */
+	public LogMessageSeverity getFlushSeverity() {
+		return this.flushSeverity;
+	}
+
+	/**
+	 * Sets the severity at which a batch is written waiting for commit.
+	 *
+	 * @param value the new flush severity, or null to only queue batches
+	 */
+	public void setFlushSeverity(LogMessageSeverity value) {
+		this.flushSeverity = value;
+	}
+
+	/**
+	 * Indicates if messages are dropped rather than waiting when the queue is full.
+	 *
+	 * @return true, if the writer never blocks
+	 */
+	public boolean getNeverBlock() {
+		return this.neverBlock;
+	}
+
+	/**
+	 * Sets whether messages are dropped rather than waiting when the queue is full.
+	 *
+	 * @param value true to never block
+	 */
+	public void setNeverBlock(boolean value) {
+		this.neverBlock = value;
+	}
+
+	/**
+	 * Gets the milliseconds to wait for the queue to drain when closed.
+	 *
+	 * @return the max flush time
+	 */
+	public long getMaxFlushTime() {
+		return this.maxFlushTime;
+	}
+
+	/**
+	 * Sets the milliseconds to wait for the queue to drain when closed.
+	 *
+	 * @param value the new max flush time
+	 */
+	public void setMaxFlushTime(long value) {
+		this.maxFlushTime = value;
+	}
+
+	/**
+	 * Gets the number of messages dropped because the queue was full.
+	 *
+	 * @return the dropped count
+	 */
+	public long getDroppedCount() {
+		return this.droppedCount;
+	}
+
+	/**
+	 * Gets the number of messages discarded because the queue was nearly full.
+	 *
+	 * @return the discarded count
+	 */
+	public long getDiscardedCount() {
+		return this.discardedCount;
+	}
+
+	/**
+	 * Gets the number of messages waiting to be written.
+	 *
+	 * @return the queued count
+	 */
+	public int getQueuedCount() {
+		this.lock.lock();
+		try {
+			return this.count;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Make the queue and start the drainer thread.
+	 */
+	public void start() {
+		this.lock.lock();
+		try {
+			if (this.entries != null || this.closed) {
+				throw new IllegalStateException("The writer has already been started.");
+			}
+
+			int size = Math.max(1, this.queueSize);
+			this.entries = new Entry[size];
+			for (int index = 0; index < size; index++) {
+				this.entries[index] = new Entry();
+			}
+			this.discardThreshold = size - size / 5;
+
+			int batch = Math.max(1, Math.min(this.batchSize, size));
+			// a writer that's never closed mustn't keep the application running.
+			this.drainer = new GibraltarThreadFactory("Loupe " + this.logSystem + " Writer", true)
+					.newThread(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								drain(batch);
+							} finally {
+								drained();
+							}
+						}
+					});
+		} finally {
+			this.lock.unlock();
+		}
+
+		this.drainer.start();
+	}
+
+	/**
+	 * Queue a log message to be written.
+	 *
+	 * @param severity   the severity
+	 * @param category   the category, usually the logger name
+	 * @param source     the frame that logged the message, or null to use the
+	 *                   category
+	 * @param throwable  the throwable, if any
+	 * @param threadInfo the thread that logged the message, or null for the
+	 *                   current thread
+	 * @param message    the message, already formatted
+	 * @return true if queued, false if filtered out, discarded or dropped
+	 */
+	public boolean write(LogMessageSeverity severity, String category, StackTraceElement source,
+			Throwable throwable, ThreadInfo threadInfo, String message) {
+		return write(severity, category, source, throwable, threadInfo, System.currentTimeMillis(), message);
+	}
+
+	/**
+	 * Queue a log message to be written, with the time it was logged.
+	 *
+	 * @param severity   the severity
+	 * @param category   the category, usually the logger name
+	 * @param source     the frame that logged the message, or null to use the
+	 *                   category
+	 * @param throwable  the throwable, if any
+	 * @param threadInfo the thread that logged the message, or null for the
+	 *                   current thread
+	 * @param timestamp  when the message was logged, in milliseconds since the
+	 *                   epoch
+	 * @param message    the message, already formatted
+	 * @return true if queued, false if filtered out, discarded or dropped. A
+	 *         message at least as severe as the flush severity has also been
+	 *         written by the time this returns, unless the thread was
+	 *         interrupted.
+	 */
+	public boolean write(LogMessageSeverity severity, String category, StackTraceElement source,
+			Throwable throwable, ThreadInfo threadInfo, long timestamp, String message) {
+		if (!Log.isEnabled(severity, category)) {
+			return false;
+		}
+
+		if (threadInfo == null) {
+			threadInfo = Log.getCurrentThreadInfo();
+		}
+
+		this.lock.lock();
+		try {
+			if (this.entries == null || this.closed) {
+				return false;
+			}
+
+			if (this.count >= this.discardThreshold && isDiscardable(severity)) {
+				this.discardedCount++;
+				return false;
+			}
+
+			while (this.count == this.entries.length) {
+				if (this.neverBlock || this.closed) {
+					this.droppedCount++;
+					return false;
+				}
+
+				try {
+					this.notFull.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					this.droppedCount++;
+					return false;
+				}
+			}
+
+			this.entries[(this.head + this.count) % this.entries.length].set(severity, category, source, throwable,
+					threadInfo, timestamp, message);
+			if (this.count++ == 0) {
+				this.notEmpty.signal();
+			}
+			long ticket = ++this.queuedTotal;
+
+			// the drainer can log too, and mustn't wait on itself.
+			if (isFlushed(severity) && Thread.currentThread() != this.drainer) {
+				while (this.writtenTotal < ticket && !this.drained) {
+					try {
+						this.written.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Stop taking messages and wait up to the max flush time for the ones queued
+	 * to be written.
+	 */
+	@Override
+	public void close() {
+		this.lock.lock();
+		try {
+			if (this.closed) {
+				return;
+			}
+
+			this.closed = true;
+			this.notEmpty.signalAll();
+			this.notFull.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+
+		if (this.drainer != null && this.drainer != Thread.currentThread()) {
+			try {
+				this.drainer.join(Math.max(1, this.maxFlushTime));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Make the packet for a queued message. Called on the drainer thread.
+	 *
+	 * @param severity   the severity
+	 * @param category   the category
+	 * @param source     the frame that logged the message, if known
+	 * @param throwable  the throwable
+	 * @param threadInfo the thread that logged the message
+	 * @param message    the message
+	 * @return the packet, or null if Loupe isn't logging or it's a suppressed repeat
+	 */
+	protected IMessengerPacket makePacket(LogMessageSeverity severity, String category, StackTraceElement source,
+			Throwable throwable, ThreadInfo threadInfo, String message) {
+		IMessageSourceProvider sourceProvider = (source != null) ? new MessageSourceProvider(source)
+				: new MessageSourceProvider(category, null);
+		if (!Log.getMessageSuppressor().admit(severity, category, sourceProvider, message)) {
+			return null;
+		}
+
+		return Log.makeLogPacket(severity, this.logSystem, category, sourceProvider, null, throwable, threadInfo, null,
+				message, null, (Object[]) null);
+	}
+
+	/**
+	 * Write a batch of packets to Loupe. Called on the drainer thread.
+	 *
+	 * @param packets   the packets
+	 * @param writeMode the write mode, which waits for commit for severe messages
+	 *                  and while closing
+	 */
+	protected void write(IMessengerPacket[] packets, LogWriteMode writeMode) {
+		Log.write(packets, writeMode);
+	}
+
+	/**
+	 * Indicates if a message is discarded when the queue is nearly full.
+	 *
+	 * @param severity the severity
+	 * @return true, if discardable
+	 */
+	private boolean isDiscardable(LogMessageSeverity severity) {
+		// the more severe, the lower the value, and unknown is never discarded.
+		LogMessageSeverity discardSeverity = this.discardSeverity;
+		return discardSeverity != null && severity != null
+				&& severity.getSeverity() > discardSeverity.getSeverity();
+	}
+
+	/**
+	 * Indicates if a message is severe enough for its batch to wait for commit.
+	 *
+	 * @param severity the severity
+	 * @return true, if flushed
+	 */
+	private boolean isFlushed(LogMessageSeverity severity) {
+		LogMessageSeverity flushSeverity = this.flushSeverity;
+		return flushSeverity != null && severity != null && severity != LogMessageSeverity.UNKNOWN
+				&& severity.getSeverity() <= flushSeverity.getSeverity();
+	}
+
+	/**
+	 * The main method of the drainer thread, which writes batches until the writer
+	 * is closed and the queue is empty.
+	 *
+	 * @param batchSize the batch size
+	 */
+	private void drain(int batchSize) {
+		// we swap these with full slots of the queue, so nothing is copied.
+		Entry[] batch = new Entry[batchSize];
+		for (int index = 0; index < batchSize; index++) {
+			batch[index] = new Entry();
+		}
+
+		while (true) {
+			int taken;
+			boolean closing;
+			this.lock.lock();
+			try {
+				while (this.count == 0 && !this.closed) {
+					try {
+						this.notEmpty.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+
+				if (this.count == 0) {
+					return;
+				}
+
+				taken = Math.min(this.count, batchSize);
+				for (int index = 0; index < taken; index++) {
+					Entry entry = this.entries[this.head];
+					this.entries[this.head] = batch[index];
+					batch[index] = entry;
+					this.head = (this.head + 1) % this.entries.length;
+				}
+				this.count -= taken;
+				this.notFull.signalAll();
+				closing = this.closed;
+			} finally {
+				this.lock.unlock();
+			}
+
+			publish(batch, taken, closing);
+
+			this.lock.lock();
+			try {
+				this.writtenTotal += taken;
+				this.written.signalAll();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Note the drainer has stopped, so nobody waits on it any longer.
+	 */
+	private void drained() {
+		this.lock.lock();
+		try {
+			this.drained = true;
+			this.written.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Make the packets for a batch of messages and write them.
+	 *
+	 * @param batch   the batch
+	 * @param taken   the number of messages in the batch
+	 * @param closing true if the writer is closing
+	 */
+	private void publish(Entry[] batch, int taken, boolean closing) {
+		IMessengerPacket[] packets = new IMessengerPacket[taken];
+		int packetCount = 0;
+		boolean flush = closing;
+		for (int index = 0; index < taken; index++) {
+			Entry entry = batch[index];
+			try {
+				flush |= isFlushed(entry.severity);
+				IMessengerPacket packet = makePacket(entry.severity, entry.category, entry.source, entry.throwable,
+						entry.threadInfo, entry.message);
+				if (packet != null) {
+					packet.setTimestamp(OffsetDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp), this.zone));
+					packets[packetCount++] = packet;
+				}
+			} catch (RuntimeException e) {
+				// one bad message mustn't stop the rest.
+				if (SystemUtils.isInDebugMode()) {
+					e.printStackTrace();
+				}
+			} finally {
+				entry.clear();
+			}
+		}
+
+		if (packetCount == 0) {
+			return;
+		}
+
+		try {
+			write((packetCount < taken) ? Arrays.copyOf(packets, packetCount) : packets,
+					flush ? LogWriteMode.WAIT_FOR_COMMIT : LogWriteMode.QUEUED);
+		} catch (RuntimeException e) {
+			if (SystemUtils.isInDebugMode()) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * A slot of the queue, holding what's needed of a message to make its packet.
+	 */
+	private static final class Entry {
+
+		/** The severity. */
+		private LogMessageSeverity severity;
+
+		/** The category. */
+		private String category;
+
+		/** The source. */
+		private StackTraceElement source;
+
+		/** The throwable. */
+		private Throwable throwable;
+
+		/** The thread info. */
+		private ThreadInfo threadInfo;
+
+		/** When the message was logged, in milliseconds since the epoch. */
+		private long timestamp;
+
+		/** The message. */
+		private String message;
+
+		/**
+		 * Fill the slot.
+		 *
+		 * @param severity   the severity
+		 * @param category   the category
+		 * @param source     the source
+		 * @param throwable  the throwable
+		 * @param threadInfo the thread info
+		 * @param timestamp  the timestamp
+		 * @param message    the message
+		 */
+		void set(LogMessageSeverity severity, String category, StackTraceElement source, Throwable throwable,
+				ThreadInfo threadInfo, long timestamp, String message) {
+			this.severity = severity;
+			this.category = category;
+			this.source = source;
+			this.throwable = throwable;
+			this.threadInfo = threadInfo;
+			this.timestamp = timestamp;
+			this.message = message;
+		}
+
+		/**
+		 * Empty the slot so what it held can be collected.
+		 */
+		void clear() {
+			set(null, null, null, null, null, 0, null);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.onloupe.core.logging;
+
+import java.util.Locale;
+
+import com.onloupe.model.log.LogMessageSeverity;
+
+
+/**
+ * Decides which log messages have the class, method, file and line they were
+ * logged from looked up. Finding them means inspecting the call stack, which
+ * is the most expensive part of logging a message, and most verbose messages
+ * don't need them.
+ *
+ * Each category can capture caller information always, never, or only for
+ * messages at least as severe as a given severity. A category's setting also
+ * covers the categories under it, so "com.acme" covers "com.acme.web" unless
+ * "com.acme.web" has its own; categories without one use the default. When a
+ * message doesn't capture caller information its category, usually the logger
+ * name, is recorded as its class instead.
+ *
+ * A policy is written as a default and category settings separated by
+ * semicolons, such as "Warning; com.acme.billing=Always; org.hibernate=Never",
+ * where each setting is Always, Never or a severity name.
+ */
+public final class CallerInfoPolicy {
+
+	/** Capture caller information for every message. */
+	public static final CallerInfoPolicy ALWAYS = new CallerInfoPolicy("Always");
+
+	/** The threshold that captures every message. */
+	private static final int CAPTURE_ALWAYS = Integer.MAX_VALUE;
+
+	/** The threshold that captures no messages. */
+	private static final int CAPTURE_NEVER = 0;
+
+	/** The policy as it was written. */
+	private final String value;
+
+	/** The threshold of each category. */
+	private final CategorySettings<Integer> thresholds;
+
+	/**
+	 * Create a policy from its written form.
+	 *
+	 * @param value the policy, such as "Warning; com.acme.billing=Always"
+	 * @throws IllegalArgumentException if a setting isn't Always, Never or a
+	 *                                  severity
+	 */
+	public CallerInfoPolicy(String value) {
+		this.thresholds = new CategorySettings<Integer>(value, CAPTURE_ALWAYS, CallerInfoPolicy::parseThreshold);
+		this.value = (value != null) ? value.trim() : "Always";
+	}
+
+	/**
+	 * Indicates if a message should have its caller information captured.
+	 *
+	 * @param categoryName the category of the message
+	 * @param severity     the severity of the message
+	 * @return true to capture it, false to record the category instead
+	 */
+	public boolean isCaptured(String categoryName, LogMessageSeverity severity) {
+		int threshold = this.thresholds.get(categoryName);
+		if (threshold == CAPTURE_ALWAYS) {
+			return true;
+		}
+
+		// the more severe, the lower the value.
+		int value = (severity != null) ? severity.getSeverity() : 0;
+		return value > 0 && value <= threshold;
+	}
+
+	/**
+	 * Indicates if the policy captures caller information for every message, so
+	 * there's nothing to check.
+	 *
+	 * @return true, if always captured
+	 */
+	public boolean isAlwaysCaptured() {
+		if (this.thresholds.getDefault() != CAPTURE_ALWAYS) {
+			return false;
+		}
+
+		for (int threshold : this.thresholds.getCategorySettings()) {
+			if (threshold != CAPTURE_ALWAYS) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.value;
+	}
+
+	/**
+	 * Parse a setting.
+	 *
+	 * @param setting Always, Never or a severity name
+	 * @return the threshold
+	 */
+	private static int parseThreshold(String setting) {
+		String name = setting.trim().toUpperCase(Locale.ROOT);
+		switch (name) {
+		case "ALWAYS":
+			return CAPTURE_ALWAYS;
+		case "NEVER":
+			return CAPTURE_NEVER;
+		default:
+			for (LogMessageSeverity severity : LogMessageSeverity.values()) {
+				if (severity != LogMessageSeverity.UNKNOWN && severity.name().equals(name)) {
+					return severity.getSeverity();
+				}
+			}
+			throw new IllegalArgumentException("Unknown caller info setting: " + setting.trim());
+		}
+	}
+}
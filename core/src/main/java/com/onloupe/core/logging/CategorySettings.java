@@ -0,0 +1,227 @@
+package com.onloupe.core.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+
+/**
+ * A setting for each category, as used by LogFilter, CallerInfoPolicy and
+ * MessageSuppressor.
+ *
+ * Settings are written as a default and category settings separated by
+ * semicolons, such as "Information; com.acme.billing=Verbose". A category's
+ * setting also covers the categories under it, so "com.acme" covers
+ * "com.acme.web" unless "com.acme.web" has its own; categories without one use
+ * the default. The category settings are compiled into a prefix tree once, so
+ * looking one up takes a walk along the category and no locks or allocation.
+ *
+ * @param <T> the type of setting
+ */
+final class CategorySettings<T> {
+
+	/** The setting of categories without one of their own. */
+	private final T defaultSetting;
+
+	/** The root of the tree of category settings, or null if there are none. */
+	private final Node<T> root;
+
+	/** The category settings, in the order they were written. */
+	private final List<T> categorySettings;
+
+	/**
+	 * Parse settings from their written form.
+	 *
+	 * @param value          the settings, such as "Information;
+	 *                       com.acme.billing=Verbose", or null for none
+	 * @param defaultSetting the default if the settings don't have one
+	 * @param parser         parses each setting, throwing an
+	 *                       IllegalArgumentException if it's not valid
+	 */
+	CategorySettings(String value, T defaultSetting, Function<String, T> parser) {
+		Map<String, T> categorySettings = new LinkedHashMap<String, T>();
+		if (value != null) {
+			for (String setting : value.split(";")) {
+				setting = setting.trim();
+				if (setting.isEmpty()) {
+					continue;
+				}
+
+				int separator = setting.lastIndexOf('=');
+				if (separator < 0) {
+					defaultSetting = parser.apply(setting);
+				} else {
+					categorySettings.put(setting.substring(0, separator).trim(),
+							parser.apply(setting.substring(separator + 1)));
+				}
+			}
+		}
+
+		NodeBuilder<T> rootBuilder = new NodeBuilder<T>();
+		for (Map.Entry<String, T> categorySetting : categorySettings.entrySet()) {
+			NodeBuilder<T> builder = rootBuilder;
+			for (char c : categorySetting.getKey().toCharArray()) {
+				builder = builder.child(c);
+			}
+			builder.setting = categorySetting.getValue();
+		}
+
+		this.defaultSetting = defaultSetting;
+		this.root = categorySettings.isEmpty() ? null : rootBuilder.build();
+		this.categorySettings = Collections.unmodifiableList(new ArrayList<T>(categorySettings.values()));
+	}
+
+	/**
+	 * The setting of categories without one of their own.
+	 *
+	 * @return the default setting
+	 */
+	T getDefault() {
+		return this.defaultSetting;
+	}
+
+	/**
+	 * The settings given for categories, not including the default.
+	 *
+	 * @return the category settings
+	 */
+	List<T> getCategorySettings() {
+		return this.categorySettings;
+	}
+
+	/**
+	 * Get the setting of a category, from the longest setting that covers it.
+	 *
+	 * @param categoryName the category name, which may be null
+	 * @return the setting
+	 */
+	T get(String categoryName) {
+		T setting = this.defaultSetting;
+		if (this.root == null || categoryName == null) {
+			return setting;
+		}
+
+		// a setting covers a category when it matches up to the end of the category
+		// or a dot, so com.acme covers com.acme.web but not com.acmex.
+		Node<T> node = this.root;
+		int length = categoryName.length();
+		for (int index = 0;; index++) {
+			if (node.setting != null && (index == length || categoryName.charAt(index) == '.')) {
+				setting = node.setting;
+			}
+
+			if (index == length) {
+				return setting;
+			}
+
+			node = node.child(categoryName.charAt(index));
+			if (node == null) {
+				return setting;
+			}
+		}
+	}
+
+	/**
+	 * A node of the compiled tree, reached by the characters of a category.
+	 *
+	 * @param <T> the type of setting
+	 */
+	private static final class Node<T> {
+
+		/** The next characters, in order. */
+		private final char[] labels;
+
+		/** The node for each of the next characters. */
+		private final Node<T>[] children;
+
+		/** The setting of the category ending here, or null if there isn't one. */
+		private final T setting;
+
+		/**
+		 * Instantiates a new node.
+		 *
+		 * @param labels   the labels
+		 * @param children the children
+		 * @param setting  the setting
+		 */
+		Node(char[] labels, Node<T>[] children, T setting) {
+			this.labels = labels;
+			this.children = children;
+			this.setting = setting;
+		}
+
+		/**
+		 * Get the node for the next character.
+		 *
+		 * @param c the character
+		 * @return the node, or null if no setting goes that way
+		 */
+		Node<T> child(char c) {
+			int low = 0;
+			int high = this.labels.length - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				char label = this.labels[middle];
+				if (label < c) {
+					low = middle + 1;
+				} else if (label > c) {
+					high = middle - 1;
+				} else {
+					return this.children[middle];
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A node of the tree while the settings are added.
+	 *
+	 * @param <T> the type of setting
+	 */
+	private static final class NodeBuilder<T> {
+
+		/** The children, by character. */
+		private final TreeMap<Character, NodeBuilder<T>> children = new TreeMap<Character, NodeBuilder<T>>();
+
+		/** The setting, or null if there isn't one. */
+		private T setting;
+
+		/**
+		 * Get the child for a character, adding it if needed.
+		 *
+		 * @param c the character
+		 * @return the child
+		 */
+		NodeBuilder<T> child(char c) {
+			NodeBuilder<T> child = this.children.get(c);
+			if (child == null) {
+				child = new NodeBuilder<T>();
+				this.children.put(c, child);
+			}
+			return child;
+		}
+
+		/**
+		 * Compile the node and those under it.
+		 *
+		 * @return the node
+		 */
+		@SuppressWarnings("unchecked")
+		Node<T> build() {
+			char[] labels = new char[this.children.size()];
+			Node<T>[] nodes = new Node[labels.length];
+			int index = 0;
+			for (Map.Entry<Character, NodeBuilder<T>> child : this.children.entrySet()) {
+				labels[index] = child.getKey();
+				nodes[index] = child.getValue().build();
+				index++;
+			}
+			return new Node<T>(labels, nodes, this.setting);
+		}
+	}
+}
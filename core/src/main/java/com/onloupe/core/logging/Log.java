@@ -138,6 +138,15 @@ public final class Log {
 	/** The running configuration. */
 	private static AgentConfiguration runningConfiguration;
 
+	/** Decides which messages have their caller looked up. */
+	private volatile static CallerInfoPolicy callerInfoPolicy = CallerInfoPolicy.ALWAYS;
+
+	/** Decides which messages are logged at all. */
+	private volatile static LogFilter logFilter = LogFilter.ALL;
+
+	/** Limits how often the same message is logged. */
+	private volatile static MessageSuppressor messageSuppressor = MessageSuppressor.OFF;
+
 	/** The Constant syncObject. */
 	private static final Object syncObject = new Object(); // the general lock for the log object.
 	
@@ -776,6 +785,94 @@ public final class Log {
 		publisher.publish(new MetricSamplePacket[] { sample.getPacket() }, false);
 	}
 	
+	/**
+	 * Gets the caller info policy.
+	 *
+	 * @return the caller info policy
+	 */
+	public static CallerInfoPolicy getCallerInfoPolicy() {
+		return callerInfoPolicy;
+	}
+
+	/**
+	 * Replace the policy that decides which messages have their caller looked up,
+	 * which applies to messages logged from then on.
+	 *
+	 * @param value the new caller info policy
+	 */
+	public static void setCallerInfoPolicy(CallerInfoPolicy value) {
+		callerInfoPolicy = (value != null) ? value : CallerInfoPolicy.ALWAYS;
+	}
+
+	/**
+	 * Indicates if a message should have its caller looked up. Appenders check
+	 * this before asking their logging system for the caller, which inspects the
+	 * stack too.
+	 *
+	 * @param category the category of the message
+	 * @param severity the severity of the message
+	 * @return true, if the caller should be looked up
+	 */
+	public static boolean isCallerInfoCaptured(String category, LogMessageSeverity severity) {
+		return callerInfoPolicy.isCaptured(category, severity);
+	}
+
+	/**
+	 * Gets the log filter.
+	 *
+	 * @return the log filter
+	 */
+	public static LogFilter getLogFilter() {
+		return logFilter;
+	}
+
+	/**
+	 * Replace the filter that decides which messages are logged at all, which
+	 * applies to messages logged from then on. Threads logging at the time see
+	 * either the old filter or the new one, never part of each.
+	 *
+	 * @param value the new log filter
+	 */
+	public static void setLogFilter(LogFilter value) {
+		logFilter = (value != null) ? value : LogFilter.ALL;
+	}
+
+	/**
+	 * Indicates if a message would be logged. This is checked before anything
+	 * else is done for a message, and callers can check it themselves before
+	 * building an expensive one.
+	 *
+	 * @param severity the severity of the message
+	 * @param category the category of the message
+	 * @return true, if the message would be logged
+	 */
+	public static boolean isEnabled(LogMessageSeverity severity, String category) {
+		return logFilter.isEnabled(category, severity);
+	}
+
+	/**
+	 * Gets the message suppressor.
+	 *
+	 * @return the message suppressor
+	 */
+	public static MessageSuppressor getMessageSuppressor() {
+		return messageSuppressor;
+	}
+
+	/**
+	 * Replace what limits how often the same message is logged, which applies to
+	 * messages logged from then on. What the old one had suppressed is reported.
+	 *
+	 * @param value the new message suppressor
+	 */
+	public static void setMessageSuppressor(MessageSuppressor value) {
+		MessageSuppressor previous = messageSuppressor;
+		messageSuppressor = (value != null) ? value : MessageSuppressor.OFF;
+		if (previous != messageSuppressor) {
+			previous.flush();
+		}
+	}
+
 	/**
 	 * Write.
 	 *
@@ -962,7 +1059,12 @@ public final class Log {
 	public static void writeMessage(LogMessageSeverity severity, LogWriteMode writeMode, String logSystem,
 			String categoryName, IMessageSourceProvider sourceProvider, String userName, Throwable throwable,
 			ThreadInfo threadInfo, String detailsXml, String caption, String description, Object... args) {
-		if (!initialized) {
+		if (!initialized || !logFilter.isEnabled(categoryName, severity)) {
+			return;
+		}
+
+		// a repeat is dropped before we format it.
+		if (!messageSuppressor.admit(severity, categoryName, sourceProvider, (caption != null) ? caption : description)) {
 			return;
 		}
 
@@ -1457,6 +1559,9 @@ public final class Log {
 			syncObject.notifyAll();
 		}
 
+		// report what we've been holding back before the session closes.
+		messageSuppressor.flush();
+
 		// Mark the session as a normal/crashed exit and tell the messaging system that
 		// the application is exiting.
 		// This must be done outside the lock because we block until its done and we
@@ -1888,39 +1993,14 @@ public final class Log {
 			formattedDescription = CommonCentralLogic.safeFormat(Locale.getDefault(), description, args);
 		}
 
-		if (description == null) {
-			description = ""; // Must be a legal string.
-		}
-
-		if (description.length() > 0) {
-			char lastChar = description.charAt(description.length() - 1);
-			if (lastChar != '\n' && lastChar != '\r') {
-				description += LINE_BREAK_STRING; // Make sure Description ends in a line break, unless it's
-													// empty.
-			}
-		}
-
-		String[] descriptionLines = description.split("\\r?\\n");
-		int lineCount = descriptionLines.length;
-
 		if (caption == null) {
 			// Need to extract the Caption, leave off line-break and trim trailing
 			// whitespace.
-			caption = TypeUtils.trimToEmpty(descriptionLines[0]);
-
-			// Now re-join the Description with optimal line break strings, including the
-			// one at the end automatically.
-			description = (lineCount > 1)
-					? CodeConversionHelpers.join(LINE_BREAK_STRING, descriptionLines, 1, lineCount - 1)
-					: "";
+			caption = getFirstLine(description);
 		} else {
 			// Caption is already a valid string, so we don't extract it from description,
 			// just trim trailing whitespace.
 			caption = caption.trim();
-
-			// And just normalize the Description's line breaks, including the one at the
-			// end automatically.
-			description = CodeConversionHelpers.join(LINE_BREAK_STRING, descriptionLines);
 		}
 
 		packet.setSeverity(severity);
@@ -1936,12 +2016,41 @@ public final class Log {
 		return packet;
 	}
 
+	/**
+	 * Gets the first line of a description, trimmed, scanning only as far as the
+	 * first line break.
+	 *
+	 * @param description the description, which may be null
+	 * @return the first line
+	 */
+	static String getFirstLine(String description) {
+		if (description == null) {
+			return "";
+		}
+
+		int end = description.indexOf('\n');
+		if (end < 0) {
+			end = description.length();
+		}
+
+		// trim the way String.trim does, which takes care of a \r before the \n.
+		int start = 0;
+		while (start < end && description.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && description.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		return (start == 0 && end == description.length()) ? description : description.substring(start, end);
+	}
+
 	/**
 	 * Gets the current thread info.
 	 *
 	 * @return the current thread info
 	 */
-	private static ThreadInfo getCurrentThreadInfo() {
+	static ThreadInfo getCurrentThreadInfo() {
 		if (!initialized) {
 			return null;
 		}
@@ -2198,6 +2307,9 @@ public final class Log {
 		}
 
 		runningConfiguration = initialConfiguration;
+		callerInfoPolicy = new CallerInfoPolicy(runningConfiguration.getPublisher().getCaptureCallerInfo());
+		logFilter = new LogFilter(runningConfiguration.getPublisher().getLogFilter());
+		messageSuppressor = new MessageSuppressor(runningConfiguration.getPublisher().getMessageSuppression());
 
 		// if we're in debug mode then force the central silent mode option.
 		if (runningConfiguration.getPublisher().getEnableDebugMode()) {
@@ -0,0 +1,127 @@
+package com.onloupe.core.logging;
+
+import java.util.Locale;
+
+import com.onloupe.model.log.LogMessageSeverity;
+
+
+/**
+ * Decides which log messages are wanted at all, before anything is done to
+ * log them.
+ *
+ * Each category can take all messages, none, or only messages at least as
+ * severe as a given severity. A category's setting also covers the categories
+ * under it, so "com.acme" covers "com.acme.web" unless "com.acme.web" has its
+ * own; categories without one use the default.
+ *
+ * A filter is written as a default and category settings separated by
+ * semicolons, such as "Information; com.acme.billing=Verbose; org.hibernate=None",
+ * where each setting is All, None or a severity name. Checking a message
+ * takes a walk along its category and no locks or allocation. A filter never
+ * changes; to change filtering replace it with Log.setLogFilter.
+ */
+public final class LogFilter {
+
+	/** Take all messages. */
+	public static final LogFilter ALL = new LogFilter("All");
+
+	/** The threshold that takes every message. */
+	private static final int TAKE_ALL = Integer.MAX_VALUE;
+
+	/** The threshold that takes no messages, not even those of unknown severity. */
+	private static final int TAKE_NONE = -1;
+
+	/** The filter as it was written. */
+	private final String value;
+
+	/** The threshold of each category. */
+	private final CategorySettings<Integer> thresholds;
+
+	/** The lowest threshold of any setting; messages this severe always pass. */
+	private final int lowestThreshold;
+
+	/** The highest threshold of any setting; messages less severe never pass. */
+	private final int highestThreshold;
+
+	/**
+	 * Create a filter from its written form.
+	 *
+	 * @param value the filter, such as "Information; com.acme.billing=Verbose"
+	 * @throws IllegalArgumentException if a setting isn't All, None or a severity
+	 */
+	public LogFilter(String value) {
+		this.thresholds = new CategorySettings<Integer>(value, TAKE_ALL, LogFilter::parseThreshold);
+
+		int lowestThreshold = this.thresholds.getDefault();
+		int highestThreshold = lowestThreshold;
+		for (int threshold : this.thresholds.getCategorySettings()) {
+			lowestThreshold = Math.min(lowestThreshold, threshold);
+			highestThreshold = Math.max(highestThreshold, threshold);
+		}
+
+		this.value = (value != null) ? value.trim() : "All";
+		this.lowestThreshold = lowestThreshold;
+		this.highestThreshold = highestThreshold;
+	}
+
+	/**
+	 * Indicates if a message is wanted.
+	 *
+	 * @param categoryName the category of the message
+	 * @param severity     the severity of the message
+	 * @return true to log it, false to ignore it
+	 */
+	public boolean isEnabled(String categoryName, LogMessageSeverity severity) {
+		// the more severe, the lower the value.
+		int value = (severity != null) ? severity.getSeverity() : 0;
+		if (value <= this.lowestThreshold) {
+			return true;
+		}
+
+		if (value > this.highestThreshold) {
+			return false;
+		}
+
+		return value <= this.thresholds.get(categoryName);
+	}
+
+	/**
+	 * Indicates if the filter takes every message, so there's nothing to check.
+	 *
+	 * @return true, if everything is enabled
+	 */
+	public boolean isAllEnabled() {
+		return this.lowestThreshold == TAKE_ALL;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.value;
+	}
+
+	/**
+	 * Parse a setting.
+	 *
+	 * @param setting All, None or a severity name
+	 * @return the threshold
+	 */
+	private static int parseThreshold(String setting) {
+		String name = setting.trim().toUpperCase(Locale.ROOT);
+		switch (name) {
+		case "ALL":
+			return TAKE_ALL;
+		case "NONE":
+			return TAKE_NONE;
+		default:
+			for (LogMessageSeverity severity : LogMessageSeverity.values()) {
+				if (severity != LogMessageSeverity.UNKNOWN && severity.name().equals(name)) {
+					return severity.getSeverity();
+				}
+			}
+			throw new IllegalArgumentException("Unknown log filter setting: " + setting.trim());
+		}
+	}
+}
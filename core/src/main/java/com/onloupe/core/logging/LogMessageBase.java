@@ -59,6 +59,9 @@ public abstract class LogMessageBase {
 	/** The attribute to exception. */
 	private boolean attributeToException;
 
+	/** True if the log filter drops this message, so there's nothing to look up or publish. */
+	private boolean filtered;
+
 	/**
 	 * Base constructor for log message template classes.
 	 * 
@@ -107,7 +110,13 @@ public abstract class LogMessageBase {
 		this.throwable = throwable;
 		this.threadInfo = threadInfo;
 		
-		if (attributeToException && throwable != null) {
+		if (!Log.isEnabled(severity, categoryName)) {
+			// don't look for the caller of a message we won't log.
+			this.filtered = true;
+		} else if (!Log.isCallerInfoCaptured(categoryName, severity)) {
+			// the category, usually the logger name, stands in for the caller.
+			this.messageSourceProvider = new MessageSourceProvider(categoryName, null);
+		} else if (attributeToException && throwable != null) {
 			// try to use the exception as the source provider..
 			ExceptionSourceProvider exceptionSourceProvider = new ExceptionSourceProvider(throwable);
 			if (TypeUtils.isNotBlank(exceptionSourceProvider.getClassName())) {
@@ -116,7 +125,7 @@ public abstract class LogMessageBase {
 			}
 		}
 
-		if (this.messageSourceProvider == null) {
+		if (this.messageSourceProvider == null && !this.filtered) {
 			this.messageSourceProvider = new MessageSourceProvider(skipFrames + 1, exclusions);
 		}
 	}
@@ -175,7 +184,14 @@ public abstract class LogMessageBase {
 		this.throwable = throwable;
 		this.threadInfo = threadInfo;
 		
-		if (attributeToException && throwable != null) {
+		if (!Log.isEnabled(severity, categoryName)) {
+			// don't look for the caller of a message we won't log.
+			this.filtered = true;
+			return;
+		}
+
+		boolean captureCallerInfo = Log.isCallerInfoCaptured(categoryName, severity);
+		if (captureCallerInfo && attributeToException && throwable != null) {
 			// try to use the exception as the source provider..
 			ExceptionSourceProvider exceptionSourceProvider = new ExceptionSourceProvider(throwable);
 			if (TypeUtils.isNotBlank(exceptionSourceProvider.getClassName())) {
@@ -188,6 +204,9 @@ public abstract class LogMessageBase {
 			if (element != null) {
 				// if we receive a stack trace element from the client, let's use it.
 				this.messageSourceProvider = new MessageSourceProvider(element);
+			} else if (!captureCallerInfo) {
+				// the category, usually the logger name, stands in for the caller.
+				this.messageSourceProvider = new MessageSourceProvider(categoryName, null);
 			} else {
 				// we did not receive a stack trace element from the client, so let's find it.
 				if (LogSystems.LOG4J.equals(logSystem)) {
@@ -199,6 +218,16 @@ public abstract class LogMessageBase {
 		}
 	}
 
+	/**
+	 * Where the log message was logged from.
+	 *
+	 * @return the message source provider, or null if the message is filtered out
+	 *         and we never looked
+	 */
+	public final IMessageSourceProvider getMessageSourceProvider() {
+		return this.messageSourceProvider;
+	}
+
 	/**
 	 * The severity of the log message.
 	 *
@@ -384,6 +413,10 @@ public abstract class LogMessageBase {
 	 * Publish this SimpleLogMessage to the Gibraltar central log.
 	 */
 	public final void publishToLog() {
+		if (this.filtered) {
+			return;
+		}
+
 		// We pass a null for the user name so that Log.WriteMessage() will figure it
 		// out for itself.
 		Log.writeMessage(this.severity, this.writeMode, this.logSystem, this.categoryName,
@@ -0,0 +1,504 @@
+package com.onloupe.core.logging;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.onloupe.agent.IMessageSourceProvider;
+import com.onloupe.core.messaging.IMessengerPacket;
+import com.onloupe.core.util.LogSystems;
+import com.onloupe.model.log.LogMessageSeverity;
+
+
+/**
+ * Stops a message logged over and over, such as an error from a dependency
+ * that's down, from flooding the session and the publisher's queue.
+ *
+ * Messages are the same when they have the same severity, category, caption
+ * (or description format, without its arguments) and source. Only so many of
+ * the same message are logged in each window of time; the rest are counted
+ * and, once the window is over, reported by one message saying how many there
+ * were and when.
+ *
+ * Each category can have its own limit, which also covers the categories under
+ * it, as for LogFilter. Limits are written as a default and category settings
+ * separated by semicolons, such as "Off; com.acme.db=20/10s", where each
+ * setting is Off or a count and a window in ms, s, m or h (seconds if no unit
+ * is given).
+ *
+ * Messages are tracked in a fixed number of slots, so a flood of different
+ * messages takes no more memory than a flood of the same one. When two
+ * messages need the same slot the newer one takes it, after reporting what
+ * the older one had suppressed, so a busy table errs towards logging.
+ */
+public class MessageSuppressor {
+
+	/** Suppress nothing. */
+	public static final MessageSuppressor OFF = new MessageSuppressor("Off");
+
+	/** The number of messages tracked at once, a power of two. */
+	private static final int SLOT_COUNT = 4096;
+
+	/** How often windows that ended without another message are reported. */
+	private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+	/** The limit of categories that aren't limited. */
+	private static final Limit UNLIMITED = new Limit(Integer.MAX_VALUE, 0);
+
+	/** The limits as they were written. */
+	private final String value;
+
+	/** The limit of each category. */
+	private final CategorySettings<Limit> limits;
+
+	/** True if nothing is limited, so there's nothing to check. */
+	private final boolean unlimited;
+
+	/** The messages being tracked, by fingerprint, or null if nothing is limited. */
+	private final Slot[] slots;
+
+	/** When to next look for windows to report. */
+	private final AtomicLong nextSweep = new AtomicLong();
+
+	/**
+	 * Create a suppressor from its written form.
+	 *
+	 * @param value the limits, such as "Off; com.acme.db=20/10s"
+	 * @throws IllegalArgumentException if a setting isn't Off or a count and window
+	 */
+	public MessageSuppressor(String value) {
+		this.limits = new CategorySettings<Limit>(value, UNLIMITED, MessageSuppressor::parseLimit);
+		this.value = (value != null) ? value.trim() : "Off";
+
+		boolean unlimited = (this.limits.getDefault() == UNLIMITED);
+		for (Limit limit : this.limits.getCategorySettings()) {
+			unlimited &= (limit == UNLIMITED);
+		}
+		this.unlimited = unlimited;
+
+		if (unlimited) {
+			this.slots = null;
+		} else {
+			this.slots = new Slot[SLOT_COUNT];
+			for (int index = 0; index < this.slots.length; index++) {
+				this.slots[index] = new Slot();
+			}
+		}
+	}
+
+	/**
+	 * Decide if a message is logged or suppressed as a repeat.
+	 *
+	 * @param severity the severity of the message
+	 * @param category the category of the message
+	 * @param source   where the message was logged from, if known
+	 * @param template the caption, or the description before formatting
+	 * @return true to log it, false if it's suppressed
+	 */
+	public boolean admit(LogMessageSeverity severity, String category, IMessageSourceProvider source,
+			String template) {
+		if (this.unlimited) {
+			return true;
+		}
+
+		long now = currentTimeMillis();
+		long sweep = this.nextSweep.get();
+		if (now >= sweep && this.nextSweep.compareAndSet(sweep, now + SWEEP_INTERVAL_MILLIS)) {
+			sweep(now, false);
+		}
+
+		Limit limit = this.limits.get(category);
+		if (limit == UNLIMITED) {
+			return true;
+		}
+
+		String className = (source != null) ? source.getClassName() : null;
+		String methodName = (source != null) ? source.getMethodName() : null;
+		int lineNumber = (source != null) ? source.getLineNumber() : 0;
+		int hash = fingerprint(severity, category, className, methodName, lineNumber, template);
+
+		Summary summary = null;
+		boolean admitted;
+		Slot slot = this.slots[hash & (SLOT_COUNT - 1)];
+		synchronized (slot) {
+			if (slot.matches(hash, severity, category, className, methodName, lineNumber, template)) {
+				if (now - slot.windowStart >= slot.limit.windowMillis) {
+					// a new window, and the end of the last one.
+					summary = slot.takeSummary();
+					slot.windowStart = now;
+					slot.limit = limit;
+					slot.count = 1;
+					admitted = true;
+				} else if (slot.count < slot.limit.count) {
+					slot.count++;
+					admitted = true;
+				} else {
+					if (slot.suppressed == 0) {
+						slot.firstSuppressed = now;
+					}
+					slot.suppressed++;
+					slot.lastSuppressed = now;
+					admitted = false;
+				}
+			} else {
+				// someone else's slot; report what it's holding back before taking it.
+				summary = slot.takeSummary();
+				slot.hash = hash;
+				slot.severity = severity;
+				slot.category = category;
+				slot.className = className;
+				slot.methodName = methodName;
+				slot.lineNumber = lineNumber;
+				slot.template = template;
+				slot.source = source;
+				slot.windowStart = now;
+				slot.limit = limit;
+				slot.count = 1;
+				admitted = true;
+			}
+		}
+
+		if (summary != null) {
+			write(summary);
+		}
+		return admitted;
+	}
+
+	/**
+	 * Report every message suppressed so far, even if its window isn't over.
+	 * Called when the session ends.
+	 */
+	public void flush() {
+		if (!this.unlimited) {
+			sweep(currentTimeMillis(), true);
+		}
+	}
+
+	/**
+	 * Indicates if nothing is limited, so there's nothing to check.
+	 *
+	 * @return true, if nothing is suppressed
+	 */
+	public boolean isUnlimited() {
+		return this.unlimited;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.value;
+	}
+
+	/**
+	 * Write a message reporting suppressed repeats.
+	 *
+	 * @param severity    the severity of the suppressed messages
+	 * @param category    their category
+	 * @param source      where the first of them was logged from
+	 * @param caption     the caption to log
+	 * @param description the description to log, already formatted
+	 */
+	protected void writeSummary(LogMessageSeverity severity, String category, IMessageSourceProvider source,
+			String caption, String description) {
+		IMessengerPacket packet = Log.makeLogPacket(severity, LogSystems.GIBRALTAR, category, source, null, null,
+				null, null, caption, description);
+		if (packet != null) {
+			Log.write(new IMessengerPacket[] { packet }, LogWriteMode.QUEUED);
+		}
+	}
+
+	/**
+	 * Get the current time.
+	 *
+	 * @return the current time in milliseconds
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Report the messages whose windows are over, or all of them.
+	 *
+	 * @param now the current time
+	 * @param all true to report windows that aren't over too
+	 */
+	private void sweep(long now, boolean all) {
+		for (Slot slot : this.slots) {
+			Summary summary = null;
+			synchronized (slot) {
+				if (slot.suppressed > 0 && (all || now - slot.windowStart >= slot.limit.windowMillis)) {
+					summary = slot.takeSummary();
+				}
+			}
+
+			if (summary != null) {
+				write(summary);
+			}
+		}
+	}
+
+	/**
+	 * Write a summary.
+	 *
+	 * @param summary the summary
+	 */
+	private void write(Summary summary) {
+		String caption = String.format("Suppressed %,d repeats of: %s", summary.suppressed,
+				Log.getFirstLine(summary.template));
+		String description = String.format(
+				"%,d more messages like this one were logged between %s and %s, after the first %,d in %,d ms, and weren't recorded.",
+				summary.suppressed, Instant.ofEpochMilli(summary.firstSuppressed),
+				Instant.ofEpochMilli(summary.lastSuppressed), summary.limit.count, summary.limit.windowMillis);
+		writeSummary(summary.severity, summary.category, summary.source, caption, description);
+	}
+
+	/**
+	 * Work out the fingerprint of a message.
+	 *
+	 * @param severity   the severity
+	 * @param category   the category
+	 * @param className  the class name
+	 * @param methodName the method name
+	 * @param lineNumber the line number
+	 * @param template   the template
+	 * @return the fingerprint
+	 */
+	private static int fingerprint(LogMessageSeverity severity, String category, String className,
+			String methodName, int lineNumber, String template) {
+		int hash = (severity != null) ? severity.getSeverity() : 0;
+		hash = 31 * hash + hashCode(category);
+		hash = 31 * hash + hashCode(className);
+		hash = 31 * hash + hashCode(methodName);
+		hash = 31 * hash + lineNumber;
+		hash = 31 * hash + hashCode(template);
+
+		// spread the high bits into the low ones we pick a slot with.
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Hash a string that may be null.
+	 *
+	 * @param value the value
+	 * @return the hash code
+	 */
+	private static int hashCode(String value) {
+		return (value != null) ? value.hashCode() : 0;
+	}
+
+	/**
+	 * Compare two strings that may be null.
+	 *
+	 * @param first  the first string
+	 * @param second the second string
+	 * @return true, if the same
+	 */
+	private static boolean same(String first, String second) {
+		return (first == null) ? second == null : first.equals(second);
+	}
+
+	/**
+	 * Parse a setting.
+	 *
+	 * @param setting Off or a count and window, such as 20/10s
+	 * @return the limit
+	 */
+	private static Limit parseLimit(String setting) {
+		String text = setting.trim().toLowerCase(Locale.ROOT);
+		if (text.equals("off")) {
+			return UNLIMITED;
+		}
+
+		int separator = text.indexOf('/');
+		if (separator > 0) {
+			try {
+				int count = Integer.parseInt(text.substring(0, separator).trim());
+				String window = text.substring(separator + 1).trim();
+				long multiplier = 1000;
+				if (window.endsWith("ms")) {
+					multiplier = 1;
+					window = window.substring(0, window.length() - 2);
+				} else if (window.endsWith("s")) {
+					window = window.substring(0, window.length() - 1);
+				} else if (window.endsWith("m")) {
+					multiplier = 60 * 1000;
+					window = window.substring(0, window.length() - 1);
+				} else if (window.endsWith("h")) {
+					multiplier = 60 * 60 * 1000;
+					window = window.substring(0, window.length() - 1);
+				}
+				long windowMillis = Long.parseLong(window.trim()) * multiplier;
+				if (count >= 0 && windowMillis > 0) {
+					return new Limit(count, windowMillis);
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the exception below.
+			}
+		}
+		throw new IllegalArgumentException("Unknown message suppression setting: " + setting.trim());
+	}
+
+	/**
+	 * How many of the same message are logged in how long.
+	 */
+	private static final class Limit {
+
+		/** The number of messages logged in each window. */
+		private final int count;
+
+		/** The length of the window. */
+		private final long windowMillis;
+
+		/**
+		 * Instantiates a new limit.
+		 *
+		 * @param count        the count
+		 * @param windowMillis the window millis
+		 */
+		Limit(int count, long windowMillis) {
+			this.count = count;
+			this.windowMillis = windowMillis;
+		}
+	}
+
+	/**
+	 * A message being tracked, guarded by its own lock.
+	 */
+	private static final class Slot {
+
+		/** The fingerprint of the message. */
+		private int hash;
+
+		/** The severity of the message. */
+		private LogMessageSeverity severity;
+
+		/** The category of the message. */
+		private String category;
+
+		/** The class the message was logged from. */
+		private String className;
+
+		/** The method the message was logged from. */
+		private String methodName;
+
+		/** The line the message was logged from. */
+		private int lineNumber;
+
+		/** The caption or description format of the message. */
+		private String template;
+
+		/** Where the first of the message was logged from, to report it. */
+		private IMessageSourceProvider source;
+
+		/** The limit of the current window; unlimited while the slot is empty. */
+		private Limit limit = UNLIMITED;
+
+		/** When the current window started. */
+		private long windowStart;
+
+		/** The number of messages logged in the current window. */
+		private int count;
+
+		/** The number of messages suppressed and not yet reported. */
+		private long suppressed;
+
+		/** When the first of those was suppressed. */
+		private long firstSuppressed;
+
+		/** When the last of those was suppressed. */
+		private long lastSuppressed;
+
+		/**
+		 * Indicates if the slot holds a message.
+		 *
+		 * @param hash       the fingerprint
+		 * @param severity   the severity
+		 * @param category   the category
+		 * @param className  the class name
+		 * @param methodName the method name
+		 * @param lineNumber the line number
+		 * @param template   the template
+		 * @return true, if the same message
+		 */
+		boolean matches(int hash, LogMessageSeverity severity, String category, String className,
+				String methodName, int lineNumber, String template) {
+			return this.hash == hash && this.severity == severity && this.lineNumber == lineNumber
+					&& same(this.template, template) && same(this.category, category)
+					&& same(this.className, className) && same(this.methodName, methodName)
+					&& this.limit != UNLIMITED;
+		}
+
+		/**
+		 * Take what the slot has suppressed to report it.
+		 *
+		 * @return the summary, or null if nothing was suppressed
+		 */
+		Summary takeSummary() {
+			if (this.suppressed == 0) {
+				return null;
+			}
+
+			Summary summary = new Summary(this.severity, this.category, this.source, this.template, this.limit,
+					this.suppressed, this.firstSuppressed, this.lastSuppressed);
+			this.suppressed = 0;
+			return summary;
+		}
+	}
+
+	/**
+	 * The messages suppressed in a window, taken from a slot so it can be
+	 * reported outside its lock.
+	 */
+	private static final class Summary {
+
+		/** The severity. */
+		private final LogMessageSeverity severity;
+
+		/** The category. */
+		private final String category;
+
+		/** The source. */
+		private final IMessageSourceProvider source;
+
+		/** The template. */
+		private final String template;
+
+		/** The limit. */
+		private final Limit limit;
+
+		/** The number suppressed. */
+		private final long suppressed;
+
+		/** When the first was suppressed. */
+		private final long firstSuppressed;
+
+		/** When the last was suppressed. */
+		private final long lastSuppressed;
+
+		/**
+		 * Instantiates a new summary.
+		 *
+		 * @param severity        the severity
+		 * @param category        the category
+		 * @param source          the source
+		 * @param template        the template
+		 * @param limit           the limit
+		 * @param suppressed      the number suppressed
+		 * @param firstSuppressed when the first was suppressed
+		 * @param lastSuppressed  when the last was suppressed
+		 */
+		Summary(LogMessageSeverity severity, String category, IMessageSourceProvider source, String template,
+				Limit limit, long suppressed, long firstSuppressed, long lastSuppressed) {
+			this.severity = severity;
+			this.category = category;
+			this.source = source;
+			this.template = template;
+			this.limit = limit;
+			this.suppressed = suppressed;
+			this.firstSuppressed = firstSuppressed;
+			this.lastSuppressed = lastSuppressed;
+		}
+	}
+}
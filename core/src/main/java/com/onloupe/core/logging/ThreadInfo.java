@@ -90,6 +90,22 @@ public class ThreadInfo extends Observable implements IDisplayable {
 		this.packet.setThreadName(threadName);
 	}
 
+	/**
+	 * Instantiates a new thread info for a thread other than the current one, such
+	 * as one whose messages are written to Loupe by another thread. It gets a
+	 * thread index of its own rather than the current thread's.
+	 *
+	 * @param threadId the thread id
+	 * @param threadName the thread name
+	 * @param currentThread true if it is the current thread after all
+	 */
+	ThreadInfo(long threadId, String threadName, boolean currentThread) {
+		this.packet = new ThreadInfoPacket();
+		this.packet.setThreadIndex(currentThread ? ThreadToken.getCurrentThreadIndex() : ThreadToken.getNewThreadIndex());
+		this.packet.setThreadId(threadId);
+		this.packet.setThreadName(threadName);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.onloupe.core.serialization.monitor.IDisplayable#getCaption()
 	 */
@@ -467,6 +483,16 @@ public class ThreadInfo extends Observable implements IDisplayable {
 			return index;
 		}
 
+		/**
+		 * Get a unique ThreadIndex for a thread other than the current one, which
+		 * isn't tracked.
+		 *
+		 * @return the new thread index
+		 */
+		public static long getNewThreadIndex() {
+			return latestThreadIndex.incrementAndGet();
+		}
+
 		/**
 		 * Determine whether an identifed thread likely still exists or definitely no
 		 * longer exists in this process.
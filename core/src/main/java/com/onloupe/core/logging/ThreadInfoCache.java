@@ -0,0 +1,58 @@
+package com.onloupe.core.logging;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Keeps the ThreadInfo of each thread a log system reports messages from, so
+ * appenders don't make a new one, and a new thread info packet, for every
+ * message.
+ *
+ * A thread is known by its id, and gets a new ThreadInfo if its name changes.
+ * Messages can be reported by a different thread than the one that logged
+ * them, as with log4j2's async loggers; those threads get thread indexes of
+ * their own rather than the reporting thread's.
+ */
+public final class ThreadInfoCache {
+
+	/** The most threads to keep, after which we start over. */
+	private static final int MAX_CACHED_THREADS = 4096;
+
+	/** The thread info of each thread seen, by thread id. */
+	private final ConcurrentHashMap<Long, ThreadInfo> threads = new ConcurrentHashMap<Long, ThreadInfo>();
+
+	/**
+	 * Get the thread info for a thread.
+	 *
+	 * @param threadId   the thread id
+	 * @param threadName the thread name
+	 * @return the thread info
+	 */
+	public ThreadInfo get(long threadId, String threadName) {
+		ThreadInfo threadInfo = this.threads.get(threadId);
+		if (threadInfo != null && equals(threadInfo.getThreadName(), threadName)) {
+			return threadInfo;
+		}
+
+		boolean currentThread = (threadId == Thread.currentThread().getId());
+		threadInfo = new ThreadInfo(threadId, threadName, currentThread);
+
+		// threads come and go, so a long running program can see a lot of them.
+		if (this.threads.size() >= MAX_CACHED_THREADS) {
+			this.threads.clear();
+		}
+		this.threads.put(threadId, threadInfo);
+		return threadInfo;
+	}
+
+	/**
+	 * Compare two thread names.
+	 *
+	 * @param first  the first name
+	 * @param second the second name
+	 * @return true, if the same
+	 */
+	private static boolean equals(String first, String second) {
+		return (first == null) ? second == null : first.equals(second);
+	}
+}
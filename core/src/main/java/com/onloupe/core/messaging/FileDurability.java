@@ -0,0 +1,43 @@
+package com.onloupe.core.messaging;
+
+
+/**
+ * How hard the file messenger works to get session data onto the disk itself,
+ * rather than just into the operating system's cache.
+ */
+public enum FileDurability {
+
+	/** Never sync; data reaches the disk whenever the operating system writes its cache. */
+	NONE,
+
+	/** Sync at most once per auto flush interval. */
+	PERIODIC,
+
+	/** Sync every time the messenger is flushed, including write-through requests. */
+	ON_FLUSH,
+
+	/** Sync every write to the file (the default). */
+	PER_WRITE;
+
+	/** The Constant SIZE. */
+	public static final int SIZE = java.lang.Integer.SIZE;
+
+	/**
+	 * Gets the value.
+	 *
+	 * @return the value
+	 */
+	public int getValue() {
+		return this.ordinal();
+	}
+
+	/**
+	 * For value.
+	 *
+	 * @param value the value
+	 * @return the file durability
+	 */
+	public static FileDurability forValue(int value) {
+		return values()[value];
+	}
+}
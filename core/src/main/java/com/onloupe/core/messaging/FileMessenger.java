@@ -3,10 +3,13 @@ package com.onloupe.core.messaging;
 import com.onloupe.configuration.IMessengerConfiguration;
 import com.onloupe.configuration.SessionFileConfiguration;
 import com.onloupe.core.FileSystemTools;
+import com.onloupe.core.data.CompressionCodec;
+import com.onloupe.core.data.FileHeader;
 import com.onloupe.core.data.GLFWriter;
 import com.onloupe.core.data.InterprocessLock;
 import com.onloupe.core.data.InterprocessLockManager;
 import com.onloupe.core.data.RepositoryMaintenance;
+import com.onloupe.core.data.SessionIndex;
 import com.onloupe.core.logging.Log;
 import com.onloupe.core.logging.LogWriteMode;
 import com.onloupe.core.monitor.LocalRepository;
@@ -17,6 +20,9 @@ import com.onloupe.model.exception.DirectoryNotFoundException;
 import com.onloupe.model.log.LogMessageSeverity;
 import com.onloupe.model.session.SessionStatus;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.file.Path;
@@ -25,6 +31,7 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -93,6 +100,45 @@ public class FileMessenger extends MessengerBase {
 	/** The repository maintenance requested. */
 	private boolean repositoryMaintenanceRequested;
 	
+	/** The durability. */
+	private FileDurability durability = FileDurability.PER_WRITE;
+	
+	/** The number of seconds between syncs for periodic durability. */
+	private int syncIntervalSeconds;
+	
+	/** When the next periodic sync is due. */
+	private LocalDateTime nextSyncDue = LocalDateTime.MIN;
+	
+	/** The number of times files we've closed were synced to disk. */
+	private long closedFileSyncCount;
+	
+	/** The compression codec. */
+	private CompressionCodec compressionCodec;
+	
+	/** The compression workers. */
+	private int compressionWorkers;
+	
+	/** The compression block size. */
+	private int compressionBlockSize;
+	
+	/** The compression level. */
+	private int compressionLevel;
+	
+	/** The preallocation size. */
+	private int preallocationSize;
+	
+	/** True to write session files with a string table. */
+	private boolean enableStringTable;
+	
+	/** True to write an index alongside each session file. */
+	private boolean enableFileIndex;
+	
+	/** The number of packets between file index checkpoints. */
+	private int fileIndexPacketInterval;
+	
+	/** The most seconds between file index checkpoints. */
+	private int fileIndexTimeInterval;
+	
 	/** The repository maintenance scheduled date time. */
 	private OffsetDateTime repositoryMaintenanceScheduledDateTime; // once maintenance has been requested, when we will
 																	// do it.
@@ -193,6 +239,23 @@ public class FileMessenger extends MessengerBase {
 		setAutoFlushInterval(
 				Math.min(fileConfiguration.getAutoFlushInterval(), fileConfiguration.getIndexUpdateInterval()));
 
+		setGroupCommitWindow(fileConfiguration.getGroupCommitWindow());
+
+		this.durability = fileConfiguration.getDurability() == null ? FileDurability.PER_WRITE
+				: fileConfiguration.getDurability();
+		this.syncIntervalSeconds = fileConfiguration.getAutoFlushInterval();
+
+		this.compressionCodec = fileConfiguration.getCompressionCodec() == null ? CompressionCodec.GZIP
+				: fileConfiguration.getCompressionCodec();
+		this.compressionWorkers = fileConfiguration.getCompressionWorkers();
+		this.compressionBlockSize = fileConfiguration.getCompressionBlockSize();
+		this.compressionLevel = fileConfiguration.getCompressionLevel();
+		this.preallocationSize = fileConfiguration.getPreallocationSize();
+		this.enableStringTable = fileConfiguration.getEnableStringTable();
+		this.enableFileIndex = fileConfiguration.getEnableFileIndex();
+		this.fileIndexPacketInterval = fileConfiguration.getFileIndexPacketInterval();
+		this.fileIndexTimeInterval = fileConfiguration.getFileIndexTimeInterval();
+
 		// If we aren't able to initialize our log folder, throw an exception
 		if (TypeUtils.isBlank(this.repositoryFolder)) {
 			throw new DirectoryNotFoundException("No log folder could be determined, so the file messenger can't log.");
@@ -238,6 +301,10 @@ public class FileMessenger extends MessengerBase {
 			// serializer updates the session header we write to the index, so it must be
 			// done first.
 			this.currentSerializer.flush();
+
+			if (isSyncDue()) {
+				this.currentSerializer.sync();
+			}
 		}
 
 		// and do repository maintenance if it was requested. It won't be requested if
@@ -418,6 +485,7 @@ public class FileMessenger extends MessengerBase {
 				// serializer updates the session header we write to the index, so it must be
 				// done first.
 				this.currentSerializer.close(isLastFile);
+				this.closedFileSyncCount += this.currentSerializer.getSyncCount();
 
 				// Now update our index information with the final session header info.
 				if (!isLastFile) {
@@ -440,6 +508,42 @@ public class FileMessenger extends MessengerBase {
 		}
 	}
 
+	/**
+	 * Gets the number of times our session files have been synced to disk.
+	 *
+	 * @return the sync count
+	 */
+	long getSyncCount() {
+		GLFWriter serializer = this.currentSerializer;
+		return this.closedFileSyncCount + ((serializer != null) ? serializer.getSyncCount() : 0);
+	}
+
+	/**
+	 * Indicates if a flush should also sync the file to disk, based on our
+	 * durability.
+	 *
+	 * @return true if the file should be synced now
+	 */
+	private boolean isSyncDue() {
+		switch (this.durability) {
+		case NONE:
+			return false;
+		case PERIODIC:
+			LocalDateTime now = LocalDateTime.now();
+			if (now.isBefore(this.nextSyncDue)) {
+				return false;
+			}
+			this.nextSyncDue = now.plusSeconds(this.syncIntervalSeconds);
+			return true;
+		case ON_FLUSH:
+			return true;
+		case PER_WRITE:
+		default:
+			// every write is already synced, unless group commit has us syncing once per commit instead.
+			return getGroupCommitWindow() > 0;
+		}
+	}
+
 	/**
 	 * Open a new output file.
 	 * 
@@ -465,11 +569,32 @@ public class FileMessenger extends MessengerBase {
 
 		// we now have a unique file name, create the file.
 		FileSystemTools.ensurePathExists(folder.toString());
-		this.currentFile = FileSystemTools.createRandomAccessFile(fileNamePath, "rwd");
+		// We sync explicitly as our durability calls for rather than having every write be synchronous.
+		this.currentFile = FileSystemTools.createRandomAccessFile(fileNamePath, "rw");
 
 		// and open a serializer on it
 		this.currentSerializer = new GLFWriter(this.currentFile, getPublisher().getSessionSummary(),
-				this.currentSessionFile, OffsetDateTime.now());
+				this.currentSessionFile, OffsetDateTime.now(), FileHeader.defaultMajorVersion,
+				this.enableStringTable ? FileHeader.stringTableMinorVersion : FileHeader.defaultMinorVersion);
+		this.currentSerializer.setCompressionCodec(this.compressionCodec);
+		this.currentSerializer.setCompressionLevel(this.compressionLevel);
+		this.currentSerializer.setCompressionWorkers(this.compressionWorkers);
+		this.currentSerializer.setCompressionBlockSize(this.compressionBlockSize);
+		this.currentSerializer.setPreallocationSize(this.preallocationSize);
+		if (this.enableFileIndex) {
+			// the index can be rebuilt from the file, so it's never synced.
+			this.currentSerializer.setIndexStream(new BufferedOutputStream(
+					new FileOutputStream(SessionIndex.getIndexFile(new File(fileNamePath)))));
+			this.currentSerializer.setIndexPacketInterval(this.fileIndexPacketInterval);
+			this.currentSerializer.setIndexTimeInterval(TimeUnit.SECONDS.toMillis(this.fileIndexTimeInterval));
+		}
+
+		// With group commit we sync once per commit when we flush instead of on every write.
+		this.currentSerializer.setSyncOnWrite(this.durability == FileDurability.PER_WRITE && getGroupCommitWindow() <= 0);
+		this.currentSerializer.setSyncOnClose(this.durability != FileDurability.NONE);
+		if (this.currentSerializer.getSyncOnWrite()) {
+			this.currentSerializer.sync(); // the file and session headers are already written.
+		}
 
 		// write out every header packet to the stream
 		ICachedMessengerPacket[] headerPackets = getPublisher().getHeaderPackets();
@@ -518,7 +643,7 @@ public class FileMessenger extends MessengerBase {
 		}
 
 		// and do we need to request maintenance?
-		if ((this.currentFile.length() > this.maxFileSizeBytes)
+		if ((this.currentSerializer.getLength() > this.maxFileSizeBytes)
 				|| LocalDateTime.now().isAfter(this.fileExpiration)) {
 			return MaintenanceModeRequest.REGULAR;
 		}
@@ -2,6 +2,8 @@ package com.onloupe.core.messaging;
 
 import com.onloupe.configuration.IMessengerConfiguration;
 
+import java.util.List;
+
 
 /**
  * Implement this interface to be a packet sink for the messaging system.
@@ -62,4 +64,36 @@ public interface IMessenger {
 	 * @throws InterruptedException the interrupted exception
 	 */
 	void write(IMessengerPacket packet, boolean writeThrough) throws InterruptedException;
+
+	/**
+	 * Write the provided batch of packets to this messenger, in order.
+	 * 
+	 * This is equivalent to writing each packet individually but lets the
+	 * messenger queue the whole batch at once. When write through is requested
+	 * the call returns once the last packet (and therefore every packet before
+	 * it) has been committed.
+	 *
+	 * @param packets      The packets to write through the messenger.
+	 * @param writeThrough True if the information contained in the packets should
+	 *                     be committed synchronously, false if the messenger
+	 *                     should use write caching (if available).
+	 * @throws InterruptedException the interrupted exception
+	 */
+	void write(List<IMessengerPacket> packets, boolean writeThrough) throws InterruptedException;
+
+	/**
+	 * Queue the provided packet to this messenger without waiting for it.
+	 * 
+	 * This lets the caller decide when (and on which thread) to wait: the packet
+	 * is committed once the returned envelope is no longer pending and has been
+	 * committed. Messengers can then commit several write through packets
+	 * together instead of one caller at a time.
+	 *
+	 * @param packet       The packet to write through the messenger.
+	 * @param writeThrough True if the information contained in packet should be
+	 *                     committed synchronously, false if the messenger should
+	 *                     use write caching (if available).
+	 * @return The envelope to wait on, or null if the packet wasn't queued.
+	 */
+	PacketEnvelope submit(IMessengerPacket packet, boolean writeThrough);
 }
\ No newline at end of file
@@ -7,7 +7,10 @@ import com.onloupe.model.log.LogMessageSeverity;
 import java.io.Closeable;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -91,6 +94,12 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 	/** The next flush due. */
 	private LocalDateTime nextFlushDue = LocalDateTime.MIN;
 
+	/** Write through envelopes that have been written but are waiting on the group commit. Dispatch thread only. */
+	private final List<PacketEnvelope> pendingCommits = new ArrayList<PacketEnvelope>();
+
+	/** When the current group commit is due, in System.nanoTime() terms. Dispatch thread only. */
+	private long groupCommitDue;
+
 	/**
 	 * Create a new messenger.
 	 *
@@ -178,11 +187,12 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 					// that case,
 					// we'll have to wait for another pulse.
 					while (this.messageQueue.isEmpty() && !this.closed
-							&& (!getAutoFlush() || (this.nextFlushDue.compareTo(LocalDateTime.now()) > 0))) {
+							&& (!getAutoFlush() || (this.nextFlushDue.compareTo(LocalDateTime.now()) > 0))
+							&& !isGroupCommitDue()) {
 						// This releases the message queue lock, only reacquiring it after being woken
-						// up by a call to Pulse
-						this.messageQueueLock.wait(1000); // we'll stop waiting after a second so we can check for an
-															// auto-flush
+						// up by a call to Pulse. We'll stop waiting after a second so we can check for an
+						// auto-flush, or sooner if there's a group commit to complete.
+						TimeUnit.NANOSECONDS.timedWait(this.messageQueueLock, groupCommitWaitNanos());
 					}
 
 					if (!this.messageQueue.isEmpty()) {
@@ -228,6 +238,11 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 					}
 				}
 
+				// Has the group commit window closed? If so everyone in it gets committed together.
+				if (isGroupCommitDue() || (this.closed && !this.pendingCommits.isEmpty())) {
+					commitGroup();
+				}
+
 				// Do we need to do an auto-flush before we do the next packet?
 				if (getAutoFlush() && !LocalDateTime.now().isBefore(nextFlushDue)) {
 					actionOnFlush();
@@ -259,6 +274,11 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 
 			// We need to dump the queues and tell everyone to stop waiting, because we'll never process them.
 			this.closed = true; // Consider us closed after this. The app is really exiting.
+			for (PacketEnvelope pendingCommit : this.pendingCommits) {
+				pendingCommit.setIsCommitted(true);
+			}
+			this.pendingCommits.clear();
+
 			PacketEnvelope envelope;
 			while (!this.messageQueue.isEmpty()) {
 				envelope = this.messageQueue.poll();
@@ -301,6 +321,7 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 	 */
 	private MaintenanceModeRequest dispatchPacket(PacketEnvelope packetEnvelope) {
 		synchronized (packetEnvelope) {
+			boolean deferCommit = false;
 			try {
 				MaintenanceModeRequest maintenanceModeRequest = MaintenanceModeRequest.NONE;
 				// We process all commands...
@@ -309,6 +330,9 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 					CommandPacket commandPacket = (CommandPacket) packetEnvelope.getPacket();
 					MessagingCommand command = commandPacket.getCommand();
 
+					// anything waiting on a group commit has to be committed before the command runs.
+					boolean flushed = commitGroup();
+
 					switch (command) {
 					case SHUTDOWN:
 						// mark that we're closed.
@@ -318,7 +342,9 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 						actionOnClose();
 						break;
 					case FLUSH:
-						actionOnFlush();
+						if (!flushed) {
+							actionOnFlush();
+						}
 						break;
 					default:
 						// Allow special handling by inheritors
@@ -329,16 +355,74 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 				} else {
 					// it's a data packet - we send this to our overridden write method for our inheritor to process.
 
+					// with group commit we write it now but leave the flush to the end of the window.
+					deferCommit = packetEnvelope.getWriteThrough() && (this.groupCommitWindow > 0);
+
 					// we really don't want to expose the envelope at this time if we don't have to
-					maintenanceModeRequest = actionOnWrite(packetEnvelope.getPacket(), packetEnvelope.getWriteThrough(), maintenanceModeRequest);
+					maintenanceModeRequest = actionOnWrite(packetEnvelope.getPacket(),
+							packetEnvelope.getWriteThrough() && !deferCommit, maintenanceModeRequest);
 				}
 
 				return maintenanceModeRequest;
 			} finally {
-				// if this was a write through packet we need to let the caller know that it was committed (at least, best we can do..)
-				packetEnvelope.setIsCommitted(true); // under the covers this does a pulse on the threads waiting on this envelope
+				if (deferCommit) {
+					// the first one in opens the window.
+					if (this.pendingCommits.isEmpty()) {
+						this.groupCommitDue = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.groupCommitWindow);
+					}
+					this.pendingCommits.add(packetEnvelope);
+				} else {
+					// if this was a write through packet we need to let the caller know that it was committed (at least, best we can do..)
+					packetEnvelope.setIsCommitted(true); // under the covers this does a pulse on the threads waiting on this envelope
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indicates if there is a group commit waiting whose window has closed.
+	 *
+	 * @return true if the group should be committed now
+	 */
+	private boolean isGroupCommitDue() {
+		return !this.pendingCommits.isEmpty() && (System.nanoTime() - this.groupCommitDue >= 0);
+	}
+
+	/**
+	 * How long the dispatch thread can wait for new packets before it has to
+	 * do something else.
+	 *
+	 * @return the wait in nanoseconds
+	 */
+	private long groupCommitWaitNanos() {
+		long wait = TimeUnit.SECONDS.toNanos(1);
+		if (!this.pendingCommits.isEmpty()) {
+			wait = Math.min(wait, Math.max(this.groupCommitDue - System.nanoTime(), 1));
+		}
+		return wait;
+	}
+
+	/**
+	 * Flush everything written for the current group commit and release all of
+	 * the callers waiting on it.
+	 *
+	 * @return true if there was a group to commit (and so we flushed)
+	 */
+	private boolean commitGroup() {
+		if (this.pendingCommits.isEmpty()) {
+			return false;
+		}
+
+		try {
+			actionOnFlush();
+		} finally {
+			for (PacketEnvelope packetEnvelope : this.pendingCommits) {
+				packetEnvelope.setIsCommitted(true);
 			}
+			this.pendingCommits.clear();
 		}
+
+		return true;
 	}
 
 	/**
@@ -348,6 +432,9 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	private void enterMaintenanceMode() throws NoSuchMethodException, IOException {
+		// whatever's waiting on a group commit was written before the maintenance, so commit it now.
+		commitGroup();
+
 		// set our flag so we know we're in maintenance. This affects the queuing, so we
 		// need a queuelock
 		synchronized (this.messageQueueLock) {
@@ -631,6 +718,34 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 		this.autoFlushInterval = value;
 	}
 
+	/**
+	 * The number of milliseconds to hold a write through commit open so others
+	 * can join it.
+	 * 
+	 * When greater than zero, write through packets are written without flushing
+	 * and the derived messenger is flushed once the window closes, committing
+	 * every packet in the window together. Zero disables group commit.
+	 */
+	private int groupCommitWindow;
+
+	/**
+	 * Gets the group commit window.
+	 *
+	 * @return the group commit window
+	 */
+	protected final int getGroupCommitWindow() {
+		return this.groupCommitWindow;
+	}
+
+	/**
+	 * Sets the group commit window.
+	 *
+	 * @param value the new group commit window
+	 */
+	protected final void setGroupCommitWindow(int value) {
+		this.groupCommitWindow = value;
+	}
+
 	/**
 	 * The publisher that created this messenger.
 	 * 
@@ -1257,8 +1372,45 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 	 */
 	@Override
 	public final void write(IMessengerPacket packet, boolean writeThrough) throws InterruptedException {
+		PacketEnvelope packetEnvelope = submit(packet, writeThrough);
+		if (packetEnvelope == null) {
+			return; // it wasn't queued, so there's nothing to wait on.
+		}
+
+		// See if we need to wait because we've degraded to synchronous message handling
+		// due to a backlog of messages
+		if (packetEnvelope.isPending()) {
+			// this routine does its own locking so we don't need to interfere with the
+			// nominal case of
+			// not needing to pend.
+			waitOnPending(packetEnvelope);
+		}
+
+		// Finally, if we need to wait on the write to complete now we want to stall. We
+		// had to do this outside of
+		// the message queue lock to ensure we don't block other threads.
+		if (packetEnvelope.getWriteThrough()) {
+			waitOnPacket(packetEnvelope);
+		}
+	}
+
+	/**
+	 * Queue the provided packet to this messenger without waiting for it.
+	 * 
+	 * The packet is committed once the returned envelope is no longer pending and
+	 * has been committed; it is only queued write through if write through is in
+	 * effect for this messenger.
+	 *
+	 * @param packet       The packet to write through the messenger.
+	 * @param writeThrough True if the information contained in packet should be
+	 *                     committed synchronously, false if the messenger should
+	 *                     use write caching (if available).
+	 * @return The envelope to wait on, or null if the packet wasn't queued.
+	 */
+	@Override
+	public final PacketEnvelope submit(IMessengerPacket packet, boolean writeThrough) {
 		if (packet == null) {
-			return; // just rapid bail. don't bother with the lock.
+			return null; // just rapid bail. don't bother with the lock.
 		}
 
 		// EnsureOpen("Write"); // Don't throw an exception; if we're closed just return
@@ -1266,30 +1418,23 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 
 		PacketEnvelope packetEnvelope;
 
-		boolean effectiveWriteThrough;
-		boolean isPending;
-
 		// get the queue lock
 		synchronized (this.messageQueueLock) {
 			// now that we're in the exclusive lock, check to see if we're actually closed.
 			if (this.closed) {
-				return; // it wouldn't get logged anyway.
+				return null; // it wouldn't get logged anyway.
 			}
 
 			// Check whether this should writeThrough, either by request, by configuration,
 			// or because we have
 			// received an ExitMode or CloseMessenger command (pending) and need to flush
 			// after each packet.
-			effectiveWriteThrough = this.supportsWriteThrough
+			boolean effectiveWriteThrough = this.supportsWriteThrough
 					&& (this.forceWriteThrough || writeThrough || this.exiting);
 
 			// and queue the packet.
 			packetEnvelope = queuePacket(packet, effectiveWriteThrough);
 
-			// grab the pending flag before we release the lock so we know we have a
-			// consistent view.
-			isPending = packetEnvelope.isPending();
-
 			// now signal our next thread that might be waiting that the lock will be
 			// released.
 			this.messageQueueLock.notifyAll();
@@ -1300,20 +1445,80 @@ public abstract class MessengerBase implements IMessenger, Closeable {
 		// so we don't need to hold up other threads that are publishing.
 		ensureMessageDispatchThreadIsValid();
 
-		// See if we need to wait because we've degraded to synchronous message handling
-		// due to a backlog of messages
+		return packetEnvelope;
+	}
+
+	/**
+	 * Write the provided batch of packets to this messenger, in order.
+	 * 
+	 * The whole batch is queued within a single queue lock. If write through is
+	 * in effect only the last packet is queued write through, since committing it
+	 * commits everything before it.
+	 *
+	 * @param packets      The packets to write through the messenger.
+	 * @param writeThrough True if the information contained in the packets should
+	 *                     be committed synchronously, false if the messenger
+	 *                     should use write caching (if available).
+	 * @throws InterruptedException the interrupted exception
+	 */
+	@Override
+	public final void write(List<IMessengerPacket> packets, boolean writeThrough) throws InterruptedException {
+		if (packets == null || packets.isEmpty()) {
+			return; // just rapid bail. don't bother with the lock.
+		}
+
+		PacketEnvelope lastPacketEnvelope = null;
+
+		boolean effectiveWriteThrough;
+		boolean isPending;
+
+		// get the queue lock once for the whole batch
+		synchronized (this.messageQueueLock) {
+			// now that we're in the exclusive lock, check to see if we're actually closed.
+			if (this.closed) {
+				return; // it wouldn't get logged anyway.
+			}
+
+			effectiveWriteThrough = this.supportsWriteThrough
+					&& (this.forceWriteThrough || writeThrough || this.exiting);
+
+			// find the last real packet, that's the one that gets to be write through.
+			int lastIndex = packets.size() - 1;
+			while (lastIndex >= 0 && packets.get(lastIndex) == null) {
+				lastIndex--;
+			}
+
+			for (int index = 0; index <= lastIndex; index++) {
+				IMessengerPacket packet = packets.get(index);
+				if (packet != null) {
+					lastPacketEnvelope = queuePacket(packet, effectiveWriteThrough && index == lastIndex);
+				}
+			}
+
+			if (lastPacketEnvelope == null) {
+				return; // the batch was nothing but nulls.
+			}
+
+			// grab the pending flag before we release the lock so we know we have a
+			// consistent view.
+			isPending = lastPacketEnvelope.isPending();
+
+			// now signal our next thread that might be waiting that the lock will be
+			// released.
+			this.messageQueueLock.notifyAll();
+		}
+
+		// make sure our dispatch thread is still going.
+		ensureMessageDispatchThreadIsValid();
+
+		// The queue is in order, so once the last packet is no longer pending (or is
+		// committed) neither is anything before it.
 		if (isPending) {
-			// this routine does its own locking so we don't need to interfere with the
-			// nominal case of
-			// not needing to pend.
-			waitOnPending(packetEnvelope);
+			waitOnPending(lastPacketEnvelope);
 		}
 
-		// Finally, if we need to wait on the write to complete now we want to stall. We
-		// had to do this outside of
-		// the message queue lock to ensure we don't block other threads.
 		if (effectiveWriteThrough) {
-			waitOnPacket(packetEnvelope);
+			waitOnPacket(lastPacketEnvelope);
 		}
 	}
 }
\ No newline at end of file
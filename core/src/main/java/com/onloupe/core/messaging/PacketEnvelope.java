@@ -1,5 +1,9 @@
 package com.onloupe.core.messaging;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * Wraps a Gibraltar Packet for publishing
@@ -26,6 +30,9 @@ public class PacketEnvelope {
 	
 	/** The pending. */
 	private boolean pending;
+	
+	/** The commit dependencies. */
+	private List<PacketEnvelope> commitDependencies;
 
 	// public event EventHandler PacketCommitted;
 
@@ -128,6 +135,42 @@ public class PacketEnvelope {
 		}
 	}
 
+	/**
+	 * Add an envelope that must also be committed before this packet is
+	 * considered durable.
+	 * 
+	 * The publisher uses this to hand write through packets on to its messengers
+	 * without waiting on each of them itself; the original caller waits on the
+	 * dependencies instead. Add dependencies before marking this envelope
+	 * committed.
+	 *
+	 * @param dependency the messenger envelope for this packet
+	 */
+	public final void addCommitDependency(PacketEnvelope dependency) {
+		synchronized (this) {
+			if (this.commitDependencies == null) {
+				this.commitDependencies = new ArrayList<PacketEnvelope>();
+			}
+
+			this.commitDependencies.add(dependency);
+		}
+	}
+
+	/**
+	 * The envelopes that must also be committed before this packet is durable.
+	 *
+	 * @return the commit dependencies, never null
+	 */
+	public final List<PacketEnvelope> getCommitDependencies() {
+		synchronized (this) {
+			if (this.commitDependencies == null) {
+				return Collections.emptyList();
+			}
+
+			return new ArrayList<PacketEnvelope>(this.commitDependencies);
+		}
+	}
+
 	/**
 	 * The actual Gibraltar Packet.
 	 *
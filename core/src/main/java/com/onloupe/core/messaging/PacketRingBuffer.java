@@ -0,0 +1,286 @@
+package com.onloupe.core.messaging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+
+/**
+ * A preallocated, bounded multi-producer / single-consumer queue of packet
+ * envelopes.
+ *
+ * Producers claim a slot with a single compare-and-set on the tail cursor and
+ * publish the envelope by advancing that slot's sequence, so queuing a packet
+ * never takes a monitor. Only one thread (the dispatch thread) may call
+ * {@link #poll()} and {@link #waitFor(BooleanSupplier)}. The queue rejects new
+ * entries once it holds the configured maximum length, leaving overflow
+ * handling to the caller.
+ */
+public final class PacketRingBuffer {
+
+	/** The number of busy spins before the YIELD strategy starts yielding. */
+	private static final int SPIN_TRIES = 100;
+
+	/** The longest we'll park before re-checking, guarding against a missed unpark. */
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** The longest we'll block before re-checking, guarding against a missed signal. */
+	private static final long BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/** The slots. */
+	private final AtomicReferenceArray<PacketEnvelope> entries;
+
+	/** The per-slot sequence numbers used to hand slots between producers and the consumer. */
+	private final AtomicLongArray sequences;
+
+	/** The index mask (capacity - 1). */
+	private final int mask;
+
+	/** The capacity. */
+	private final int capacity;
+
+	/** The maximum number of entries we'll hold, which may be less than the capacity. */
+	private final int maxLength;
+
+	/** The next sequence to be claimed by a producer. */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** The next sequence to be read by the consumer. Only written by the consumer. */
+	private volatile long head;
+
+	/** The wait strategy. */
+	private final QueueWaitStrategy waitStrategy;
+
+	/** The block lock. */
+	private final ReentrantLock blockLock = new ReentrantLock();
+
+	/** The not empty condition. */
+	private final Condition notEmpty = this.blockLock.newCondition();
+
+	/** The consumer thread, captured when it first waits. */
+	private volatile Thread consumerThread;
+
+	/** Set while the consumer is (about to be) parked or blocked. */
+	private volatile boolean consumerWaiting;
+
+	/**
+	 * Create a new ring buffer.
+	 *
+	 * @param maxLength    the maximum number of entries the queue will hold
+	 * @param waitStrategy how the consumer waits when the queue is empty
+	 */
+	public PacketRingBuffer(int maxLength, QueueWaitStrategy waitStrategy) {
+		if (maxLength < 1) {
+			throw new IllegalArgumentException("maxLength must be at least 1");
+		}
+
+		if (waitStrategy == null) {
+			throw new NullPointerException("waitStrategy");
+		}
+
+		// round up to a power of two so we can mask rather than mod.
+		int size = Integer.highestOneBit(maxLength);
+		if (size < maxLength) {
+			size <<= 1;
+		}
+
+		this.capacity = size;
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+		this.waitStrategy = waitStrategy;
+		this.entries = new AtomicReferenceArray<PacketEnvelope>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Add an envelope to the queue if there is room. Safe to call from any thread.
+	 *
+	 * @param envelope the envelope
+	 * @return true if the envelope was queued, false if the queue is full.
+	 */
+	public boolean offer(PacketEnvelope envelope) {
+		long position = this.tail.get();
+		while (true) {
+			if (position - this.head >= this.maxLength) {
+				return false;
+			}
+
+			int index = (int) (position & this.mask);
+			long difference = this.sequences.get(index) - position;
+			if (difference == 0) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					this.entries.set(index, envelope);
+					this.sequences.set(index, position + 1); // publishes the entry to the consumer
+					return true;
+				}
+				position = this.tail.get();
+			} else if (difference < 0) {
+				// the consumer hasn't released this slot yet, we're full.
+				return false;
+			} else {
+				// another producer got here first.
+				position = this.tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Remove the oldest envelope from the queue. Must only be called by the
+	 * consumer thread.
+	 *
+	 * @return the envelope, or null if the queue is empty.
+	 */
+	public PacketEnvelope poll() {
+		long position = this.head;
+		int index = (int) (position & this.mask);
+		if (this.sequences.get(index) != position + 1) {
+			return null;
+		}
+
+		PacketEnvelope envelope = this.entries.get(index);
+		this.entries.set(index, null);
+		this.sequences.set(index, position + this.capacity); // release the slot for the next lap
+		this.head = position + 1;
+		return envelope;
+	}
+
+	/**
+	 * Indicates if there is nothing available for the consumer to read.
+	 *
+	 * @return true, if is empty
+	 */
+	public boolean isEmpty() {
+		long position = this.head;
+		return this.sequences.get((int) (position & this.mask)) != position + 1;
+	}
+
+	/**
+	 * An estimate of the number of entries in the queue. Constant time.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return (int) Math.max(0, this.tail.get() - this.head);
+	}
+
+	/**
+	 * The maximum number of entries the queue will hold.
+	 *
+	 * @return the max length
+	 */
+	public int getMaxLength() {
+		return this.maxLength;
+	}
+
+	/**
+	 * The wait strategy used by the consumer.
+	 *
+	 * @return the wait strategy
+	 */
+	public QueueWaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+
+	/**
+	 * Wake the consumer if it is waiting. Producers call this after offering
+	 * envelopes or otherwise changing the condition the consumer waits on. It
+	 * is a volatile read unless the consumer is actually asleep.
+	 */
+	public void signal() {
+		if (!this.consumerWaiting) {
+			return;
+		}
+
+		switch (this.waitStrategy) {
+		case PARK:
+			Thread consumer = this.consumerThread;
+			if (consumer != null) {
+				LockSupport.unpark(consumer);
+			}
+			break;
+		case BLOCK:
+			this.blockLock.lock();
+			try {
+				this.notEmpty.signalAll();
+			} finally {
+				this.blockLock.unlock();
+			}
+			break;
+		default:
+			// spinning consumers don't need a wake up.
+			break;
+		}
+	}
+
+	/**
+	 * Wait until the provided condition is true using the configured wait
+	 * strategy. Must only be called by the consumer thread.
+	 *
+	 * @param ready the condition to wait for
+	 * @throws InterruptedException the interrupted exception
+	 */
+	public void waitFor(BooleanSupplier ready) throws InterruptedException {
+		switch (this.waitStrategy) {
+		case SPIN:
+			while (!ready.getAsBoolean()) {
+				checkInterrupted();
+			}
+			break;
+		case YIELD:
+			int spins = 0;
+			while (!ready.getAsBoolean()) {
+				if (++spins > SPIN_TRIES) {
+					Thread.yield();
+				}
+				checkInterrupted();
+			}
+			break;
+		case PARK:
+			this.consumerThread = Thread.currentThread();
+			this.consumerWaiting = true;
+			try {
+				while (!ready.getAsBoolean()) {
+					LockSupport.parkNanos(this, PARK_NANOS);
+					checkInterrupted();
+				}
+			} finally {
+				this.consumerWaiting = false;
+			}
+			break;
+		case BLOCK:
+		default:
+			this.blockLock.lock();
+			try {
+				// we set the flag before checking so a producer that adds after our
+				// check is guaranteed to see it and signal us.
+				this.consumerWaiting = true;
+				while (!ready.getAsBoolean()) {
+					this.notEmpty.awaitNanos(BLOCK_NANOS);
+				}
+			} finally {
+				this.consumerWaiting = false;
+				this.blockLock.unlock();
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Check interrupted.
+	 *
+	 * @throws InterruptedException the interrupted exception
+	 */
+	private static void checkInterrupted() throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+}
@@ -20,6 +20,7 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -30,7 +31,7 @@ public class Publisher implements Closeable {
 	/** The session summary. */
 	private SessionSummary sessionSummary;
 	
-	/** The message queue lock. */
+	/** The message queue lock. Only used for rare state changes, queuing is lock free. */
 	private final Object messageQueueLock = new Object();
 	
 	/** The message dispatch thread lock. */
@@ -53,7 +54,7 @@ public class Publisher implements Closeable {
 																												// BY
 																												/** The message queue. */
 																												// HEADERPACKETSLOCK
-	private ConcurrentLinkedQueue<PacketEnvelope> messageQueue;
+	private PacketRingBuffer messageQueue;
 	
 	/** The message overflow queue. */
 	private ConcurrentLinkedQueue<PacketEnvelope> messageOverflowQueue;
@@ -61,6 +62,18 @@ public class Publisher implements Closeable {
 	/** The messengers. */
 	private List<IMessenger> messengers; // LOCKED BY CONFIGLOCK
 	
+	/** The maximum number of envelopes to dispatch together; one means no batching. */
+	private int dispatchBatchSize;
+	
+	/** The longest we'll spend gathering a dispatch batch, in nanoseconds. */
+	private long dispatchBatchTimeBudgetNanos;
+	
+	/** The envelopes of the batch being dispatched. ONLY USED BY THE DISPATCH THREAD */
+	private final List<PacketEnvelope> dispatchEnvelopes = new ArrayList<PacketEnvelope>();
+	
+	/** The packets of the batch being dispatched. ONLY USED BY THE DISPATCH THREAD */
+	private final List<IMessengerPacket> dispatchPackets = new ArrayList<IMessengerPacket>();
+	
 	/** The session name. */
 	private String sessionName;
 
@@ -72,29 +85,31 @@ public class Publisher implements Closeable {
 	
 	/** The message dispatch thread failed. */
 	private volatile boolean messageDispatchThreadFailed; // LOCKED BY THREADLOCK (and volatile to allow quick reading
-															
-															/** The message queue max length. */
 															// outside the lock)
-	private int messageQueueMaxLength = 2000; // LOCKED BY QUEUELOCK
 	
 	/** The force write through. */
 	private boolean forceWriteThrough;
+
+	/** True if write through packets are committed in groups by the messengers. */
+	private boolean groupCommit;
 	
 	/** The initialized. */
 	private boolean initialized; // designed to enable us to do our initialization in the background. LOCKED BY
 									
 									/** The shutdown. */
 									// THREADLOCK
-	private volatile boolean shutdown; // locks us down when we shut down LOCKED BY QUEUELOCK (and volatile to allow
+	private volatile boolean shutdown; // locks us down when we shut down (volatile so producers can check it without a lock)
 										
 										/** The packet sequence. */
-										// quick reading outside the lock)
-	private long packetSequence; // a monotonically increasing sequence number for packets as they get queued.
+	private long packetSequence; // a monotonically increasing sequence number for packets as they get dispatched.
 									
 									/** The closed. */
-									// LOCKED BY QUEUELOCK
+									// ONLY USED BY THE DISPATCH THREAD
 	private boolean closed;
 
+	/** The timestamp of the last packet stamped. ONLY USED BY THE DISPATCH THREAD */
+	private OffsetDateTime lastTimestamp;
+
 	// A thread-specific static flag for each thread, so we can disable blocking for
 	// Publisher and Messenger threads
 
@@ -148,20 +163,19 @@ public class Publisher implements Closeable {
 		this.sessionSummary = sessionSummary;
 		this.configuration = configuration;
 
-		// create our queue, cache, and messenger objects
-		this.messageQueue = new ConcurrentLinkedQueue<PacketEnvelope>(); // a more or less arbitrary initial queue
-																			// size.
-		this.messageOverflowQueue = new ConcurrentLinkedQueue<PacketEnvelope>(); // a more or less arbitrary initial
-																					// queue
-																					// size.
+		// create our queue, cache, and messenger objects. The main queue is preallocated at the max length (make
+		// sure there's no way to get it below 1) and the overflow queue only sees use when we're backed up.
+		QueueWaitStrategy waitStrategy = configuration.getPublisher().getQueueWaitStrategy();
+		this.messageQueue = new PacketRingBuffer(Math.max(configuration.getPublisher().getMaxQueueLength(), 1),
+				waitStrategy != null ? waitStrategy : QueueWaitStrategy.BLOCK);
+		this.messageOverflowQueue = new ConcurrentLinkedQueue<PacketEnvelope>();
 		this.cachedTypes = new PacketDefinitionList();
 		this.packetCache = new PacketCache();
 		this.messengers = new ArrayList<IMessenger>();
 
-		this.messageQueueMaxLength = Math.max(configuration.getPublisher().getMaxQueueLength(), 1); // make sure
-																										// there's no
-		// way to get
-		// it below 1.
+		this.dispatchBatchSize = Math.max(configuration.getPublisher().getDispatchBatchSize(), 1);
+		this.dispatchBatchTimeBudgetNanos = TimeUnit.MILLISECONDS
+				.toNanos(Math.max(configuration.getPublisher().getDispatchBatchTimeBudget(), 1));
 
 		// create the thread we use for dispatching messages
 		createMessageDispatchThread();
@@ -285,47 +299,34 @@ public class Publisher implements Closeable {
 			// Foreground thread should exit when we process exit, but a background thread
 			// should continue.
 			while (!this.shutdown) {
-				PacketEnvelope currentPacket = null;
-				synchronized (this.messageQueueLock) {
-					// If the queue is empty, wait for an item to be added
-					// This is a while loop, as we may be pulsed but not wake up before another
-					// thread has come in and
-					// consumed the newly added object or done something to modify the queue. In
-					// that case, we'll have to wait for another pulse.
-					while ((this.messageQueue.isEmpty()) && (!this.shutdown)) {
-						// This releases the message queue lock, only reacquiring it after being woken
-						// up by a call to Pulse
-						this.messageQueueLock.wait();
+				// We're the only consumer of the queue so we can just take the next item; producers
+				// never wait on us to do this.
+				PacketEnvelope currentPacket = this.messageQueue.poll();
+
+				// Every time we free up room we can release pending items from the overflow queue.
+				boolean transferred = transferOverflow();
+
+				if (currentPacket == null) {
+					if (!transferred) {
+						// If the queue is empty, wait for an item to be added (or for us to be shut down)
+						// using whatever wait strategy we were configured with.
+						this.messageQueue.waitFor(this::hasPendingWork);
 					}
-					
-					// if we got here then there was an item in the queue AND we have the lock.
-					// Dequeue the item and then we want to release our lock.
-					currentPacket = this.messageQueue.poll();
-					if (currentPacket != null) {
-						// and are we now below the maximum packet queue? if so we can release the
-						// pending items.
-						while ((!this.messageOverflowQueue.isEmpty())
-								&& (this.messageQueue.size() < this.messageQueueMaxLength)) {
-							// we still have an item in the overflow queue and we have room for it, so lets
-							// add it.
-							PacketEnvelope currentOverflowEnvelope = this.messageOverflowQueue.poll();
-
-							this.messageQueue.offer(currentOverflowEnvelope);
-
-							// and indicate that we've submitted this queue item. This does a thread pulse
-							// under the covers,
-							// and gets its own lock so we should NOT lock the envelope.
-							currentOverflowEnvelope.setIsPending(false);
-						}
-					}
-
-					// now pulse the next waiting thread there are that we've dequeued the packet.
-					this.messageQueueLock.notifyAll();
+					continue;
 				}
 
-				// We have a packet and have released the lock (so others can queue more packets
-				// while we're dispatching items.
-				if (currentPacket != null) {
+				// We have a packet and others can queue more packets while we're dispatching it.
+				if (this.dispatchBatchSize > 1) {
+					// gather up whatever else is ready and send it all in one go.
+					drainBatch(currentPacket);
+					try {
+						synchronized (this.configLock) {
+							dispatchBatch(this.dispatchEnvelopes);
+						}
+					} finally {
+						this.dispatchEnvelopes.clear();
+					}
+				} else {
 					synchronized (this.configLock) {
 						dispatchPacket(currentPacket);
 					}
@@ -358,29 +359,57 @@ public class Publisher implements Closeable {
 		}
 	}
 
+	/**
+	 * Indicates if the dispatch thread has something to do.
+	 *
+	 * @return true, if there are queued or overflowed packets or we've been shut down
+	 */
+	private boolean hasPendingWork() {
+		return this.shutdown || !this.messageQueue.isEmpty() || !this.messageOverflowQueue.isEmpty();
+	}
+
+	/**
+	 * Move as many packets as will fit from the overflow queue to the main queue,
+	 * releasing the threads pending on them. Only called by the dispatch thread.
+	 *
+	 * @return true if any packets were transferred
+	 */
+	private boolean transferOverflow() {
+		boolean transferred = false;
+		PacketEnvelope currentOverflowEnvelope;
+		while ((currentOverflowEnvelope = this.messageOverflowQueue.peek()) != null
+				&& this.messageQueue.offer(currentOverflowEnvelope)) {
+			// we're the only thread that removes from the overflow queue, so what we peeked is what we poll.
+			this.messageOverflowQueue.poll();
+
+			// and indicate that we've submitted this queue item. This does a thread pulse
+			// under the covers, and gets its own lock so we should NOT lock the envelope.
+			currentOverflowEnvelope.setIsPending(false);
+			transferred = true;
+		}
+
+		return transferred;
+	}
+
 	/**
 	 * On thread abort.
 	 */
 	private void onThreadAbort() {
-		synchronized (this.messageQueueLock) {
-			// We need to dump the queues and tell everyone to stop waiting, because we'll
-			// never process them.
-			this.shutdown = true; // Consider us shut down after this. The app is really exiting.
-			PacketEnvelope envelope;
-			while (!this.messageQueue.isEmpty()) {
-				envelope = this.messageQueue.poll();
-				envelope.setIsPending(false);
-				envelope.setIsCommitted(true);
-			}
-
-			while (!this.messageOverflowQueue.isEmpty()) {
-				envelope = this.messageOverflowQueue.poll();
-				envelope.setIsPending(false);
-				envelope.setIsCommitted(true);
-			}
+		// We need to dump the queues and tell everyone to stop waiting, because we'll
+		// never process them.
+		this.shutdown = true; // Consider us shut down after this. The app is really exiting.
+		PacketEnvelope envelope;
+		while ((envelope = this.messageQueue.poll()) != null) {
+			envelope.setIsPending(false);
+			envelope.setIsCommitted(true);
+		}
 
-			this.messageQueueLock.notifyAll();
+		while ((envelope = this.messageOverflowQueue.poll()) != null) {
+			envelope.setIsPending(false);
+			envelope.setIsCommitted(true);
 		}
+
+		this.messageQueue.signal();
 	}
 
 	/**
@@ -437,7 +466,16 @@ public class Publisher implements Closeable {
 				// we don't want an exception with one messenger to cause us a problem, so each
 				// gets its own try/catch
 				try {
-					messenger.write(packet, writeThrough);
+					if (this.groupCommit && writeThrough && !envelope.isCommand()) {
+						// the caller waits on the messenger rather than us, so we can keep dispatching
+						// and the messenger can commit several callers' packets together.
+						PacketEnvelope messengerEnvelope = messenger.submit(packet, true);
+						if (messengerEnvelope != null) {
+							envelope.addCommitDependency(messengerEnvelope);
+						}
+					} else {
+						messenger.write(packet, writeThrough);
+					}
 				} catch (Exception e) {
 					if (SystemUtils.isInDebugMode()) {
 						e.printStackTrace();
@@ -456,12 +494,134 @@ public class Publisher implements Closeable {
 		queueToNotifier(packet);
 	}
 
+	/**
+	 * Gather the next dispatch batch, starting with the provided envelope.
+	 * 
+	 * Takes whatever is already queued without waiting, up to the batch size or
+	 * until the time budget runs out. A command always ends the batch so it's
+	 * processed after the data packets in front of it and before anything behind
+	 * it.
+	 *
+	 * @param firstEnvelope the first envelope of the batch
+	 */
+	private void drainBatch(PacketEnvelope firstEnvelope) {
+		this.dispatchEnvelopes.add(firstEnvelope);
+		if (firstEnvelope.isCommand()) {
+			return;
+		}
+
+		long deadline = System.nanoTime() + this.dispatchBatchTimeBudgetNanos;
+		while (this.dispatchEnvelopes.size() < this.dispatchBatchSize) {
+			PacketEnvelope envelope = this.messageQueue.poll();
+			if (envelope == null) {
+				// maybe there's room for more from the overflow queue now, otherwise we're done.
+				if (transferOverflow()) {
+					continue;
+				}
+				break;
+			}
+
+			this.dispatchEnvelopes.add(envelope);
+			if (envelope.isCommand() || System.nanoTime() - deadline > 0) {
+				break;
+			}
+		}
+
+		transferOverflow();
+	}
+
+	/**
+	 * Send a batch of envelopes to every current messenger.
+	 * 
+	 * The data packets are stamped in sequence and handed to each messenger as a
+	 * single batch, then committed together. If the batch ends with a command it
+	 * is dispatched on its own afterwards.
+	 *
+	 * @param envelopes the envelopes to dispatch
+	 * @throws Exception the exception
+	 */
+	private void dispatchBatch(List<PacketEnvelope> envelopes) throws Exception {
+		int count = envelopes.size();
+		PacketEnvelope commandEnvelope = envelopes.get(count - 1).isCommand() ? envelopes.get(count - 1) : null;
+		int dataCount = (commandEnvelope != null) ? count - 1 : count;
+
+		if (dataCount > 0) {
+			boolean writeThrough = false;
+			try {
+				for (int index = 0; index < dataCount; index++) {
+					PacketEnvelope envelope = envelopes.get(index);
+					IMessengerPacket packet = envelope.getPacket();
+
+					// stamp the packet, and all of its dependent packets (this sets the sequence
+					// number)
+					stampPacket(packet, packet.getTimestamp());
+					writeThrough |= envelope.getWriteThrough();
+
+					// Header packets go in the header list before any messenger sees them, just
+					// like dispatchPacket.
+					if (envelope.isHeader()) {
+						synchronized (this.headerPacketsLock) {
+							this.headerPackets.add((ICachedMessengerPacket) packet);
+							this.headerPacketsLock.notifyAll();
+						}
+					}
+
+					this.dispatchPackets.add(packet);
+				}
+
+				for (IMessenger messenger : this.messengers) {
+					// we don't want an exception with one messenger to cause us a problem, so each
+					// gets its own try/catch
+					try {
+						if (this.groupCommit && writeThrough) {
+							// just like dispatchPacket, the callers wait on the messenger for the commit.
+							// Committing the last packet commits everything in front of it.
+							int last = this.dispatchPackets.size() - 1;
+							messenger.write(this.dispatchPackets.subList(0, last), false);
+							PacketEnvelope messengerEnvelope = messenger.submit(this.dispatchPackets.get(last), true);
+							if (messengerEnvelope != null) {
+								for (int index = 0; index < dataCount; index++) {
+									PacketEnvelope envelope = envelopes.get(index);
+									if (envelope.getWriteThrough()) {
+										envelope.addCommitDependency(messengerEnvelope);
+									}
+								}
+							}
+						} else {
+							messenger.write(this.dispatchPackets, writeThrough);
+						}
+					} catch (Exception e) {
+						if (SystemUtils.isInDebugMode()) {
+							e.printStackTrace();
+						}
+					}
+				}
+			} finally {
+				this.dispatchPackets.clear();
+
+				// let anyone waiting on these packets know they've been committed.
+				for (int index = 0; index < dataCount; index++) {
+					envelopes.get(index).setIsCommitted(true);
+				}
+			}
+
+			for (int index = 0; index < dataCount; index++) {
+				queueToNotifier(envelopes.get(index).getPacket());
+			}
+		}
+
+		if (commandEnvelope != null) {
+			dispatchPacket(commandEnvelope);
+		}
+	}
+
 	/**
 	 * Perform first-time initialization. We presume we're in a thread-safe lock.
 	 */
 	private void ensureInitialized() {
 		if (!this.initialized) {
 			this.forceWriteThrough = this.configuration.getPublisher().getForceSynchronous();
+			this.groupCommit = this.configuration.getSessionFile().getGroupCommitWindow() > 0;
 
 			// We need to load up the messengers in the configuration object.
 			if (this.configuration.getSessionFile().getEnabled()) {
@@ -477,6 +637,18 @@ public class Publisher implements Closeable {
 		}
 	}
 
+	/**
+	 * Adds a messenger that's already been initialized, for tests that want to see
+	 * what's dispatched.
+	 *
+	 * @param messenger the messenger
+	 */
+	void addMessenger(IMessenger messenger) {
+		synchronized (this.configLock) {
+			this.messengers.add(messenger);
+		}
+	}
+
 	/**
 	 * Adds the messenger.
 	 *
@@ -547,9 +719,9 @@ public class Publisher implements Closeable {
 	/**
 	 * Perform the actual package queuing and wait for it to be committed.
 	 * 
-	 * This must be done within the message queue lock. This method may return a
-	 * null envelope if called on a thread which must not block and the packet had
-	 * to be discarded due to an overflow condition.
+	 * This is safe to call from any number of threads without a lock. This method
+	 * may return a null envelope if called on a thread which must not block and
+	 * the packet had to be discarded due to an overflow condition.
 	 * 
 	 * @param packet       The packet to be queued
 	 * @param writeThrough True if the call should block the current thread until
@@ -558,16 +730,19 @@ public class Publisher implements Closeable {
 	 *         packet was discarded.
 	 */
 	private PacketEnvelope queuePacket(IMessengerPacket packet, boolean writeThrough) {
-		// even though the packet might already have a timestamp that's preferable to
-		// ours, we're deciding we're the judge of order to ensure it aligns with
-		// sequence.
-		packet.setTimestamp(OffsetDateTime.now()); // we convert to UTC during serialization, we want local time.
+		// a packet may already have the time it happened, like a message an
+		// AsyncLogWriter queued a while ago. We queue without a lock, so either way this
+		// only gets close; we're the judge of order, and stampPacket makes it align with sequence.
+		if (packet.getTimestamp() == null) {
+			packet.setTimestamp(OffsetDateTime.now()); // we convert to UTC during serialization, we want local time.
+		}
 
 		// wrap it in a packet envelope and indicate we're in write through mode.
 		PacketEnvelope packetEnvelope = new PacketEnvelope(packet, writeThrough);
 
-		// But what queue do we put the packet in?
-		if ((!this.messageOverflowQueue.isEmpty()) || (this.messageQueue.size() > this.messageQueueMaxLength)) {
+		// But what queue do we put the packet in? Once anything is in the overflow queue everything goes there
+		// until the dispatch thread has caught up, to preserve order.
+		if ((!this.messageOverflowQueue.isEmpty()) || !this.messageQueue.offer(packetEnvelope)) {
 			// We are currently using the overflow queue, so we'll put it there.
 			// However, if we were called by a must-not-block thread, we want to discard
 			// overflow packets...
@@ -576,14 +751,12 @@ public class Publisher implements Closeable {
 			if (tThreadMustNotBlock.get() && !packetEnvelope.isCommand()) {
 				packetEnvelope = null; // We won't queue this packet, so there's no envelope to hang onto.
 			} else {
-				this.messageOverflowQueue.offer(packetEnvelope);
-
-				// and set that it's pending so our caller knows they need to wait for it.
+				// set that it's pending so our caller knows they need to wait for it. This has to happen
+				// before it's visible to the dispatch thread or we could miss it being released.
 				packetEnvelope.setIsPending(true);
+
+				this.messageOverflowQueue.offer(packetEnvelope);
 			}
-		} else {
-			// just queue the packet, we don't want to wait.
-			this.messageQueue.offer(packetEnvelope);
 		}
 
 		return packetEnvelope;
@@ -597,7 +770,7 @@ public class Publisher implements Closeable {
 	 * @throws Exception the exception
 	 */
 	private void stampPacket(IMessengerPacket packet, OffsetDateTime defaultTimeStamp) throws Exception {
-		assert TimeConversion.epochTicks(defaultTimeStamp) > 0;
+		assert defaultTimeStamp != null && defaultTimeStamp.isAfter(TimeConversion.MIN); // i.e. epochTicks > 0, without the cost
 
 		// we don't check dependencies on command packets, it'll fail (and they aren't
 		// written out)
@@ -627,17 +800,28 @@ public class Publisher implements Closeable {
 
 		// make sure we have a timestamp - if there isn't one use the default (which is
 		// the timestamp of the packet that depended on us or earlier)
-		if (packet.getTimestamp() == null) {
-			packet.setTimestamp(defaultTimeStamp);
+		OffsetDateTime timestamp = packet.getTimestamp();
+		if (timestamp == null) {
+			timestamp = defaultTimeStamp;
 		}
+
+		// producers timestamp their packets as they queue them, if they weren't already,
+		// so one can get its timestamp before another yet be queued after it. Never let
+		// a later sequence have an earlier time.
+		if (this.lastTimestamp != null && timestamp.isBefore(this.lastTimestamp)) {
+			timestamp = this.lastTimestamp;
+		}
+		packet.setTimestamp(timestamp);
+		this.lastTimestamp = timestamp;
 	}
 
 	/**
 	 * Suspends the calling thread until the provided packet is committed.
 	 * 
 	 * Even if the envelope is not set to write through the method will not return
-	 * until the packet has been committed. This method performs its own
-	 * synchronization and should not be done within a lock.
+	 * until the packet has been committed, including by any messengers it was
+	 * handed to for commit. This method performs its own synchronization and
+	 * should not be done within a lock.
 	 *
 	 * @param packetEnvelope The packet that must be committed
 	 * @throws InterruptedException the interrupted exception
@@ -659,6 +843,14 @@ public class Publisher implements Closeable {
 			packetEnvelope.notifyAll();
 			;
 		}
+
+		// and if it was handed on to messengers to commit, wait for them too.
+		for (PacketEnvelope dependency : packetEnvelope.getCommitDependencies()) {
+			waitOnPending(dependency);
+			if (dependency.getWriteThrough()) {
+				waitOnPacket(dependency);
+			}
+		}
 	}
 
 	/**
@@ -760,45 +952,45 @@ public class Publisher implements Closeable {
 		boolean isPending;
 		int queuedCount = 0;
 
-		// Get the queue lock.
-		synchronized (this.messageQueueLock) {
-			if (this.shutdown) // If we're already shut down, just bail. We'll never process it anyway.
-			{
-				return;
-			}
+		// We don't take a lock to queue; the queue itself is safe for many producers.
+		if (this.shutdown) // If we're already shut down, just bail. We'll never process it anyway.
+		{
+			return;
+		}
 
-			// Check to see if either the overall force write through or the local write
-			// through are set...
-			// or if we are in ExitingMode. In those cases, we'll want to block until the
-			// packet is committed.
-			effectiveWriteThrough = (this.forceWriteThrough || writeThrough);
-			for (int i = 0; i < count; i++) {
-				IMessengerPacket packet = packetArray[i];
-
-				// We have to double-check each element for null, or QueuePacket() would barf on
-				// it.
-				if (packet != null) {
-					// We have a real packet, so queue it. Only WriteThrough for the last packet, to
-					// flush the rest.
-					PacketEnvelope packetEnvelope = queuePacket(packet, effectiveWriteThrough && i >= lastIndex);
-
-					// If a null is returned, the packet wasn't queued, so don't overwrite
-					// lastPacketEnvelope.
-					if (packetEnvelope != null) {
-						queuedCount++;
-						lastPacketEnvelope = packetEnvelope; // Keep track of the last one queued.
-
-						if (!this.shutdown && packetEnvelope.isCommand()) {
-							CommandPacket commandPacket = (CommandPacket) packet;
-							if (commandPacket.getCommand() == MessagingCommand.SHUTDOWN) {
-								// Once we *receive* an ExitMode command, all subsequent messages queued
-								// need to block, to make sure the process stays alive for any final logging
-								// foreground threads might have. We will be switching the Publisher to a
-								// background thread when we process the ExitMode command so we don't hold
-								// up the process beyond its own foreground threads.
-
-								// Set the ending status, if it needs to be (probably won't).
-								SessionStatus endingStatus = (SessionStatus) commandPacket.getState();
+		// Check to see if either the overall force write through or the local write
+		// through are set...
+		// or if we are in ExitingMode. In those cases, we'll want to block until the
+		// packet is committed.
+		effectiveWriteThrough = (this.forceWriteThrough || writeThrough);
+		for (int i = 0; i < count; i++) {
+			IMessengerPacket packet = packetArray[i];
+
+			// We have to double-check each element for null, or QueuePacket() would barf on
+			// it.
+			if (packet != null) {
+				// We have a real packet, so queue it. Only WriteThrough for the last packet, to
+				// flush the rest.
+				PacketEnvelope packetEnvelope = queuePacket(packet, effectiveWriteThrough && i >= lastIndex);
+
+				// If a null is returned, the packet wasn't queued, so don't overwrite
+				// lastPacketEnvelope.
+				if (packetEnvelope != null) {
+					queuedCount++;
+					lastPacketEnvelope = packetEnvelope; // Keep track of the last one queued.
+
+					if (!this.shutdown && packetEnvelope.isCommand()) {
+						CommandPacket commandPacket = (CommandPacket) packet;
+						if (commandPacket.getCommand() == MessagingCommand.SHUTDOWN) {
+							// Once we *receive* an ExitMode command, all subsequent messages queued
+							// need to block, to make sure the process stays alive for any final logging
+							// foreground threads might have. We will be switching the Publisher to a
+							// background thread when we process the ExitMode command so we don't hold
+							// up the process beyond its own foreground threads.
+
+							// Set the ending status, if it needs to be (probably won't).
+							SessionStatus endingStatus = (SessionStatus) commandPacket.getState();
+							synchronized (this.messageQueueLock) {
 								if (endingStatus != null
 										&& this.sessionSummary.getStatus().getValue() < endingStatus.getValue()) {
 									this.sessionSummary.setStatus(endingStatus);
@@ -808,30 +1000,28 @@ public class Publisher implements Closeable {
 					}
 				}
 			}
+		}
 
-			if (effectiveWriteThrough && !tThreadMustNotBlock.get() && queuedCount > 0
-					&& (lastPacketEnvelope == null || (lastPacketEnvelope.getPacket() != packetArray[lastIndex]))) {
-				// The expected WriteThrough packet got dropped because of overflow? But we
-				// still need to block until
-				// those queued have completed, so issue a specific Flush command packet, which
-				// should not get dropped.
-				CommandPacket flushPacket = new CommandPacket(MessagingCommand.FLUSH);
-				PacketEnvelope flushEnvelope = queuePacket(flushPacket, true);
-				if (flushEnvelope != null) {
-					lastPacketEnvelope = flushEnvelope;
-				}
+		if (effectiveWriteThrough && !tThreadMustNotBlock.get() && queuedCount > 0
+				&& (lastPacketEnvelope == null || (lastPacketEnvelope.getPacket() != packetArray[lastIndex]))) {
+			// The expected WriteThrough packet got dropped because of overflow? But we
+			// still need to block until
+			// those queued have completed, so issue a specific Flush command packet, which
+			// should not get dropped.
+			CommandPacket flushPacket = new CommandPacket(MessagingCommand.FLUSH);
+			PacketEnvelope flushEnvelope = queuePacket(flushPacket, true);
+			if (flushEnvelope != null) {
+				lastPacketEnvelope = flushEnvelope;
 			}
+		}
 
-			// Grab the pending flag before we release the lock so we know we have a
-			// consistent view.
-			// If we didn't queue any packets then lastPacketEnvelope will be null and
-			// there's nothing to be pending.
-			isPending = (lastPacketEnvelope == null) ? false : lastPacketEnvelope.isPending();
+		// Grab the pending flag now; if it's already been released waitOnPending will return right away.
+		// If we didn't queue any packets then lastPacketEnvelope will be null and
+		// there's nothing to be pending.
+		isPending = (lastPacketEnvelope == null) ? false : lastPacketEnvelope.isPending();
 
-			// Now signal our next thread that might be waiting that the lock will be
-			// released.
-			this.messageQueueLock.notifyAll();
-		}
+		// Now wake the dispatch thread if it's waiting on us.
+		this.messageQueue.signal();
 
 		// Make sure our dispatch thread is still going. This has its own independent
 		// locking (when necessary),
@@ -0,0 +1,43 @@
+package com.onloupe.core.messaging;
+
+
+/**
+ * How the publisher's dispatch thread waits for new packets when its queue is
+ * empty.
+ */
+public enum QueueWaitStrategy {
+
+	/** Busy-spin on the queue. Lowest latency, but consumes a full core. */
+	SPIN,
+
+	/** Spin briefly then yield the processor between checks. */
+	YIELD,
+
+	/** Park the dispatch thread and have producers unpark it. */
+	PARK,
+
+	/** Block the dispatch thread on a condition signalled by producers (the default). */
+	BLOCK;
+
+	/** The Constant SIZE. */
+	public static final int SIZE = java.lang.Integer.SIZE;
+
+	/**
+	 * Gets the value.
+	 *
+	 * @return the value
+	 */
+	public int getValue() {
+		return this.ordinal();
+	}
+
+	/**
+	 * For value.
+	 *
+	 * @param value the value
+	 * @return the queue wait strategy
+	 */
+	public static QueueWaitStrategy forValue(int value) {
+		return values()[value];
+	}
+}
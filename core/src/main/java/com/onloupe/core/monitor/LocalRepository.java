@@ -13,6 +13,7 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
@@ -26,10 +27,12 @@ import com.onloupe.core.data.GLFReader;
 import com.onloupe.core.data.GLFWriter;
 import com.onloupe.core.data.InterprocessLock;
 import com.onloupe.core.data.InterprocessLockManager;
+import com.onloupe.core.data.ParallelSessionReader;
 import com.onloupe.core.data.PathManager;
 import com.onloupe.core.data.PathType;
 import com.onloupe.core.data.RepositoryMaintenance;
 import com.onloupe.core.data.SessionHeader;
+import com.onloupe.core.data.SessionIndex;
 import com.onloupe.core.logging.Log;
 import com.onloupe.core.logging.LogWriteMode;
 import com.onloupe.core.messaging.FileMessenger;
@@ -42,6 +45,7 @@ import com.onloupe.model.data.ISessionSummaryCollection;
 import com.onloupe.model.exception.DirectoryNotFoundException;
 import com.onloupe.model.exception.GibraltarException;
 import com.onloupe.model.exception.UnauthorizedAccessException;
+import com.onloupe.model.log.ILogMessage;
 import com.onloupe.model.log.LogMessageSeverity;
 import com.onloupe.model.session.ISessionSummary;
 import com.onloupe.model.session.SessionStatus;
@@ -522,6 +526,35 @@ public class LocalRepository {
 		}
 	}
 
+	/**
+	 * Read the log messages of sessions, decoding their files in parallel and
+	 * merging them in order. SEQUENCE_ORDER suits the fragments of one session,
+	 * TIMESTAMP_ORDER several sessions.
+	 *
+	 * @param sessionIds the ids of the sessions to read
+	 * @param order      the order to merge messages in
+	 * @param threads    the number of files to decode at once
+	 * @return the reader, which should be closed when done with
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public final ParallelSessionReader openLogMessages(List<UUID> sessionIds, Comparator<ILogMessage> order,
+			int threads) throws IOException {
+		List<File> files = new ArrayList<File>();
+		for (UUID sessionId : sessionIds) {
+			SessionFileInfo<File> sessionFileInfo = loadSessionFiles(sessionId);
+			if (sessionFileInfo == null) {
+				throw new IllegalStateException("There is no session with the Id " + sessionId);
+			}
+
+			// copied, since a refresh can change the collection.
+			synchronized (this.lock) {
+				files.addAll(sessionFileInfo.getFragments());
+			}
+		}
+
+		return new ParallelSessionReader(files, order, threads);
+	}
+
 	/**
 	 * Perform an immediate, synchronous refresh.
 	 *
@@ -608,6 +641,7 @@ public class LocalRepository {
 																									// go.
 			for (File fragment : filesToRemove) {
 				fileRemoved = FileUtils.safeDeleteFile(fragment) || fileRemoved;
+				FileUtils.safeDeleteFile(SessionIndex.getIndexFile(fragment));
 			}
 			return fileRemoved;
 		}
@@ -673,6 +707,7 @@ public class LocalRepository {
 				return false;
 			}
 
+			FileUtils.safeDeleteFile(SessionIndex.getIndexFile(victim));
 			return FileUtils.safeDeleteFile(victim);
 		}
 	}
@@ -1225,7 +1260,7 @@ public class LocalRepository {
 					GLFReader sourceGlfFile = null;
 
 					try {
-						if (fileFragment.exists() && fileFragment.canWrite()) {
+						if (!fileFragment.exists() || !fileFragment.canWrite()) {
 							if (this.loggingEnabled) {
 								Log.write(LogMessageSeverity.WARNING, LOG_CATEGORY, "Unable to Mark Session as Crashed",
 										"Unable to completely convert session %s from being marked as running to crashed in repository at '%s' because the fragment '%s' could not be opened",
@@ -1241,6 +1276,9 @@ public class LocalRepository {
 						// update the GLF to crashed
 						sourceGlfFile.getSessionHeader().setStatusName(SessionStatus.CRASHED.toString());
 						GLFWriter.updateSessionHeader(sourceGlfFile, sourceFile);
+
+						// and if it was preallocated, drop the space it never got to use.
+						GLFWriter.truncateToDataEnd(sourceGlfFile, sourceFile);
 						convertedCurrentSession = true;
 					} catch (RuntimeException ex) {
 
@@ -1317,6 +1355,9 @@ public class LocalRepository {
 						Files.move(fragment.toPath(), Paths.get(destinationDirectory).resolve(fragment.getName()),
 								StandardCopyOption.ATOMIC_MOVE);
 						modifiedAnyFile = true;
+
+						// any index is rebuilt where the file is read next.
+						FileUtils.safeDeleteFile(SessionIndex.getIndexFile(fragment));
 					}
 				} catch (FileNotFoundException ex) {
 					if (!Log.getSilentMode()) {
@@ -1,7 +1,9 @@
 package com.onloupe.core.serialization;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 
 
 /**
@@ -16,11 +18,11 @@ import java.lang.reflect.InvocationTargetException;
  */
 public class ArrayEncoder<T> {
 	
-	/** The read method. */
-	private java.lang.reflect.Method readMethod;
+	/** The read method, bound once so reading a value doesn't go through reflection. */
+	private final MethodHandle readMethod;
 	
-	/** The write method. */
-	private java.lang.reflect.Method writeMethod;
+	/** The write method, bound once so writing a value doesn't go through reflection. */
+	private final MethodHandle writeMethod;
 
 	/**
 	 * Instantiates a new array encoder.
@@ -31,8 +33,15 @@ public class ArrayEncoder<T> {
 	 */
 	public ArrayEncoder(Class clazz) throws NoSuchMethodException, SecurityException {
 		String readMethodName = "read" + clazz.getSimpleName();
-		this.readMethod = IFieldReader.class.getMethod(readMethodName);
-		this.writeMethod = IFieldWriter.class.getMethod("write", new java.lang.Class[] { clazz });
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		try {
+			this.readMethod = lookup.unreflect(IFieldReader.class.getMethod(readMethodName))
+					.asType(MethodType.methodType(Object.class, IFieldReader.class));
+			this.writeMethod = lookup.unreflect(IFieldWriter.class.getMethod("write", new java.lang.Class[] { clazz }))
+					.asType(MethodType.methodType(void.class, IFieldWriter.class, Object.class));
+		} catch (IllegalAccessException e) {
+			throw new SecurityException(e);
+		}
 	}
 
 	/**
@@ -52,33 +61,40 @@ public class ArrayEncoder<T> {
 	}
 
 	/**
-	 * This helper method uses reflection to invoke the proper method to read a
-	 * value from the stream of type T.
+	 * This helper method invokes the proper method to read a value from the
+	 * stream of type T.
 	 *
 	 * @param reader the reader
 	 * @return the t
-	 * @throws IllegalAccessException the illegal access exception
-	 * @throws IllegalArgumentException the illegal argument exception
-	 * @throws InvocationTargetException the invocation target exception
+	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	private T readValue(IFieldReader reader)
-			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-		return (T) this.readMethod.invoke(reader, new Object[0]);
+	private T readValue(IFieldReader reader) throws IOException {
+		try {
+			Object value = this.readMethod.invokeExact(reader);
+			return (T) value;
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IOException(e);
+		}
 	}
 
 	/**
-	 * This helper method uses reflection to invoke the proper method to write a
-	 * value to the stream of type T.
+	 * This helper method invokes the proper method to write a value to the
+	 * stream of type T.
 	 *
 	 * @param writer the writer
 	 * @param value the value
-	 * @throws IllegalAccessException the illegal access exception
-	 * @throws IllegalArgumentException the illegal argument exception
-	 * @throws InvocationTargetException the invocation target exception
+	 * @throws Exception the exception
 	 */
-	private void writeValue(IFieldWriter writer, T value)
-			throws IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-		this.writeMethod.invoke(writer, new Object[] { value });
+	private void writeValue(IFieldWriter writer, T value) throws Exception {
+		try {
+			this.writeMethod.invokeExact(writer, (Object) value);
+		} catch (Exception | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IOException(e);
+		}
 	}
 
 	/**
@@ -102,12 +118,7 @@ public class ArrayEncoder<T> {
 			if (runLength > 0) {
 				// a positive runLength indicates a run of repeating values.
 				// So, we only need to store the actual value once.
-				T value;
-				try {
-					value = readValue(reader);
-				} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-					throw new IOException(e);
-				}
+				T value = readValue(reader);
 				for (int i = 0; i < runLength; i++) {
 					array[index++] = value;
 				}
@@ -116,12 +127,7 @@ public class ArrayEncoder<T> {
 				// a negative runLength indicates a run of unique values
 				for (int i = runLength; i < 0; i++) {
 					// in this case, we need to store each value
-					T value;
-					try {
-						value = readValue(reader);
-					} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-						throw new IOException(e);
-					}
+					T value = readValue(reader);
 					array[index++] = value;
 				}
 			}
@@ -470,6 +470,8 @@ public class FieldReader implements IFieldReader {
 			return readBool();
 		case STRING:
 			return readString();
+		case STRING_ARRAY:
+			return readStringArray();
 		case INT:
 			return readInt();
 		case LONG:
@@ -491,6 +493,98 @@ public class FieldReader implements IFieldReader {
 		}
 	}
 
+	/**
+	 * Read past a field without making its value. The stream state is still kept
+	 * up to date: new table strings are added and a new reference time is set, so
+	 * the packets after it read the same as if it had been read.
+	 *
+	 * @param fieldType The field type of the next field in the stream to skip
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	final void skipField(FieldType fieldType) throws IOException {
+		switch (fieldType) {
+		case BOOL:
+			readByte();
+			break;
+		case STRING:
+			skipString();
+			break;
+		case STRING_ARRAY:
+			// the same runs ArrayEncoder reads, with one string per repeating run.
+			int length = readPositiveInt();
+			int index = 0;
+			while (index < length) {
+				int runLength = readInt();
+				if (runLength > 0) {
+					skipString();
+					index += runLength;
+				} else {
+					for (int i = runLength; i < 0; i++) {
+						skipString();
+					}
+					index -= runLength;
+				}
+			}
+			break;
+		case INT:
+			readInt();
+			break;
+		case LONG:
+			readLong();
+			break;
+		case DOUBLE:
+			readDouble();
+			break;
+		case DURATION:
+			readPositiveLong();
+			break;
+		case DATE_TIME:
+		case DATE_TIME_OFFSET:
+			skipDateTimeOffset();
+			break;
+		case GUID:
+			this.stream.skipBytes(16);
+			break;
+		default:
+			throw new GibraltarException(String.format(
+					"There is no known field type for %1$s, this most likely indicates a corrupt file or serialization defect.",
+					fieldType));
+		}
+	}
+
+	/**
+	 * Mark the current position of the stream, to go back to with reset.
+	 */
+	final void mark() {
+		this.stream.mark(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Go back to the position of the stream when mark was called.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	final void reset() throws IOException {
+		this.stream.reset();
+	}
+
+	/**
+	 * Read past a timestamp, only working out the time if it's a new reference
+	 * time.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void skipDateTimeOffset() throws IOException {
+		int offsetMinutes = readInt();
+		byte encoding = readByte();
+		long ticks = readPositiveLong();
+		if (encoding == DateTimeEncoding.NEW_REFERENCE.getValue()) {
+			// the reference time is the local time where it was written, as readDateTimeOffset sets it.
+			this.streamState.setReferenceTime(TimeConversion.fromEpochTicks(ticks,
+					ZoneOffset.ofTotalSeconds((int) TimeUnit.MINUTES.toSeconds(offsetMinutes))).toLocalDateTime());
+		}
+	}
+
 	/**
 	 * Returns a FieldType enum value from the stream.
 	 *
@@ -553,6 +647,10 @@ public class FieldReader implements IFieldReader {
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	private String readStringDirect() throws IOException {
+		if (FileHeader.supportsStringTable(this.majorVersion, this.minorVersion)) {
+			return readTableString();
+		}
+
 		int length = readPositiveInt();
 
 		// Handle the possibility of an empty string
@@ -575,4 +673,67 @@ public class FieldReader implements IFieldReader {
 
 		return value;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Read a string written using the string table (see FieldWriter): the kind of
+	 * string is in the low two bits, the rest is a string ID or a length.
+	 *
+	 * @return the string
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private String readTableString() throws IOException {
+		long value = readPositiveLong();
+		int kind = (int) (value & 3);
+		long rest = value >>> 2;
+		if (kind == FieldWriter.STRING_NULL) {
+			return null;
+		}
+
+		if (rest > Integer.MAX_VALUE) {
+			throw new GibraltarSerializationException(
+					"The length or ID of the next string is too large, which can't be correct.  The packet stream is corrupted.",
+					true);
+		}
+
+		if (kind == FieldWriter.STRING_REFERENCE) {
+			// the same string object every time, so repeated names are effectively interned.
+			return this.streamState.getString((int) rest);
+		}
+
+		if (rest == 0) {
+			return "";
+		}
+
+		byte[] bytes = new byte[(int) rest];
+		this.stream.readFully(bytes);
+		String string = new String(bytes, this.encoding);
+		if (kind == FieldWriter.STRING_DEFINITION) {
+			this.streamState.addString(string);
+		}
+		return string;
+	}
+
+	/**
+	 * Read past a string. Only a string that's new to the string table has to be
+	 * made, since later packets refer to it.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void skipString() throws IOException {
+		if (!FileHeader.supportsStringTable(this.majorVersion, this.minorVersion)) {
+			this.stream.skipBytes(readPositiveInt());
+			return;
+		}
+
+		long value = readPositiveLong();
+		int kind = (int) (value & 3);
+		int length = (int) (value >>> 2);
+		if (kind == FieldWriter.STRING_DEFINITION && length > 0) {
+			byte[] bytes = new byte[length];
+			this.stream.readFully(bytes);
+			this.streamState.addString(new String(bytes, this.encoding));
+		} else if (kind == FieldWriter.STRING_LITERAL) {
+			this.stream.skipBytes(length);
+		}
+	}
+}
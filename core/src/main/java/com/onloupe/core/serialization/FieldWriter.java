@@ -2,6 +2,7 @@ package com.onloupe.core.serialization;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.ByteBuffer;
 import java.time.Duration;
@@ -9,6 +10,10 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -25,8 +30,44 @@ import com.onloupe.core.util.TypeUtils;
  */
 public class FieldWriter implements IFieldWriter {
 
+	/** The capacity a new buffer starts out with. */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** The largest buffer we'll hang on to between packets. */
+	private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+	/** The number of ticks in a second. */
+	private static final long TICKS_PER_SECOND = 10000000L;
+
+	/** With a string table, a string that's written out in full and not added to the table. */
+	static final int STRING_LITERAL = 0;
+
+	/** With a string table, a string that's written out in full and given the next ID in the table. */
+	static final int STRING_DEFINITION = 1;
+
+	/** With a string table, the ID of a string that has already been defined. */
+	static final int STRING_REFERENCE = 2;
+
+	/** With a string table, a null string. */
+	static final int STRING_NULL = 3;
+
+	/** The longest string we'll add to the string table. */
+	private static final int MAX_TABLE_STRING_LENGTH = 256;
+
+	/** The most strings we'll put in the string table for one stream. */
+	private static final int MAX_TABLE_STRINGS = 65536;
+
+	/**
+	 * The most characters of repeated messages and stack traces we'll put in the
+	 * string table, which holds on to them until the stream is closed.
+	 */
+	private static final int MAX_REPEATED_STRING_CHARS = 256 * 1024;
+
+	/** The number of other strings written out in full we remember, a power of two. */
+	private static final int RECENT_STRINGS = 256;
+
 	/** The buffer. */
-	private ByteArrayOutputStream buffer;
+	private ByteBuffer buffer;
 
 	/** The major version. */
 	private int majorVersion;
@@ -37,9 +78,39 @@ public class FieldWriter implements IFieldWriter {
 	/** The reference time. */
 	private LocalDateTime referenceTime;
 
+	/** The reference time as seconds since the epoch, ignoring any offset. */
+	private long referenceEpochSecond;
+
+	/** The nanosecond part of the reference time. */
+	private int referenceNano;
+
 	/** The string array writer. */
 	private final ArrayEncoder<String> stringArrayWriter;
 
+	/** The ID of each string in the string table, or null if the protocol doesn't have one. */
+	private final Map<String, Integer> stringTable;
+
+	/** The strings in the string table in the order they were defined. */
+	private final List<String> stringTableEntries;
+
+	/** The number of strings in the table that have been committed to the stream. */
+	private int committedStringCount;
+
+	/** Other strings recently written out in full, by identity hash, to notice them written again. */
+	private final String[] recentStrings;
+
+	/** The number of characters of other strings in the string table. */
+	private int repeatedStringChars;
+
+	/** The number of strings in the table we've checked for repeated strings to forget. */
+	private int forgottenStringCount;
+
+	/** The stream everything is also written to, for the deprecated constructor. */
+	private ByteArrayOutputStream stream;
+
+	/** The number of bytes of the buffer written to the stream so far. */
+	private int streamPosition;
+
 	/**
 	 * Initialize a FieldWriter to write to the specified stream using the provided
 	 * encoding for strings.
@@ -49,13 +120,41 @@ public class FieldWriter implements IFieldWriter {
 	 * @param minorVersion Minor version of the serialization protocol
 	 * @throws NoSuchMethodException the no such method exception
 	 * @throws SecurityException     the security exception
+	 * @deprecated The field writer has its own buffer, use
+	 *             {@link #FieldWriter(int, int)} and {@link #toArray()} instead.
+	 *             Everything written is copied to the stream as it's written.
 	 */
+	@Deprecated
 	public FieldWriter(ByteArrayOutputStream buffer, int majorVersion, int minorVersion)
 			throws NoSuchMethodException, SecurityException {
-		this.buffer = buffer;
+		this(majorVersion, minorVersion);
+		this.stream = buffer;
+	}
+
+	/**
+	 * Initialize a FieldWriter to write into its own growable buffer using the
+	 * provided protocol version.
+	 *
+	 * @param majorVersion Major version of the serialization protocol
+	 * @param minorVersion Minor version of the serialization protocol
+	 * @throws NoSuchMethodException the no such method exception
+	 * @throws SecurityException     the security exception
+	 */
+	public FieldWriter(int majorVersion, int minorVersion)
+			throws NoSuchMethodException, SecurityException {
+		this.buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
 		this.majorVersion = majorVersion;
 		this.minorVersion = minorVersion;
 		this.stringArrayWriter = new ArrayEncoder<String>(String.class);
+		if (FileHeader.supportsStringTable(majorVersion, minorVersion)) {
+			this.stringTable = new HashMap<String, Integer>();
+			this.stringTableEntries = new ArrayList<String>();
+			this.recentStrings = new String[RECENT_STRINGS];
+		} else {
+			this.stringTable = null;
+			this.stringTableEntries = null;
+			this.recentStrings = null;
+		}
 	}
 
 	/**
@@ -66,7 +165,7 @@ public class FieldWriter implements IFieldWriter {
 	 * @throws SecurityException     the security exception
 	 */
 	public FieldWriter() throws NoSuchMethodException, SecurityException {
-		this(new ByteArrayOutputStream(), FileHeader.defaultMajorVersion, FileHeader.defaultMinorVersion);
+		this(FileHeader.defaultMajorVersion, FileHeader.defaultMinorVersion);
 	}
 
 	/**
@@ -148,16 +247,161 @@ public class FieldWriter implements IFieldWriter {
 	 */
 	@Override
 	public final void write(String value) throws IOException {
-		if (value == null) {
+		if (this.stringTable != null) {
+			writeTableString(value);
+		} else if (value == null) {
 			writeByte((byte) 1);
 			writeByte((byte) 0);
 		} else if (value.length() == 0) {
 			writeByte((byte) 0);
 		} else {
-			byte[] bytes = value.getBytes(java.nio.charset.StandardCharsets.UTF_8); // we always serialize as UTF-8.
-			writePositive(bytes.length);
-			writeBytes(bytes);
+			// we always serialize as UTF-8, encoded straight into the buffer.
+			int encodedLength = utf8Length(value);
+			writePositive(encodedLength);
+			writeUtf8(value, encodedLength);
+		}
+	}
+
+	/**
+	 * Write a string using the string table. The string is written as a single
+	 * varint holding the kind of string in its low two bits; the rest is the ID of
+	 * a string already in the table, or the length of the UTF-8 that follows.
+	 *
+	 * @param value the value
+	 */
+	private void writeTableString(String value) {
+		if (value == null) {
+			writePositive(STRING_NULL);
+			return;
+		}
+
+		if (value.length() == 0) {
+			writePositive(STRING_LITERAL);
+			return;
+		}
+
+		Integer id = this.stringTable.get(value);
+		if (id != null) {
+			writePositive(((long) id << 2) | STRING_REFERENCE);
+			return;
+		}
+
+		// names (categories, classes, methods, threads...) repeat constantly, while
+		// messages and stack traces rarely do and would just fill up the table.
+		// When they do it's usually the very same string, such as the stack trace
+		// of an exception logged over and over, so we add those the second time.
+		int kind = STRING_LITERAL;
+		if (this.stringTableEntries.size() < MAX_TABLE_STRINGS) {
+			if (isName(value)) {
+				kind = STRING_DEFINITION;
+			} else {
+				int slot = System.identityHashCode(value) & (RECENT_STRINGS - 1);
+				if (this.recentStrings[slot] != value) {
+					this.recentStrings[slot] = value;
+				} else if (this.repeatedStringChars + value.length() <= MAX_REPEATED_STRING_CHARS) {
+					this.recentStrings[slot] = null;
+					this.repeatedStringChars += value.length();
+					kind = STRING_DEFINITION;
+				}
+			}
+		}
+
+		if (kind == STRING_DEFINITION) {
+			this.stringTable.put(value, this.stringTableEntries.size());
+			this.stringTableEntries.add(value);
+		}
+
+		int encodedLength = utf8Length(value);
+		writePositive(((long) encodedLength << 2) | kind);
+		writeUtf8(value, encodedLength);
+	}
+
+	/**
+	 * Indicates if a string is a name, which always goes in the string table.
+	 *
+	 * @param value the value
+	 * @return true, if a name
+	 */
+	private static boolean isName(String value) {
+		return (value.length() <= MAX_TABLE_STRING_LENGTH) && (value.indexOf(' ') < 0);
+	}
+
+	/**
+	 * Encode a string as UTF-8 straight into the buffer.
+	 *
+	 * @param value         the value, which must not be empty
+	 * @param encodedLength the number of bytes the string takes in UTF-8
+	 */
+	private void writeUtf8(String value, int encodedLength) {
+		ensureCapacity(encodedLength);
+
+		byte[] array = this.buffer.array();
+		int position = this.buffer.arrayOffset() + this.buffer.position();
+		int length = value.length();
+		if (encodedLength == length) {
+			// one byte per char means it's ASCII (or unpaired surrogates), by far the most common case.
+			for (int index = 0; index < length; index++) {
+				char c = value.charAt(index);
+				array[position++] = c < 0x80 ? (byte) c : (byte) '?';
+			}
+		} else {
+			for (int index = 0; index < length; index++) {
+				char c = value.charAt(index);
+				if (c < 0x80) {
+					array[position++] = (byte) c;
+				} else if (c < 0x800) {
+					array[position++] = (byte) (0xC0 | (c >> 6));
+					array[position++] = (byte) (0x80 | (c & 0x3F));
+				} else if (Character.isSurrogate(c)) {
+					int codePoint = Character.isHighSurrogate(c) && index + 1 < length ? value.codePointAt(index) : c;
+					if (Character.isSupplementaryCodePoint(codePoint)) {
+						array[position++] = (byte) (0xF0 | (codePoint >> 18));
+						array[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+						array[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+						array[position++] = (byte) (0x80 | (codePoint & 0x3F));
+						index++;
+					} else {
+						// an unpaired surrogate, which String.getBytes also replaces with a question mark
+						array[position++] = (byte) '?';
+					}
+				} else {
+					array[position++] = (byte) (0xE0 | (c >> 12));
+					array[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+					array[position++] = (byte) (0x80 | (c & 0x3F));
+				}
+			}
 		}
+		this.buffer.position(position - this.buffer.arrayOffset());
+		writeToStream();
+	}
+
+	/**
+	 * Calculates the number of bytes a string takes in UTF-8 without encoding it.
+	 *
+	 * @param value the value
+	 * @return the encoded length
+	 */
+	private static int utf8Length(String value) {
+		int length = value.length();
+		int encodedLength = length;
+		for (int index = 0; index < length; index++) {
+			char c = value.charAt(index);
+			if (c >= 0x80) {
+				if (c < 0x800) {
+					encodedLength++;
+				} else if (Character.isSurrogate(c)) {
+					if (Character.isHighSurrogate(c) && index + 1 < length
+							&& Character.isLowSurrogate(value.charAt(index + 1))) {
+						// four bytes for the pair of chars
+						encodedLength += 2;
+						index++;
+					}
+				} else {
+					encodedLength += 2;
+				}
+			}
+		}
+		return encodedLength;
 	}
 
 	/**
@@ -196,21 +440,23 @@ public class FieldWriter implements IFieldWriter {
 		// include the first 6 bits of the value in the first byte
 		firstByte |= (byte) (value & 0x3f);
 		value >>>= 6;
+		ensureCapacity(5);
 		if (value == 0) {
 			// if the value is in the range [-63..63] we only need to write one byte
-			writeByte(firstByte);
+			this.buffer.put(firstByte);
 		} else {
 			// In this case we need to write at least 2 bytes. The second bit of
 			// the first byte is used to indicate that more bytes follow.
 			firstByte |= 0x40;
-			writeByte(firstByte);
+			this.buffer.put(firstByte);
 
 			while (value >= 0x80) {
-				writeByte((byte) (value | 0x80));
+				this.buffer.put((byte) (value | 0x80));
 				value >>>= 7;
 			}
-			writeByte((byte) value);
+			this.buffer.put((byte) value);
 		}
+		writeToStream();
 	}
 
 	/**
@@ -237,21 +483,23 @@ public class FieldWriter implements IFieldWriter {
 
 		firstByte |= (byte) (value & 0x3f);
 		value >>>= 6;
+		ensureCapacity(10);
 		if (value == 0) {
 			// if the value is in the range [-32..31] we only need to write one byte
-			writeByte(firstByte);
+			this.buffer.put(firstByte);
 		} else {
 			// In this case we need to write at least 2 bytes. The second bit of
 			// the first byte is used to indicate that more bytes follow.
 			firstByte |= 0x40;
-			writeByte(firstByte);
+			this.buffer.put(firstByte);
 
 			while (value >= 0x80L) {
-				writeByte((byte) (value | 0x80));
+				this.buffer.put((byte) (value | 0x80));
 				value >>>= 7;
 			}
-			writeByte((byte) value);
+			this.buffer.put((byte) value);
 		}
+		writeToStream();
 	}
 
 	/**
@@ -266,11 +514,13 @@ public class FieldWriter implements IFieldWriter {
 	 */
 	@Override
 	public final void writePositive(int value) {
+		ensureCapacity(5);
 		while (value >= 0x80) {
-			writeByte((byte) (value | 0x80));
+			this.buffer.put((byte) (value | 0x80));
 			value >>>= 7;
 		}
-		writeByte((byte) value);
+		this.buffer.put((byte) value);
+		writeToStream();
 	}
 
 	/**
@@ -285,11 +535,13 @@ public class FieldWriter implements IFieldWriter {
 	 */
 	@Override
 	public final void writePositive(long value) {
+		ensureCapacity(10);
 		while (value >= 0x80) {
-			writeByte((byte) (value | 0x80));
+			this.buffer.put((byte) (value | 0x80));
 			value >>>= 7;
 		}
-		writeByte((byte) value);
+		this.buffer.put((byte) value);
+		writeToStream();
 	}
 
 	/**
@@ -332,6 +584,7 @@ public class FieldWriter implements IFieldWriter {
 		if (bits == 0) {
 			writeByte((byte) 0);
 		} else {
+			ensureCapacity(9);
 			// We're done if either their are no more bits to send or we've written 8 bytes
 			for (int byteCount = 0; byteCount < 8 && bits != 0; byteCount++) {
 				// Grab the leftmost 7 bits
@@ -345,13 +598,14 @@ public class FieldWriter implements IFieldWriter {
 					nextByte |= 0x80;
 				}
 
-				writeByte(nextByte);
+				this.buffer.put(nextByte);
 			}
 			// After writing 8 7-bit values, we've written 56 bits. So, if
 			// we have bits left, we have 8 bits at most, so let's write them.
 			if (bits != 0) {
-				writeByte((byte) (bits >>> 56));
+				this.buffer.put((byte) (bits >>> 56));
 			}
+			writeToStream();
 		}
 	}
 
@@ -373,7 +627,7 @@ public class FieldWriter implements IFieldWriter {
 	@Override
 	public final void write(LocalDateTime value) {
 		// write it out as a date time offset so we get time offset information
-		write(OffsetDateTime.of(value, ZoneId.systemDefault().getRules().getOffset(value)));
+		writeDateTime(value, ZoneId.systemDefault().getRules().getOffset(value));
 	}
 
 	/**
@@ -383,20 +637,33 @@ public class FieldWriter implements IFieldWriter {
 	 */
 	@Override
 	public final void write(OffsetDateTime value) {
+		writeDateTime(value.toLocalDateTime(), value.getOffset());
+	}
+
+	/**
+	 * Stores a date and time with its offset to the stream without creating any
+	 * intermediate objects once the reference time has been written.
+	 *
+	 * @param value  the local date and time
+	 * @param offset the offset of the value from UTC
+	 */
+	private void writeDateTime(LocalDateTime value, ZoneOffset offset) {
 		// write out the time zone offset for this date in minutes (because there are
 		// some partial hour time zones)
-		write((int) TimeUnit.SECONDS.toMinutes(value.getOffset().getTotalSeconds()));
+		write((int) TimeUnit.SECONDS.toMinutes(offset.getTotalSeconds()));
 
 		// On first write, we store the reference time, thereafter,
 		// we store DateTime as offset to the reference time
 		if (this.referenceTime == null) {
-			this.referenceTime = value.toLocalDateTime();
+			setReferenceTime(value);
 			writeByte((byte) DateTimeEncoding.NEW_REFERENCE.getValue()); // Tell it to set ReferenceTime from this
-			writePositive(TimeConversion.epochTicks(value)); // need to take long
+			writePositive(TimeConversion.epochTicks(OffsetDateTime.of(value, offset))); // need to take long
 		} else {
-			Duration delta = Duration.between(this.referenceTime, value.toLocalDateTime());
-			long deltaTicks = TimeConversion.durationInTicks(delta);
-			if (delta.isNegative()) {
+			// the delta is between the local times, just like Duration.between would give us.
+			long deltaSeconds = value.toEpochSecond(ZoneOffset.UTC) - this.referenceEpochSecond;
+			int deltaNanos = value.getNano() - this.referenceNano;
+			long deltaTicks = deltaSeconds * TICKS_PER_SECOND + Math.floorDiv(deltaNanos, 100);
+			if (deltaSeconds < 0 || (deltaSeconds == 0 && deltaNanos < 0)) {
 				writeByte((byte) DateTimeEncoding.EARLIER_TICKS_NET.getValue()); // earlier than ReferenceTime
 				writePositive(-deltaTicks); // convert negative to absolute value and cast unsigned
 			} else {
@@ -419,7 +686,7 @@ public class FieldWriter implements IFieldWriter {
 		// On first write, we store the reference time, thereafter,
 		// we store DateTime as offset to the reference time
 		if (this.referenceTime == null) {
-			this.referenceTime = value;
+			setReferenceTime(value);
 			write(Duration.ZERO);
 			write(TimeConversion.epochTicks(timestamp));
 		} else {
@@ -447,27 +714,27 @@ public class FieldWriter implements IFieldWriter {
 	public final void write(UUID value) throws IOException {
 		// .NET's binary format for GUID's is little endian, and done in segments, so we
 		// have to exactly emulate that.
-		byte[] net = new byte[16];
-
 		// Based on
 		// https://stackoverflow.com/questions/5745512/how-to-read-a-net-guid-into-a-java-uuid
-		byte[] javaLeastSignificantBytes = toBytes(value.getLeastSignificantBits());
-		for (int i = 8; i < 16; i++) {
-			net[i] = javaLeastSignificantBytes[i - 8];
+		long mostSignificant = value.getMostSignificantBits();
+		long leastSignificant = value.getLeastSignificantBits();
+		ensureCapacity(16);
+
+		// the first eight bytes are swapped around in segments...
+		this.buffer.put((byte) (mostSignificant >> 24));
+		this.buffer.put((byte) (mostSignificant >> 16));
+		this.buffer.put((byte) (mostSignificant >> 8));
+		this.buffer.put((byte) mostSignificant);
+		this.buffer.put((byte) (mostSignificant >> 40));
+		this.buffer.put((byte) (mostSignificant >> 32));
+		this.buffer.put((byte) (mostSignificant >> 56));
+		this.buffer.put((byte) (mostSignificant >> 48));
+
+		// and the last eight go out least significant byte first.
+		for (int shift = 0; shift < 64; shift += 8) {
+			this.buffer.put((byte) (leastSignificant >> shift));
 		}
-
-		// and now do the swaps that are in different order...
-		byte[] javaMostSignificantBytes = toBytes(value.getMostSignificantBits());
-		net[3] = javaMostSignificantBytes[0];
-		net[2] = javaMostSignificantBytes[1];
-		net[1] = javaMostSignificantBytes[2];
-		net[0] = javaMostSignificantBytes[3];
-		net[5] = javaMostSignificantBytes[4];
-		net[4] = javaMostSignificantBytes[5];
-		net[6] = javaMostSignificantBytes[7];
-		net[7] = javaMostSignificantBytes[6];
-
-		writeBytes(net);
+		writeToStream();
 	}
 
 	/**
@@ -478,48 +745,211 @@ public class FieldWriter implements IFieldWriter {
 	 */
 	@Override
 	public final byte[] toArray() {
-		return this.buffer.toByteArray();
+		byte[] array = new byte[this.buffer.position()];
+		System.arraycopy(this.buffer.array(), this.buffer.arrayOffset(), array, 0, array.length);
+		return array;
 	}
 
 	/**
-	 * Helper method to write a single byte to the underlying stream.
+	 * Reserve space at the current position that will be filled in later, such as
+	 * the length of a packet that hasn't been written yet.
+	 *
+	 * @param count the number of bytes to reserve
+	 */
+	void reserve(int count) {
+		ensureCapacity(count);
+		this.buffer.position(this.buffer.position() + count);
+	}
+
+	/**
+	 * Write a length into previously reserved space so it ends right where the
+	 * reserved space does, using the same 7-bit encoding as writeLength.
+	 *
+	 * @param end    the offset just past the reserved space
+	 * @param length the length to encode
+	 * @return the offset the encoded length starts at
+	 */
+	int writeReservedLength(int end, int length) {
+		int lengthLength = 1;
+		for (int remaining = length; remaining >= 0x80; remaining >>>= 7) {
+			lengthLength++;
+		}
+
+		int start = end - lengthLength;
+		int position = start;
+		while (length >= 0x80) {
+			this.buffer.put(position++, (byte) (length | 0x80));
+			length >>>= 7;
+		}
+		this.buffer.put(position, (byte) length);
+		return start;
+	}
+
+	/**
+	 * Write everything in the buffer from the provided offset on to a stream in
+	 * one call, without copying it.
+	 *
+	 * @param stream the stream to write to
+	 * @param offset the offset of the first byte to write
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	void writeTo(OutputStream stream, int offset) throws IOException {
+		stream.write(this.buffer.array(), this.buffer.arrayOffset() + offset, this.buffer.position() - offset);
+	}
+
+	/**
+	 * Discard everything written so far so the buffer can be reused. The
+	 * reference time is kept since it applies to the whole stream.
+	 */
+	void reset() {
+		if (this.buffer.capacity() > MAX_RETAINED_CAPACITY) {
+			// don't hang on to the memory from one unusually large packet forever.
+			this.buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+		} else {
+			this.buffer.clear();
+		}
+		this.streamPosition = 0;
+	}
+
+	/**
+	 * Lock in the strings defined by the packets written so far, once they've
+	 * made it to the stream.
+	 */
+	void commit() {
+		if (this.stringTableEntries != null) {
+			this.committedStringCount = this.stringTableEntries.size();
+		}
+	}
+
+	/**
+	 * Forget the strings defined by a packet that wasn't written after all, since
+	 * the reader will never see them.
+	 */
+	void rollback() {
+		if (this.stringTableEntries != null) {
+			for (int i = this.stringTableEntries.size() - 1; i >= this.committedStringCount; i--) {
+				String value = this.stringTableEntries.remove(i);
+				this.stringTable.remove(value);
+				if (!isName(value)) {
+					this.repeatedStringChars -= value.length();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop referring to the repeated messages and stack traces in the table, so
+	 * they're written out again the next time. A reader that starts after this
+	 * then never needs them, only the names.
+	 */
+	void forgetRepeatedStrings() {
+		if (this.stringTableEntries != null) {
+			for (; this.forgottenStringCount < this.committedStringCount; this.forgottenStringCount++) {
+				String value = this.stringTableEntries.get(this.forgottenStringCount);
+				if (!isName(value)) {
+					this.stringTable.remove(value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indicates if a string in the table is a repeated message or stack trace,
+	 * rather than a name.
+	 *
+	 * @param id the ID of the string
+	 * @return true, if a repeated string
+	 */
+	boolean isRepeatedTableString(int id) {
+		return !isName(this.stringTableEntries.get(id));
+	}
+
+	/**
+	 * The number of strings in the table that have been committed to the stream.
+	 *
+	 * @return the string count, which is zero if the protocol has no string table
+	 */
+	int getStringCount() {
+		return this.committedStringCount;
+	}
+
+	/**
+	 * Get a string from the table by its ID.
+	 *
+	 * @param id the ID of the string
+	 * @return the string
+	 */
+	String getTableString(int id) {
+		return this.stringTableEntries.get(id);
+	}
+
+	/**
+	 * The time other timestamps are written relative to, once one has been written.
+	 *
+	 * @return the reference time, or null if no timestamp has been written
+	 */
+	LocalDateTime getReferenceTime() {
+		return this.referenceTime;
+	}
+
+	/**
+	 * Helper method to write a single byte to the underlying buffer.
 	 * 
 	 * @param value byte to be written
 	 */
 	private void writeByte(byte value) {
-		this.buffer.write(value);
+		ensureCapacity(1);
+		this.buffer.put(value);
+		writeToStream();
+	}
+
+	/**
+	 * Copy whatever has been written since last time to the stream given to the
+	 * deprecated constructor, if there is one.
+	 */
+	private void writeToStream() {
+		if (this.stream != null) {
+			int position = this.buffer.position();
+			this.stream.write(this.buffer.array(), this.buffer.arrayOffset() + this.streamPosition,
+					position - this.streamPosition);
+			this.streamPosition = position;
+		}
 	}
 
 	/**
-	 * Helper method to write a single byte to the underlying stream.
+	 * Make sure there's room in the buffer for the specified number of bytes,
+	 * growing it if necessary.
 	 *
-	 * @param values byte array to be written
-	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @param count the number of bytes about to be written
 	 */
-	private void writeBytes(byte[] values) throws IOException {
-		this.buffer.write(values);
+	private void ensureCapacity(int count) {
+		if (this.buffer.remaining() < count) {
+			int capacity = Math.max(this.buffer.capacity() * 2, this.buffer.position() + count);
+			ByteBuffer larger = ByteBuffer.allocate(capacity);
+			this.buffer.flip();
+			larger.put(this.buffer);
+			this.buffer = larger;
+		}
 	}
 
 	/**
-	 * To bytes.
+	 * Sets the reference time that later dates are written relative to.
 	 *
-	 * @param value the value
-	 * @return the byte[]
+	 * @param value the reference time
 	 */
-	private byte[] toBytes(long value) {
-		// FROM:
-		// https://stackoverflow.com/questions/4485128/how-do-i-convert-long-to-byte-and-back-in-java/29132118#29132118
-		return new byte[] { (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24),
-				(byte) (value >> 32), (byte) (value >> 40), (byte) (value >> 48), (byte) (value >> 56) };
+	private void setReferenceTime(LocalDateTime value) {
+		this.referenceTime = value;
+		this.referenceEpochSecond = value.toEpochSecond(ZoneOffset.UTC);
+		this.referenceNano = value.getNano();
 	}
 
 	/**
-	 * Number of valid bytes in the underlying ByteArrayOutputStream. Not seekable.
+	 * Number of valid bytes in the underlying buffer. Not seekable.
 	 *
 	 * @return the length
 	 */
 	@Override
 	public int getLength() {
-		return this.buffer.size();
+		return this.buffer.position();
 	}
 }
\ No newline at end of file
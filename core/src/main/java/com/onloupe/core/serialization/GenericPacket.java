@@ -143,6 +143,32 @@ public final class GenericPacket implements IPacket {
 		return this.fieldValues[index];
 	}
 
+	/**
+	 * Gets the value of the named field, looking through the base packets if this
+	 * level of the packet doesn't have it.
+	 *
+	 * @param fieldName the field name
+	 * @return the field value, or null if no level of the packet has the field
+	 */
+	public Object getFieldValue(String fieldName) {
+		for (GenericPacket packet = this; packet != null; packet = packet.basePacket) {
+			int index = packet.indexOf(fieldName);
+			if (index >= 0) {
+				return packet.fieldValues[index];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the packet for the base type of this packet.
+	 *
+	 * @return the base packet, or null if the packet has no base type
+	 */
+	public GenericPacket getBasePacket() {
+		return this.basePacket;
+	}
+
 	/**
 	 * The list of packets that this packet depends on.
 	 * 
@@ -0,0 +1,28 @@
+package com.onloupe.core.serialization;
+
+
+/**
+ * Implemented on packets that can write their fields straight to a field
+ * writer.
+ *
+ * This interface extends IPacket for packets written often enough that
+ * collecting their values into a SerializedPacket first is worth avoiding. The
+ * fields have to be written in exactly the order (and as exactly the types) of
+ * the packet definition, base type first, just as they would be from the
+ * SerializedPacket. Every level of the type hierarchy that writes a packet
+ * definition has to declare its own writeFields for the direct path to be used,
+ * otherwise the packet is written through the SerializedPacket as usual.
+ *
+ */
+public interface IDirectPacket extends IPacket {
+
+	/**
+	 * Write the fields of the packet, including those of its base types, to the
+	 * field writer.
+	 *
+	 * @param definition the definition for this level of the packet
+	 * @param writer     the writer
+	 * @throws Exception the exception
+	 */
+	void writeFields(PacketDefinition definition, IFieldWriter writer) throws Exception;
+}
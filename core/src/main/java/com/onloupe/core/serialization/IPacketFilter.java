@@ -0,0 +1,27 @@
+package com.onloupe.core.serialization;
+
+import java.util.function.Predicate;
+
+
+/**
+ * Defines the interface for a filter a PacketReader checks packets against as
+ * it reads their fields, so packets the filter doesn't want are skipped without
+ * reading the rest of their fields.
+ *
+ * The filter is asked once for each field of each packet definition which
+ * fields it tests, and after that only the tests are run. Only packets read as
+ * GenericPacket are filtered; types with a registered factory are always read.
+ */
+public interface IPacketFilter {
+
+	/**
+	 * Get the test for a field of a packet type, if the filter tests it.
+	 *
+	 * @param definition the definition of the packet being read, which may derive
+	 *                   from the one with the field
+	 * @param fieldName  the name of the field
+	 * @return the test the value of the field has to pass for the packet to be
+	 *         read, or null if the field isn't tested
+	 */
+	Predicate<Object> getFieldTest(PacketDefinition definition, String fieldName);
+}
@@ -39,7 +39,7 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 
 		//unlike the .NET implementation which explicitly invokes getPackageDefinition
 		//at each level of the object hierarchy we will use more traditional inheritance
-		PacketDefinition outermostIPacketDefinition = (definition.writeMethod == null) ? definition.getParentIPacket() : definition;
+		PacketDefinition outermostIPacketDefinition = (!definition.writesFields) ? definition.getParentIPacket() : definition;
 		packet.writePacketDefinition(outermostIPacketDefinition);
 
 		// Check if this is a DynamicPacket. If so, it should have a unique dynamic
@@ -71,36 +71,34 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 		// the _BasePacket fields to that the PacketDefinition we return includes
 		// a description of all the nested types.
 		Stack<PacketDefinition> stack = new Stack<PacketDefinition>();
-		Class<? extends IPacket> type = packet.getClass();
+		PacketSerializer serializer = PacketSerializer.forType(packet.getClass());
 
 		// walk down the hierarchy till we get to a base object that no longer
-		// implements IPacket
-		while (IPacket.class.isAssignableFrom(type)) {
+		// implements IPacket. The serializer looked up what each level declares
+		// the first time we saw the type.
+		for (PacketSerializer level = serializer; level != null; level = level.getParent()) {
 			// We push one PacketDefinition on the stack for each level in the hierarchy
 			PacketDefinition definition = null;
 
 			// Even though the current type implements IPacket, it may not have a
 			// writePacketDefinition at this level
-			Method method = getIPacketMethod(type, "writePacketDefinition", new Class[]{PacketDefinition.class});
-			if (method != null) {
-				definition = new PacketDefinition(type.getSimpleName());
+			if (level.definesFields()) {
+				definition = new PacketDefinition(level.getType().getSimpleName());
 				definition.implementsIPacket = true;
-				definition.writeMethod = getIPacketMethod(type, "writeFields",
-						new java.lang.Class[] { PacketDefinition.class, SerializedPacket.class });
-				if (definition.writeMethod == null) {
+				definition.writesFields = level.writesFields();
+				if (!definition.writesFields) {
 					throw new GibraltarSerializationException(
 							"The current packet implements part but not all of the IPacket interface.  No Write Method could be found.  Did you implement IPacket explicitly?");
 				}
 			} else {
 				// If GetPacketDefinition isn't defined at this level,
 				// push an empty PacketDefinition on the stack as a placeholder
-				definition = new PacketDefinition(type.getSimpleName(), -1);
+				definition = new PacketDefinition(level.getType().getSimpleName(), -1);
 			}
 
 			// Push the PacketDefinition for this level on the stack
 			// then iterate down to the next deeper level in the object hierarchy
 			stack.push(definition);
-			type = (Class<? extends IPacket>) type.getSuperclass();
 		}
 
 		// At this point the top of the stack contains the mostly deeply nested base
@@ -121,6 +119,7 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 		// At this point there should be exactly one element in the stack
 		// which contains the return value for this method.
 		PacketDefinition packetDefinition = stack.pop();
+		packetDefinition.writesDirect = serializer.writesDirect();
 		return packetDefinition;
 	}
 
@@ -154,7 +153,7 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 
 		PacketDefinition topLevelDefinition = definitions[nestingDepth - 1];
 		topLevelDefinition.cachable = cachedPacket;
-		topLevelDefinition.dynamicTypeName = dynamicTypeName;
+		topLevelDefinition.setDynamicTypeName(dynamicTypeName);
 		return topLevelDefinition;
 	}
 
@@ -172,6 +171,9 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 	
 	/** The dynamic type name. */
 	private String dynamicTypeName;
+
+	/** The qualified type name, once it's been asked for. */
+	private String qualifiedTypeName;
 	
 	/** The fields. */
 	private final FieldDefinitionCollection fields = new FieldDefinitionCollection();
@@ -179,14 +181,17 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 	/** The parent packet. */
 	private PacketDefinition parentPacket;
 	
-	/** The write method. */
-	private java.lang.reflect.Method writeMethod;
+	/** True if this level of the packet writes its fields. */
+	private boolean writesFields;
 	
-	/** The read method. */
-	private java.lang.reflect.Method readMethod;
+	/** True if the packet writes its fields straight to the field writer. */
+	private boolean writesDirect;
+
+	/** True if this level of the packet reads its fields. */
+	private boolean readsFields;
 	
-	/** The read method assigned. */
-	private boolean readMethodAssigned;
+	/** True once we know if this level reads its fields. */
+	private boolean readsFieldsAssigned;
 	
 	/** The sub packets. */
 	private List<PacketDefinition> subPackets;
@@ -199,7 +204,10 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 	 *
 	 * @param value the new dynamic type name
 	 */
-	public void setDynamicTypeName(String value) { this.dynamicTypeName = value; }
+	public void setDynamicTypeName(String value) {
+		this.dynamicTypeName = value;
+		this.qualifiedTypeName = null;
+	}
 
 	/**
 	 * Gets the packet count.
@@ -361,7 +369,10 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 		if (this.dynamicTypeName == null) {
 			return this.typeName;
 		} else {
-			return this.typeName + "+" + this.dynamicTypeName;
+			if (this.qualifiedTypeName == null) {
+				this.qualifiedTypeName = this.typeName + "+" + this.dynamicTypeName;
+			}
+			return this.qualifiedTypeName;
 		}
 	}
 
@@ -536,6 +547,10 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 		if (packet instanceof GenericPacket) {
 			// TODO: Update generic packet handling
 			// packet.WriteFields(writer);
+		} else if (this.writesDirect) {
+			// the packet streams its fields in definition order, so there's nothing to collect first.
+			PacketDefinition outermostIPacketDefinition = (implementsIPacket) ? this : getParentIPacket();
+			((IDirectPacket) packet).writeFields(outermostIPacketDefinition, writer);
 		} else {
 			//Get all of the values we want to write out at each layer of the inheritance model into
 			//a set of SerializedPacket objects.
@@ -582,7 +597,11 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 		//KM: Here we should dedupe the list of required packets if we're feeling pure, but it wont matter as a packet
 		//will only be written out once per stream.
 
-		//RK: deduplicate!
+		//RK: deduplicate! Most packets need one or two others at most, so skip the stream for those.
+		if (requiredPackets.size() < 2
+				|| (requiredPackets.size() == 2 && !requiredPackets.get(0).equals(requiredPackets.get(1)))) {
+			return requiredPackets;
+		}
 		return requiredPackets.stream().distinct().collect(Collectors.toList());
 	}
 
@@ -626,26 +645,25 @@ public final class PacketDefinition implements java.lang.Iterable<FieldDefinitio
 			}
 		}
 
-		if (!definition.readMethodAssigned) {
+		if (!definition.readsFieldsAssigned) {
 			if (IPacket.class.isAssignableFrom(type)) {
 				// Even though the current type implements IPacket, it may not have a ReadFields
 				// at this level
-				definition.readMethod = getIPacketMethod(type, "readFields",
-						new java.lang.Class[] { PacketDefinition.class, SerializedPacket.class });
+				definition.readsFields = PacketSerializer.forType(type).readsFields();
 
-				definition.implementsIPacket = (definition.readMethod != null);
+				definition.implementsIPacket = definition.readsFields;
 			} else {
 				definition.implementsIPacket = false;
 			}
 
-			definition.readMethodAssigned = true;
+			definition.readsFieldsAssigned = true;
 		}
 
 		SerializedPacket serializedPacket;
 		Exception firstException = null;
 		FieldType firstFailedFieldType = FieldType.UNKNOWN;
 		String firstFailedFieldName = null;
-		if (definition.readMethod != null) {
+		if (definition.readsFields) {
 			// we need to read back everything the definition says should be there into an
 			// array and then pass that
 			// to the object for handling.
@@ -1,8 +1,10 @@
 package com.onloupe.core.serialization;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -17,6 +19,21 @@ public final class PacketDefinitionList implements java.lang.Iterable<PacketDefi
 	/** The committed list size. */
 	private int committedListSize;
 
+	/** The index of each definition by its qualified type name. */
+	private final Map<String, Integer> indexByName = new HashMap<String, Integer>();
+
+	/** The index of the definition for each packet class with a static field structure. */
+	private final Map<Class<?>, Integer> indexByType = new HashMap<Class<?>, Integer>();
+
+	/** The index of the definition for each dynamic type name, by packet class. */
+	private final Map<Class<?>, Map<String, Integer>> indexByDynamicType = new HashMap<Class<?>, Map<String, Integer>>();
+
+	/** The class of the last packet looked up with a static field structure. */
+	private Class<?> lastType;
+
+	/** The index of the definition for the last packet class looked up. */
+	private int lastTypeIndex;
+
 	/**
 	 * Returns an empty list.
 	 */
@@ -59,16 +76,46 @@ public final class PacketDefinitionList implements java.lang.Iterable<PacketDefi
 		// will define a DynamicTypeName field on the packet. This field will be automatically
 		// serialized in the PacketDefinition and the DynamictTypeName is appended to the static
 		// type name for purposes of indexing in this collection.
-		String typeName = packet.getClass().getSimpleName();
-		IDynamicPacket dynamicPacket;
+		// Runs of the same type are common (a burst of log messages, a sample of every metric),
+		// so check the last type we were asked about before anything else.
+		Class<?> type = packet.getClass();
+		if (type == this.lastType) {
+			return this.lastTypeIndex;
+		}
 
 		if (packet instanceof GenericPacket) {
-			typeName = ((GenericPacket)packet).getPacketDefinition().getQualifiedTypeName();
-		} else if ((dynamicPacket = packet instanceof IDynamicPacket ? (IDynamicPacket) packet : null) != null) {
-			typeName += "+" + dynamicPacket.getDynamicTypeName();
+			return indexOf(((GenericPacket) packet).getPacketDefinition().getQualifiedTypeName());
+		}
+
+		IDynamicPacket dynamicPacket = packet instanceof IDynamicPacket ? (IDynamicPacket) packet : null;
+		if (dynamicPacket != null) {
+			Map<String, Integer> dynamicTypes = this.indexByDynamicType.get(type);
+			Integer index = (dynamicTypes != null) ? dynamicTypes.get(dynamicPacket.getDynamicTypeName()) : null;
+			if (index == null) {
+				index = indexOf(type.getSimpleName() + "+" + dynamicPacket.getDynamicTypeName());
+				if (index >= 0) {
+					if (dynamicTypes == null) {
+						dynamicTypes = new HashMap<String, Integer>();
+						this.indexByDynamicType.put(type, dynamicTypes);
+					}
+					dynamicTypes.put(dynamicPacket.getDynamicTypeName(), index);
+				}
+			}
+			return index;
 		}
 
-		return indexOf(typeName);
+		Integer index = this.indexByType.get(type);
+		if (index == null) {
+			index = indexOf(type.getSimpleName());
+			if (index < 0) {
+				return index;
+			}
+			this.indexByType.put(type, index);
+		}
+
+		this.lastType = type;
+		this.lastTypeIndex = index;
+		return index;
 	}
 
 	/**
@@ -80,12 +127,8 @@ public final class PacketDefinitionList implements java.lang.Iterable<PacketDefi
 	 * @return the int
 	 */
 	public int indexOf(String qualifiedTypeName) {
-		for (int index = 0; index < this.list.size(); index++) {
-			if (this.list.get(index).getQualifiedTypeName().equals(qualifiedTypeName)) {
-				return index;
-			}
-		}
-		return -1;
+		Integer index = this.indexByName.get(qualifiedTypeName);
+		return (index != null) ? index : -1;
 	}
 
 	/**
@@ -109,7 +152,9 @@ public final class PacketDefinitionList implements java.lang.Iterable<PacketDefi
 
 		// Add the item to the end of the list and return the index.
 		this.list.add(item);
-		return getCount() - 1;
+		index = getCount() - 1;
+		this.indexByName.put(item.getQualifiedTypeName(), index);
+		return index;
 	}
 
 	/**
@@ -127,8 +172,15 @@ public final class PacketDefinitionList implements java.lang.Iterable<PacketDefi
 	public void rollback() {
 		if (this.list.size() > this.committedListSize) {			
 			for (int i = this.list.size() - 1; i >= this.committedListSize; i--) {
-				this.list.remove(i);
+				this.indexByName.remove(this.list.remove(i).getQualifiedTypeName());
+			}
+
+			// and forget any packet class we'd found one of those definitions for.
+			this.indexByType.values().removeIf(index -> index >= this.committedListSize);
+			for (Map<String, Integer> dynamicTypes : this.indexByDynamicType.values()) {
+				dynamicTypes.values().removeIf(index -> index >= this.committedListSize);
 			}
+			this.lastType = null;
 		}
 	}
 
@@ -0,0 +1,129 @@
+package com.onloupe.core.serialization;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+
+/**
+ * The tests an IPacketFilter has for one packet definition, worked out once
+ * when the definition is first read so reading each packet only runs the
+ * tests.
+ *
+ * A packet is checked by skipping through its fields, only reading the values
+ * of the ones with tests. Most packets fail a test and are skipped from there;
+ * the ones that pass are read again from the start, which is cheap since the
+ * whole packet is already in memory.
+ */
+final class PacketFilterPlan {
+
+	/** The packet definition. */
+	private final PacketDefinition definition;
+
+	/** The definitions of the levels of the packet, the base type first. */
+	private final PacketDefinition[] levels;
+
+	/** The test for each field of each level, or null where there isn't one. */
+	private final Predicate<Object>[][] tests;
+
+	/** The number of fields with tests. */
+	private final int testCount;
+
+	/**
+	 * Work out the tests a filter has for a packet definition.
+	 *
+	 * @param definition the packet definition
+	 * @param filter     the filter
+	 */
+	@SuppressWarnings("unchecked")
+	PacketFilterPlan(PacketDefinition definition, IPacketFilter filter) {
+		List<PacketDefinition> levels = new ArrayList<PacketDefinition>();
+		for (PacketDefinition level = definition; level != null; level = level.getParentPacket()) {
+			levels.add(0, level);
+		}
+
+		this.definition = definition;
+		this.levels = levels.toArray(new PacketDefinition[levels.size()]);
+		this.tests = new Predicate[this.levels.length][];
+		int testCount = 0;
+		for (int level = 0; level < this.levels.length; level++) {
+			FieldDefinitionCollection fields = this.levels[level].getFields();
+			this.tests[level] = new Predicate[fields.size()];
+			for (int index = 0; index < fields.size(); index++) {
+				this.tests[level][index] = filter.getFieldTest(definition, fields.get(index).getName());
+				if (this.tests[level][index] != null) {
+					testCount++;
+				}
+			}
+		}
+		this.testCount = testCount;
+	}
+
+	/**
+	 * Indicates if the filter tests any field of the packet, otherwise the packet
+	 * can just be read.
+	 *
+	 * @return true, if the packet is filtered
+	 */
+	boolean isFiltered() {
+		return this.testCount > 0;
+	}
+
+	/**
+	 * Read a packet if it passes the tests, otherwise skip it.
+	 *
+	 * @param reader the reader for the packet's fields, over the whole packet
+	 * @return the packet, or null if the filter left it out
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	GenericPacket read(FieldReader reader) throws IOException {
+		PacketStreamState streamState = reader.getStreamState();
+		int stringCount = streamState.getStringCount();
+		LocalDateTime referenceTime = streamState.getReferenceTime();
+		reader.mark();
+
+		int remainingTests = this.testCount;
+		for (int level = 0; remainingTests > 0; level++) {
+			FieldDefinitionCollection fields = this.levels[level].getFields();
+			Predicate<Object>[] levelTests = this.tests[level];
+			for (int index = 0; index < levelTests.length && remainingTests > 0; index++) {
+				FieldType fieldType = fields.get(index).getFieldType();
+				if (levelTests[index] == null) {
+					reader.skipField(fieldType);
+				} else if (!levelTests[index].test(reader.readField(fieldType))) {
+					skip(reader, level, index + 1);
+					return null;
+				} else {
+					remainingTests--;
+				}
+			}
+		}
+
+		// it passed, so forget what skipping did to the stream state and read it.
+		streamState.truncateStrings(stringCount);
+		streamState.setReferenceTime(referenceTime);
+		reader.reset();
+		return new GenericPacket(this.definition, reader);
+	}
+
+	/**
+	 * Skip the rest of a packet, so the string table and reference time are as
+	 * they would be had it been read.
+	 *
+	 * @param reader the reader for the packet's fields
+	 * @param level  the level of the next field
+	 * @param index  the index of the next field in its level
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void skip(FieldReader reader, int level, int index) throws IOException {
+		for (; level < this.levels.length; level++) {
+			FieldDefinitionCollection fields = this.levels[level].getFields();
+			for (; index < fields.size(); index++) {
+				reader.skipField(fields.get(index).getFieldType());
+			}
+			index = 0;
+		}
+	}
+}
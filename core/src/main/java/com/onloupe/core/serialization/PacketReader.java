@@ -45,6 +45,21 @@ public class PacketReader implements IPacketReader, Closeable {
 	/** The minor version. */
 	private int minorVersion;
 
+	/** The buffer the current packet is read into, grown to fit the largest packet. */
+	private byte[] packetBuffer = new byte[1024];
+
+	/** The stream over the packet buffer. */
+	private final PacketBufferStream packetStream = new PacketBufferStream();
+
+	/** The reader for the fields of the current packet, sharing the stream state. */
+	private final FieldReader packetReader;
+
+	/** The filter packets are checked against as they're read, if any. */
+	private IPacketFilter filter;
+
+	/** The filter's tests for each packet definition, by type index, once worked out. */
+	private final ArrayList<PacketFilterPlan> filterPlans = new ArrayList<PacketFilterPlan>();
+
 	/**
 	 * Initialize a PacketReader to read the specified stream using the provided
 	 * encoding for strings.
@@ -82,6 +97,8 @@ public class PacketReader implements IPacketReader, Closeable {
 		// (false by default) If we were invoked from another constructor, they will
 		// overwrite _ReleaseStream correctly
 		this.reader = new FieldReader(this.stream, majorVersion, minorVersion);
+		this.packetReader = new FieldReader(this.packetStream, this.reader.getStreamState(), majorVersion,
+				minorVersion);
 		this.cachedTypes = new PacketDefinitionList();
 		this.packetFactory = new PacketFactory();
 	}
@@ -120,7 +137,7 @@ public class PacketReader implements IPacketReader, Closeable {
 	/**
 	 * Read and return the next IPacket from the stream.
 	 *
-	 * @return the i packet
+	 * @return the i packet, or null if the packet was left out by the filter
 	 * @throws NoSuchMethodException the no such method exception
 	 * @throws SecurityException the security exception
 	 * @throws IOException Signals that an I/O exception has occurred.
@@ -139,11 +156,15 @@ public class PacketReader implements IPacketReader, Closeable {
 					true);
 		}
 
-		byte[] buffer = new byte[packetSize];
-		this.stream.read(buffer, 0, packetSize);
+		// read the whole packet before parsing any of it; a decompressing stream can
+		// return less than asked for from a single read.
+		if (this.packetBuffer.length < packetSize) {
+			this.packetBuffer = new byte[Math.max(packetSize, this.packetBuffer.length * 2)];
+		}
+		this.stream.readFully(this.packetBuffer, 0, packetSize);
+		this.packetStream.reset(this.packetBuffer, packetSize);
 
-		IFieldReader bufferReader = new FieldReader(new ByteArrayInputStream(buffer), this.reader.getStreamState(), this.majorVersion,
-				this.minorVersion);
+		IFieldReader bufferReader = this.packetReader;
 
 		PacketDefinition definition;
 		int typeIndex = bufferReader.readPositiveInt();
@@ -163,11 +184,60 @@ public class PacketReader implements IPacketReader, Closeable {
 		}
 
 		IPacketFactory factory = this.packetFactory.getPacketFactory(definition.getTypeName());
+		if (this.filter != null && factory instanceof GenericPacketFactory) {
+			PacketFilterPlan filterPlan = getFilterPlan(typeIndex, definition);
+			if (filterPlan.isFiltered()) {
+				return filterPlan.read(this.packetReader);
+			}
+		}
+
 		IPacket packet = factory.createPacket(definition, bufferReader);
 
 		return packet;
 	}
 
+	/**
+	 * Gets the filter packets are checked against as they're read.
+	 *
+	 * @return the filter, or null if every packet is read
+	 */
+	public final IPacketFilter getFilter() {
+		return this.filter;
+	}
+
+	/**
+	 * Sets a filter to check packets against as they're read. A packet that
+	 * fails one of the filter's tests isn't read past that field, and read
+	 * returns null for it.
+	 *
+	 * @param value the filter, or null to read every packet
+	 */
+	public final void setFilter(IPacketFilter value) {
+		this.filter = value;
+		this.filterPlans.clear();
+	}
+
+	/**
+	 * Gets the filter's tests for a packet definition, working them out the first
+	 * time.
+	 *
+	 * @param typeIndex  the type index of the definition
+	 * @param definition the packet definition
+	 * @return the filter plan
+	 */
+	private PacketFilterPlan getFilterPlan(int typeIndex, PacketDefinition definition) {
+		while (this.filterPlans.size() <= typeIndex) {
+			this.filterPlans.add(null);
+		}
+
+		PacketFilterPlan filterPlan = this.filterPlans.get(typeIndex);
+		if (filterPlan == null) {
+			filterPlan = new PacketFilterPlan(definition, this.filter);
+			this.filterPlans.set(typeIndex, filterPlan);
+		}
+		return filterPlan;
+	}
+
 	/**
 	 * Read and return the next IPacket from the stream.
 	 *
@@ -206,6 +276,46 @@ public class PacketReader implements IPacketReader, Closeable {
 		return packet;
 	}
 
+	/**
+	 * The number of packet definitions read from the stream so far.
+	 *
+	 * @return the definition count
+	 */
+	public final int getDefinitionCount() {
+		return this.cachedTypes.getCount();
+	}
+
+	/**
+	 * Gets a packet definition read from the stream, by its type index.
+	 *
+	 * @param index the type index
+	 * @return the packet definition
+	 */
+	public final PacketDefinition getDefinition(int index) {
+		return this.cachedTypes.get(index);
+	}
+
+	/**
+	 * Add a packet definition that was written earlier in the stream than where
+	 * this reader started, giving it the next type index.
+	 *
+	 * @param definition the packet definition
+	 */
+	public final void addDefinition(PacketDefinition definition) {
+		this.cachedTypes.add(definition);
+		this.cachedTypes.commit();
+	}
+
+	/**
+	 * The state shared by the packets of the stream, such as the string table and
+	 * the reference time.
+	 *
+	 * @return the stream state
+	 */
+	public final PacketStreamState getStreamState() {
+		return this.reader.getStreamState();
+	}
+
 	/**
 	 * Returns a summary of packet count and size for each packet type
 	 * 
@@ -260,4 +370,91 @@ public class PacketReader implements IPacketReader, Closeable {
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * A byte array stream that can be pointed at the next packet without
+	 * allocating a new stream and field reader for every packet.
+	 */
+	private static class PacketBufferStream extends ByteArrayInputStream {
+
+		/**
+		 * Instantiates a new packet buffer stream.
+		 */
+		PacketBufferStream() {
+			super(new byte[0]);
+		}
+
+		/**
+		 * Read the first length bytes of the buffer from the start.
+		 *
+		 * @param buffer the buffer
+		 * @param length the length of the data in the buffer
+		 */
+		void reset(byte[] buffer, int length) {
+			this.buf = buffer;
+			this.pos = 0;
+			this.count = length;
+			this.mark = 0;
+		}
+
+		// the rest without the locking of ByteArrayInputStream, since fields are read
+		// a byte at a time and a packet is only ever read by one thread.
+
+		/* (non-Javadoc)
+		 * @see java.io.ByteArrayInputStream#read()
+		 */
+		@Override
+		public int read() {
+			return (this.pos < this.count) ? (this.buf[this.pos++] & 0xff) : -1;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.ByteArrayInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (this.pos >= this.count) {
+				return -1;
+			}
+
+			int length = Math.min(len, this.count - this.pos);
+			System.arraycopy(this.buf, this.pos, b, off, length);
+			this.pos += length;
+			return length;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.ByteArrayInputStream#skip(long)
+		 */
+		@Override
+		public long skip(long n) {
+			long length = Math.max(0, Math.min(n, this.count - this.pos));
+			this.pos += (int) length;
+			return length;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.ByteArrayInputStream#available()
+		 */
+		@Override
+		public int available() {
+			return this.count - this.pos;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.ByteArrayInputStream#mark(int)
+		 */
+		@Override
+		public void mark(int readAheadLimit) {
+			this.mark = this.pos;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.ByteArrayInputStream#reset()
+		 */
+		@Override
+		public void reset() {
+			this.pos = this.mark;
+		}
+	}
+}
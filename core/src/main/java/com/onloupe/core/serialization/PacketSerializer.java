@@ -0,0 +1,205 @@
+package com.onloupe.core.serialization;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+
+/**
+ * What it takes to write and read one level of a packet type, worked out once
+ * per type.
+ *
+ * Packet definitions are made each time a writer first sees a type, and every
+ * new session file starts with a new writer, so the declared methods of each
+ * level are looked up here once rather than every time. Packets of the type
+ * are made through a method handle bound to its default constructor. Types we
+ * don't know are read as GenericPackets instead and never get here.
+ */
+final class PacketSerializer {
+
+	/** The serializer of each packet type. */
+	private static final ClassValue<PacketSerializer> serializers = new ClassValue<PacketSerializer>() {
+		@Override
+		protected PacketSerializer computeValue(Class<?> type) {
+			return new PacketSerializer(type);
+		}
+	};
+
+	/** The type. */
+	private final Class<?> type;
+
+	/** The serializer of the base type, or null if it isn't a packet. */
+	private final PacketSerializer parent;
+
+	/** True if this level declares writePacketDefinition. */
+	private final boolean definesFields;
+
+	/** True if this level declares writeFields to a SerializedPacket. */
+	private final boolean writesFields;
+
+	/**
+	 * True if this level and every one below it that defines fields can write them
+	 * straight to the field writer.
+	 */
+	private final boolean levelsWriteDirect;
+
+	/** True if packets of the type can write their fields straight to the field writer. */
+	private final boolean writesDirect;
+
+	/** True if this level declares readFields. */
+	private final boolean readsFields;
+
+	/** The default constructor, or null if there isn't a public one. */
+	private final MethodHandle constructor;
+
+	/**
+	 * Work out how to serialize a type.
+	 *
+	 * @param type the type, which should implement IPacket
+	 */
+	private PacketSerializer(Class<?> type) {
+		this.type = type;
+		if (!IPacket.class.isAssignableFrom(type)) {
+			this.parent = null;
+			this.definesFields = false;
+			this.writesFields = false;
+			this.levelsWriteDirect = false;
+			this.writesDirect = false;
+			this.readsFields = false;
+			this.constructor = null;
+			return;
+		}
+
+		Class<?> superclass = type.getSuperclass();
+		this.parent = (superclass != null && IPacket.class.isAssignableFrom(superclass)) ? forType(superclass) : null;
+		this.definesFields = PacketDefinition.getIPacketMethod(type, "writePacketDefinition",
+				new Class[] { PacketDefinition.class }) != null;
+		this.writesFields = PacketDefinition.getIPacketMethod(type, "writeFields",
+				new Class[] { PacketDefinition.class, SerializedPacket.class }) != null;
+		this.readsFields = PacketDefinition.getIPacketMethod(type, "readFields",
+				new Class[] { PacketDefinition.class, SerializedPacket.class }) != null;
+
+		// a level that adds fields but can't write them directly means the whole packet can't.
+		boolean levelsWriteDirect = !this.definesFields || PacketDefinition.getIPacketMethod(type, "writeFields",
+				new Class[] { PacketDefinition.class, IFieldWriter.class }) != null;
+		this.levelsWriteDirect = levelsWriteDirect && (this.parent == null || this.parent.levelsWriteDirect);
+		this.writesDirect = this.levelsWriteDirect && IDirectPacket.class.isAssignableFrom(type);
+
+		this.constructor = findConstructor(type);
+	}
+
+	/**
+	 * Get the serializer for a type.
+	 *
+	 * @param type the type
+	 * @return the serializer, made the first time it's asked for
+	 */
+	static PacketSerializer forType(Class<?> type) {
+		return serializers.get(type);
+	}
+
+	/**
+	 * The type.
+	 *
+	 * @return the type
+	 */
+	Class<?> getType() {
+		return this.type;
+	}
+
+	/**
+	 * The serializer of the base type.
+	 *
+	 * @return the serializer, or null if the base type isn't a packet
+	 */
+	PacketSerializer getParent() {
+		return this.parent;
+	}
+
+	/**
+	 * Indicates if this level declares writePacketDefinition.
+	 *
+	 * @return true if it does
+	 */
+	boolean definesFields() {
+		return this.definesFields;
+	}
+
+	/**
+	 * Indicates if this level declares writeFields to a SerializedPacket.
+	 *
+	 * @return true if it does
+	 */
+	boolean writesFields() {
+		return this.writesFields;
+	}
+
+	/**
+	 * Indicates if packets of the type can write their fields straight to the
+	 * field writer.
+	 *
+	 * @return true if they can
+	 */
+	boolean writesDirect() {
+		return this.writesDirect;
+	}
+
+	/**
+	 * Indicates if this level declares readFields.
+	 *
+	 * @return true if it does
+	 */
+	boolean readsFields() {
+		return this.readsFields;
+	}
+
+	/**
+	 * Indicates if there's a public default constructor to make packets with.
+	 *
+	 * @return true if there is
+	 */
+	boolean canCreate() {
+		return this.constructor != null;
+	}
+
+	/**
+	 * Make an empty packet of the type.
+	 *
+	 * @return the packet
+	 * @throws InstantiationException    if the type is abstract
+	 * @throws InvocationTargetException if the constructor throws
+	 */
+	IPacket newPacket() throws InstantiationException, InvocationTargetException {
+		try {
+			return (IPacket) this.constructor.invokeExact();
+		} catch (InstantiationError e) {
+			throw new InstantiationException(this.type.getName());
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * Bind the public default constructor of a type.
+	 *
+	 * @param type the type
+	 * @return the constructor as returning an IPacket, or null if there isn't one
+	 */
+	private static MethodHandle findConstructor(Class<?> type) {
+		for (Constructor<?> constructor : type.getConstructors()) {
+			if (constructor.getParameterCount() == 0) {
+				try {
+					return MethodHandles.publicLookup().unreflectConstructor(constructor)
+							.asType(MethodType.methodType(IPacket.class));
+				} catch (IllegalAccessException e) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+}
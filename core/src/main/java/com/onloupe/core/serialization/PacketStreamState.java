@@ -1,6 +1,8 @@
 package com.onloupe.core.serialization;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -15,6 +17,9 @@ public class PacketStreamState {
 	/** The reference time. */
 	private LocalDateTime referenceTime;
 
+	/** The strings defined so far, indexed by their ID. */
+	private final List<String> strings = new ArrayList<String>();
+
 	/**
 	 * Get the current reference time set in the reader for relative time operations (may be null).
 	 *
@@ -28,4 +33,50 @@ public class PacketStreamState {
 	 * @param value the new reference time
 	 */
 	public void setReferenceTime(LocalDateTime value) { this.referenceTime = value; }
+
+	/**
+	 * Get the string defined in the stream with the provided ID.
+	 *
+	 * @param id the ID of the string
+	 * @return the string
+	 */
+	public String getString(int id) {
+		if ((id < 0) || (id >= this.strings.size())) {
+			throw new GibraltarSerializationException(String.format(
+					"The string table has no entry %d, it only has %d entries.  The packet stream is corrupted.", id,
+					this.strings.size()), true);
+		}
+		return this.strings.get(id);
+	}
+
+	/**
+	 * The number of strings defined in the stream so far.
+	 *
+	 * @return the string count
+	 */
+	public int getStringCount() {
+		return this.strings.size();
+	}
+
+	/**
+	 * Add a string defined in the stream to the string table, giving it the next
+	 * ID.
+	 *
+	 * @param value the string
+	 */
+	public void addString(String value) {
+		this.strings.add(value);
+	}
+
+	/**
+	 * Forget the strings added after the first count, so the packet that added
+	 * them can be read again.
+	 *
+	 * @param count the number of strings to keep
+	 */
+	void truncateStrings(int count) {
+		while (this.strings.size() > count) {
+			this.strings.remove(this.strings.size() - 1);
+		}
+	}
 }
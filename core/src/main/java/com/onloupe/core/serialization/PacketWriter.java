@@ -4,11 +4,10 @@ import com.onloupe.core.data.FileHeader;
 import com.onloupe.core.util.IOUtils;
 import com.onloupe.core.util.SystemUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
 import java.util.List;
 
 
@@ -17,14 +16,14 @@ import java.util.List;
  */
 public class PacketWriter implements IPacketWriter, Closeable {
 	
+	/** The most bytes a packet length can take once encoded. */
+	private static final int MAX_LENGTH_BYTES = 5;
+
 	/** The output stream. */
 	private OutputStream outputStream;
 	
-	/** The buffer. */
-	private ByteArrayOutputStream buffer;
-	
-	/** The buffer writer. */
-	private IFieldWriter bufferWriter;
+	/** The buffer writer, reused for every packet. */
+	private FieldWriter bufferWriter;
 	
 	/** The cached types. */
 	private PacketDefinitionList cachedTypes;
@@ -57,8 +56,7 @@ public class PacketWriter implements IPacketWriter, Closeable {
 	public PacketWriter(OutputStream stream, int majorVersion, int minorVersion)
 			throws NoSuchMethodException, SecurityException {
 		this.outputStream = stream;
-		this.buffer = new ByteArrayOutputStream();
-		this.bufferWriter = new FieldWriter(this.buffer, majorVersion, minorVersion);
+		this.bufferWriter = new FieldWriter(majorVersion, minorVersion);
 		this.cachedTypes = new PacketDefinitionList();
 		this.packetCache = new PacketCache();
 	}
@@ -104,6 +102,9 @@ public class PacketWriter implements IPacketWriter, Closeable {
 
 		// Begin our "transactional" phase
 		try {
+			// leave room for the length at the front, we'll fill it in once we know it.
+			this.bufferWriter.reserve(MAX_LENGTH_BYTES);
+
 			// The first time a packet type is written, we send along a packet definition
 			PacketDefinition definition;
 			int typeIndex = this.cachedTypes.indexOf(packet);
@@ -141,6 +142,7 @@ public class PacketWriter implements IPacketWriter, Closeable {
 				e.printStackTrace();
 			}
 			
+			this.bufferWriter.reset();
 			rollback();
 			throw e;
 		}
@@ -149,22 +151,16 @@ public class PacketWriter implements IPacketWriter, Closeable {
 		// NOTE: The logic below is careful to ensure that the length and payload is written in one call
 		// This is necessary to ensure that the GZipStream writes the whole packet in edge cases
 		// of writing the very last packet as an application is exiting.
+		// The length goes into the space we reserved, right up against the payload, so the
+		// whole packet is already one contiguous slice of the buffer.
+		int payloadLength = this.bufferWriter.getLength() - MAX_LENGTH_BYTES;
+		int packetStart = this.bufferWriter.writeReservedLength(MAX_LENGTH_BYTES, payloadLength);
 
-		int payloadLength = this.buffer.size(); // get the actual length of the payload
-		ByteBuffer encodedLength = FieldWriter.writeLength(payloadLength);
-		int lengthLength = encodedLength.position();
-
-		// the packetBytes array will contain the length and payload, in order
-		byte[] packetBytes = new byte[lengthLength + payloadLength];
-
-		encodedLength.rewind();
-		encodedLength.get(packetBytes, 0, lengthLength); // write the length
-
-		ByteBuffer payload = ByteBuffer.wrap(this.buffer.toByteArray());
-		payload.get(packetBytes, lengthLength, payloadLength);
-
-		this.outputStream.write(packetBytes, 0, packetBytes.length);
-		this.buffer.reset();
+		try {
+			this.bufferWriter.writeTo(this.outputStream, packetStart);
+		} finally {
+			this.bufferWriter.reset();
+		}
 		commit();
 	}
 
@@ -173,6 +169,7 @@ public class PacketWriter implements IPacketWriter, Closeable {
 	 */
 	private void commit() {
 		this.cachedTypes.commit();
+		this.bufferWriter.commit();
 	}
 
 	/**
@@ -180,6 +177,77 @@ public class PacketWriter implements IPacketWriter, Closeable {
 	 */
 	private void rollback() {
 		this.cachedTypes.rollback();
+		this.bufferWriter.rollback();
+	}
+
+	/**
+	 * The number of packet definitions written to the stream so far.
+	 *
+	 * @return the definition count
+	 */
+	public int getDefinitionCount() {
+		return this.cachedTypes.getCount();
+	}
+
+	/**
+	 * Gets a packet definition written to the stream, by its type index.
+	 *
+	 * @param index the type index
+	 * @return the packet definition
+	 */
+	public PacketDefinition getDefinition(int index) {
+		return this.cachedTypes.get(index);
+	}
+
+	/**
+	 * The number of strings defined in the stream's string table so far.
+	 *
+	 * @return the string count, which is zero if the stream has no string table
+	 */
+	public int getStringCount() {
+		return this.bufferWriter.getStringCount();
+	}
+
+	/**
+	 * Gets a string defined in the stream's string table, by its ID.
+	 *
+	 * @param id the ID of the string
+	 * @return the string
+	 */
+	public String getString(int id) {
+		return this.bufferWriter.getTableString(id);
+	}
+
+	/**
+	 * The time timestamps in the stream are written relative to.
+	 *
+	 * @return the reference time, or null if no timestamp has been written yet
+	 */
+	public LocalDateTime getReferenceTime() {
+		return this.bufferWriter.getReferenceTime();
+	}
+
+	/**
+	 * Indicates if a string in the stream's string table is a repeated message or
+	 * stack trace. These are only referred to until the packet cache is next
+	 * cleared, so an index needn't keep them.
+	 *
+	 * @param id the ID of the string
+	 * @return true, if a repeated string
+	 */
+	public boolean isRepeatedString(int id) {
+		return this.bufferWriter.isRepeatedTableString(id);
+	}
+
+	/**
+	 * Forget which cached packets have been written, so each is written again the
+	 * next time a packet needs it, and likewise repeated messages and stack traces.
+	 * A reader that starts part way through the stream then finds the cached
+	 * packets and repeated strings it needs after where it started.
+	 */
+	public void clearPacketCache() {
+		this.packetCache.clear();
+		this.bufferWriter.forgetRepeatedStrings();
 	}
 
 	/**
@@ -196,7 +264,6 @@ public class PacketWriter implements IPacketWriter, Closeable {
 	 */
 	@Override
 	public void close() throws IOException {
-		IOUtils.closeQuietly(this.buffer);
 		IOUtils.closeQuietly(this.outputStream);
 	}
 
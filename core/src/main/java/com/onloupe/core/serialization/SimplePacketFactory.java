@@ -1,7 +1,6 @@
 package com.onloupe.core.serialization;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.Arrays;
 
 
 /**
@@ -10,8 +9,8 @@ import java.util.Arrays;
  */
 public class SimplePacketFactory implements IPacketFactory {
 	
-	/** The constructor. */
-	private java.lang.reflect.Constructor constructor;
+	/** The serializer, which makes the packets. */
+	private PacketSerializer serializer;
 
 	/**
 	 * Creates an IPacketFactory wrappering a type that implements IPacket.
@@ -24,13 +23,11 @@ public class SimplePacketFactory implements IPacketFactory {
 			return;
 		}
 
-		// the type must provide a default constructor, but this constructor can be
-		// private if it should not be called directly (other than during
-		// deserialization)
-		this.constructor = Arrays.asList(type.getConstructors()).stream()
-				.filter(constructor -> constructor.getParameterCount() < 1).findFirst().orElse(null);
-		if (this.constructor == null) {
-			return;
+		// the type must provide a public default constructor, which the serializer
+		// binds once for every packet of the type.
+		PacketSerializer serializer = PacketSerializer.forType(type);
+		if (serializer.canCreate()) {
+			this.serializer = serializer;
 		}
 	}
 
@@ -41,7 +38,7 @@ public class SimplePacketFactory implements IPacketFactory {
 	 * @return true, if is valid
 	 */
 	public final boolean isValid() {
-		return this.constructor != null;
+		return this.serializer != null;
 	}
 
 	/**
@@ -57,7 +54,7 @@ public class SimplePacketFactory implements IPacketFactory {
 	 */
 	@Override
 	public final IPacket createPacket(PacketDefinition definition, IFieldReader reader) throws IllegalAccessException, InvocationTargetException, InstantiationException {
-		IPacket packet = (IPacket) this.constructor.newInstance(new Object[0]);
+		IPacket packet = this.serializer.newPacket();
 		definition.readFields(packet, reader);
 		return packet;
 	}
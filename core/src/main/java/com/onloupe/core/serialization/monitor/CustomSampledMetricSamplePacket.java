@@ -1,6 +1,7 @@
 package com.onloupe.core.serialization.monitor;
 
 import com.onloupe.core.serialization.FieldType;
+import com.onloupe.core.serialization.IFieldWriter;
 import com.onloupe.core.serialization.IPacket;
 import com.onloupe.core.serialization.PacketDefinition;
 import com.onloupe.core.serialization.SerializedPacket;
@@ -193,6 +194,16 @@ public class CustomSampledMetricSamplePacket extends SampledMetricSamplePacket i
 		packet.setField("baseValue", this.baseValue);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.onloupe.core.serialization.monitor.SampledMetricSamplePacket#writeFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.IFieldWriter)
+	 */
+	@Override
+	public final void writeFields(PacketDefinition definition, IFieldWriter writer) throws Exception {
+		super.writeFields(definition.getParentIPacket(), writer);
+
+		writer.write(this.baseValue);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.onloupe.core.serialization.monitor.SampledMetricSamplePacket#readFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.SerializedPacket)
 	 */
@@ -0,0 +1,340 @@
+package com.onloupe.core.serialization.monitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.onloupe.core.util.TypeUtils;
+import com.onloupe.model.data.IExceptionInfo;
+
+
+/**
+ * An exception and its causes, rendered as a log message records them: the
+ * exception info of each, and the same again as the parallel arrays of type
+ * names, messages, sources and stack traces a log message is serialized as.
+ *
+ * Rendering prints the stack trace of every exception in the chain, which
+ * costs far more than the rest of logging a message. Code that fails over and
+ * over, such as a retry loop, logs the same exception with the same stack each
+ * time, so chains are kept by what they'd render to: the description, message
+ * and stack frames of each exception. A chain logged again is then shared
+ * rather than rendered again, and being the very same strings, is written to a
+ * session file as references to the first.
+ *
+ * Chains are never changed once rendered, and since they're shared, neither is
+ * the exception info they hand out.
+ */
+final class ExceptionChain {
+
+	/** No exception. */
+	static final ExceptionChain NONE = new ExceptionChain(new IExceptionInfo[0]);
+
+	/** The most chains to keep, after which we start over. */
+	private static final int MAX_CACHED_CHAINS = 256;
+
+	/** The rendered chains, by what they render. */
+	private static final ConcurrentHashMap<Key, ExceptionChain> chains = new ConcurrentHashMap<Key, ExceptionChain>();
+
+	/** The exception info of each exception, outermost first. */
+	private final IExceptionInfo[] exceptions;
+
+	/** The type name of each exception. */
+	private final String[] typeNames;
+
+	/** The message of each exception. */
+	private final String[] messages;
+
+	/** The source of each exception. */
+	private final String[] sources;
+
+	/** The stack trace of each exception. */
+	private final String[] stackTraces;
+
+	/**
+	 * Instantiates a new exception chain.
+	 *
+	 * @param exceptions the exception info of each exception
+	 */
+	private ExceptionChain(IExceptionInfo[] exceptions) {
+		this.exceptions = exceptions;
+		this.typeNames = new String[exceptions.length];
+		this.messages = new String[exceptions.length];
+		this.sources = new String[exceptions.length];
+		this.stackTraces = new String[exceptions.length];
+		for (int i = 0; i < exceptions.length; i++) {
+			this.typeNames[i] = exceptions[i].getTypeName();
+			this.messages[i] = exceptions[i].getMessage();
+			this.sources[i] = exceptions[i].getSource();
+			this.stackTraces[i] = exceptions[i].getStackTrace();
+		}
+	}
+
+	/**
+	 * Get the rendered chain of an exception.
+	 *
+	 * @param throwable the throwable, which may be null
+	 * @return the chain, never null
+	 */
+	static ExceptionChain of(Throwable throwable) {
+		if (throwable == null) {
+			return NONE;
+		}
+
+		// a cause can lead back around to an exception we've already seen.
+		List<Throwable> throwables = new ArrayList<Throwable>();
+		boolean cacheable = true;
+		for (Throwable link = throwable; link != null && !containsSame(throwables, link); link = link.getCause()) {
+			throwables.add(link);
+
+			// suppressed exceptions are printed with the stack, we don't bother keying on them.
+			cacheable &= (link.getSuppressed().length == 0);
+		}
+
+		if (!cacheable) {
+			return render(throwables);
+		}
+
+		Key key = new Key(throwables);
+		ExceptionChain chain = chains.get(key);
+		if (chain == null) {
+			chain = render(throwables);
+
+			// exceptions come and go, so a long running program can see a lot of them.
+			if (chains.size() >= MAX_CACHED_CHAINS) {
+				chains.clear();
+			}
+			chains.put(key, chain);
+		}
+		return chain;
+	}
+
+	/**
+	 * Gets the exception info of each exception, outermost first.
+	 *
+	 * @return a copy of the exceptions, which the caller may change
+	 */
+	IExceptionInfo[] getExceptions() {
+		return this.exceptions.clone();
+	}
+
+	/**
+	 * Gets the exception info of the outermost exception.
+	 *
+	 * @return the exception, or null if there isn't one
+	 */
+	IExceptionInfo getException() {
+		return (this.exceptions.length > 0) ? this.exceptions[0] : null;
+	}
+
+	/**
+	 * Gets the type names.
+	 *
+	 * @return the type names
+	 */
+	String[] getTypeNames() {
+		return this.typeNames;
+	}
+
+	/**
+	 * Gets the messages.
+	 *
+	 * @return the messages
+	 */
+	String[] getMessages() {
+		return this.messages;
+	}
+
+	/**
+	 * Gets the sources.
+	 *
+	 * @return the sources
+	 */
+	String[] getSources() {
+		return this.sources;
+	}
+
+	/**
+	 * Gets the stack traces.
+	 *
+	 * @return the stack traces
+	 */
+	String[] getStackTraces() {
+		return this.stackTraces;
+	}
+
+	/**
+	 * Render a chain.
+	 *
+	 * @param throwables the exception and its causes
+	 * @return the chain
+	 */
+	private static ExceptionChain render(List<Throwable> throwables) {
+		IExceptionInfo[] exceptions = new IExceptionInfo[throwables.size()];
+		IExceptionInfo innerException = null;
+		for (int index = exceptions.length - 1; index >= 0; index--) {
+			// from the innermost out, so each one can be made with its inner exception.
+			innerException = new RenderedException(throwables.get(index), innerException);
+			exceptions[index] = innerException;
+		}
+		return new ExceptionChain(exceptions);
+	}
+
+	/**
+	 * Indicates if a list holds the very same throwable.
+	 *
+	 * @param throwables the throwables
+	 * @param throwable  the throwable
+	 * @return true, if found
+	 */
+	private static boolean containsSame(List<Throwable> throwables, Throwable throwable) {
+		for (Throwable other : throwables) {
+			if (other == throwable) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The exception info of one exception in a chain, which can't be changed.
+	 */
+	private static final class RenderedException implements IExceptionInfo {
+
+		/** The type name. */
+		private final String typeName;
+
+		/** The message. */
+		private final String message;
+
+		/** The source, the message of the root cause. */
+		private final String source;
+
+		/** The stack trace. */
+		private final String stackTrace;
+
+		/** The exception info of the cause, if any. */
+		private final IExceptionInfo innerException;
+
+		/**
+		 * Render an exception, as an ExceptionInfoPacket would.
+		 *
+		 * @param throwable      the throwable
+		 * @param innerException the exception info of its cause, if any
+		 */
+		RenderedException(Throwable throwable, IExceptionInfo innerException) {
+			this.typeName = throwable.getClass().getName();
+			this.message = throwable.getMessage();
+			this.source = TypeUtils.getRootCauseMessage(throwable);
+			this.stackTrace = TypeUtils.getStackTrace(throwable);
+			this.innerException = innerException;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.onloupe.model.data.IExceptionInfo#getTypeName()
+		 */
+		@Override
+		public String getTypeName() {
+			return this.typeName;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.onloupe.model.data.IExceptionInfo#getMessage()
+		 */
+		@Override
+		public String getMessage() {
+			return this.message;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.onloupe.model.data.IExceptionInfo#getSource()
+		 */
+		@Override
+		public String getSource() {
+			return this.source;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.onloupe.model.data.IExceptionInfo#getStackTrace()
+		 */
+		@Override
+		public String getStackTrace() {
+			return this.stackTrace;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.onloupe.model.data.IExceptionInfo#getInnerException()
+		 */
+		@Override
+		public IExceptionInfo getInnerException() {
+			return this.innerException;
+		}
+	}
+
+	/**
+	 * What a chain renders from: the description, message and stack frames of
+	 * each exception, which is everything printing the stack trace uses.
+	 */
+	private static final class Key {
+
+		/** The description of each exception, its type and localized message. */
+		private final String[] descriptions;
+
+		/** The message of each exception. */
+		private final String[] messages;
+
+		/** The stack frames of each exception. */
+		private final StackTraceElement[][] frames;
+
+		/** The hash code. */
+		private final int hash;
+
+		/**
+		 * Instantiates a new key.
+		 *
+		 * @param throwables the exception and its causes
+		 */
+		Key(List<Throwable> throwables) {
+			int count = throwables.size();
+			this.descriptions = new String[count];
+			this.messages = new String[count];
+			this.frames = new StackTraceElement[count][];
+			int hash = count;
+			for (int index = 0; index < count; index++) {
+				Throwable throwable = throwables.get(index);
+				this.descriptions[index] = throwable.toString();
+				this.messages[index] = throwable.getMessage();
+				this.frames[index] = throwable.getStackTrace();
+				hash = 31 * hash + this.descriptions[index].hashCode();
+				hash = 31 * hash + Arrays.hashCode(this.frames[index]);
+			}
+			this.hash = hash;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return this.hash == other.hash && Arrays.equals(this.descriptions, other.descriptions)
+					&& Arrays.equals(this.messages, other.messages) && Arrays.deepEquals(this.frames, other.frames);
+		}
+	}
+}
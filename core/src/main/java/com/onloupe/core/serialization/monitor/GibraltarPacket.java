@@ -1,7 +1,9 @@
 package com.onloupe.core.serialization.monitor;
 
 import com.onloupe.core.messaging.IMessengerPacket;
+import com.onloupe.core.serialization.IDirectPacket;
 import com.onloupe.core.serialization.IFieldReader;
+import com.onloupe.core.serialization.IFieldWriter;
 import com.onloupe.core.serialization.IPacket;
 import com.onloupe.core.serialization.PacketDefinition;
 import com.onloupe.core.serialization.SerializedPacket;
@@ -15,7 +17,7 @@ import java.util.List;
 /**
  * The Class GibraltarPacket.
  */
-public abstract class GibraltarPacket implements IMessengerPacket {
+public abstract class GibraltarPacket implements IMessengerPacket, IDirectPacket {
 	
 	/** The sequence. */
 	private long sequence;
@@ -122,6 +124,15 @@ public abstract class GibraltarPacket implements IMessengerPacket {
 		packet.setField("TimeStamp", this.timeStamp);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.onloupe.core.serialization.IDirectPacket#writeFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.IFieldWriter)
+	 */
+	@Override
+	public void writeFields(PacketDefinition definition, IFieldWriter writer) throws Exception {
+		writer.write(this.sequence);
+		writer.write(this.timeStamp);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.onloupe.core.serialization.IPacket#readFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.SerializedPacket)
 	 */
@@ -3,6 +3,7 @@ package com.onloupe.core.serialization.monitor;
 import com.onloupe.agent.IMessageSourceProvider;
 import com.onloupe.core.messaging.Publisher;
 import com.onloupe.core.serialization.FieldType;
+import com.onloupe.core.serialization.IFieldWriter;
 import com.onloupe.core.serialization.IPacket;
 import com.onloupe.core.serialization.PacketDefinition;
 import com.onloupe.core.serialization.SerializedPacket;
@@ -47,8 +48,8 @@ public class LogMessagePacket extends GibraltarPacket implements IPacket, ILogMe
 	/** The details. */
 	private String details;
 	
-	/** The exception chain. */
-	private IExceptionInfo[] exceptionChain;
+	/** The exception chain, rendered. */
+	private ExceptionChain exceptionChain;
 	
 	/** The method name. */
 	private String methodName;
@@ -428,7 +429,7 @@ public class LogMessagePacket extends GibraltarPacket implements IPacket, ILogMe
 	 * @param throwable the new exception
 	 */
 	public final void setException(Throwable throwable) {
-		this.exceptionChain = exceptionToArray(throwable); // this handles a null Exception, never returns null
+		this.exceptionChain = ExceptionChain.of(throwable); // this handles a null Exception, never returns null
 	}
 
 	/**
@@ -438,8 +439,7 @@ public class LogMessagePacket extends GibraltarPacket implements IPacket, ILogMe
 	 */
 	@Override
 	public final boolean getHasException() {
-		IExceptionInfo[] exceptionInfo = getExceptions();
-		return ((exceptionInfo != null) && (exceptionInfo.length > 0));
+		return getException() != null;
 	}
 
 	/**
@@ -463,12 +463,13 @@ public class LogMessagePacket extends GibraltarPacket implements IPacket, ILogMe
 	}
 
 	/**
-	 * Gets the exceptions.
+	 * Gets the exceptions, outermost first. Exceptions logged more than once share
+	 * their exception info, which can't be changed; the array is a copy.
 	 *
 	 * @return the exceptions
 	 */
 	public final IExceptionInfo[] getExceptions() {
-		return this.exceptionChain;
+		return (this.exceptionChain != null) ? this.exceptionChain.getExceptions() : null;
 	}
 
 	/* (non-Javadoc)
@@ -476,12 +477,7 @@ public class LogMessagePacket extends GibraltarPacket implements IPacket, ILogMe
 	 */
 	@Override
 	public final IExceptionInfo getException() {
-		IExceptionInfo[] exceptionInfo = getExceptions();
-		if ((exceptionInfo == null) || (exceptionInfo.length == 0)) {
-			return null;
-		}
-
-		return exceptionInfo[0];
+		return (this.exceptionChain != null) ? this.exceptionChain.getException() : null;
 	}
 
 	/**
@@ -721,6 +717,9 @@ public class LogMessagePacket extends GibraltarPacket implements IPacket, ILogMe
 	 */
 	private static final int SERIALIZATION_VERSION = 3;
 
+	/** Written for an ID that isn't set, as the serializer would. */
+	private static final UUID EMPTY_ID = new UUID(0, 0);
+
 	/**
 	 * The list of packets that this packet depends on.
 	 * 
@@ -811,75 +810,63 @@ public class LogMessagePacket extends GibraltarPacket implements IPacket, ILogMe
 
 		// Now the Exception info...
 
-		// Because serialization supports single type arrays, it's most convenient
-		// to reorganize our exceptions into parallel arrays of their base types
-		IExceptionInfo[] exceptions = getExceptions(); // Get the array of ExceptionInfo
-		int arrayLength = exceptions == null ? 0 : exceptions.length;
-		String[] typeNames = new String[arrayLength];
-		String[] messages = new String[arrayLength];
-		String[] sources = new String[arrayLength];
-		String[] stackTraces = new String[arrayLength];
-
-		if (exceptions != null) {
-			for (int i = 0; i < arrayLength; i++) {
-				typeNames[i] = exceptions[i].getTypeName();
-				messages[i] = exceptions[i].getMessage();
-				sources[i] = exceptions[i].getSource();
-				stackTraces[i] = exceptions[i].getStackTrace();
-			}
-		}
-
-		packet.setField("TypeNames", typeNames);
-		packet.setField("Messages", messages);
-		packet.setField("Sources", sources);
-		packet.setField("StackTraces", stackTraces);
+		// Because serialization supports single type arrays, our exceptions were
+		// rendered as parallel arrays of their base types too.
+		ExceptionChain exceptions = (this.exceptionChain != null) ? this.exceptionChain : ExceptionChain.NONE;
+		packet.setField("TypeNames", exceptions.getTypeNames());
+		packet.setField("Messages", exceptions.getMessages());
+		packet.setField("Sources", exceptions.getSources());
+		packet.setField("StackTraces", exceptions.getStackTraces());
 
 		packet.setField("ApplicationUserId", (getUserPacket() == null) ? null : getUserPacket().getID());
 	}
 
 	/* (non-Javadoc)
-	 * @see com.onloupe.core.serialization.monitor.GibraltarPacket#readFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.SerializedPacket)
+	 * @see com.onloupe.core.serialization.monitor.GibraltarPacket#writeFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.IFieldWriter)
 	 */
 	@Override
-	public final void readFields(PacketDefinition definition, SerializedPacket packet) {
-		throw new UnsupportedOperationException("Deserialization of agent data is not supported");
-	}
+	public final void writeFields(PacketDefinition definition, IFieldWriter writer) throws Exception {
+		super.writeFields(definition.getParentIPacket(), writer);
 
-	/**
-	 * Exception to array.
-	 *
-	 * @param throwable the throwable
-	 * @return the i exception info[]
-	 */
-	private static IExceptionInfo[] exceptionToArray(Throwable throwable) {
-		// This must accept a null Exception and never return a null, use empty array;
-		if (throwable == null) {
-			return new IExceptionInfo[0];
-		}
+		// We depend on the ThreadInfoPacket!
+		assert getThreadInfoPacket() != null;
+		assert getThreadInfoPacket().getThreadId() == getThreadId();
 
-		int count = 1; // Otherwise, we have at least one
-		Throwable innerException = throwable.getCause();
-		while (innerException != null) // Count up how big to make the array
-		{
-			count++;
-			innerException = innerException.getCause();
-		}
+		// These have to go out in exactly the order of writePacketDefinition.
+		writer.write(this.id != null ? this.id : EMPTY_ID);
+		writer.write(this.caption);
+		writer.write(this.severity.getSeverity());
+		writer.write(this.logSystem);
+		writer.write(this.categoryName);
+		writer.write(this.userName);
+		writer.write(this.description);
+		writer.write(this.details);
 
-		IExceptionInfo[] exceptions = new IExceptionInfo[count];
+		writer.write(Math.toIntExact(this.threadIndex));
 
-		// now start serializing them into the array...
-		exceptions[0] = new ExceptionInfoPacket(throwable);
+		writer.write(Math.toIntExact(this.threadId));
+		writer.write(this.methodName);
+		writer.write(this.className);
+		writer.write(this.fileName);
+		writer.write(this.lineNumber);
 
-		innerException = throwable.getCause();
-		int index = 0;
-		while (innerException != null) {
-			index++;
-			exceptions[index] = new ExceptionInfoPacket(innerException);
-			((ExceptionInfoPacket) exceptions[index - 1]).setInnerException(exceptions[index]); // we are the inner
-																								// exception to the
-																								// previous one.
-			innerException = innerException.getCause();
-		}
-		return exceptions;
+		// Now the Exception info, as parallel arrays just like writeFields above. A
+		// chain logged before is the same strings again, which the writer can refer back to.
+		ExceptionChain exceptions = (this.exceptionChain != null) ? this.exceptionChain : ExceptionChain.NONE;
+		writer.write(exceptions.getTypeNames());
+		writer.write(exceptions.getMessages());
+		writer.write(exceptions.getSources());
+		writer.write(exceptions.getStackTraces());
+
+		ApplicationUserPacket userPacket = getUserPacket();
+		writer.write((userPacket == null || userPacket.getID() == null) ? EMPTY_ID : userPacket.getID());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.onloupe.core.serialization.monitor.GibraltarPacket#readFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.SerializedPacket)
+	 */
+	@Override
+	public final void readFields(PacketDefinition definition, SerializedPacket packet) {
+		throw new UnsupportedOperationException("Deserialization of agent data is not supported");
 	}
 }
\ No newline at end of file
@@ -1,9 +1,11 @@
 package com.onloupe.core.serialization.monitor;
 
 import com.onloupe.core.serialization.FieldType;
+import com.onloupe.core.serialization.IFieldWriter;
 import com.onloupe.core.serialization.IPacket;
 import com.onloupe.core.serialization.PacketDefinition;
 import com.onloupe.core.serialization.SerializedPacket;
+import com.onloupe.core.util.TypeUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -306,6 +308,20 @@ public abstract class MetricSamplePacket extends GibraltarPacket implements IPac
 
 	}
 
+	/* (non-Javadoc)
+	 * @see com.onloupe.core.serialization.monitor.GibraltarPacket#writeFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.IFieldWriter)
+	 */
+	@Override
+	public void writeFields(PacketDefinition definition, IFieldWriter writer) throws Exception {
+		super.writeFields(definition.getParentIPacket(), writer);
+
+		writer.write(TypeUtils.safeUUID(this.id));
+		writer.write(TypeUtils.safeUUID(this.metricPacket.getID()));
+
+		// and now we HAVE persisted
+		setPersisted(true);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.onloupe.core.serialization.monitor.GibraltarPacket#readFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.SerializedPacket)
 	 */
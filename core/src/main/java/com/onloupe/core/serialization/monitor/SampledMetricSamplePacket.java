@@ -1,6 +1,7 @@
 package com.onloupe.core.serialization.monitor;
 
 import com.onloupe.core.serialization.FieldType;
+import com.onloupe.core.serialization.IFieldWriter;
 import com.onloupe.core.serialization.IPacket;
 import com.onloupe.core.serialization.PacketDefinition;
 import com.onloupe.core.serialization.SerializedPacket;
@@ -230,6 +231,17 @@ public abstract class SampledMetricSamplePacket extends MetricSamplePacket imple
 		packet.setField("rawValue", this.rawValue);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.onloupe.core.serialization.monitor.MetricSamplePacket#writeFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.IFieldWriter)
+	 */
+	@Override
+	public void writeFields(PacketDefinition definition, IFieldWriter writer) throws Exception {
+		super.writeFields(definition.getParentIPacket(), writer);
+
+		writer.write(this.rawTimestamp);
+		writer.write(this.rawValue);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.onloupe.core.serialization.monitor.MetricSamplePacket#readFields(com.onloupe.core.serialization.PacketDefinition, com.onloupe.core.serialization.SerializedPacket)
 	 */
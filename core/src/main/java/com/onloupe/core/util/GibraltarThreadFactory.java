@@ -25,12 +25,26 @@ public class GibraltarThreadFactory implements ThreadFactory {
     /** The name prefix. */
     private final String namePrefix;
 
+    /** True if the threads shouldn't keep the process running. */
+    private final boolean daemon;
+
     /**
      * Instantiates a new gibraltar thread factory.
      *
      * @param ourPrefix the our prefix
      */
     public GibraltarThreadFactory(String ourPrefix) {
+        this(ourPrefix, false);
+    }
+
+    /**
+     * Instantiates a new gibraltar thread factory.
+     *
+     * @param ourPrefix the our prefix
+     * @param daemon true if the threads shouldn't keep the process running
+     */
+    public GibraltarThreadFactory(String ourPrefix, boolean daemon) {
+        this.daemon = daemon;
         SecurityManager s = System.getSecurityManager();
         group = (s != null) ? s.getThreadGroup() :
                               Thread.currentThread().getThreadGroup();
@@ -46,8 +60,8 @@ public class GibraltarThreadFactory implements ThreadFactory {
         Thread t = new Thread(group, r,
                               namePrefix + threadNumber.getAndIncrement(),
                               0);
-        if (t.isDaemon())
-            t.setDaemon(false);
+        if (t.isDaemon() != daemon)
+            t.setDaemon(daemon);
         if (t.getPriority() != Thread.NORM_PRIORITY)
             t.setPriority(Thread.NORM_PRIORITY);
         return t;
@@ -2,6 +2,7 @@ package com.onloupe.core.util;
 
 import java.io.BufferedReader;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -29,6 +30,28 @@ public class IOUtils {
 		}
 	}
 	
+	/**
+	 * Skip a number of bytes of a stream, reading past them where the stream
+	 * won't skip.
+	 *
+	 * @param inputStream the input stream
+	 * @param count the number of bytes to skip
+	 * @throws IOException Signals that an I/O exception has occurred, including
+	 *                     the stream ending first.
+	 */
+	public static void skipFully(final InputStream inputStream, long count) throws IOException {
+		while (count > 0) {
+			long skipped = inputStream.skip(count);
+			if (skipped <= 0) {
+				if (inputStream.read() < 0) {
+					throw new EOFException("The stream ended before the bytes to skip.");
+				}
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+	
 	/**
 	 * Copy to string.
 	 *
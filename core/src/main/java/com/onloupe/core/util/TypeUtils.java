@@ -370,6 +370,29 @@ public class TypeUtils {
 		return (value instanceof UUID) ? (UUID)value : new UUID(0,0);
 	}
 	
+	/**
+	 * Read an enum constant from a setting, ignoring case and underscores so
+	 * "PerWrite", "per_write" and "PER_WRITE" all mean the same thing.
+	 *
+	 * @param <E> the enum type
+	 * @param type the enum type
+	 * @param value the setting
+	 * @return the constant, or null if the setting is blank or isn't one
+	 */
+	public static <E extends Enum<E>> E safeEnum(Class<E> type, String value) {
+		if (isBlank(value)) {
+			return null;
+		}
+
+		String name = value.trim().replace("_", "");
+		for (E constant : type.getEnumConstants()) {
+			if (constant.name().replace("_", "").equalsIgnoreCase(name)) {
+				return constant;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * This method takes a java type and returns the FQCN of the corresponding type
 	 * in .NET. It is necessary for us to bind data types in a way that the .NET desktop
@@ -0,0 +1,293 @@
+package com.onloupe.core;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.logging.AsyncLogWriter;
+import com.onloupe.core.logging.LogWriteMode;
+import com.onloupe.core.logging.ThreadInfo;
+import com.onloupe.core.messaging.IMessengerPacket;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.model.log.LogMessageSeverity;
+
+public class AsyncLogWriterTests {
+	private static final int MESSAGES_PER_BENCHMARK = 200000;
+
+	@Test
+	public final void testWritesEverythingInOrder() {
+		RecordingWriter writer = new RecordingWriter();
+		writer.setQueueSize(64);
+		writer.setBatchSize(16);
+		writer.start();
+		for (int index = 0; index < 1000; index++) {
+			Assertions.assertTrue(writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null,
+					"Message " + index));
+		}
+		writer.close();
+
+		Assertions.assertEquals(1000, writer.captions.size());
+		for (int index = 0; index < 1000; index++) {
+			Assertions.assertEquals("Message " + index, writer.captions.get(index));
+		}
+		for (int batchSize : writer.batchSizes) {
+			Assertions.assertTrue(batchSize >= 1 && batchSize <= 16, "batch of " + batchSize);
+		}
+		Assertions.assertEquals(0, writer.getDroppedCount());
+		Assertions.assertEquals(0, writer.getQueuedCount());
+
+		// once closed nothing more is taken.
+		Assertions.assertFalse(writer.write(LogMessageSeverity.ERROR, "Unit Tests", null, null, null, "Too late"));
+	}
+
+	@Test
+	public final void testDropsWhenFullAndNeverBlocking() throws InterruptedException {
+		RecordingWriter writer = new RecordingWriter();
+		writer.setQueueSize(10);
+		writer.setDiscardSeverity(null);
+		writer.setNeverBlock(true);
+		writer.hold = true;
+		writer.start();
+
+		// hold the drainer on the first message, so the rest stay queued.
+		writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "First");
+		Assertions.assertTrue(writer.writing.await(10, TimeUnit.SECONDS));
+		for (int index = 0; index < 10; index++) {
+			Assertions.assertTrue(
+					writer.write(LogMessageSeverity.VERBOSE, "Unit Tests", null, null, null, "Queued " + index));
+		}
+		Assertions.assertFalse(writer.write(LogMessageSeverity.CRITICAL, "Unit Tests", null, null, null, "Dropped"));
+		Assertions.assertEquals(1, writer.getDroppedCount());
+		Assertions.assertEquals(10, writer.getQueuedCount());
+
+		writer.release.countDown();
+		writer.close();
+		Assertions.assertEquals(11, writer.captions.size());
+		Assertions.assertFalse(writer.captions.contains("Dropped"));
+	}
+
+	@Test
+	public final void testDiscardsLessSevereWhenNearlyFull() throws InterruptedException {
+		RecordingWriter writer = new RecordingWriter();
+		writer.setQueueSize(10);
+		writer.setDiscardSeverity(LogMessageSeverity.WARNING);
+		writer.setNeverBlock(true);
+		writer.hold = true;
+		writer.start();
+
+		writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "First");
+		Assertions.assertTrue(writer.writing.await(10, TimeUnit.SECONDS));
+		for (int index = 0; index < 8; index++) {
+			Assertions.assertTrue(
+					writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "Queued " + index));
+		}
+
+		// the last fifth of the queue is kept for warnings and worse.
+		Assertions.assertFalse(writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "Info"));
+		Assertions.assertFalse(writer.write(LogMessageSeverity.VERBOSE, "Unit Tests", null, null, null, "Verbose"));
+		Assertions.assertTrue(writer.write(LogMessageSeverity.WARNING, "Unit Tests", null, null, null, "Warning"));
+		Assertions.assertTrue(writer.write(LogMessageSeverity.ERROR, "Unit Tests", null, null, null, "Error"));
+		Assertions.assertEquals(2, writer.getDiscardedCount());
+		Assertions.assertEquals(0, writer.getDroppedCount());
+
+		writer.release.countDown();
+		writer.close();
+		Assertions.assertEquals(11, writer.captions.size());
+	}
+
+	@Test
+	public final void testBlocksUntilThereIsRoom() throws InterruptedException {
+		RecordingWriter writer = new RecordingWriter();
+		writer.setQueueSize(4);
+		writer.setDiscardSeverity(null);
+		writer.hold = true;
+		writer.start();
+
+		writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "First");
+		Assertions.assertTrue(writer.writing.await(10, TimeUnit.SECONDS));
+		for (int index = 0; index < 4; index++) {
+			writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "Queued " + index);
+		}
+
+		Thread blocked = new Thread(() -> writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null,
+				new ThreadInfo(42, "Blocked"), "Waited"));
+		blocked.start();
+		blocked.join(200);
+		Assertions.assertTrue(blocked.isAlive());
+
+		writer.release.countDown();
+		blocked.join(10000);
+		Assertions.assertFalse(blocked.isAlive());
+		writer.close();
+		Assertions.assertEquals(6, writer.captions.size());
+		Assertions.assertEquals("Waited", writer.captions.get(5));
+		Assertions.assertEquals(0, writer.getDroppedCount());
+	}
+
+	@Test
+	public final void testFlushSeverityWaitsForCommit() throws InterruptedException {
+		RecordingWriter writer = new RecordingWriter();
+		writer.setFlushSeverity(LogMessageSeverity.ERROR);
+		writer.start();
+
+		writer.write(LogMessageSeverity.WARNING, "Unit Tests", null, null, null, "Warning");
+		awaitWritten(writer, 1);
+		writer.write(LogMessageSeverity.ERROR, "Unit Tests", null, null, null, "Error");
+		awaitWritten(writer, 2);
+		writer.write(LogMessageSeverity.VERBOSE, "Unit Tests", null, null, null, "Verbose");
+		awaitWritten(writer, 3);
+		writer.close();
+
+		Assertions.assertEquals(
+				Arrays.asList(LogWriteMode.QUEUED, LogWriteMode.WAIT_FOR_COMMIT, LogWriteMode.QUEUED),
+				writer.writeModes);
+	}
+
+	@Test
+	public final void testSevereMessagesWaitUntilWritten() throws InterruptedException {
+		RecordingWriter writer = new RecordingWriter();
+		writer.setFlushSeverity(LogMessageSeverity.ERROR);
+		writer.hold = true;
+		writer.start();
+
+		writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "First");
+		Assertions.assertTrue(writer.writing.await(10, TimeUnit.SECONDS));
+		Assertions.assertTrue(writer.write(LogMessageSeverity.WARNING, "Unit Tests", null, null, null, "Warning"));
+
+		// the error's thread waits for its batch, not just for it to be queued.
+		Thread logging = new Thread(() -> writer.write(LogMessageSeverity.ERROR, "Unit Tests", null, null,
+				new ThreadInfo(42, "Logging"), "Error"));
+		logging.start();
+		logging.join(200);
+		Assertions.assertTrue(logging.isAlive());
+		Assertions.assertFalse(writer.captions.contains("Error"));
+
+		writer.release.countDown();
+		logging.join(10000);
+		Assertions.assertFalse(logging.isAlive());
+		Assertions.assertEquals(Arrays.asList("First", "Warning", "Error"), writer.captions);
+		Assertions.assertEquals(LogWriteMode.WAIT_FOR_COMMIT, writer.writeModes.get(writer.writeModes.size() - 1));
+		writer.close();
+	}
+
+	@Test
+	public final void testKeepsTheTimeMessagesWereLogged() {
+		RecordingWriter writer = new RecordingWriter();
+		writer.start();
+
+		long logged = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1);
+		long before = System.currentTimeMillis();
+		writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, logged, "A minute ago");
+		writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "Now");
+		writer.close();
+
+		Assertions.assertEquals(2, writer.timestamps.size());
+		Assertions.assertEquals(logged, writer.timestamps.get(0).toInstant().toEpochMilli());
+		Assertions.assertFalse(writer.timestamps.get(1).toInstant().toEpochMilli() < before);
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureQueueing(TestReporter reporter) {
+		long nanos = 0;
+		long batches = 0;
+		long messages = 0;
+		for (boolean measured : Benchmark.passes()) {
+			RecordingWriter writer = new RecordingWriter();
+			writer.record = false;
+			writer.start();
+			long startTime = System.nanoTime();
+			for (int index = 0; index < MESSAGES_PER_BENCHMARK; index++) {
+				writer.write(LogMessageSeverity.INFORMATION, "Unit Tests", null, null, null, "Benchmark message");
+			}
+			long queueTime = System.nanoTime() - startTime;
+			writer.setMaxFlushTime(60000);
+			writer.close();
+
+			if (measured) {
+				nanos += queueTime;
+				batches += writer.batchSizes.size();
+				messages += writer.packetCount;
+			}
+		}
+
+		Assertions.assertEquals((long) Benchmark.PASSES * MESSAGES_PER_BENCHMARK, messages);
+		reporter.publishEntry(String.format("Queueing a message: %,d ns/op, written in batches of %,d on average.",
+				nanos / Benchmark.PASSES / MESSAGES_PER_BENCHMARK, messages / Math.max(1, batches)));
+	}
+
+	private static void awaitWritten(RecordingWriter writer, int count) throws InterruptedException {
+		for (int attempt = 0; attempt < 1000 && writer.captions.size() < count; attempt++) {
+			Thread.sleep(10);
+		}
+		Assertions.assertEquals(count, writer.captions.size());
+	}
+
+	private static class RecordingWriter extends AsyncLogWriter {
+		private final List<String> captions = Collections.synchronizedList(new ArrayList<String>());
+
+		private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+		private final List<LogWriteMode> writeModes = Collections.synchronizedList(new ArrayList<LogWriteMode>());
+
+		private final List<OffsetDateTime> timestamps = Collections.synchronizedList(new ArrayList<OffsetDateTime>());
+
+		private final CountDownLatch writing = new CountDownLatch(1);
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private volatile boolean hold;
+
+		private volatile boolean record = true;
+
+		private volatile long packetCount;
+
+		RecordingWriter() {
+			super("Unit Tests");
+		}
+
+		@Override
+		protected IMessengerPacket makePacket(LogMessageSeverity severity, String category, StackTraceElement source,
+				Throwable throwable, ThreadInfo threadInfo, String message) {
+			LogMessagePacket packet = new LogMessagePacket();
+			packet.setSeverity(severity);
+			packet.setCategoryName(category);
+			packet.setCaption(message);
+			return packet;
+		}
+
+		@Override
+		protected void write(IMessengerPacket[] packets, LogWriteMode writeMode) {
+			this.packetCount += packets.length;
+			this.batchSizes.add(packets.length);
+			this.writeModes.add(writeMode);
+			if (!this.record) {
+				return;
+			}
+
+			for (IMessengerPacket packet : packets) {
+				this.captions.add(((LogMessagePacket) packet).getCaption());
+				this.timestamps.add(packet.getTimestamp());
+			}
+
+			if (this.hold) {
+				this.hold = false;
+				this.writing.countDown();
+				try {
+					this.release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
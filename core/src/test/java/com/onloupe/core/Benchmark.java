@@ -0,0 +1,47 @@
+package com.onloupe.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * What the benchmarks share: how many passes they measure after warming up,
+ * and how much the current thread has allocated.
+ */
+public class Benchmark {
+
+	/** The passes measured, not counting the one to warm up. */
+	public static final int PASSES = 3;
+
+	/**
+	 * The passes to run, true for each that's measured.
+	 */
+	public static boolean[] passes() {
+		return passes(PASSES);
+	}
+
+	/**
+	 * The passes to run, true for each that's measured.
+	 *
+	 * @param measured the passes measured, not counting the one to warm up
+	 */
+	public static boolean[] passes(int measured) {
+		// the first pass is just to warm up.
+		boolean[] passes = new boolean[measured + 1];
+		for (int pass = 1; pass < passes.length; pass++) {
+			passes[pass] = true;
+		}
+		return passes;
+	}
+
+	/**
+	 * The bytes the current thread has allocated so far.
+	 */
+	public static long getAllocatedBytes() {
+		// only some JVMs can say, otherwise we report nothing.
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
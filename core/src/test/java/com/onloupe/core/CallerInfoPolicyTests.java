@@ -0,0 +1,78 @@
+package com.onloupe.core;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.logging.CallerInfoPolicy;
+import com.onloupe.model.log.LogMessageSeverity;
+
+public class CallerInfoPolicyTests {
+
+	@Test
+	public final void testDefaultCapturesEverything() {
+		CallerInfoPolicy policy = new CallerInfoPolicy(null);
+		Assertions.assertTrue(policy.isAlwaysCaptured());
+		for (LogMessageSeverity severity : LogMessageSeverity.values()) {
+			Assertions.assertTrue(policy.isCaptured("com.acme", severity));
+		}
+		Assertions.assertTrue(policy.isCaptured(null, LogMessageSeverity.VERBOSE));
+	}
+
+	@Test
+	public final void testSeverityThreshold() {
+		CallerInfoPolicy policy = new CallerInfoPolicy("warning");
+		Assertions.assertFalse(policy.isAlwaysCaptured());
+		Assertions.assertTrue(policy.isCaptured("com.acme", LogMessageSeverity.CRITICAL));
+		Assertions.assertTrue(policy.isCaptured("com.acme", LogMessageSeverity.ERROR));
+		Assertions.assertTrue(policy.isCaptured("com.acme", LogMessageSeverity.WARNING));
+		Assertions.assertFalse(policy.isCaptured("com.acme", LogMessageSeverity.INFORMATION));
+		Assertions.assertFalse(policy.isCaptured("com.acme", LogMessageSeverity.VERBOSE));
+		Assertions.assertFalse(policy.isCaptured("com.acme", LogMessageSeverity.UNKNOWN));
+	}
+
+	@Test
+	public final void testCategorySettings() {
+		CallerInfoPolicy policy = new CallerInfoPolicy(
+				"Never; com.acme=Error ; com.acme.billing=Always; com.acme.billing.audit=Never");
+
+		// the longest setting that covers the category wins.
+		Assertions.assertFalse(policy.isCaptured("org.hibernate.SQL", LogMessageSeverity.CRITICAL));
+		Assertions.assertTrue(policy.isCaptured("com.acme", LogMessageSeverity.ERROR));
+		Assertions.assertTrue(policy.isCaptured("com.acme.web.Controller", LogMessageSeverity.ERROR));
+		Assertions.assertFalse(policy.isCaptured("com.acme.web.Controller", LogMessageSeverity.WARNING));
+		Assertions.assertTrue(policy.isCaptured("com.acme.billing.Invoice", LogMessageSeverity.VERBOSE));
+		Assertions.assertFalse(policy.isCaptured("com.acme.billing.audit.Trail", LogMessageSeverity.CRITICAL));
+
+		// a setting covers the categories under it, not every name that starts the same.
+		Assertions.assertFalse(policy.isCaptured("com.acmex.Thing", LogMessageSeverity.ERROR));
+
+		// asking again gives the same answer from the cache.
+		Assertions.assertTrue(policy.isCaptured("com.acme.billing.Invoice", LogMessageSeverity.VERBOSE));
+		Assertions.assertFalse(policy.isCaptured("com.acmex.Thing", LogMessageSeverity.ERROR));
+	}
+
+	@Test
+	public final void testBadSetting() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new CallerInfoPolicy("Sometimes"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new CallerInfoPolicy("com.acme=Unknown"));
+	}
+
+	@Test
+	public final void testConfiguration() {
+		Properties props = new Properties();
+		props.setProperty("Publisher.CaptureCallerInfo", "Warning; com.acme.billing=Always");
+		AgentConfiguration configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		Assertions.assertEquals("Warning; com.acme.billing=Always",
+				configuration.getPublisher().getCaptureCallerInfo());
+
+		// a setting that can't be read falls back to capturing everything.
+		props.setProperty("Publisher.CaptureCallerInfo", "Sometimes");
+		configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		Assertions.assertEquals("Always", configuration.getPublisher().getCaptureCallerInfo());
+	}
+}
@@ -0,0 +1,127 @@
+package com.onloupe.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.agent.logging.MessageSourceProvider;
+
+public class CallerLocatorTests {
+	private static final int CALLS_PER_BENCHMARK = 200000;
+
+	@Test
+	public final void testSelectsInnermostApplicationFrame() {
+		Throwable throwable = makeThrowable(
+				new StackTraceElement("com.onloupe.core.logging.Log", "write", "Log.java", 10),
+				new StackTraceElement("java.util.ArrayList", "forEach", "ArrayList.java", 20),
+				new StackTraceElement("ch.qos.logback.classic.Logger", "info", "Logger.java", 30),
+				new StackTraceElement("org.example.Service", "<init>", "Service.java", 40),
+				new StackTraceElement("org.example.Service", "handle", "Service.java", 50),
+				new StackTraceElement("org.example.Server", "run", "Server.java", 60));
+
+		MessageSourceProvider source = CallerLocator.locate(throwable, null);
+		Assertions.assertEquals("org.example.Service", source.getClassName());
+		Assertions.assertEquals("handle", source.getMethodName());
+		Assertions.assertEquals("Service.java", source.getFileName());
+		Assertions.assertEquals(50, source.getLineNumber());
+
+		// logging classes are passed over when there's something better.
+		source = CallerLocator.locate(makeThrowable(
+				new StackTraceElement("org.example.LogHelper", "write", "LogHelper.java", 10),
+				new StackTraceElement("org.example.Service", "handle", "Service.java", 50)), null);
+		Assertions.assertEquals("handle", source.getMethodName());
+	}
+
+	@Test
+	public final void testFallsBackToCandidates() {
+		Set<String> exclusions = Collections.singleton("ch.qos.logback");
+
+		// an excluded frame beats the core system, but not a logging class.
+		MessageSourceProvider source = CallerLocator.locate(makeThrowable(
+				new StackTraceElement("java.lang.Thread", "run", "Thread.java", 10),
+				new StackTraceElement("ch.qos.logback.classic.Logger", "info", "Logger.java", 30)), exclusions);
+		Assertions.assertEquals("ch.qos.logback.classic.Logger", source.getClassName());
+
+		source = CallerLocator.locate(makeThrowable(
+				new StackTraceElement("ch.qos.logback.classic.Logger", "info", "Logger.java", 30),
+				new StackTraceElement("org.example.Logging", "info", "Logging.java", 40)), exclusions);
+		Assertions.assertEquals("org.example.Logging", source.getClassName());
+
+		source = CallerLocator.locate(makeThrowable(
+				new StackTraceElement("com.onloupe.core.logging.Log", "write", "Log.java", 10),
+				new StackTraceElement("java.lang.Thread", "run", "Thread.java", 20)), exclusions);
+		Assertions.assertEquals("java.lang.Thread", source.getClassName());
+
+		// nothing but Loupe, so nothing is known.
+		source = CallerLocator.locate(makeThrowable(
+				new StackTraceElement("com.onloupe.core.logging.Log", "write", "Log.java", 10)), exclusions);
+		Assertions.assertNull(source.getClassName());
+	}
+
+	@Test
+	public final void testWalkerMatchesStackTrace() {
+		// everything here is in Loupe's package, so both have to find the same frame
+		// past it.
+		MessageSourceProvider traced = CallerLocator.traceStack(0, null);
+		Assertions.assertNotNull(traced.getClassName());
+		Assertions.assertFalse(traced.getClassName().startsWith("com.onloupe"));
+		if (CallerLocator.isWalkerAvailable()) {
+			MessageSourceProvider walked = CallerLocator.walkStack(0, null);
+			Assertions.assertEquals(traced.getClassName(), walked.getClassName());
+			Assertions.assertEquals(traced.getMethodName(), walked.getMethodName());
+			Assertions.assertEquals(traced.getLineNumber(), walked.getLineNumber());
+		}
+	}
+
+	@Test
+	public final void testExclusionsAreLeftAlone() {
+		// appenders share one set between threads.
+		Set<String> exclusions = new HashSet<String>(Arrays.asList("org.apache.log4j"));
+		CommonCentralLogic.findMessageSource(0, exclusions);
+		Assertions.assertEquals(Collections.singleton("org.apache.log4j"), exclusions);
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureCallerLocation(TestReporter reporter) {
+		Set<String> exclusions = Collections.singleton("ch.qos.logback");
+		long[] nanos = new long[2];
+		for (boolean measured : Benchmark.passes()) {
+			long startTime = System.nanoTime();
+			for (int call = 0; call < CALLS_PER_BENCHMARK; call++) {
+				CallerLocator.traceStack(0, exclusions);
+			}
+			long traceTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			if (CallerLocator.isWalkerAvailable()) {
+				for (int call = 0; call < CALLS_PER_BENCHMARK; call++) {
+					CallerLocator.walkStack(0, exclusions);
+				}
+			}
+			long walkTime = System.nanoTime() - startTime;
+
+			if (measured) {
+				nanos[0] += traceTime;
+				nanos[1] += walkTime;
+			}
+		}
+
+		reporter.publishEntry(String.format("Caller of a %d frame stack: stack trace %,d ns/op, stack walker %,d ns/op.",
+				new Throwable().getStackTrace().length, nanos[0] / Benchmark.PASSES / CALLS_PER_BENCHMARK,
+				nanos[1] / Benchmark.PASSES / CALLS_PER_BENCHMARK));
+	}
+
+	private static Throwable makeThrowable(StackTraceElement... stackTrace) {
+		Throwable throwable = new Throwable();
+		throwable.setStackTrace(stackTrace);
+		return throwable;
+	}
+}
@@ -0,0 +1,162 @@
+package com.onloupe.core;
+
+import java.math.BigInteger;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+public class FormatTemplateTests {
+	private static final int CALLS_PER_BENCHMARK = 500000;
+
+	@Test
+	public final void testMatchesStringFormat() {
+		Object[][] cases = {
+				{ "Loaded %s in %d ms", "config.xml", 42 },
+				{ "%s", (Object) null },
+				{ "%d%%%n%s", -7L, "end" },
+				{ "%2$s before %1$s, then %s", "first", "second" },
+				{ "%d %d %d %d", (byte) 1, (short) -2, Integer.MIN_VALUE, Long.MAX_VALUE },
+				{ "%d", new BigInteger("123456789012345678901234567890") },
+				{ "no conversions at all", "ignored" },
+				{ "%s and %s", new int[0].getClass(), Boolean.TRUE, "extra" },
+				{ "%08.3f and %-5s|", 3.14159, "x" },
+				{ "%x %S %tY", 255, "upper", new java.util.Date(0) },
+				{ "%d", "not a number" },
+				{ "%s", new Formattable() {
+					@Override
+					public void formatTo(Formatter formatter, int flags, int width, int precision) {
+						formatter.format("formatted");
+					}
+
+					@Override
+					public String toString() {
+						return "plain";
+					}
+				} }, };
+
+		for (Locale locale : new Locale[] { Locale.US, Locale.GERMANY, new Locale("ar", "SA"), null }) {
+			for (Object[] formatCase : cases) {
+				String format = (String) formatCase[0];
+				Object[] args = new Object[formatCase.length - 1];
+				System.arraycopy(formatCase, 1, args, 0, args.length);
+				assertSameAsStringFormat(locale, format, args);
+
+				// and again, now that it's been parsed.
+				assertSameAsStringFormat(locale, format, args);
+			}
+		}
+	}
+
+	@Test
+	public final void testBracePlaceholders() {
+		Assertions.assertEquals("Loaded config.xml in 42 ms",
+				FormatTemplate.format(Locale.US, "Loaded {} in {} ms", "config.xml", 42));
+		Assertions.assertEquals("null and [1, 2]",
+				FormatTemplate.format(Locale.US, "{} and {}", null, java.util.Arrays.asList(1, 2)));
+
+		// without enough arguments the placeholders are left as they are.
+		Assertions.assertEquals("a, {}, {}", FormatTemplate.format(Locale.US, "{}, {}, {}", "a"));
+
+		// and with an escape they aren't placeholders.
+		Assertions.assertEquals("{} is a", FormatTemplate.format(Locale.US, "\\{} is {}", "a"));
+
+		// with a % conversion anywhere it's a String.format format string.
+		Assertions.assertEquals("{} 5%", CommonCentralLogic.safeFormat(Locale.US, "{} %d%%", 5));
+	}
+
+	@Test
+	public final void testBadFormatsReportTheError() {
+		// the same error message as before, from String.format's exception.
+		String result = CommonCentralLogic.safeFormat(Locale.US, "Missing %s and %s", "one");
+		Assertions.assertTrue(result.startsWith("Missing %s and %s"), result);
+		Assertions.assertTrue(result.contains("one"), result);
+
+		result = CommonCentralLogic.safeFormat(Locale.US, "Dangling %", "one");
+		Assertions.assertTrue(result.startsWith("Dangling %"), result);
+
+		result = CommonCentralLogic.safeFormat(Locale.US, null, "one");
+		Assertions.assertTrue(result.contains("one"), result);
+
+		Assertions.assertEquals("As is %s", CommonCentralLogic.safeFormat(Locale.US, "As is %s"));
+	}
+
+	@Test
+	public final void testArgumentsThatFormatMessages() {
+		Object nested = new Object() {
+			@Override
+			public String toString() {
+				return CommonCentralLogic.safeFormat(Locale.US, "inner %s %d", "value", 2);
+			}
+		};
+
+		Assertions.assertEquals("outer [inner value 2] done",
+				CommonCentralLogic.safeFormat(Locale.US, "outer [%s] %s", nested, "done"));
+
+		// the builder is still good afterwards, even after a long message.
+		StringBuilder longValue = new StringBuilder();
+		for (int index = 0; index < 10000; index++) {
+			longValue.append("0123456789");
+		}
+		Assertions.assertEquals(longValue.length() + 2,
+				CommonCentralLogic.safeFormat(Locale.US, "[%s]", longValue).length());
+		Assertions.assertEquals("short 1", CommonCentralLogic.safeFormat(Locale.US, "short %d", 1));
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureFormatting(TestReporter reporter) {
+		String format = "Request %s for user %s completed in %d ms with status %d";
+		Object[] args = { "GET /orders/17", "alice", 1234L, 200 };
+		Assertions.assertEquals(String.format(Locale.US, format, args), FormatTemplate.format(Locale.US, format, args));
+
+		long[] nanos = new long[2];
+		long[] bytes = new long[2];
+		int length = 0;
+		for (boolean measured : Benchmark.passes()) {
+			long startBytes = Benchmark.getAllocatedBytes();
+			long startTime = System.nanoTime();
+			for (int call = 0; call < CALLS_PER_BENCHMARK; call++) {
+				length += String.format(Locale.US, format, args).length();
+			}
+			long formatTime = System.nanoTime() - startTime;
+			long formatBytes = Benchmark.getAllocatedBytes() - startBytes;
+
+			startBytes = Benchmark.getAllocatedBytes();
+			startTime = System.nanoTime();
+			for (int call = 0; call < CALLS_PER_BENCHMARK; call++) {
+				length += FormatTemplate.format(Locale.US, format, args).length();
+			}
+			long templateTime = System.nanoTime() - startTime;
+			long templateBytes = Benchmark.getAllocatedBytes() - startBytes;
+
+			if (measured) {
+				nanos[0] += formatTime;
+				nanos[1] += templateTime;
+				bytes[0] += formatBytes;
+				bytes[1] += templateBytes;
+			}
+		}
+		Assertions.assertTrue(length > 0);
+
+		reporter.publishEntry(String.format(
+				"Formatting a message: String.format %,d ns/op and %,d bytes/op, template %,d ns/op and %,d bytes/op.",
+				nanos[0] / Benchmark.PASSES / CALLS_PER_BENCHMARK, bytes[0] / Benchmark.PASSES / CALLS_PER_BENCHMARK,
+				nanos[1] / Benchmark.PASSES / CALLS_PER_BENCHMARK, bytes[1] / Benchmark.PASSES / CALLS_PER_BENCHMARK));
+	}
+
+	private static void assertSameAsStringFormat(Locale locale, String format, Object... args) {
+		String expected;
+		try {
+			expected = String.format(locale, format, args);
+		} catch (RuntimeException e) {
+			Assertions.assertThrows(e.getClass(), () -> FormatTemplate.format(locale, format, args));
+			return;
+		}
+		Assertions.assertEquals(expected, FormatTemplate.format(locale, format, args), format);
+	}
+}
@@ -0,0 +1,206 @@
+package com.onloupe.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.agent.IMessageSourceProvider;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.logging.Log;
+import com.onloupe.core.logging.LogFilter;
+import com.onloupe.core.logging.LogMessage;
+import com.onloupe.core.logging.MessageSuppressor;
+import com.onloupe.core.util.LogSystems;
+import com.onloupe.model.log.LogMessageSeverity;
+
+public class LogFilterTests {
+	private static final int CALLS_PER_BENCHMARK = 200000;
+
+	@Test
+	public final void testDefaultTakesEverything() {
+		for (LogFilter filter : new LogFilter[] { LogFilter.ALL, new LogFilter(null), new LogFilter(" ") }) {
+			Assertions.assertTrue(filter.isAllEnabled());
+			for (LogMessageSeverity severity : LogMessageSeverity.values()) {
+				Assertions.assertTrue(filter.isEnabled("com.acme", severity));
+			}
+			Assertions.assertTrue(filter.isEnabled(null, LogMessageSeverity.VERBOSE));
+		}
+	}
+
+	@Test
+	public final void testSeverityThreshold() {
+		LogFilter filter = new LogFilter("warning");
+		Assertions.assertFalse(filter.isAllEnabled());
+		Assertions.assertTrue(filter.isEnabled("com.acme", LogMessageSeverity.CRITICAL));
+		Assertions.assertTrue(filter.isEnabled("com.acme", LogMessageSeverity.ERROR));
+		Assertions.assertTrue(filter.isEnabled("com.acme", LogMessageSeverity.WARNING));
+		Assertions.assertFalse(filter.isEnabled("com.acme", LogMessageSeverity.INFORMATION));
+		Assertions.assertFalse(filter.isEnabled("com.acme", LogMessageSeverity.VERBOSE));
+
+		// we don't drop what we can't judge, unless told to drop everything.
+		Assertions.assertTrue(filter.isEnabled("com.acme", LogMessageSeverity.UNKNOWN));
+		Assertions.assertFalse(new LogFilter("None").isEnabled("com.acme", LogMessageSeverity.UNKNOWN));
+		Assertions.assertFalse(new LogFilter("None").isEnabled("com.acme", LogMessageSeverity.CRITICAL));
+	}
+
+	@Test
+	public final void testCategorySettings() {
+		LogFilter filter = new LogFilter(
+				"None; com.acme=Error ; com.acme.billing=All; com.acme.billing.audit=None; org=Information");
+
+		// the longest setting that covers the category wins.
+		Assertions.assertFalse(filter.isEnabled("net.sf.Thing", LogMessageSeverity.CRITICAL));
+		Assertions.assertTrue(filter.isEnabled("com.acme", LogMessageSeverity.ERROR));
+		Assertions.assertTrue(filter.isEnabled("com.acme.web.Controller", LogMessageSeverity.ERROR));
+		Assertions.assertFalse(filter.isEnabled("com.acme.web.Controller", LogMessageSeverity.WARNING));
+		Assertions.assertTrue(filter.isEnabled("com.acme.billing.Invoice", LogMessageSeverity.VERBOSE));
+		Assertions.assertFalse(filter.isEnabled("com.acme.billing.audit.Trail", LogMessageSeverity.CRITICAL));
+		Assertions.assertTrue(filter.isEnabled("org.hibernate.SQL", LogMessageSeverity.INFORMATION));
+		Assertions.assertFalse(filter.isEnabled("org.hibernate.SQL", LogMessageSeverity.VERBOSE));
+
+		// a setting covers the categories under it, not every name that starts the same.
+		Assertions.assertFalse(filter.isEnabled("com.acmex.Thing", LogMessageSeverity.ERROR));
+		Assertions.assertFalse(filter.isEnabled("com.acm", LogMessageSeverity.ERROR));
+		Assertions.assertFalse(filter.isEnabled("organic", LogMessageSeverity.ERROR));
+		Assertions.assertFalse(filter.isEnabled(null, LogMessageSeverity.ERROR));
+		Assertions.assertFalse(filter.isEnabled("", LogMessageSeverity.ERROR));
+
+		Assertions.assertEquals(
+				"None; com.acme=Error ; com.acme.billing=All; com.acme.billing.audit=None; org=Information",
+				filter.toString());
+	}
+
+	@Test
+	public final void testBadSetting() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new LogFilter("Sometimes"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new LogFilter("com.acme=Unknown"));
+	}
+
+	@Test
+	public final void testReplacingTheFilter() throws IOException {
+		Log.start(null, 1, null);
+		LogFilter original = Log.getLogFilter();
+		MessageSuppressor originalSuppressor = Log.getMessageSuppressor();
+		RecordingSuppressor published = new RecordingSuppressor();
+		try {
+			Log.setLogFilter(new LogFilter("Warning; com.acme=Verbose"));
+			Log.setMessageSuppressor(published);
+			Assertions.assertTrue(Log.isEnabled(LogMessageSeverity.VERBOSE, "com.acme.Thing"));
+			Assertions.assertFalse(Log.isEnabled(LogMessageSeverity.VERBOSE, "org.hibernate.SQL"));
+
+			// a message that's filtered out doesn't look for its caller or get published.
+			LogMessage message = new LogMessage(LogMessageSeverity.VERBOSE, LogSystems.GIBRALTAR, "org.hibernate.SQL",
+					0, "filtered");
+			Assertions.assertNull(message.getMessageSourceProvider());
+			message.publishToLog();
+			Assertions.assertTrue(published.categories.isEmpty());
+
+			message = new LogMessage(LogMessageSeverity.VERBOSE, LogSystems.GIBRALTAR, "com.acme.Thing", 0, "kept");
+			Assertions.assertNotNull(message.getMessageSourceProvider());
+			message.publishToLog();
+			Assertions.assertEquals(Arrays.asList("com.acme.Thing"), published.categories);
+
+			// a null filter goes back to taking everything.
+			Log.setLogFilter(null);
+			Assertions.assertSame(LogFilter.ALL, Log.getLogFilter());
+			Assertions.assertTrue(Log.isEnabled(LogMessageSeverity.VERBOSE, "org.hibernate.SQL"));
+		} finally {
+			Log.setLogFilter(original);
+			Log.setMessageSuppressor(originalSuppressor);
+		}
+	}
+
+	@Test
+	public final void testConfiguration() {
+		Properties props = new Properties();
+		props.setProperty("Publisher.LogFilter", "Information; com.acme.billing=Verbose");
+		AgentConfiguration configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		Assertions.assertEquals("Information; com.acme.billing=Verbose", configuration.getPublisher().getLogFilter());
+
+		// a setting that can't be read falls back to taking everything.
+		props.setProperty("Publisher.LogFilter", "Sometimes");
+		configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		Assertions.assertEquals("All", configuration.getPublisher().getLogFilter());
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureFilteredMessages(TestReporter reporter) {
+		LogFilter original = Log.getLogFilter();
+		LogFilter filter = new LogFilter("Information; com.acme.billing=Verbose; org.hibernate=Warning; com.noisy=None");
+		String category = "org.hibernate.engine.jdbc.spi.SqlStatementLogger";
+
+		long[] nanos = new long[3];
+		long count = 0;
+		try {
+			for (boolean measured : Benchmark.passes()) {
+				Log.setLogFilter(LogFilter.ALL);
+				long start = System.nanoTime();
+				for (int call = 0; call < CALLS_PER_BENCHMARK; call++) {
+					// what a dropped message used to cost before anything looked at it.
+					count += new LogMessage(LogMessageSeverity.VERBOSE, LogSystems.GIBRALTAR, category, 0, "Statement",
+							"select %s", call).getSeverity().getSeverity();
+				}
+				long unfiltered = System.nanoTime() - start;
+
+				Log.setLogFilter(filter);
+				start = System.nanoTime();
+				for (int call = 0; call < CALLS_PER_BENCHMARK; call++) {
+					count += new LogMessage(LogMessageSeverity.VERBOSE, LogSystems.GIBRALTAR, category, 0, "Statement",
+							"select %s", call).getSeverity().getSeverity();
+				}
+				long filtered = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int call = 0; call < CALLS_PER_BENCHMARK; call++) {
+					if (Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
+						count++;
+					}
+				}
+				long checked = System.nanoTime() - start;
+
+				if (measured) {
+					nanos[0] += unfiltered;
+					nanos[1] += filtered;
+					nanos[2] += checked;
+				}
+			}
+		} finally {
+			Log.setLogFilter(original);
+		}
+		Assertions.assertTrue(count > 0);
+
+		reporter.publishEntry(String.format(
+				"Dropped verbose message: unfiltered %,d ns/op, filtered %,d ns/op, isEnabled check %,d ns/op.",
+				nanos[0] / Benchmark.PASSES / CALLS_PER_BENCHMARK, nanos[1] / Benchmark.PASSES / CALLS_PER_BENCHMARK,
+				nanos[2] / Benchmark.PASSES / CALLS_PER_BENCHMARK));
+	}
+
+	/**
+	 * Notes the category of each message that gets as far as being published,
+	 * without writing it.
+	 */
+	private static class RecordingSuppressor extends MessageSuppressor {
+		private final List<String> categories = new ArrayList<String>();
+
+		RecordingSuppressor() {
+			super("Off");
+		}
+
+		@Override
+		public boolean admit(LogMessageSeverity severity, String category, IMessageSourceProvider source,
+				String template) {
+			this.categories.add(category);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package com.onloupe.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.agent.IMessageSourceProvider;
+import com.onloupe.agent.logging.MessageSourceProvider;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.logging.MessageSuppressor;
+import com.onloupe.model.log.LogMessageSeverity;
+
+public class MessageSuppressorTests {
+	private static final int MESSAGES_PER_BENCHMARK = 500000;
+
+	private static final IMessageSourceProvider SOURCE = new MessageSourceProvider("com.acme.db.Pool", "connect",
+			"Pool.java", 42);
+
+	@Test
+	public final void testOffAdmitsEverything() {
+		TestSuppressor suppressor = new TestSuppressor("Off");
+		Assertions.assertTrue(suppressor.isUnlimited());
+		for (int message = 0; message < 1000; message++) {
+			Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused"));
+		}
+		suppressor.flush();
+		Assertions.assertTrue(suppressor.summaries.isEmpty());
+	}
+
+	@Test
+	public final void testSuppressesRepeatsAndReportsThem() {
+		TestSuppressor suppressor = new TestSuppressor("3/10s");
+		Assertions.assertFalse(suppressor.isUnlimited());
+		for (int message = 0; message < 3; message++) {
+			Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused"));
+		}
+		for (int message = 0; message < 5; message++) {
+			suppressor.now += 100;
+			Assertions.assertFalse(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused"));
+		}
+		Assertions.assertTrue(suppressor.summaries.isEmpty());
+
+		// the next window starts over, and reports the last one.
+		suppressor.now += 10000;
+		Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused"));
+		Assertions.assertEquals(1, suppressor.summaries.size());
+		String[] summary = suppressor.summaries.get(0);
+		Assertions.assertEquals("ERROR", summary[0]);
+		Assertions.assertEquals("com.acme.db", summary[1]);
+		Assertions.assertEquals("com.acme.db.Pool", summary[2]);
+		Assertions.assertEquals("Suppressed 5 repeats of: Connection refused", summary[3]);
+		Assertions.assertTrue(summary[4].startsWith("5 more messages like this one were logged between "
+				+ "1970-01-01T00:00:01.100Z and 1970-01-01T00:00:01.500Z"), summary[4]);
+	}
+
+	@Test
+	public final void testDifferentMessagesAreCountedApart() {
+		TestSuppressor suppressor = new TestSuppressor("1/1m");
+		IMessageSourceProvider otherLine = new MessageSourceProvider("com.acme.db.Pool", "connect", "Pool.java", 43);
+		Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused"));
+		Assertions.assertTrue(suppressor.admit(LogMessageSeverity.WARNING, "com.acme.db", SOURCE, "Connection refused"));
+		Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.web", SOURCE, "Connection refused"));
+		Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", otherLine, "Connection refused"));
+		Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection reset"));
+		Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", null, "Connection refused"));
+
+		Assertions.assertFalse(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused"));
+		Assertions.assertFalse(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", null, "Connection refused"));
+
+		// a different instance of the same source is the same message.
+		Assertions.assertFalse(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db",
+				new MessageSourceProvider("com.acme.db.Pool", "connect", "Pool.java", 42), "Connection refused"));
+	}
+
+	@Test
+	public final void testCategorySettings() {
+		TestSuppressor suppressor = new TestSuppressor("Off; com.acme=2/1s; com.acme.audit=Off");
+		for (int message = 0; message < 10; message++) {
+			Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "org.hibernate", SOURCE, "Slow query"));
+			Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acme.audit.Trail", SOURCE, "Login"));
+			Assertions.assertTrue(suppressor.admit(LogMessageSeverity.ERROR, "com.acmex", SOURCE, "Refused"));
+			Assertions.assertEquals(message < 2,
+					suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Refused"));
+		}
+	}
+
+	@Test
+	public final void testReportsEndedWindowsWithoutAnotherRepeat() {
+		TestSuppressor suppressor = new TestSuppressor("1/1s");
+		suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused");
+		suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused");
+		suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE, "Connection refused");
+
+		// any message after the window is over reports it, not just a repeat.
+		suppressor.now += 2000;
+		suppressor.admit(LogMessageSeverity.INFORMATION, "com.acme.web", SOURCE, "Request");
+		Assertions.assertEquals(1, suppressor.summaries.size());
+		Assertions.assertEquals("Suppressed 2 repeats of: Connection refused", suppressor.summaries.get(0)[3]);
+
+		// and flushing reports windows that aren't over yet.
+		suppressor.admit(LogMessageSeverity.INFORMATION, "com.acme.web", SOURCE, "Request");
+		suppressor.flush();
+		Assertions.assertEquals(2, suppressor.summaries.size());
+		Assertions.assertEquals("Suppressed 1 repeats of: Request", suppressor.summaries.get(1)[3]);
+
+		suppressor.flush();
+		Assertions.assertEquals(2, suppressor.summaries.size());
+	}
+
+	@Test
+	public final void testBadSetting() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MessageSuppressor("Sometimes"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MessageSuppressor("10"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MessageSuppressor("10/0s"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new MessageSuppressor("com.acme=ten/1s"));
+	}
+
+	@Test
+	public final void testConfiguration() {
+		Properties props = new Properties();
+		props.setProperty("Publisher.MessageSuppression", "Off; com.acme.db=20/10s");
+		AgentConfiguration configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		Assertions.assertEquals("Off; com.acme.db=20/10s", configuration.getPublisher().getMessageSuppression());
+
+		// a setting that can't be read falls back to suppressing nothing.
+		props.setProperty("Publisher.MessageSuppression", "Sometimes");
+		configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		Assertions.assertEquals("Off", configuration.getPublisher().getMessageSuppression());
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureFlood(TestReporter reporter) {
+		MessageSuppressor suppressor = new MessageSuppressor("10/1s");
+		String[] templates = new String[64];
+		for (int index = 0; index < templates.length; index++) {
+			templates[index] = "Connection " + index + " refused";
+		}
+
+		long nanos = 0;
+		long bytes = 0;
+		long admitted = 0;
+		for (boolean measured : Benchmark.passes()) {
+			long startBytes = Benchmark.getAllocatedBytes();
+			long start = System.nanoTime();
+			for (int message = 0; message < MESSAGES_PER_BENCHMARK; message++) {
+				if (suppressor.admit(LogMessageSeverity.ERROR, "com.acme.db", SOURCE,
+						templates[message & (templates.length - 1)])) {
+					admitted++;
+				}
+			}
+			long passNanos = System.nanoTime() - start;
+			long passBytes = Benchmark.getAllocatedBytes() - startBytes;
+
+			if (measured) {
+				nanos += passNanos;
+				bytes += passBytes;
+			}
+		}
+		Assertions.assertTrue(admitted > 0);
+		Assertions.assertTrue(admitted < MESSAGES_PER_BENCHMARK);
+
+		reporter.publishEntry(String.format("Flood of %d repeated messages: %,d ns/op, %,d bytes/op, %,d of %,d logged.",
+				templates.length, nanos / Benchmark.PASSES / MESSAGES_PER_BENCHMARK,
+				bytes / Benchmark.PASSES / MESSAGES_PER_BENCHMARK,
+				admitted, (Benchmark.PASSES + 1L) * MESSAGES_PER_BENCHMARK));
+	}
+
+	/**
+	 * Keeps the summaries it would write, on a clock the test moves.
+	 */
+	private static class TestSuppressor extends MessageSuppressor {
+		private final List<String[]> summaries = new ArrayList<String[]>();
+		private long now = 1000;
+
+		TestSuppressor(String value) {
+			super(value);
+		}
+
+		@Override
+		protected void writeSummary(LogMessageSeverity severity, String category, IMessageSourceProvider source,
+				String caption, String description) {
+			this.summaries.add(new String[] { severity.name(), category, (source != null) ? source.getClassName() : null,
+					caption, description });
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return this.now;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.onloupe.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.logging.ThreadInfo;
+import com.onloupe.core.logging.ThreadInfoCache;
+
+public class ThreadInfoCacheTests {
+	private static final int EVENTS_PER_BENCHMARK = 500000;
+
+	@Test
+	public final void testReusesThreadInfo() {
+		ThreadInfoCache cache = new ThreadInfoCache();
+		Thread current = Thread.currentThread();
+		ThreadInfo threadInfo = cache.get(current.getId(), current.getName());
+		Assertions.assertSame(threadInfo, cache.get(current.getId(), current.getName()));
+		Assertions.assertEquals(current.getId(), threadInfo.getThreadId());
+		Assertions.assertEquals(current.getName(), threadInfo.getThreadName());
+
+		// the current thread has the same index Loupe gives it everywhere else.
+		Assertions.assertEquals(ThreadInfo.getCurrentThreadIndex(), threadInfo.getThreadIndex());
+
+		// a renamed thread gets a new one.
+		ThreadInfo renamed = cache.get(current.getId(), current.getName() + " renamed");
+		Assertions.assertNotSame(threadInfo, renamed);
+		Assertions.assertEquals(current.getName() + " renamed", renamed.getThreadName());
+	}
+
+	@Test
+	public final void testOtherThreadsGetTheirOwnIndex() {
+		// as when an async logger hands us events from the threads that logged them.
+		ThreadInfoCache cache = new ThreadInfoCache();
+		ThreadInfo first = cache.get(-1, "Request 1");
+		ThreadInfo second = cache.get(-2, "Request 2");
+		Assertions.assertNotEquals(ThreadInfo.getCurrentThreadIndex(), first.getThreadIndex());
+		Assertions.assertNotEquals(ThreadInfo.getCurrentThreadIndex(), second.getThreadIndex());
+		Assertions.assertNotEquals(first.getThreadIndex(), second.getThreadIndex());
+		Assertions.assertSame(first, cache.get(-1, "Request 1"));
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureThreadInfoAllocation(TestReporter reporter) {
+		ThreadInfoCache cache = new ThreadInfoCache();
+		Thread current = Thread.currentThread();
+		long threadId = current.getId();
+		String threadName = current.getName();
+
+		long[] bytes = new long[2];
+		long count = 0;
+		for (boolean measured : Benchmark.passes()) {
+			long startBytes = Benchmark.getAllocatedBytes();
+			for (int event = 0; event < EVENTS_PER_BENCHMARK; event++) {
+				count += new ThreadInfo(threadId, threadName).getThreadIndex();
+			}
+			long newBytes = Benchmark.getAllocatedBytes() - startBytes;
+
+			startBytes = Benchmark.getAllocatedBytes();
+			for (int event = 0; event < EVENTS_PER_BENCHMARK; event++) {
+				count += cache.get(threadId, threadName).getThreadIndex();
+			}
+			long cachedBytes = Benchmark.getAllocatedBytes() - startBytes;
+
+			if (measured) {
+				bytes[0] += newBytes;
+				bytes[1] += cachedBytes;
+			}
+		}
+		Assertions.assertTrue(count > 0);
+
+		reporter.publishEntry(String.format("Thread info per event: new %,d bytes/op, cached %,d bytes/op.",
+				bytes[0] / Benchmark.PASSES / EVENTS_PER_BENCHMARK,
+				bytes[1] / Benchmark.PASSES / EVENTS_PER_BENCHMARK));
+	}
+}
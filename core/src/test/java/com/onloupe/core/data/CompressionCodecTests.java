@@ -0,0 +1,318 @@
+package com.onloupe.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.messaging.FileMessenger;
+import com.onloupe.core.messaging.IMessengerPacket;
+import com.onloupe.core.messaging.Publisher;
+import com.onloupe.core.serialization.LogPacket;
+import com.onloupe.core.serialization.PacketWriter;
+import com.onloupe.core.serialization.monitor.SessionClosePacket;
+
+public class CompressionCodecTests {
+	private static final int BENCHMARK_BYTES = 32 * 1024 * 1024;
+
+	@Test
+	public final void testLZRoundTrip() throws Exception {
+		Random random = new Random(7);
+		byte[] incompressible = new byte[200000];
+		random.nextBytes(incompressible);
+
+		byte[] repetitive = new byte[150000];
+		for (int index = 0; index < repetitive.length; index++) {
+			repetitive[index] = (byte) (index % 3); // matches that overlap what they're copying
+		}
+
+		for (byte[] data : new byte[][] { new byte[0], new byte[] { 1, 2, 3 }, "abcdabcdabcdabcd".getBytes(),
+				incompressible, repetitive, makePacketStream(300000) }) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			try (LZOutputStream stream = new LZOutputStream(buffer)) {
+				for (int offset = 0; offset < data.length; offset += 3000) {
+					stream.write(data, offset, Math.min(3000, data.length - offset));
+					if (offset % 30000 == 0) {
+						stream.flush(); // short blocks have to work too
+					}
+				}
+			}
+
+			Assertions.assertArrayEquals(data, readAll(new LZInputStream(new ByteArrayInputStream(buffer.toByteArray()))));
+			Assertions.assertTrue(buffer.size() <= data.length + (data.length / 1000) + 100,
+					"incompressible data grew too much: " + buffer.size());
+		}
+	}
+
+	@Test
+	public final void testFileHeaderRecordsCodec() throws IOException {
+		FileHeader header = new FileHeader();
+		Assertions.assertEquals(CompressionCodec.GZIP, header.getCompressionCodec());
+
+		// a header from before codecs had zeros there, which has to read as GZip.
+		Assertions.assertEquals(CompressionCodec.GZIP, new FileHeader(header.rawData()).getCompressionCodec());
+
+		header.setCompressionCodec(CompressionCodec.LZ);
+		Assertions.assertEquals(CompressionCodec.LZ, new FileHeader(header.rawData()).getCompressionCodec());
+		Assertions.assertEquals(FileHeader.HEADER_SIZE, header.rawData().length);
+
+		// the codec says nothing about the packet format, which stays with the version.
+		Assertions.assertEquals(FileHeader.defaultMinorVersion, header.getMinorVersion());
+
+		// the old checksum is those same bytes.
+		header.setDataChecksum(header.getDataChecksum());
+		Assertions.assertEquals(CompressionCodec.LZ, header.getCompressionCodec());
+		header.setDataChecksum(0);
+		Assertions.assertEquals(CompressionCodec.GZIP, header.getCompressionCodec());
+	}
+
+	@Test
+	public final void testReaderPicksCodecFromHeader() throws Exception {
+		Set<Integer> minorVersions = new HashSet<Integer>();
+		for (CompressionCodec codec : CompressionCodec.values()) {
+			Path folder = Files.createTempDirectory("loupe-codec");
+			try {
+				Properties props = new Properties();
+				props.setProperty("SessionFile.Folder", folder.toString());
+				props.setProperty("SessionFile.CompressionCodec", codec.name());
+				props.setProperty("SessionFile.EnableFilePruning", "false");
+				props.setProperty("NetworkViewer.Enabled", "false");
+				AgentConfiguration configuration = new AgentConfiguration(props);
+
+				SessionSummary sessionSummary = new SessionSummary(configuration);
+				Publisher publisher = new Publisher("Codec Test", configuration, sessionSummary);
+				try {
+					publisher.publish(new IMessengerPacket[] { sessionSummary.getPacket() }, true);
+					for (int i = 0; i < 500; i++) {
+						publisher.publish(new IMessengerPacket[] { new SessionClosePacket() }, false);
+					}
+				} finally {
+					publisher.close();
+				}
+
+				List<Path> files;
+				try (Stream<Path> paths = Files.walk(folder)) {
+					files = paths.filter(file -> file.toString().endsWith("." + FileMessenger.LOG_EXTENSION))
+							.collect(Collectors.toList());
+				}
+				Assertions.assertFalse(files.isEmpty());
+
+				for (Path file : files) {
+					try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "r")) {
+						GLFReader reader = new GLFReader(randomAccessFile);
+						Assertions.assertEquals(codec, reader.getFileHeader().getCompressionCodec());
+						minorVersions.add(reader.getMinorVersion());
+
+						// reading it through to the end checks the whole stream, including the GZip trailer.
+						try (InputStream packets = reader.openPacketStream()) {
+							Assertions.assertTrue(readAll(packets).length > 500);
+						}
+					}
+				}
+			} finally {
+				deleteFolder(folder);
+			}
+		}
+
+		// the codec doesn't change the packet format.
+		Assertions.assertEquals(1, minorVersions.size());
+	}
+
+	@Test
+	public final void testConfiguration() {
+		Assertions.assertEquals(CompressionCodec.LZ, readCodec("lz"));
+		Assertions.assertEquals(CompressionCodec.NONE, readCodec("None"));
+		Assertions.assertEquals(CompressionCodec.GZIP, readCodec("GZip"));
+
+		// one we can't read falls back to what older agents always wrote.
+		Assertions.assertEquals(CompressionCodec.GZIP, readCodec("zstd"));
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void compareCodecs(TestReporter reporter) throws Exception {
+		byte[] data = makePacketStream(4 * 1024 * 1024);
+
+		// warm everything up so the first codec measured isn't paying for the JIT.
+		for (int level : new int[] { Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION }) {
+			measure(new DeflaterFactory(level), data, 8 * 1024 * 1024);
+		}
+		measure(new LZFactory(), data, 8 * 1024 * 1024);
+
+		reporter.publishEntry("NONE: " + measure(new StoredFactory(), data, BENCHMARK_BYTES));
+		reporter.publishEntry("LZ: " + measure(new LZFactory(), data, BENCHMARK_BYTES));
+		reporter.publishEntry("GZIP (best speed): " + measure(new DeflaterFactory(Deflater.BEST_SPEED), data,
+				BENCHMARK_BYTES));
+		reporter.publishEntry("GZIP (default): " + measure(new DeflaterFactory(Deflater.DEFAULT_COMPRESSION), data,
+				BENCHMARK_BYTES));
+		reporter.publishEntry("GZIP (best compression): " + measure(new DeflaterFactory(Deflater.BEST_COMPRESSION),
+				data, BENCHMARK_BYTES));
+	}
+
+	private static String measure(StreamFactory factory, byte[] data, int totalBytes) throws IOException {
+		CountingOutputStream counter = new CountingOutputStream();
+		long startTime = System.nanoTime();
+		OutputStream stream = factory.create(counter);
+		for (int written = 0; written < totalBytes; written += data.length) {
+			stream.write(data);
+		}
+		stream.close();
+		long compressNanos = System.nanoTime() - startTime;
+
+		// and see how fast it comes back, one copy of the data is plenty for that.
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		stream = factory.create(compressed);
+		stream.write(data);
+		stream.close();
+		startTime = System.nanoTime();
+		byte[] decompressed = readAll(factory.open(new ByteArrayInputStream(compressed.toByteArray())));
+		long decompressNanos = System.nanoTime() - startTime;
+		Assertions.assertArrayEquals(data, decompressed);
+
+		return String.format("compress %,d MB/sec, decompress %,d MB/sec, ratio %.2f:1.",
+				megabytesPerSecond(totalBytes, compressNanos), megabytesPerSecond(data.length, decompressNanos),
+				(double) totalBytes / counter.count);
+	}
+
+	private static CompressionCodec readCodec(String value) {
+		Properties props = new Properties();
+		props.setProperty("SessionFile.CompressionCodec", value);
+		AgentConfiguration configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		return configuration.getSessionFile().getCompressionCodec();
+	}
+
+	private static long megabytesPerSecond(long bytes, long nanos) {
+		return bytes * TimeUnit.SECONDS.toNanos(1) / (1024 * 1024) / Math.max(nanos, 1);
+	}
+
+	/**
+	 * Serialize log packets with captions that vary the way real ones do.
+	 */
+	private static byte[] makePacketStream(int length) throws Exception {
+		Random random = new Random(42);
+		String[] templates = new String[] { "Request %d for /api/orders/%d completed in %d ms",
+				"User %d signed in from 10.0.%d.%d", "Cache miss for key customer:%d, loading from database (%d ms, %d rows)",
+				"Connection pool exhausted, waiting for a connection (%d active, %d idle, %d waiting)",
+				"Unable to parse configuration value '%d' for setting Timeout%d, using default of %d" };
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(length + 1024);
+		PacketWriter writer = new PacketWriter(buffer);
+		while (buffer.size() < length) {
+			String caption = String.format(templates[random.nextInt(templates.length)], random.nextInt(100000),
+					random.nextInt(256), random.nextInt(5000));
+			LogPacket.write(caption, writer);
+		}
+		writer.close();
+
+		byte[] data = buffer.toByteArray();
+		return java.util.Arrays.copyOf(data, length);
+	}
+
+	private static byte[] readAll(InputStream stream) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		while ((count = stream.read(buffer)) > 0) {
+			output.write(buffer, 0, count);
+		}
+		stream.close();
+		return output.toByteArray();
+	}
+
+	private static void deleteFolder(Path folder) throws IOException {
+		try (Stream<Path> files = Files.walk(folder)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private interface StreamFactory {
+		OutputStream create(OutputStream out) throws IOException;
+
+		InputStream open(InputStream in) throws IOException;
+	}
+
+	private static class StoredFactory implements StreamFactory {
+		@Override
+		public OutputStream create(OutputStream out) {
+			return out;
+		}
+
+		@Override
+		public InputStream open(InputStream in) {
+			return in;
+		}
+	}
+
+	private static class LZFactory implements StreamFactory {
+		@Override
+		public OutputStream create(OutputStream out) {
+			return new LZOutputStream(out);
+		}
+
+		@Override
+		public InputStream open(InputStream in) {
+			return new LZInputStream(in);
+		}
+	}
+
+	private static class DeflaterFactory implements StreamFactory {
+		private final int level;
+
+		DeflaterFactory(int level) {
+			this.level = level;
+		}
+
+		@Override
+		public OutputStream create(OutputStream out) throws IOException {
+			return new GZIPOutputStream(out, true) {
+				{
+					this.def.setLevel(DeflaterFactory.this.level);
+				}
+			};
+		}
+
+		@Override
+		public InputStream open(InputStream in) throws IOException {
+			return new GZIPInputStream(in);
+		}
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		private long count;
+
+		@Override
+		public void write(int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			this.count += len;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package com.onloupe.core.data;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.Benchmark;
+import com.onloupe.core.messaging.FileMessenger;
+import com.onloupe.core.metrics.MetricSampleType;
+import com.onloupe.core.serialization.IPacket;
+import com.onloupe.core.serialization.monitor.CustomSampledMetricDefinitionPacket;
+import com.onloupe.core.serialization.monitor.CustomSampledMetricPacket;
+import com.onloupe.core.serialization.monitor.CustomSampledMetricSamplePacket;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.model.log.ILogMessage;
+
+public class GLFPacketReaderTests {
+	private static final int MESSAGES_PER_BENCHMARK = 100000;
+
+	@Test
+	public final void testReadLogMessages() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(2000);
+		for (CompressionCodec codec : CompressionCodec.values()) {
+			for (int minorVersion : new int[] { FileHeader.defaultMinorVersion, FileHeader.stringTableMinorVersion }) {
+				File target = File.createTempFile("loupe-reader", "." + FileMessenger.LOG_EXTENSION);
+				try {
+					LogMessageFiles.writeFile(target, codec, minorVersion, packets);
+					List<ILogMessage> messages = readLogMessages(target);
+
+					Assertions.assertEquals(packets.size(), messages.size(), codec.toString());
+					for (int index = 0; index < packets.size(); index++) {
+						assertSameMessage(packets.get(index), messages.get(index));
+					}
+				} finally {
+					target.delete();
+				}
+			}
+		}
+	}
+
+	@Test
+	public final void testReadMetricSamples() throws Exception {
+		CustomSampledMetricDefinitionPacket definitionPacket = new CustomSampledMetricDefinitionPacket("Test",
+				"Reader", "Requests", MetricSampleType.RAW_FRACTION);
+		definitionPacket.setTimestamp(OffsetDateTime.now());
+		CustomSampledMetricPacket metricPacket = new CustomSampledMetricPacket(definitionPacket, "Instance");
+		metricPacket.setTimestamp(OffsetDateTime.now());
+		List<IPacket> packets = new ArrayList<IPacket>();
+		for (int index = 0; index < 100; index++) {
+			CustomSampledMetricSamplePacket packet = new CustomSampledMetricSamplePacket(metricPacket, index,
+					index * 2.0);
+			packet.setTimestamp(OffsetDateTime.now());
+			packets.add(packet);
+		}
+
+		File target = File.createTempFile("loupe-reader", "." + FileMessenger.LOG_EXTENSION);
+		try {
+			LogMessageFiles.writeFile(target, CompressionCodec.GZIP, FileHeader.defaultMinorVersion, packets);
+			List<MetricSampleRecord> samples;
+			try (RandomAccessFile file = new RandomAccessFile(target, "r");
+					GLFPacketReader reader = new GLFPacketReader(new GLFReader(file))) {
+				samples = reader.metricSamples().collect(Collectors.toList());
+			}
+
+			Assertions.assertEquals(packets.size(), samples.size());
+			for (int index = 0; index < samples.size(); index++) {
+				MetricSampleRecord sample = samples.get(index);
+				Assertions.assertEquals(metricPacket.getID(), sample.getMetricId());
+				Assertions.assertEquals("Reader", sample.getCategoryName());
+				Assertions.assertEquals("Requests", sample.getCounterName());
+				Assertions.assertEquals("Instance", sample.getInstanceName());
+				Assertions.assertEquals((double) index, sample.getRawValue());
+				Assertions.assertEquals(index * 2.0, sample.getBaseValue());
+			}
+		} finally {
+			target.delete();
+		}
+	}
+
+	@Test
+	public final void testReadUnfinishedFile() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(2000);
+		for (CompressionCodec codec : CompressionCodec.values()) {
+			File target = File.createTempFile("loupe-reader", "." + FileMessenger.LOG_EXTENSION);
+			try {
+				// flushed into preallocated space but never closed, like a process that was
+				// killed or is still running.
+				LogMessageFiles.writeFile(target, codec, FileHeader.defaultMinorVersion, packets,
+						writer -> writer.setPreallocationSize(64 * 1024), false);
+				Assertions.assertEquals(packets.size(), readLogMessages(target).size(), codec.toString());
+			} finally {
+				target.delete();
+			}
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureReadThroughput(TestReporter reporter) throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES_PER_BENCHMARK);
+		CompressionCodec[] codecs = new CompressionCodec[] { CompressionCodec.NONE, CompressionCodec.GZIP };
+		File[] targets = new File[codecs.length];
+		try {
+			for (int index = 0; index < codecs.length; index++) {
+				targets[index] = File.createTempFile("loupe-reader", "." + FileMessenger.LOG_EXTENSION);
+				LogMessageFiles.writeFile(targets[index], codecs[index], FileHeader.defaultMinorVersion, packets);
+			}
+
+			long[] counts = new long[codecs.length];
+			long[] nanos = new long[codecs.length];
+			for (boolean measured : Benchmark.passes()) {
+				for (int index = 0; index < codecs.length; index++) {
+					long startTime = System.nanoTime();
+					long count = readRecords(targets[index]);
+					if (measured) {
+						nanos[index] += System.nanoTime() - startTime;
+						counts[index] += count;
+					}
+				}
+			}
+
+			for (int index = 0; index < codecs.length; index++) {
+				Assertions.assertTrue(counts[index] >= Benchmark.PASSES * MESSAGES_PER_BENCHMARK);
+				reporter.publishEntry(String.format("%s: %,d bytes, %,d packets/sec.", codecs[index],
+						targets[index].length(),
+						counts[index] * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos[index], 1)));
+			}
+		} finally {
+			for (File target : targets) {
+				if (target != null) {
+					target.delete();
+				}
+			}
+		}
+	}
+
+	private static long readRecords(File source) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(source, "r");
+				GLFPacketReader reader = new GLFPacketReader(new GLFReader(file))) {
+			return reader.records().count();
+		}
+	}
+
+	private static List<ILogMessage> readLogMessages(File source) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(source, "r");
+				GLFPacketReader reader = new GLFPacketReader(new GLFReader(file))) {
+			return reader.logMessages().collect(Collectors.toList());
+		}
+	}
+
+	private static void assertSameMessage(LogMessagePacket expected, ILogMessage actual) {
+		Assertions.assertEquals(expected.getId(), actual.getId());
+		Assertions.assertEquals(expected.getSequence(), actual.getSequence());
+		Assertions.assertEquals(expected.getTimestamp().toInstant(), actual.getTimestamp().toInstant());
+		Assertions.assertEquals(expected.getSeverity(), actual.getSeverity());
+		Assertions.assertEquals(expected.getCategoryName(), actual.getCategoryName());
+		Assertions.assertEquals(expected.getCaption(), actual.getCaption());
+		Assertions.assertEquals(expected.getClassName(), actual.getClassName());
+		Assertions.assertEquals(expected.getLineNumber(), actual.getLineNumber());
+		Assertions.assertEquals(expected.getThreadName(), actual.getThreadName());
+		Assertions.assertEquals(expected.getHasException(), actual.getHasException());
+		if (expected.getHasException()) {
+			Assertions.assertEquals(expected.getException().getTypeName(), actual.getException().getTypeName());
+			Assertions.assertEquals(expected.getException().getMessage(), actual.getException().getMessage());
+			Assertions.assertEquals(expected.getException().getInnerException().getMessage(),
+					actual.getException().getInnerException().getMessage());
+		}
+	}
+}
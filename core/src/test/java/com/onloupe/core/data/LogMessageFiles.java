@@ -0,0 +1,112 @@
+package com.onloupe.core.data;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.serialization.IPacket;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.core.serialization.monitor.ThreadInfoPacket;
+import com.onloupe.model.log.LogMessageSeverity;
+
+/**
+ * The log messages the reader tests write out, and the session files they
+ * write them to.
+ */
+public class LogMessageFiles {
+
+	/**
+	 * Anything to set on a writer before the first packet goes in.
+	 */
+	public interface WriterSetup {
+		void apply(GLFWriter writer) throws Exception;
+	}
+
+	public static List<LogMessagePacket> makeLogMessages(int count) {
+		// timestamps are written in 100ns ticks.
+		return makeLogMessages(count, OffsetDateTime.now().withNano(0));
+	}
+
+	/**
+	 * Make messages on four threads, numbered from one. Every tenth is a warning
+	 * and every hundredth an error, each with an exception.
+	 */
+	public static List<LogMessagePacket> makeLogMessages(int count, OffsetDateTime timestamp) {
+		ThreadInfoPacket[] threads = new ThreadInfoPacket[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new ThreadInfoPacket(i + 1, 100 + i, "worker-" + (i + 1), 0, "Application", true);
+			threads[i].setTimestamp(timestamp);
+		}
+
+		List<LogMessagePacket> packets = new ArrayList<LogMessagePacket>(count);
+		for (int i = 0; i < count; i++) {
+			ThreadInfoPacket thread = threads[i % threads.length];
+			LogMessagePacket packet = new LogMessagePacket();
+			packet.setSequence(i + 1);
+			packet.setThreadInfoPacket(thread);
+			packet.setThreadIndex(thread.getThreadIndex());
+			packet.setThreadId(thread.getThreadId());
+			packet.setLogSystem("Loupe");
+
+			// names that first turn up in messages a filter skips, so the string table
+			// has to be kept up to date through them.
+			packet.setCategoryName("Test.Messages." + (i % 7) + "." + (i % 13));
+			packet.setUserName("tester");
+			packet.setClassName(LogMessageFiles.class.getName() + "$Source" + (i % 31));
+			packet.setMethodName("makeLogMessages");
+			packet.setFileName("LogMessageFiles.java");
+			packet.setLineNumber(i);
+			packet.setCaption("Message " + (i + 1));
+			packet.setDescription("The details of message " + (i + 1) + ", which nobody reads unless it went wrong.");
+			if (i % 100 == 0) {
+				packet.setSeverity(LogMessageSeverity.ERROR);
+				packet.setException(new IllegalStateException("Outer " + i, new IllegalArgumentException("Inner")));
+			} else if (i % 10 == 0) {
+				packet.setSeverity(LogMessageSeverity.WARNING);
+				packet.setException(new IllegalArgumentException("Warning " + i, new IllegalStateException("Cause")));
+			} else {
+				packet.setSeverity(LogMessageSeverity.INFORMATION);
+			}
+			packet.setTimestamp(timestamp.plusNanos(i * 1000L));
+			packets.add(packet);
+		}
+		return packets;
+	}
+
+	public static void writeFile(File target, CompressionCodec codec, int minorVersion,
+			List<? extends IPacket> packets) throws Exception {
+		writeFile(target, codec, minorVersion, packets, writer -> {
+		}, true);
+	}
+
+	/**
+	 * Write the packets to a new session file. A file that isn't closed is only
+	 * flushed, like one from a process that was killed or is still running.
+	 */
+	public static void writeFile(File target, CompressionCodec codec, int minorVersion,
+			List<? extends IPacket> packets, WriterSetup setup, boolean close) throws Exception {
+		SessionSummary sessionSummary = new SessionSummary(new AgentConfiguration(new Properties()));
+		sessionSummary.getPacket().setTimestamp(OffsetDateTime.now());
+
+		try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+			GLFWriter writer = new GLFWriter(file, sessionSummary, 1, OffsetDateTime.now(),
+					FileHeader.defaultMajorVersion, minorVersion);
+			writer.setCompressionCodec(codec);
+			setup.apply(writer);
+			for (IPacket packet : packets) {
+				writer.write(packet);
+			}
+
+			if (close) {
+				writer.close(true);
+			} else {
+				writer.flush();
+			}
+		}
+	}
+}
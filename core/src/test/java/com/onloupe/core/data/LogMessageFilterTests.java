@@ -0,0 +1,161 @@
+package com.onloupe.core.data;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.Benchmark;
+import com.onloupe.core.messaging.FileMessenger;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.model.log.ILogMessage;
+import com.onloupe.model.log.LogMessageSeverity;
+
+public class LogMessageFilterTests {
+	private static final int MESSAGES = 5000;
+
+	private static final int MESSAGES_PER_BENCHMARK = 200000;
+
+	@Test
+	public final void testFilterMatchesStreamFilter() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES);
+		OffsetDateTime start = packets.get(1000).getTimestamp();
+		OffsetDateTime end = packets.get(1500).getTimestamp();
+
+		for (int minorVersion : new int[] { FileHeader.defaultMinorVersion, FileHeader.stringTableMinorVersion }) {
+			File target = File.createTempFile("loupe-filter", "." + FileMessenger.LOG_EXTENSION);
+			try {
+				LogMessageFiles.writeFile(target, CompressionCodec.GZIP, minorVersion, packets);
+				List<ILogMessage> allMessages = readLogMessages(target, null);
+				Assertions.assertEquals(packets.size(), allMessages.size());
+
+				LogMessageFilter filter = new LogMessageFilter();
+				filter.setMinimumSeverity(LogMessageSeverity.WARNING);
+				assertFiltered(target, filter, allMessages,
+						message -> message.getSeverity().getSeverity() <= LogMessageSeverity.WARNING.getSeverity());
+
+				filter = new LogMessageFilter();
+				filter.setCategoryPrefix("Test.Messages.3");
+				assertFiltered(target, filter, allMessages,
+						message -> message.getCategoryName().startsWith("Test.Messages.3"));
+
+				filter = new LogMessageFilter();
+				filter.setThreadId(102L);
+				assertFiltered(target, filter, allMessages, message -> message.getThreadId() == 102);
+
+				filter = new LogMessageFilter();
+				filter.setStartTime(start);
+				filter.setEndTime(end);
+				assertFiltered(target, filter, allMessages,
+						message -> !message.getTimestamp().isBefore(start) && message.getTimestamp().isBefore(end));
+
+				filter = new LogMessageFilter();
+				filter.setMinimumSeverity(LogMessageSeverity.ERROR);
+				filter.setCategoryPrefix("Test.Messages.");
+				filter.setStartTime(start);
+				assertFiltered(target, filter, allMessages,
+						message -> message.getSeverity() == LogMessageSeverity.ERROR
+								&& !message.getTimestamp().isBefore(start));
+			} finally {
+				target.delete();
+			}
+		}
+	}
+
+	@Test
+	public final void testFilterKeepsOtherPackets() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES);
+		File target = File.createTempFile("loupe-filter", "." + FileMessenger.LOG_EXTENSION);
+		try {
+			LogMessageFiles.writeFile(target, CompressionCodec.NONE, FileHeader.stringTableMinorVersion, packets);
+
+			// nothing matches, but the threads are still read.
+			LogMessageFilter filter = new LogMessageFilter();
+			filter.setCategoryPrefix("Nothing");
+			try (RandomAccessFile file = new RandomAccessFile(target, "r");
+					GLFPacketReader reader = new GLFPacketReader(new GLFReader(file))) {
+				reader.setFilter(filter);
+				List<Object> records = reader.records().collect(Collectors.toList());
+				Assertions.assertEquals(4, records.size());
+				Assertions.assertTrue(records.stream().allMatch(record -> record instanceof ThreadInfoRecord));
+			}
+		} finally {
+			target.delete();
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureErrorFilter(TestReporter reporter) throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES_PER_BENCHMARK);
+		LogMessageFilter filter = new LogMessageFilter();
+		filter.setMinimumSeverity(LogMessageSeverity.ERROR);
+
+		for (CompressionCodec codec : new CompressionCodec[] { CompressionCodec.NONE, CompressionCodec.GZIP }) {
+			File target = File.createTempFile("loupe-filter", "." + FileMessenger.LOG_EXTENSION);
+			try {
+				LogMessageFiles.writeFile(target, codec, FileHeader.stringTableMinorVersion, packets);
+				long[] nanos = new long[2];
+				long expected = MESSAGES_PER_BENCHMARK / 100;
+				for (boolean measured : Benchmark.passes()) {
+					long startTime = System.nanoTime();
+					try (RandomAccessFile file = new RandomAccessFile(target, "r");
+							GLFPacketReader reader = new GLFPacketReader(new GLFReader(file))) {
+						Assertions.assertEquals(expected, reader.logMessages()
+								.filter(message -> message.getSeverity() == LogMessageSeverity.ERROR).count());
+					}
+					long streamTime = System.nanoTime() - startTime;
+
+					startTime = System.nanoTime();
+					Assertions.assertEquals(expected, readLogMessages(target, filter).size());
+					long filterTime = System.nanoTime() - startTime;
+					if (measured) {
+						nanos[0] += streamTime;
+						nanos[1] += filterTime;
+					}
+				}
+
+				reporter.publishEntry(String.format("%s: errors of %,d messages, stream filter %,d ms, reader filter %,d ms.",
+						codec, MESSAGES_PER_BENCHMARK, TimeUnit.NANOSECONDS.toMillis(nanos[0] / Benchmark.PASSES),
+						TimeUnit.NANOSECONDS.toMillis(nanos[1] / Benchmark.PASSES)));
+			} finally {
+				target.delete();
+			}
+		}
+	}
+
+	private static void assertFiltered(File source, LogMessageFilter filter, List<ILogMessage> allMessages,
+			Predicate<ILogMessage> predicate) throws Exception {
+		List<ILogMessage> expected = allMessages.stream().filter(predicate).collect(Collectors.toList());
+		List<ILogMessage> actual = readLogMessages(source, filter);
+		Assertions.assertTrue(expected.size() > 0);
+		Assertions.assertEquals(expected.size(), actual.size());
+		for (int index = 0; index < expected.size(); index++) {
+			ILogMessage expectedMessage = expected.get(index);
+			ILogMessage actualMessage = actual.get(index);
+			Assertions.assertEquals(expectedMessage.getSequence(), actualMessage.getSequence());
+			Assertions.assertEquals(expectedMessage.getTimestamp(), actualMessage.getTimestamp());
+			Assertions.assertEquals(expectedMessage.getCategoryName(), actualMessage.getCategoryName());
+			Assertions.assertEquals(expectedMessage.getClassName(), actualMessage.getClassName());
+			Assertions.assertEquals(expectedMessage.getCaption(), actualMessage.getCaption());
+			Assertions.assertEquals(expectedMessage.getThreadName(), actualMessage.getThreadName());
+			Assertions.assertEquals(expectedMessage.getHasException(), actualMessage.getHasException());
+		}
+	}
+
+	private static List<ILogMessage> readLogMessages(File source, LogMessageFilter filter) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(source, "r");
+				GLFPacketReader reader = new GLFPacketReader(new GLFReader(file))) {
+			reader.setFilter(filter);
+			return reader.logMessages().collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package com.onloupe.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+public class ParallelGZIPOutputStreamTests {
+	private static final int BENCHMARK_BYTES = 64 * 1024 * 1024;
+
+	@Test
+	public final void testRoundTripAcrossBlocks() throws IOException {
+		byte[] data = makeLogData(1024 * 1024);
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (ParallelGZIPOutputStream stream = new ParallelGZIPOutputStream(buffer, 4, 8192, -1)) {
+			// odd sized writes so they straddle the blocks.
+			for (int offset = 0; offset < data.length; offset += 1000) {
+				stream.write(data, offset, Math.min(1000, data.length - offset));
+			}
+		}
+
+		Assertions.assertArrayEquals(data, decompress(buffer.toByteArray()));
+
+		// priming each block with the one before should keep us close to a single deflate stream.
+		ByteArrayOutputStream reference = new ByteArrayOutputStream();
+		try (GZIPOutputStream stream = new GZIPOutputStream(reference)) {
+			stream.write(data);
+		}
+		Assertions.assertTrue(buffer.size() < reference.size() * 1.25,
+				String.format("parallel %d bytes, serial %d bytes", buffer.size(), reference.size()));
+	}
+
+	@Test
+	public final void testFlushMakesEverythingReadable() throws IOException {
+		byte[] data = makeLogData(100000);
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ParallelGZIPOutputStream stream = new ParallelGZIPOutputStream(buffer, 2, 16384, 6);
+		try {
+			for (int flushed = 0; flushed < data.length;) {
+				int length = Math.min(7777, data.length - flushed);
+				stream.write(data, flushed, length);
+				stream.flush();
+				flushed += length;
+
+				// without the trailer we can't hit the end of the stream, but everything so far has to be there.
+				DataInputStream reader = new DataInputStream(
+						new GZIPInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+				byte[] actual = new byte[flushed];
+				reader.readFully(actual);
+				for (int index = 0; index < flushed; index++) {
+					Assertions.assertEquals(data[index], actual[index]);
+				}
+			}
+		} finally {
+			stream.close();
+		}
+
+		Assertions.assertArrayEquals(data, decompress(buffer.toByteArray()));
+	}
+
+	@Test
+	public final void testReusedBuffersAfterSmallBlocks() throws IOException {
+		// random data doesn't compress, so reused output buffers from the small
+		// flushed blocks have to be outgrown by the full ones that follow.
+		byte[] data = new byte[300000];
+		new Random(17).nextBytes(data);
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (ParallelGZIPOutputStream stream = new ParallelGZIPOutputStream(buffer, 3, 8192, -1)) {
+			int offset = 0;
+			for (int round = 0; offset < data.length; round++) {
+				int length = Math.min(round % 2 == 0 ? 100 : 50000, data.length - offset);
+				stream.write(data, offset, length);
+				if (round % 2 == 0) {
+					stream.flush();
+				}
+				offset += length;
+			}
+		}
+
+		Assertions.assertArrayEquals(data, decompress(buffer.toByteArray()));
+	}
+
+	@Test
+	public final void testEmptyStream() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		new ParallelGZIPOutputStream(buffer, 1, 4096, -1).close();
+
+		Assertions.assertEquals(0, decompress(buffer.toByteArray()).length);
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void compareWithSerialCompression(TestReporter reporter) throws IOException {
+		byte[] data = makeLogData(1024 * 1024);
+
+		// warm up both so neither is paying for the JIT.
+		compress(new GZIPOutputStream(new DiscardOutputStream(), true), data, 8 * 1024 * 1024);
+		compress(new ParallelGZIPOutputStream(new DiscardOutputStream(), 2, 128 * 1024, -1), data, 8 * 1024 * 1024);
+
+		reporter.publishEntry("Serial: "
+				+ compress(new GZIPOutputStream(new DiscardOutputStream(), true), data, BENCHMARK_BYTES));
+		for (int workers : new int[] { 1, 2, 4 }) {
+			reporter.publishEntry(workers + " worker(s): " + compress(
+					new ParallelGZIPOutputStream(new DiscardOutputStream(), workers, 128 * 1024, -1), data,
+					BENCHMARK_BYTES));
+		}
+	}
+
+	private static String compress(OutputStream stream, byte[] data, int totalBytes) throws IOException {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		long startCpu = threadBean.getCurrentThreadCpuTime();
+		long startTime = System.nanoTime();
+		for (int written = 0; written < totalBytes; written += data.length) {
+			// write it the way the packet writer does, a packet at a time.
+			for (int offset = 0; offset < data.length; offset += 200) {
+				stream.write(data, offset, Math.min(200, data.length - offset));
+			}
+		}
+		stream.close();
+		long duration = System.nanoTime() - startTime;
+		long cpu = threadBean.getCurrentThreadCpuTime() - startCpu;
+
+		return String.format("%,d MB/sec, %,d ms of writing thread CPU.",
+				(totalBytes / (1024 * 1024)) * TimeUnit.SECONDS.toNanos(1) / Math.max(duration, 1),
+				TimeUnit.NANOSECONDS.toMillis(cpu));
+	}
+
+	private static byte[] decompress(byte[] compressed) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = stream.read(buffer)) > 0) {
+				output.write(buffer, 0, count);
+			}
+		}
+		return output.toByteArray();
+	}
+
+	private static byte[] makeLogData(int length) {
+		Random random = new Random(42);
+		String[] words = new String[] { "session", "packet", "thread", "request", "completed", "failed", "user",
+				"database", "timeout", "connection", "Loupe", "com.onloupe.core", "INFO", "WARNING" };
+		StringBuilder builder = new StringBuilder(length + 100);
+		while (builder.length() < length) {
+			builder.append(System.nanoTime() % 100000).append(' ');
+			for (int word = 0; word < 8; word++) {
+				builder.append(words[random.nextInt(words.length)]).append(' ');
+			}
+			builder.append(random.nextInt(10000)).append('\n');
+		}
+		return builder.substring(0, length).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static class DiscardOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
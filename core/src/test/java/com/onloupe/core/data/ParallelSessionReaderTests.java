@@ -0,0 +1,254 @@
+package com.onloupe.core.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.Benchmark;
+import com.onloupe.core.messaging.FileMessenger;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.model.log.ILogMessage;
+import com.onloupe.model.log.LogMessageSeverity;
+
+public class ParallelSessionReaderTests {
+	private static final int MESSAGES = 6000;
+
+	private static final int MESSAGES_PER_BENCHMARK = 400000;
+
+	private static final int FILES_PER_BENCHMARK = 8;
+
+	@Test
+	public final void testMergeBySequence() throws Exception {
+		// the messages dealt out to files in runs, as fragments would be, but with
+		// the files in no particular order.
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES, OffsetDateTime.now().withNano(0));
+		CompressionCodec[] codecs = new CompressionCodec[] { CompressionCodec.GZIP, CompressionCodec.NONE,
+				CompressionCodec.GZIP };
+		List<File> files = new ArrayList<File>();
+		try {
+			for (int index = codecs.length - 1; index >= 0; index--) {
+				int start = index * MESSAGES / codecs.length;
+				int end = (index + 1) * MESSAGES / codecs.length;
+				files.add(writeFile(codecs[index], packets.subList(start, end)));
+			}
+
+			try (ParallelSessionReader reader = new ParallelSessionReader(files, ParallelSessionReader.SEQUENCE_ORDER,
+					2)) {
+				reader.setBatchSize(100);
+				List<ILogMessage> messages = reader.logMessages().collect(Collectors.toList());
+				assertSequences(messages, MESSAGES);
+				Assertions.assertEquals("Message 42", messages.get(41).getCaption());
+				Assertions.assertEquals("worker-2", messages.get(41).getThreadName());
+			}
+		} finally {
+			deleteFiles(files);
+		}
+	}
+
+	@Test
+	public final void testMergeByTimestamp() throws Exception {
+		// messages of two sessions logged at the same time, each numbered from one.
+		OffsetDateTime timestamp = OffsetDateTime.now().withNano(0);
+		List<LogMessagePacket> first = LogMessageFiles.makeLogMessages(MESSAGES, timestamp);
+		List<LogMessagePacket> second = LogMessageFiles.makeLogMessages(MESSAGES / 2, timestamp.plusNanos(500));
+		List<File> files = new ArrayList<File>();
+		try {
+			files.add(writeFile(CompressionCodec.GZIP, first));
+			files.add(writeFile(CompressionCodec.GZIP, second));
+
+			try (ParallelSessionReader reader = new ParallelSessionReader(files, ParallelSessionReader.TIMESTAMP_ORDER,
+					2)) {
+				List<ILogMessage> messages = reader.logMessages().collect(Collectors.toList());
+				Assertions.assertEquals(first.size() + second.size(), messages.size());
+				for (int index = 1; index < messages.size(); index++) {
+					Assertions.assertFalse(
+							messages.get(index).getTimestamp().isBefore(messages.get(index - 1).getTimestamp()));
+				}
+			}
+		} finally {
+			deleteFiles(files);
+		}
+	}
+
+	@Test
+	public final void testManyFilesFewThreads() throws Exception {
+		// more files than threads and only a little room for each, so files have to
+		// give their threads up to each other.
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES, OffsetDateTime.now().withNano(0));
+		int fileCount = 40;
+		List<List<LogMessagePacket>> fileMessages = new ArrayList<List<LogMessagePacket>>();
+		for (int index = 0; index < fileCount; index++) {
+			fileMessages.add(new ArrayList<LogMessagePacket>());
+		}
+		for (int index = 0; index < packets.size(); index++) {
+			fileMessages.get(index % fileCount).add(packets.get(index));
+		}
+
+		List<File> files = new ArrayList<File>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (List<LogMessagePacket> messages : fileMessages) {
+				files.add(writeFile(CompressionCodec.NONE, messages));
+			}
+
+			try (ParallelSessionReader reader = new ParallelSessionReader(files, ParallelSessionReader.SEQUENCE_ORDER,
+					executor)) {
+				reader.setBatchSize(7);
+				reader.setQueueDepth(1);
+				assertSequences(reader.logMessages().collect(Collectors.toList()), MESSAGES);
+			}
+
+			// the executor isn't the reader's, so it's still there to use.
+			Assertions.assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdownNow();
+			deleteFiles(files);
+		}
+	}
+
+	@Test
+	public final void testFilter() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES, OffsetDateTime.now().withNano(0));
+		List<File> files = new ArrayList<File>();
+		try {
+			files.add(writeFile(CompressionCodec.GZIP, packets.subList(0, MESSAGES / 2)));
+			files.add(writeFile(CompressionCodec.GZIP, packets.subList(MESSAGES / 2, MESSAGES)));
+
+			LogMessageFilter filter = new LogMessageFilter();
+			filter.setMinimumSeverity(LogMessageSeverity.WARNING);
+			try (ParallelSessionReader reader = new ParallelSessionReader(files, ParallelSessionReader.SEQUENCE_ORDER,
+					2)) {
+				reader.setFilter(filter);
+				List<ILogMessage> messages = reader.logMessages().collect(Collectors.toList());
+				Assertions.assertEquals(MESSAGES / 10, messages.size());
+				for (int index = 0; index < messages.size(); index++) {
+					Assertions.assertEquals(index * 10 + 1, messages.get(index).getSequence());
+				}
+			}
+		} finally {
+			deleteFiles(files);
+		}
+	}
+
+	@Test
+	public final void testBadFile() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES, OffsetDateTime.now().withNano(0));
+		List<File> files = new ArrayList<File>();
+		try {
+			files.add(writeFile(CompressionCodec.GZIP, packets));
+			File badFile = File.createTempFile("loupe-parallel", "." + FileMessenger.LOG_EXTENSION);
+			files.add(badFile);
+			try (FileOutputStream stream = new FileOutputStream(badFile)) {
+				byte[] bytes = new byte[4096];
+				Arrays.fill(bytes, (byte) 0x5A);
+				stream.write(bytes);
+			}
+
+			try (ParallelSessionReader reader = new ParallelSessionReader(files, ParallelSessionReader.SEQUENCE_ORDER,
+					2)) {
+				Assertions.assertThrows(RuntimeException.class, () -> reader.logMessages().count());
+			}
+		} finally {
+			deleteFiles(files);
+		}
+	}
+
+	@Test
+	public final void testCloseEarly() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES, OffsetDateTime.now().withNano(0));
+		List<File> files = new ArrayList<File>();
+		try {
+			files.add(writeFile(CompressionCodec.GZIP, packets.subList(0, MESSAGES / 2)));
+			files.add(writeFile(CompressionCodec.GZIP, packets.subList(MESSAGES / 2, MESSAGES)));
+
+			ParallelSessionReader reader = new ParallelSessionReader(files, ParallelSessionReader.SEQUENCE_ORDER, 2);
+			reader.setBatchSize(10);
+			Assertions.assertEquals(1, reader.next().getSequence());
+			reader.close();
+			Assertions.assertFalse(reader.hasNext());
+		} finally {
+			// the files can only be deleted once they're closed.
+			Thread.sleep(100);
+			deleteFiles(files);
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureParallelRead(TestReporter reporter) throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES_PER_BENCHMARK, OffsetDateTime.now().withNano(0));
+		List<File> files = new ArrayList<File>();
+		try {
+			for (int index = 0; index < FILES_PER_BENCHMARK; index++) {
+				int start = index * MESSAGES_PER_BENCHMARK / FILES_PER_BENCHMARK;
+				int end = (index + 1) * MESSAGES_PER_BENCHMARK / FILES_PER_BENCHMARK;
+				files.add(writeFile(CompressionCodec.GZIP, packets.subList(start, end)));
+			}
+
+			int threads = Math.min(FILES_PER_BENCHMARK, Math.max(2, Runtime.getRuntime().availableProcessors()));
+			long[] nanos = new long[2];
+			for (boolean measured : Benchmark.passes()) {
+				long startTime = System.nanoTime();
+				long count = 0;
+				for (File source : files) {
+					try (RandomAccessFile file = new RandomAccessFile(source, "r");
+							GLFPacketReader reader = new GLFPacketReader(new GLFReader(file))) {
+						count += reader.logMessages().count();
+					}
+				}
+				long serialTime = System.nanoTime() - startTime;
+				Assertions.assertEquals(MESSAGES_PER_BENCHMARK, count);
+
+				startTime = System.nanoTime();
+				try (ParallelSessionReader reader = new ParallelSessionReader(files,
+						ParallelSessionReader.SEQUENCE_ORDER, threads)) {
+					Assertions.assertEquals(MESSAGES_PER_BENCHMARK, reader.logMessages().count());
+				}
+				long parallelTime = System.nanoTime() - startTime;
+				if (measured) {
+					nanos[0] += serialTime;
+					nanos[1] += parallelTime;
+				}
+			}
+
+			reporter.publishEntry(String.format("%,d messages in %d files: one at a time %,d ms, %d threads merged %,d ms.",
+					MESSAGES_PER_BENCHMARK, FILES_PER_BENCHMARK,
+					TimeUnit.NANOSECONDS.toMillis(nanos[0] / Benchmark.PASSES),
+					threads, TimeUnit.NANOSECONDS.toMillis(nanos[1] / Benchmark.PASSES)));
+		} finally {
+			deleteFiles(files);
+		}
+	}
+
+	private static void assertSequences(List<ILogMessage> messages, int count) {
+		Assertions.assertEquals(count, messages.size());
+		for (int index = 0; index < count; index++) {
+			Assertions.assertEquals(index + 1, messages.get(index).getSequence());
+		}
+	}
+
+	private static void deleteFiles(List<File> files) {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	private static File writeFile(CompressionCodec codec, List<LogMessagePacket> packets) throws Exception {
+		File target = File.createTempFile("loupe-parallel", "." + FileMessenger.LOG_EXTENSION);
+		LogMessageFiles.writeFile(target, codec, FileHeader.stringTableMinorVersion, packets);
+		return target;
+	}
+}
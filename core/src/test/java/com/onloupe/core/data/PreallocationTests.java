@@ -0,0 +1,231 @@
+package com.onloupe.core.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.messaging.FileDurability;
+import com.onloupe.core.messaging.FileMessenger;
+import com.onloupe.core.messaging.IMessengerPacket;
+import com.onloupe.core.messaging.Publisher;
+import com.onloupe.core.serialization.IPacket;
+import com.onloupe.core.serialization.LogPacket;
+import com.onloupe.core.serialization.monitor.SessionClosePacket;
+
+public class PreallocationTests {
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private static final int MESSAGES_PER_BENCHMARK = 50000;
+
+	@Test
+	public final void testPreallocatedFileMatchesNormalFile() throws Exception {
+		List<IPacket> packets = makePackets(4000);
+		for (CompressionCodec codec : CompressionCodec.values()) {
+			File normal = File.createTempFile("loupe-normal", "." + FileMessenger.LOG_EXTENSION);
+			File preallocated = File.createTempFile("loupe-preallocated", "." + FileMessenger.LOG_EXTENSION);
+			try {
+				long normalLength = writeFile(normal, codec, 0, packets, true);
+				long preallocatedLength = writeFile(preallocated, codec, CHUNK_SIZE, packets, true);
+
+				Assertions.assertEquals(normal.length(), normalLength);
+				Assertions.assertEquals(preallocated.length(), preallocatedLength, codec + " wasn't truncated");
+				Assertions.assertArrayEquals(readPackets(normal), readPackets(preallocated));
+
+				// a file that was closed properly has nothing to recover.
+				try (RandomAccessFile file = new RandomAccessFile(preallocated, "rw")) {
+					Assertions.assertFalse(GLFWriter.truncateToDataEnd(new GLFReader(file), file));
+				}
+			} finally {
+				normal.delete();
+				preallocated.delete();
+			}
+		}
+	}
+
+	@Test
+	public final void testCrashTruncationRecovery() throws Exception {
+		List<IPacket> packets = makePackets(4000);
+		for (CompressionCodec codec : CompressionCodec.values()) {
+			File normal = File.createTempFile("loupe-normal", "." + FileMessenger.LOG_EXTENSION);
+			File crashed = File.createTempFile("loupe-crashed", "." + FileMessenger.LOG_EXTENSION);
+			try {
+				writeFile(normal, codec, 0, packets, true);
+
+				// flush but never close, like a process that was killed.
+				long dataLength = writeFile(crashed, codec, CHUNK_SIZE, packets, false);
+				Assertions.assertTrue(crashed.length() > dataLength, "the file should still be preallocated");
+
+				try (RandomAccessFile file = new RandomAccessFile(crashed, "rw")) {
+					GLFReader reader = new GLFReader(file);
+					Assertions.assertEquals(dataLength, reader.findDataEnd(), codec.toString());
+					Assertions.assertTrue(GLFWriter.truncateToDataEnd(reader, file));
+				}
+
+				Assertions.assertEquals(dataLength, crashed.length());
+				Assertions.assertArrayEquals(readPackets(normal), readPackets(crashed), codec.toString());
+			} finally {
+				normal.delete();
+				crashed.delete();
+			}
+		}
+	}
+
+	@Test
+	public final void testHeaderOnlyCountsFlushedData() throws Exception {
+		SessionSummary sessionSummary = new SessionSummary(new AgentConfiguration(new Properties()));
+		sessionSummary.getPacket().setTimestamp(OffsetDateTime.now());
+
+		List<IPacket> packets = makePackets(4000);
+		File target = File.createTempFile("loupe-header", "." + FileMessenger.LOG_EXTENSION);
+		try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+			GLFWriter writer = new GLFWriter(file, sessionSummary, 1, OffsetDateTime.now());
+			writer.setCompressionCodec(CompressionCodec.GZIP);
+			writer.setCompressionWorkers(2);
+			for (IPacket packet : packets) {
+				writer.write(packet);
+				sessionSummary.setMessageCount(sessionSummary.getMessageCount() + 1);
+			}
+
+			// plenty has been written, but the workers may still hold it.
+			Assertions.assertEquals(0, readMessageCount(target));
+
+			writer.flush();
+			Assertions.assertEquals(packets.size(), readMessageCount(target));
+			writer.close(true);
+		} finally {
+			target.delete();
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void compareWriteModes(TestReporter reporter) throws Exception {
+		// warm up so the first mode measured isn't paying for the JIT.
+		runMessages(CompressionCodec.NONE, 0, MESSAGES_PER_BENCHMARK / 5);
+		runMessages(CompressionCodec.NONE, 4 * 1024 * 1024, MESSAGES_PER_BENCHMARK / 5);
+
+		for (CompressionCodec codec : new CompressionCodec[] { CompressionCodec.NONE, CompressionCodec.GZIP }) {
+			for (int preallocationSize : new int[] { 0, 4 * 1024 * 1024 }) {
+				long nanos = runMessages(codec, preallocationSize, MESSAGES_PER_BENCHMARK);
+				reporter.publishEntry(String.format("%s, %s: %,d messages/sec.", codec,
+						preallocationSize == 0 ? "normal writes" : "mapped writes",
+						MESSAGES_PER_BENCHMARK * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1)));
+			}
+		}
+	}
+
+	private static long runMessages(CompressionCodec codec, int preallocationSize, int messages) throws Exception {
+		Path folder = Files.createTempDirectory("loupe-preallocation");
+		try {
+			Properties props = new Properties();
+			props.setProperty("SessionFile.Folder", folder.toString());
+			props.setProperty("SessionFile.CompressionCodec", codec.name());
+			props.setProperty("SessionFile.PreallocationSize", String.valueOf(preallocationSize));
+			props.setProperty("SessionFile.Durability", FileDurability.NONE.name());
+			props.setProperty("SessionFile.EnableFilePruning", "false");
+			props.setProperty("NetworkViewer.Enabled", "false");
+			AgentConfiguration configuration = new AgentConfiguration(props);
+
+			SessionSummary sessionSummary = new SessionSummary(configuration);
+			Publisher publisher = new Publisher("Preallocation Test", configuration, sessionSummary);
+			long startTime;
+			try {
+				publisher.publish(new IMessengerPacket[] { sessionSummary.getPacket() }, true);
+
+				startTime = System.nanoTime();
+				for (int i = 0; i < messages; i++) {
+					publisher.publish(new IMessengerPacket[] { new SessionClosePacket() }, false);
+				}
+				publisher.publish(new IMessengerPacket[] { new SessionClosePacket() }, true);
+			} finally {
+				publisher.close();
+			}
+
+			return System.nanoTime() - startTime;
+		} finally {
+			try (Stream<Path> files = Files.walk(folder)) {
+				files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	private static long writeFile(File target, CompressionCodec codec, int preallocationSize, List<IPacket> packets,
+			boolean close) throws Exception {
+		SessionSummary sessionSummary = new SessionSummary(new AgentConfiguration(new Properties()));
+		sessionSummary.getPacket().setTimestamp(OffsetDateTime.now());
+
+		RandomAccessFile file = new RandomAccessFile(target, "rw");
+		try {
+			GLFWriter writer = new GLFWriter(file, sessionSummary, 1, OffsetDateTime.now());
+			writer.setCompressionCodec(codec);
+			writer.setPreallocationSize(preallocationSize);
+			for (IPacket packet : packets) {
+				writer.write(packet);
+			}
+
+			if (close) {
+				writer.close(true);
+			} else {
+				writer.flush();
+			}
+			return writer.getLength();
+		} finally {
+			file.close();
+		}
+	}
+
+	private static List<IPacket> makePackets(int count) {
+		Random random = new Random(11);
+		List<IPacket> packets = new ArrayList<IPacket>(count);
+		for (int i = 0; i < count; i++) {
+			packets.add(new LogPacket(String.format("Message %d with a value of %d and a random tail %x", i,
+					random.nextInt(), random.nextLong())));
+		}
+		return packets;
+	}
+
+	private static int readMessageCount(File source) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+			return new GLFReader(file).getSessionHeader().getMessageCount();
+		}
+	}
+
+	/**
+	 * Read the packet stream up to its end, or as far as it goes for a GZip
+	 * stream that was never finished.
+	 */
+	private static byte[] readPackets(File source) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (RandomAccessFile file = new RandomAccessFile(source, "r");
+				InputStream packets = new GLFReader(file).openPacketStream()) {
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = packets.read(buffer)) > 0) {
+				output.write(buffer, 0, count);
+			}
+		} catch (EOFException ex) {
+			// the end of a stream that wasn't closed.
+		}
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,136 @@
+package com.onloupe.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.messaging.FileMessenger;
+import com.onloupe.model.session.SessionStatus;
+
+public class SessionHeaderTests {
+
+	@Test
+	public final void testChangedRawDataMatchesRawData() throws IOException {
+		SessionHeader header = newFileHeader(newSessionSummary());
+		byte[] written = header.rawData();
+
+		// nothing has changed yet.
+		Assertions.assertFalse(header.changedRawData().hasRemaining());
+
+		header.setMessageCount(42);
+		header.setErrorCount(3);
+		header.setFileEndDateTime(header.getFileEndDateTime().plusSeconds(5));
+		header.setIsLastFile(false);
+		header.setEndDateTime(header.getEndDateTime().plusSeconds(5));
+
+		ByteBuffer changes = header.changedRawData();
+		Assertions.assertTrue(changes.hasRemaining());
+		Assertions.assertTrue(changes.position() > 0, "the whole header was rewritten");
+		changes.get(written, changes.position(), changes.remaining());
+
+		Assertions.assertArrayEquals(header.rawData(), written);
+
+		SessionHeader readBack = new SessionHeader(written);
+		Assertions.assertTrue(readBack.isValid());
+		Assertions.assertEquals(42, readBack.getMessageCount());
+		Assertions.assertEquals(3, readBack.getErrorCount());
+		Assertions.assertFalse(readBack.isLastFile());
+		Assertions.assertEquals(header.getEndDateTime().toInstant(), readBack.getEndDateTime().toInstant());
+		Assertions.assertEquals(header.getFileEndDateTime().toInstant(), readBack.getFileEndDateTime().toInstant());
+	}
+
+	@Test
+	public final void testVariableLengthChangesNeedRawData() throws IOException {
+		SessionHeader header = newFileHeader(newSessionSummary());
+		header.rawData();
+
+		header.setCaption("A different caption");
+		Assertions.assertNull(header.changedRawData());
+		header.rawData();
+		Assertions.assertNotNull(header.changedRawData());
+
+		// a UTC date is written with a shorter offset than one with an explicit offset.
+		header.setEndDateTime(header.getEndDateTime().withOffsetSameInstant(ZoneOffset.ofHours(2)));
+		Assertions.assertNull(header.changedRawData());
+	}
+
+	@Test
+	public final void testFlushUpdatesFileHeader() throws Exception {
+		SessionSummary sessionSummary = newSessionSummary();
+
+		File file = File.createTempFile("loupe-header", "." + FileMessenger.LOG_EXTENSION);
+		try {
+			try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+				GLFWriter writer = new GLFWriter(output, sessionSummary, 1, OffsetDateTime.now());
+				OffsetDateTime previousEnd = readHeader(file).getEndDateTime();
+				for (int pass = 1; pass <= 3; pass++) {
+					Thread.sleep(5); // a live session ends now, so let now move on.
+					sessionSummary.setMessageCount(pass * 10);
+					sessionSummary.setWarningCount(pass);
+					writer.flush();
+
+					SessionHeader header = readHeader(file);
+					Assertions.assertTrue(header.isValid());
+					Assertions.assertEquals(pass * 10, header.getMessageCount());
+					Assertions.assertEquals(pass, header.getWarningCount());
+					Assertions.assertTrue(header.getEndDateTime().isAfter(previousEnd));
+					Assertions.assertTrue(header.getFileEndDateTime().isAfter(previousEnd));
+					previousEnd = header.getEndDateTime();
+				}
+
+				sessionSummary.setStatus(SessionStatus.NORMAL);
+				writer.close(true);
+			}
+
+			SessionHeader header = readHeader(file);
+			Assertions.assertTrue(header.isValid());
+			Assertions.assertEquals(SessionStatus.NORMAL, header.getStatus());
+			Assertions.assertTrue(header.isLastFile());
+			Assertions.assertEquals(30, header.getMessageCount());
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static SessionSummary newSessionSummary() throws IOException {
+		Properties props = new Properties();
+		props.setProperty("SessionFile.EnableFilePruning", "false");
+		props.setProperty("NetworkViewer.Enabled", "false");
+		SessionSummary sessionSummary = new SessionSummary(new AgentConfiguration(props));
+
+		// normally set as the summary is published.
+		OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MILLIS);
+		sessionSummary.getPacket().setTimestamp(start);
+		sessionSummary.setEndDateTime(start);
+		return sessionSummary;
+	}
+
+	private static SessionHeader newFileHeader(SessionSummary sessionSummary) {
+		OffsetDateTime start = sessionSummary.getStartDateTime();
+		SessionHeader header = new SessionHeader(sessionSummary);
+		header.setEndDateTime(start); // a live session always ends now
+		header.setFileId(UUID.randomUUID());
+		header.setFileSequence(1);
+		header.setFileStartDateTime(start);
+		header.setFileEndDateTime(start);
+		header.setIsLastFile(true);
+		return header;
+	}
+
+	private static SessionHeader readHeader(File file) throws IOException {
+		try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+			return new GLFReader(input).getSessionHeader();
+		}
+	}
+}
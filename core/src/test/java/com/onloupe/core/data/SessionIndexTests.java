@@ -0,0 +1,310 @@
+package com.onloupe.core.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.Benchmark;
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.messaging.FileMessenger;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.model.log.ILogMessage;
+
+public class SessionIndexTests {
+	private static final int MESSAGES = 20000;
+
+	private static final int PACKET_INTERVAL = 1000;
+
+	private static final int MESSAGES_PER_BENCHMARK = 200000;
+
+	private static final int PASSES = 5;
+
+	@Test
+	public final void testSeekBySequence() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES);
+		for (int workers : new int[] { 0, 2 }) {
+			for (CompressionCodec codec : CompressionCodec.values()) {
+				if (workers > 0 && codec != CompressionCodec.GZIP) {
+					continue;
+				}
+
+				File target = createTempFile();
+				try {
+					writeFile(target, codec, workers, packets, true);
+					Assertions.assertTrue(SessionIndex.getIndexFile(target).length() > 0);
+					assertSeeksMatch(target, packets, PACKET_INTERVAL, true, codec + " with " + workers + " workers");
+				} finally {
+					delete(target);
+				}
+			}
+		}
+	}
+
+	@Test
+	public final void testSeekByTimestamp() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES);
+		File target = createTempFile();
+		try {
+			writeFile(target, CompressionCodec.GZIP, 0, packets, true);
+			try (RandomAccessFile file = new RandomAccessFile(target, "r")) {
+				GLFReader reader = new GLFReader(file);
+				SessionIndex index = SessionIndex.open(target, reader);
+				for (int position : new int[] { 0, 1, PACKET_INTERVAL, 7777, MESSAGES - 1 }) {
+					OffsetDateTime timestamp = packets.get(position).getTimestamp();
+					try (GLFPacketReader packetReader = index.openReader(reader, index.findTimestamp(timestamp))) {
+						ILogMessage first = packetReader.logMessages()
+								.filter(message -> !message.getTimestamp().isBefore(timestamp)).findFirst().get();
+						Assertions.assertEquals(packets.get(position).getSequence(), first.getSequence());
+					}
+				}
+			}
+		} finally {
+			delete(target);
+		}
+	}
+
+	@Test
+	public final void testRepeatedStringsStayOutOfIndex() throws Exception {
+		// a retry loop failing the same way every time, so its stack trace goes in the string table.
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES / 4);
+		for (LogMessagePacket packet : packets) {
+			packet.setException(connect("orders"));
+		}
+		String stackTrace = packets.get(0).getExceptions()[0].getStackTrace();
+
+		File target = createTempFile();
+		try {
+			writeFile(target, CompressionCodec.NONE, 0, packets, true);
+			byte[] indexBytes = Files.readAllBytes(SessionIndex.getIndexFile(target).toPath());
+			Assertions.assertFalse(new String(indexBytes, StandardCharsets.UTF_8).contains("Unable to reach orders"),
+					"the index shouldn't hold repeated messages");
+
+			// they're written again after each checkpoint, so reading from one still finds them.
+			assertSeeksMatch(target, packets, PACKET_INTERVAL, true, "repeated exceptions");
+			try (RandomAccessFile file = new RandomAccessFile(target, "r")) {
+				GLFReader reader = new GLFReader(file);
+				SessionIndex index = SessionIndex.open(target, reader);
+				long sequence = packets.get(packets.size() / 2).getSequence();
+				try (GLFPacketReader packetReader = index.openReader(reader, index.findSequence(sequence))) {
+					List<ILogMessage> messages = packetReader.logMessages()
+							.filter(message -> message.getSequence() >= sequence).collect(Collectors.toList());
+					Assertions.assertEquals(packets.size() / 2, messages.size());
+					for (ILogMessage message : messages) {
+						Assertions.assertEquals(stackTrace, message.getException().getStackTrace());
+					}
+				}
+			}
+		} finally {
+			delete(target);
+		}
+	}
+
+	@Test
+	public final void testRebuildIndex() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES);
+		for (CompressionCodec codec : CompressionCodec.values()) {
+			for (boolean indexed : new boolean[] { false, true }) {
+				File target = createTempFile();
+				try {
+					// a single threaded GZIP file can only be restarted where it was flushed, while
+					// the parallel compressor ends every block where a rebuild can find it.
+					writeFile(target, codec, (codec == CompressionCodec.GZIP) ? 2 : 0, packets, indexed);
+					try (RandomAccessFile file = new RandomAccessFile(target, "r")) {
+						SessionIndex.rebuild(new GLFReader(file), PACKET_INTERVAL).save(SessionIndex.getIndexFile(target));
+					}
+
+					// a rebuilt checkpoint doesn't know where threads were written again, so
+					// messages after it may not have theirs.
+					assertSeeksMatch(target, packets, PACKET_INTERVAL, false,
+							codec + (indexed ? " indexed" : " not indexed"));
+				} finally {
+					delete(target);
+				}
+			}
+		}
+	}
+
+	@Test
+	public final void testStaleIndexIsRebuilt() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES);
+		File target = createTempFile();
+		try {
+			writeFile(target, CompressionCodec.GZIP, 0, packets, true);
+
+			// a new file under the same name, leaving the index of the old one.
+			File saved = createTempFile();
+			try {
+				writeFile(saved, CompressionCodec.GZIP, 2, packets.subList(0, MESSAGES / 2), false);
+				target.delete();
+				Assertions.assertTrue(saved.renameTo(target));
+			} finally {
+				delete(saved);
+			}
+
+			assertSeeksMatch(target, packets.subList(0, MESSAGES / 2), SessionIndex.DEFAULT_PACKET_INTERVAL, false,
+					"stale index");
+			Assertions.assertTrue(SessionIndex.getIndexFile(target).length() > 0, "rebuilt index not saved");
+		} finally {
+			delete(target);
+		}
+	}
+
+	@Test
+	public final void testReadUnfinishedIndexedFile() throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES);
+		File target = createTempFile();
+		try {
+			SessionSummary sessionSummary = new SessionSummary(new AgentConfiguration(new Properties()));
+			sessionSummary.getPacket().setTimestamp(OffsetDateTime.now());
+			try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+				GLFWriter writer = new GLFWriter(file, sessionSummary, 1, OffsetDateTime.now());
+				writer.setPreallocationSize(64 * 1024);
+				writer.setIndexStream(new FileOutputStream(SessionIndex.getIndexFile(target)));
+				writer.setIndexPacketInterval(PACKET_INTERVAL);
+				for (LogMessagePacket packet : packets) {
+					writer.write(packet);
+				}
+				writer.flush(); // but never closed.
+			}
+
+			assertSeeksMatch(target, packets, PACKET_INTERVAL, true, "unfinished");
+		} finally {
+			delete(target);
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureSeek(TestReporter reporter) throws Exception {
+		List<LogMessagePacket> packets = LogMessageFiles.makeLogMessages(MESSAGES_PER_BENCHMARK);
+		long target = packets.get(packets.size() - 100).getSequence();
+		for (CompressionCodec codec : new CompressionCodec[] { CompressionCodec.NONE, CompressionCodec.GZIP }) {
+			File plain = createTempFile();
+			File indexed = createTempFile();
+			try {
+				writeFile(plain, codec, 0, packets, false);
+				writeFile(indexed, codec, 0, packets, true);
+				long[] nanos = new long[2];
+				for (boolean measured : Benchmark.passes(PASSES)) {
+					long startTime = System.nanoTime();
+					Assertions.assertEquals(target, findLinear(plain, target));
+					long linearTime = System.nanoTime() - startTime;
+
+					startTime = System.nanoTime();
+					Assertions.assertEquals(target, findIndexed(indexed, target));
+					long indexedTime = System.nanoTime() - startTime;
+					if (measured) {
+						nanos[0] += linearTime;
+						nanos[1] += indexedTime;
+					}
+				}
+
+				reporter.publishEntry(String.format("%s: %,d bytes, linear %,d us; %,d bytes with a %,d byte index, seek %,d us.",
+						codec, plain.length(), TimeUnit.NANOSECONDS.toMicros(nanos[0] / PASSES), indexed.length(),
+						SessionIndex.getIndexFile(indexed).length(), TimeUnit.NANOSECONDS.toMicros(nanos[1] / PASSES)));
+			} finally {
+				delete(plain);
+				delete(indexed);
+			}
+		}
+	}
+
+	private static long findLinear(File source, long sequence) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(source, "r");
+				GLFPacketReader reader = new GLFPacketReader(new GLFReader(file))) {
+			return reader.logMessages().filter(message -> message.getSequence() >= sequence).findFirst().get()
+					.getSequence();
+		}
+	}
+
+	private static long findIndexed(File source, long sequence) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+			GLFReader reader = new GLFReader(file);
+			SessionIndex index = SessionIndex.open(source, reader);
+			try (GLFPacketReader packetReader = index.openReader(reader, index.findSequence(sequence))) {
+				return packetReader.logMessages().filter(message -> message.getSequence() >= sequence).findFirst()
+						.get().getSequence();
+			}
+		}
+	}
+
+	private static void assertSeeksMatch(File source, List<LogMessagePacket> packets, int packetInterval,
+			boolean withThreads, String description) throws Exception {
+		try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+			GLFReader reader = new GLFReader(file);
+			SessionIndex index = SessionIndex.open(source, reader);
+			Assertions.assertTrue(index.getCheckpoints().size() >= packets.size() / packetInterval,
+					description + " has too few checkpoints: " + index.getCheckpoints().size());
+
+			for (int position : new int[] { 0, 1, PACKET_INTERVAL - 1, PACKET_INTERVAL, PACKET_INTERVAL + 1,
+					packets.size() / 2, packets.size() - 1 }) {
+				long sequence = packets.get(position).getSequence();
+				SessionIndexCheckpoint checkpoint = index.findSequence(sequence);
+				Assertions.assertTrue(checkpoint == null || checkpoint.getSequence() <= sequence, description);
+
+				List<ILogMessage> messages;
+				try (GLFPacketReader packetReader = index.openReader(reader, checkpoint)) {
+					messages = packetReader.logMessages().filter(message -> message.getSequence() >= sequence)
+							.collect(Collectors.toList());
+				}
+
+				Assertions.assertEquals(packets.size() - position, messages.size(), description + " at " + position);
+				for (int index1 = 0; index1 < messages.size(); index1++) {
+					LogMessagePacket expected = packets.get(position + index1);
+					ILogMessage actual = messages.get(index1);
+					Assertions.assertEquals(expected.getId(), actual.getId());
+					Assertions.assertEquals(expected.getSequence(), actual.getSequence());
+					Assertions.assertEquals(expected.getTimestamp().toInstant(), actual.getTimestamp().toInstant());
+					Assertions.assertEquals(expected.getCaption(), actual.getCaption());
+					Assertions.assertEquals(expected.getCategoryName(), actual.getCategoryName());
+					if (withThreads) {
+						Assertions.assertEquals(expected.getThreadName(), actual.getThreadName(), description);
+					}
+				}
+			}
+		}
+	}
+
+	private static void writeFile(File target, CompressionCodec codec, int workers, List<LogMessagePacket> packets,
+			boolean indexed) throws Exception {
+		LogMessageFiles.writeFile(target, codec, FileHeader.stringTableMinorVersion, packets, writer -> {
+			writer.setCompressionWorkers(workers);
+			writer.setCompressionBlockSize(16 * 1024);
+			if (indexed) {
+				writer.setIndexStream(new FileOutputStream(SessionIndex.getIndexFile(target)));
+				writer.setIndexPacketInterval(PACKET_INTERVAL);
+			}
+		}, true);
+	}
+
+	private static Exception connect(String service) {
+		try {
+			throw new ConnectException("Connection refused");
+		} catch (Exception e) {
+			return new IllegalStateException("Unable to reach " + service, e);
+		}
+	}
+
+	private static File createTempFile() throws Exception {
+		return File.createTempFile("loupe-index", "." + FileMessenger.LOG_EXTENSION);
+	}
+
+	private static void delete(File target) {
+		target.delete();
+		SessionIndex.getIndexFile(target).delete();
+	}
+}
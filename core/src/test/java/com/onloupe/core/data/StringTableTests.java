@@ -0,0 +1,159 @@
+package com.onloupe.core.data;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.ConnectException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.Benchmark;
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.messaging.FileMessenger;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.core.serialization.monitor.ThreadInfoPacket;
+import com.onloupe.model.log.LogMessageSeverity;
+
+public class StringTableTests {
+	private static final int MESSAGES = 50000;
+
+	@Test
+	@Tag("benchmark")
+	public final void compareStringTable(TestReporter reporter) throws Exception {
+		List<LogMessagePacket> packets = makePackets(MESSAGES);
+
+		for (CompressionCodec codec : new CompressionCodec[] { CompressionCodec.NONE, CompressionCodec.GZIP }) {
+			long[] lengths = new long[2];
+			long[] nanos = new long[2];
+			for (boolean measured : Benchmark.passes()) {
+				for (int mode = 0; mode < 2; mode++) {
+					int minorVersion = (mode == 0) ? FileHeader.defaultMinorVersion : FileHeader.stringTableMinorVersion;
+					long startTime = System.nanoTime();
+					long length = writeFile(codec, minorVersion, packets);
+					if (measured) {
+						nanos[mode] += System.nanoTime() - startTime;
+					}
+					lengths[mode] = length;
+				}
+			}
+
+			Assertions.assertTrue(lengths[1] < lengths[0], codec + " files should be smaller with a string table");
+			for (int mode = 0; mode < 2; mode++) {
+				reporter.publishEntry(String.format("%s, %s: %,d bytes, %,d messages/sec.", codec,
+						mode == 0 ? "no string table" : "string table", lengths[mode],
+						Benchmark.PASSES * MESSAGES * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos[mode], 1)));
+			}
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void compareRepeatedExceptions(TestReporter reporter) throws Exception {
+		// a retry loop failing the same way every time.
+		List<LogMessagePacket> packets = makePackets(MESSAGES / 10);
+		for (LogMessagePacket packet : packets) {
+			packet.setException(connect("orders"));
+		}
+
+		long[] lengths = new long[2];
+		for (int mode = 0; mode < 2; mode++) {
+			int minorVersion = (mode == 0) ? FileHeader.defaultMinorVersion : FileHeader.stringTableMinorVersion;
+			lengths[mode] = writeFile(CompressionCodec.NONE, minorVersion, packets);
+		}
+
+		// the stack trace is written once, not once a message.
+		long stackTraceLength = packets.get(0).getExceptions()[0].getStackTrace().length();
+		Assertions.assertTrue(lengths[1] < lengths[0] - (packets.size() - 2) * stackTraceLength,
+				"repeated stack traces should be written once with a string table");
+		reporter.publishEntry(String.format("%,d messages with the same exception: no string table %,d bytes, "
+				+ "string table %,d bytes.", packets.size(), lengths[0], lengths[1]));
+	}
+
+	private static Exception connect(String service) {
+		try {
+			throw new ConnectException("Connection refused");
+		} catch (Exception e) {
+			return new IllegalStateException("Unable to reach " + service, e);
+		}
+	}
+
+	private static long writeFile(CompressionCodec codec, int minorVersion, List<LogMessagePacket> packets)
+			throws Exception {
+		SessionSummary sessionSummary = new SessionSummary(new AgentConfiguration(new Properties()));
+		sessionSummary.getPacket().setTimestamp(OffsetDateTime.now());
+
+		File target = File.createTempFile("loupe-strings", "." + FileMessenger.LOG_EXTENSION);
+		try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+			GLFWriter writer = new GLFWriter(file, sessionSummary, 1, OffsetDateTime.now(),
+					FileHeader.defaultMajorVersion, minorVersion);
+			writer.setCompressionCodec(codec);
+			for (LogMessagePacket packet : packets) {
+				writer.write(packet);
+			}
+			writer.close(true);
+			return target.length();
+		} finally {
+			target.delete();
+		}
+	}
+
+	/**
+	 * A mix of messages like an application's: a few threads, a few dozen
+	 * loggers, messages with varying values and the occasional exception.
+	 */
+	private static List<LogMessagePacket> makePackets(int count) {
+		Random random = new Random(17);
+		OffsetDateTime timestamp = OffsetDateTime.now();
+
+		ThreadInfoPacket[] threads = new ThreadInfoPacket[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new ThreadInfoPacket(i + 1, 100 + i, "pool-1-thread-" + (i + 1), 0, "Application", true);
+			threads[i].setTimestamp(timestamp);
+		}
+
+		String[] components = new String[] { "orders", "billing", "inventory", "shipping", "customers", "reports" };
+		String[] layers = new String[] { "OrderController", "OrderService", "OrderRepository", "PaymentClient",
+				"CacheManager" };
+		String[] methods = new String[] { "handleRequest", "findById", "save", "validate", "refresh", "process" };
+		LogMessageSeverity[] severities = new LogMessageSeverity[] { LogMessageSeverity.VERBOSE,
+				LogMessageSeverity.INFORMATION, LogMessageSeverity.INFORMATION, LogMessageSeverity.WARNING };
+
+		List<LogMessagePacket> packets = new ArrayList<LogMessagePacket>(count);
+		for (int i = 0; i < count; i++) {
+			String component = components[random.nextInt(components.length)];
+			String layer = layers[random.nextInt(layers.length)];
+			ThreadInfoPacket thread = threads[random.nextInt(threads.length)];
+
+			LogMessagePacket packet = new LogMessagePacket();
+			packet.setThreadInfoPacket(thread);
+			packet.setThreadIndex(thread.getThreadIndex());
+			packet.setThreadId(thread.getThreadId());
+			packet.setSeverity(severities[random.nextInt(severities.length)]);
+			packet.setLogSystem("Log4j2");
+			packet.setCategoryName("com.example." + component + "." + layer);
+			packet.setUserName("EXAMPLE\\service-account");
+			packet.setClassName("com.example." + component + "." + layer);
+			packet.setMethodName(methods[random.nextInt(methods.length)]);
+			packet.setFileName(layer + ".java");
+			packet.setLineNumber(20 + random.nextInt(400));
+			packet.setCaption(String.format("Processed %s request %d in %d ms", component, random.nextInt(100000),
+					random.nextInt(500)));
+			packet.setDescription("");
+			if (random.nextInt(200) == 0) {
+				packet.setException(new IllegalStateException("Unable to reach the " + component + " service"));
+			}
+			packet.setTimestamp(timestamp.plusNanos(i * 250000L));
+			packets.add(packet);
+		}
+		return packets;
+	}
+}
@@ -0,0 +1,156 @@
+package com.onloupe.core.messaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.serialization.monitor.SessionClosePacket;
+
+/**
+ * Measures write-through logging to a session file at each durability level.
+ */
+public class FileDurabilityTests {
+	private static final int MESSAGES_PER_TEST = 1000;
+
+	@Test
+	public final void testSyncsFollowDurability() throws Exception {
+		int messages = 20;
+		Assertions.assertEquals(0, countSyncs(FileDurability.NONE, messages));
+
+		// every write is forced out on its own, so there's at least one sync a message.
+		Assertions.assertTrue(countSyncs(FileDurability.PER_WRITE, messages) >= messages);
+
+		// and committing each message flushes it, which syncs it.
+		Assertions.assertTrue(countSyncs(FileDurability.ON_FLUSH, messages) >= messages);
+	}
+
+	@Test
+	public final void testConfiguration() {
+		Assertions.assertEquals(FileDurability.ON_FLUSH, readDurability("OnFlush"));
+		Assertions.assertEquals(FileDurability.ON_FLUSH, readDurability("on_flush"));
+		Assertions.assertEquals(FileDurability.PERIODIC, readDurability("Periodic"));
+
+		// one we can't read falls back to the safest.
+		Assertions.assertEquals(FileDurability.PER_WRITE, readDurability("Sometimes"));
+		Assertions.assertEquals(FileDurability.PER_WRITE, readDurability(" "));
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void compareDurabilityLevels(TestReporter reporter) throws Exception {
+		// warm up so the first level measured isn't paying for the JIT.
+		runMessages(FileDurability.NONE, new long[MESSAGES_PER_TEST]);
+
+		for (FileDurability durability : FileDurability.values()) {
+			long[] latencies = new long[MESSAGES_PER_TEST];
+			long totalNanos = runMessages(durability, latencies);
+			Arrays.sort(latencies);
+			long p99 = latencies[(int) Math.ceil(latencies.length * 0.99) - 1];
+
+			reporter.publishEntry(String.format("%s: %,d messages/sec, p99 latency %,d us.", durability,
+					MESSAGES_PER_TEST * TimeUnit.SECONDS.toNanos(1) / Math.max(totalNanos, 1),
+					TimeUnit.NANOSECONDS.toMicros(p99)));
+		}
+	}
+
+	private static long runMessages(FileDurability durability, long[] latencies) throws Exception {
+		Path folder = Files.createTempDirectory("loupe-durability");
+		try {
+			Properties props = new Properties();
+			props.setProperty("SessionFile.Folder", folder.toString());
+			props.setProperty("SessionFile.Durability", durability.name());
+			props.setProperty("SessionFile.EnableFilePruning", "false");
+			props.setProperty("NetworkViewer.Enabled", "false");
+			AgentConfiguration configuration = new AgentConfiguration(props);
+
+			SessionSummary sessionSummary = new SessionSummary(configuration);
+			Publisher publisher = new Publisher("Durability Test", configuration, sessionSummary);
+			long startTime;
+			long duration;
+			try {
+				// the session summary starts the session (and the file) so get that done before we start timing.
+				publisher.publish(new IMessengerPacket[] { sessionSummary.getPacket() }, true);
+
+				startTime = System.nanoTime();
+				for (int i = 0; i < latencies.length; i++) {
+					long messageStart = System.nanoTime();
+					publisher.publish(new IMessengerPacket[] { new SessionClosePacket() }, true);
+					latencies[i] = System.nanoTime() - messageStart;
+				}
+				duration = System.nanoTime() - startTime;
+			} finally {
+				publisher.close();
+			}
+
+			// whatever the durability, everything we committed has to be in the file.
+			try (Stream<Path> files = Files.walk(folder)) {
+				Assertions.assertTrue(files.anyMatch(file -> file.toString().endsWith("." + FileMessenger.LOG_EXTENSION)
+						&& file.toFile().length() > 0));
+			}
+
+			return duration;
+		} finally {
+			deleteFolder(folder);
+		}
+	}
+
+	private static FileDurability readDurability(String value) {
+		Properties props = new Properties();
+		props.setProperty("SessionFile.Durability", value);
+		AgentConfiguration configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		return configuration.getSessionFile().getDurability();
+	}
+
+	private static long countSyncs(FileDurability durability, int messages) throws Exception {
+		Path folder = Files.createTempDirectory("loupe-durability");
+		try {
+			Properties props = new Properties();
+			props.setProperty("SessionFile.Enabled", "false");
+			props.setProperty("SessionFile.Folder", folder.toString());
+			props.setProperty("SessionFile.Durability", durability.name());
+			props.setProperty("SessionFile.EnableFilePruning", "false");
+			props.setProperty("NetworkViewer.Enabled", "false");
+			AgentConfiguration configuration = new AgentConfiguration(props);
+
+			// we make the messenger ourselves so we can ask it how often it synced.
+			SessionSummary sessionSummary = new SessionSummary(configuration);
+			Publisher publisher = new Publisher("Durability Test", configuration, sessionSummary);
+			FileMessenger messenger = new FileMessenger();
+			try {
+				messenger.initialize(publisher, configuration.getSessionFile());
+				publisher.addMessenger(messenger);
+				publisher.publish(new IMessengerPacket[] { sessionSummary.getPacket() }, true);
+
+				long startCount = messenger.getSyncCount();
+				for (int i = 0; i < messages; i++) {
+					publisher.publish(new IMessengerPacket[] { new SessionClosePacket() }, true);
+				}
+				return messenger.getSyncCount() - startCount;
+			} finally {
+				publisher.close();
+			}
+		} finally {
+			deleteFolder(folder);
+		}
+	}
+
+	private static void deleteFolder(Path folder) throws IOException {
+		try (Stream<Path> files = Files.walk(folder)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.onloupe.core.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.configuration.IMessengerConfiguration;
+import com.onloupe.configuration.SessionFileConfiguration;
+import com.onloupe.core.logging.Log;
+import com.onloupe.core.serialization.monitor.SessionClosePacket;
+
+public class GroupCommitTests {
+	private static final int THREADS = 8;
+
+	private boolean silentMode;
+
+	@BeforeEach
+	public void setUp() {
+		// keep the messenger from starting up the whole agent to log its initialization.
+		this.silentMode = Log.getSilentMode();
+		Log.setSilentMode(true);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		Log.setSilentMode(this.silentMode);
+	}
+
+	@Test
+	public void testConcurrentCommitsShareOneFlush() throws Exception {
+		final CountingMessenger messenger = new CountingMessenger();
+		messenger.initialize(null, SessionFileConfiguration.builder().maxQueueLength(2000).groupCommitWindow(250).build());
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Throwable> failures = new ArrayList<Throwable>();
+			List<Thread> writers = new ArrayList<Thread>();
+			for (int thread = 0; thread < THREADS; thread++) {
+				Thread writer = new Thread() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+							messenger.write(new SessionClosePacket(), true);
+						} catch (Throwable e) {
+							synchronized (failures) {
+								failures.add(e);
+							}
+						}
+					}
+				};
+				writer.start();
+				writers.add(writer);
+			}
+
+			start.countDown();
+			for (Thread writer : writers) {
+				writer.join();
+			}
+
+			Assertions.assertTrue(failures.isEmpty(), failures.toString());
+			Assertions.assertEquals(THREADS, messenger.writes.get());
+
+			// every caller was released by a group flush rather than flushing on its own.
+			Assertions.assertEquals(0, messenger.writeThroughWrites.get());
+			Assertions.assertTrue(messenger.flushes.get() >= 1);
+			Assertions.assertTrue(messenger.flushes.get() < THREADS, "flushes: " + messenger.flushes.get());
+		} finally {
+			messenger.close();
+		}
+	}
+
+	@Test
+	public void testNoWindowCommitsEachPacket() throws Exception {
+		CountingMessenger messenger = new CountingMessenger();
+		messenger.initialize(null, SessionFileConfiguration.builder().maxQueueLength(2000).build());
+		try {
+			for (int i = 0; i < 3; i++) {
+				messenger.write(new SessionClosePacket(), true);
+			}
+
+			Assertions.assertEquals(3, messenger.writes.get());
+			Assertions.assertEquals(3, messenger.writeThroughWrites.get());
+		} finally {
+			messenger.close();
+		}
+	}
+
+	@Test
+	public void testSubmitReturnsEnvelopeToWaitOn() throws Exception {
+		CountingMessenger messenger = new CountingMessenger();
+		messenger.initialize(null, SessionFileConfiguration.builder().maxQueueLength(2000).groupCommitWindow(10).build());
+		try {
+			PacketEnvelope envelope = messenger.submit(new SessionClosePacket(), true);
+			Assertions.assertNotNull(envelope);
+			Assertions.assertTrue(envelope.getWriteThrough());
+
+			synchronized (envelope) {
+				while (!envelope.isCommitted()) {
+					envelope.wait();
+				}
+			}
+
+			Assertions.assertEquals(1, messenger.flushes.get());
+		} finally {
+			messenger.close();
+		}
+	}
+
+	@Test
+	public void testPublisherOnlySubmitsForGroupCommit() throws Exception {
+		// without a window the publisher waits on each messenger, as it always has.
+		SubmitCountingMessenger messenger = publishWriteThrough(0);
+		Assertions.assertEquals(0, messenger.submits.get());
+		Assertions.assertEquals(1, messenger.writeThroughWrites.get());
+
+		// with one, the caller waits on the messenger instead.
+		messenger = publishWriteThrough(10);
+		Assertions.assertEquals(1, messenger.submits.get());
+		Assertions.assertEquals(0, messenger.writeThroughWrites.get());
+	}
+
+	private static SubmitCountingMessenger publishWriteThrough(int groupCommitWindow) throws Exception {
+		Properties props = new Properties();
+		props.setProperty("SessionFile.Enabled", "false");
+		props.setProperty("NetworkViewer.Enabled", "false");
+		props.setProperty("SessionFile.GroupCommitWindow", String.valueOf(groupCommitWindow));
+		AgentConfiguration configuration = new AgentConfiguration(props);
+
+		SubmitCountingMessenger messenger = new SubmitCountingMessenger();
+		Publisher publisher = new Publisher("Group Commit Test", configuration, new SessionSummary(configuration));
+		publisher.addMessenger(messenger);
+		try {
+			publisher.publish(new IMessengerPacket[] { new SessionClosePacket() }, true);
+		} finally {
+			publisher.close();
+		}
+		return messenger;
+	}
+
+	private static class SubmitCountingMessenger implements IMessenger {
+		private final AtomicInteger submits = new AtomicInteger();
+		private final AtomicInteger writeThroughWrites = new AtomicInteger();
+
+		@Override
+		public String getCaption() {
+			return "Submit Counting Messenger";
+		}
+
+		@Override
+		public String getDescription() {
+			return getCaption();
+		}
+
+		@Override
+		public void configurationUpdated(IMessengerConfiguration configuration) {
+		}
+
+		@Override
+		public void initialize(Publisher publisher, IMessengerConfiguration configuration) {
+		}
+
+		@Override
+		public String getName() {
+			return "SubmitCounting";
+		}
+
+		@Override
+		public void write(IMessengerPacket packet, boolean writeThrough) {
+			if (writeThrough && !(packet instanceof CommandPacket)) {
+				this.writeThroughWrites.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void write(List<IMessengerPacket> packets, boolean writeThrough) {
+			if (writeThrough) {
+				this.writeThroughWrites.incrementAndGet();
+			}
+		}
+
+		@Override
+		public PacketEnvelope submit(IMessengerPacket packet, boolean writeThrough) {
+			this.submits.incrementAndGet();
+			return null;
+		}
+	}
+
+	private static class CountingMessenger extends MessengerBase {
+		private final AtomicInteger writes = new AtomicInteger();
+		private final AtomicInteger writeThroughWrites = new AtomicInteger();
+		private final AtomicInteger flushes = new AtomicInteger();
+
+		CountingMessenger() {
+			super("Counting");
+		}
+
+		@Override
+		protected void onInitialize(IMessengerConfiguration configuration) {
+			setGroupCommitWindow(((SessionFileConfiguration) configuration).getGroupCommitWindow());
+		}
+
+		@Override
+		protected void onFlush() {
+			this.flushes.incrementAndGet();
+		}
+
+		@Override
+		protected MaintenanceModeRequest onWrite(IMessengerPacket packet, boolean writeThrough,
+				MaintenanceModeRequest maintenanceModeRequested) {
+			this.writes.incrementAndGet();
+			if (writeThrough) {
+				this.writeThroughWrites.incrementAndGet();
+			}
+			return maintenanceModeRequested;
+		}
+	}
+}
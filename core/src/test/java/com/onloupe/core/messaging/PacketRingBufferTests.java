@@ -0,0 +1,126 @@
+package com.onloupe.core.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.onloupe.configuration.AgentConfiguration;
+
+public class PacketRingBufferTests {
+	private static final int PRODUCERS = 4;
+	private static final int PACKETS_PER_PRODUCER = 20000;
+
+	@Test
+	public void testFifoAndMaxLength() {
+		PacketRingBuffer queue = new PacketRingBuffer(3, QueueWaitStrategy.BLOCK);
+		Assertions.assertTrue(queue.isEmpty());
+
+		PacketEnvelope first = new PacketEnvelope(new CommandPacket(MessagingCommand.FLUSH), false);
+		PacketEnvelope second = new PacketEnvelope(new CommandPacket(MessagingCommand.FLUSH), false);
+		PacketEnvelope third = new PacketEnvelope(new CommandPacket(MessagingCommand.FLUSH), false);
+		PacketEnvelope fourth = new PacketEnvelope(new CommandPacket(MessagingCommand.FLUSH), false);
+
+		Assertions.assertTrue(queue.offer(first));
+		Assertions.assertTrue(queue.offer(second));
+		Assertions.assertTrue(queue.offer(third));
+
+		// we asked for 3, even though the capacity is rounded up to 4.
+		Assertions.assertFalse(queue.offer(fourth));
+		Assertions.assertEquals(3, queue.size());
+
+		Assertions.assertSame(first, queue.poll());
+		Assertions.assertTrue(queue.offer(fourth));
+		Assertions.assertSame(second, queue.poll());
+		Assertions.assertSame(third, queue.poll());
+		Assertions.assertSame(fourth, queue.poll());
+		Assertions.assertNull(queue.poll());
+		Assertions.assertTrue(queue.isEmpty());
+	}
+
+	@ParameterizedTest
+	@EnumSource(QueueWaitStrategy.class)
+	public void testMultipleProducers(QueueWaitStrategy waitStrategy) throws Exception {
+		final PacketRingBuffer queue = new PacketRingBuffer(64, waitStrategy);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> producers = new ArrayList<Thread>();
+		for (int producer = 0; producer < PRODUCERS; producer++) {
+			final int producerIndex = producer;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+
+					for (int i = 0; i < PACKETS_PER_PRODUCER; i++) {
+						CommandPacket packet = new CommandPacket(MessagingCommand.FLUSH, producerIndex * PACKETS_PER_PRODUCER + i);
+						PacketEnvelope envelope = new PacketEnvelope(packet, false);
+						while (!queue.offer(envelope)) {
+							Thread.yield();
+						}
+						queue.signal();
+					}
+				}
+			};
+			thread.start();
+			producers.add(thread);
+		}
+
+		start.countDown();
+
+		// each producer's packets must come out in the order it queued them.
+		int[] lastSeen = new int[PRODUCERS];
+		for (int i = 0; i < PRODUCERS; i++) {
+			lastSeen[i] = -1;
+		}
+
+		int received = 0;
+		while (received < PRODUCERS * PACKETS_PER_PRODUCER) {
+			PacketEnvelope envelope = queue.poll();
+			if (envelope == null) {
+				queue.waitFor(() -> !queue.isEmpty());
+				continue;
+			}
+
+			int value = (Integer) ((CommandPacket) envelope.getPacket()).getState();
+			int producer = value / PACKETS_PER_PRODUCER;
+			Assertions.assertTrue(value > lastSeen[producer]);
+			lastSeen[producer] = value;
+			received++;
+		}
+
+		for (Thread thread : producers) {
+			thread.join();
+		}
+
+		Assertions.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testConfiguration() {
+		// settings are usually written the way the documentation shows them.
+		Assertions.assertEquals(QueueWaitStrategy.PARK, readWaitStrategy("Park"));
+		Assertions.assertEquals(QueueWaitStrategy.YIELD, readWaitStrategy(" yield "));
+		Assertions.assertEquals(QueueWaitStrategy.SPIN, readWaitStrategy("SPIN"));
+
+		// one we can't read falls back to blocking rather than failing to start.
+		Assertions.assertEquals(QueueWaitStrategy.BLOCK, readWaitStrategy("Sometimes"));
+		Assertions.assertEquals(QueueWaitStrategy.BLOCK, readWaitStrategy(""));
+	}
+
+	private static QueueWaitStrategy readWaitStrategy(String value) {
+		Properties props = new Properties();
+		props.setProperty("Publisher.QueueWaitStrategy", value);
+		AgentConfiguration configuration = new AgentConfiguration(props);
+		configuration.sanitize();
+		return configuration.getPublisher().getQueueWaitStrategy();
+	}
+}
@@ -0,0 +1,234 @@
+package com.onloupe.core.messaging;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.configuration.IMessengerConfiguration;
+import com.onloupe.core.serialization.monitor.SessionClosePacket;
+
+/**
+ * Compares single and batch dispatch through the publisher with different
+ * numbers of producer threads.
+ */
+public class PublisherThroughputTests {
+	private static final int PACKETS_PER_TEST = 200000;
+	private static final int BATCH_SIZE = 256;
+
+	@Test
+	public final void testTimestampsFollowSequence() throws Exception {
+		for (int batchSize : new int[] { 1, BATCH_SIZE }) {
+			RecordingMessenger messenger = new RecordingMessenger();
+			runProducers(8, batchSize, 20000, messenger);
+
+			List<IMessengerPacket> packets = messenger.getPackets();
+			Assertions.assertEquals(20000 + 8, packets.size());
+			for (int index = 1; index < packets.size(); index++) {
+				IMessengerPacket previous = packets.get(index - 1);
+				IMessengerPacket packet = packets.get(index);
+				Assertions.assertTrue(packet.getSequence() > previous.getSequence());
+				Assertions.assertFalse(packet.getTimestamp().isBefore(previous.getTimestamp()),
+						"packet " + packet.getSequence() + " is timestamped before packet " + previous.getSequence());
+			}
+		}
+	}
+
+	@Test
+	public final void testKeepsProducerTimestamps() throws Exception {
+		Properties props = new Properties();
+		props.setProperty("SessionFile.Enabled", "false");
+		props.setProperty("NetworkViewer.Enabled", "false");
+		AgentConfiguration configuration = new AgentConfiguration(props);
+
+		RecordingMessenger messenger = new RecordingMessenger();
+		Publisher publisher = new Publisher("Timestamp Test", configuration, new SessionSummary(configuration));
+		publisher.addMessenger(messenger);
+		OffsetDateTime later = OffsetDateTime.now().plusHours(1);
+		try {
+			SessionClosePacket first = new SessionClosePacket();
+			first.setTimestamp(later);
+			SessionClosePacket second = new SessionClosePacket();
+			second.setTimestamp(later.minusMinutes(5));
+			publisher.publish(new IMessengerPacket[] { first, second, new SessionClosePacket() }, true);
+		} finally {
+			publisher.close();
+		}
+
+		// a time the producer set is kept, unless it would put the packet before the one ahead of it.
+		List<IMessengerPacket> packets = messenger.getPackets();
+		Assertions.assertEquals(3, packets.size());
+		for (IMessengerPacket packet : packets) {
+			Assertions.assertEquals(later, packet.getTimestamp());
+		}
+	}
+
+	@Test
+	public final void testBatchesReachMessengers() throws Exception {
+		RecordingMessenger messenger = new RecordingMessenger();
+		runProducers(4, BATCH_SIZE, 20000, messenger);
+		Assertions.assertEquals(20000 + 4, messenger.getPackets().size());
+		Assertions.assertTrue(messenger.getBatchWrites() > 0);
+		Assertions.assertTrue(messenger.getLargestBatch() > 1, "largest batch: " + messenger.getLargestBatch());
+		Assertions.assertTrue(messenger.getLargestBatch() <= BATCH_SIZE, "largest batch: " + messenger.getLargestBatch());
+
+		// and without batching every packet is written on its own.
+		messenger = new RecordingMessenger();
+		runProducers(4, 1, 20000, messenger);
+		Assertions.assertEquals(20000 + 4, messenger.getPackets().size());
+		Assertions.assertEquals(0, messenger.getBatchWrites());
+		Assertions.assertEquals(20000 + 4, messenger.getSingleWrites());
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void compareSingleAndBatchDispatch(TestReporter reporter) throws Exception {
+		for (int threads : new int[] { 1, 4, 16 }) {
+			// the messenger only keeps what it's sent, so this is the cost of dispatch itself.
+			long singleNanos = runProducers(threads, 1, PACKETS_PER_TEST, new RecordingMessenger());
+			long batchNanos = runProducers(threads, BATCH_SIZE, PACKETS_PER_TEST, new RecordingMessenger());
+
+			reporter.publishEntry(String.format(
+					"%d producer thread(s): single dispatch %,d packets/sec, batch dispatch (%d) %,d packets/sec.",
+					threads, packetsPerSecond(singleNanos), BATCH_SIZE, packetsPerSecond(batchNanos)));
+		}
+	}
+
+	private static long packetsPerSecond(long nanos) {
+		return PACKETS_PER_TEST * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+	}
+
+	private static long runProducers(int threads, int batchSize, int packets, IMessenger messenger)
+			throws Exception {
+		Properties props = new Properties();
+		props.setProperty("SessionFile.Enabled", "false");
+		props.setProperty("NetworkViewer.Enabled", "false");
+		props.setProperty("Publisher.DispatchBatchSize", String.valueOf(batchSize));
+		AgentConfiguration configuration = new AgentConfiguration(props);
+
+		final Publisher publisher = new Publisher("Throughput Test", configuration, new SessionSummary(configuration));
+		publisher.addMessenger(messenger);
+		try {
+			final int packetsPerThread = packets / threads;
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Thread> producers = new ArrayList<Thread>();
+			final List<Throwable> failures = new ArrayList<Throwable>();
+			for (int thread = 0; thread < threads; thread++) {
+				Thread producer = new Thread() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+							for (int i = 0; i < packetsPerThread; i++) {
+								publisher.publish(new IMessengerPacket[] { new SessionClosePacket() }, false);
+							}
+
+							// wait for everything we queued to get through.
+							publisher.publish(new IMessengerPacket[] { new SessionClosePacket() }, true);
+						} catch (Throwable e) {
+							synchronized (failures) {
+								failures.add(e);
+							}
+						}
+					}
+				};
+				producer.start();
+				producers.add(producer);
+			}
+
+			long startTime = System.nanoTime();
+			start.countDown();
+			for (Thread producer : producers) {
+				producer.join();
+			}
+			long duration = System.nanoTime() - startTime;
+
+			Assertions.assertTrue(failures.isEmpty(), failures.toString());
+			return duration;
+		} finally {
+			publisher.close();
+		}
+	}
+
+	/**
+	 * Keeps the data packets it's sent, and counts the calls that sent them.
+	 */
+	private static class RecordingMessenger implements IMessenger {
+		private final List<IMessengerPacket> packets = new ArrayList<IMessengerPacket>();
+		private int singleWrites;
+		private int batchWrites;
+		private int largestBatch;
+
+		synchronized List<IMessengerPacket> getPackets() {
+			return new ArrayList<IMessengerPacket>(this.packets);
+		}
+
+		synchronized int getSingleWrites() {
+			return this.singleWrites;
+		}
+
+		synchronized int getBatchWrites() {
+			return this.batchWrites;
+		}
+
+		synchronized int getLargestBatch() {
+			return this.largestBatch;
+		}
+
+		@Override
+		public String getCaption() {
+			return "Recording Messenger";
+		}
+
+		@Override
+		public String getDescription() {
+			return getCaption();
+		}
+
+		@Override
+		public void configurationUpdated(IMessengerConfiguration configuration) {
+		}
+
+		@Override
+		public void initialize(Publisher publisher, IMessengerConfiguration configuration) {
+		}
+
+		@Override
+		public String getName() {
+			return "Recording";
+		}
+
+		@Override
+		public synchronized void write(IMessengerPacket packet, boolean writeThrough) {
+			if (!(packet instanceof CommandPacket)) {
+				this.singleWrites++;
+				this.packets.add(packet);
+			}
+		}
+
+		@Override
+		public synchronized void write(List<IMessengerPacket> packets, boolean writeThrough) {
+			if (!packets.isEmpty()) {
+				this.batchWrites++;
+				this.largestBatch = Math.max(this.largestBatch, packets.size());
+				this.packets.addAll(packets);
+			}
+		}
+
+		@Override
+		public PacketEnvelope submit(IMessengerPacket packet, boolean writeThrough) {
+			// we've nothing to commit, so callers needn't wait on us.
+			write(packet, writeThrough);
+			return null;
+		}
+	}
+}
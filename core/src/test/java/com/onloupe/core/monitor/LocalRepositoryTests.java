@@ -0,0 +1,61 @@
+package com.onloupe.core.monitor;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.onloupe.agent.SessionSummary;
+import com.onloupe.configuration.AgentConfiguration;
+import com.onloupe.core.data.GLFWriter;
+import com.onloupe.core.data.SessionHeader;
+import com.onloupe.core.logging.Log;
+import com.onloupe.core.serialization.LogPacket;
+import com.onloupe.model.session.SessionStatus;
+
+public class LocalRepositoryTests {
+
+	@Test
+	public final void testRunningSessionIsMarkedCrashed() throws Exception {
+		Path folder = Files.createTempDirectory("loupe-repository");
+		try {
+			SessionSummary sessionSummary = new SessionSummary(new AgentConfiguration(new Properties()));
+			sessionSummary.getPacket().setTimestamp(OffsetDateTime.now());
+
+			// a preallocated file that was flushed but never closed, like a process that was killed.
+			File fragment = folder.resolve("crashed." + Log.LOG_EXTENSION).toFile();
+			long dataLength;
+			try (RandomAccessFile file = new RandomAccessFile(fragment, "rw")) {
+				GLFWriter writer = new GLFWriter(file, sessionSummary, 1, OffsetDateTime.now());
+				writer.setPreallocationSize(64 * 1024);
+				for (int i = 0; i < 100; i++) {
+					writer.write(new LogPacket("Message " + i));
+				}
+				writer.flush();
+				dataLength = writer.getLength();
+			}
+			Assertions.assertEquals(SessionStatus.RUNNING,
+					LocalRepository.loadSessionHeader(fragment.getPath()).getStatus());
+			Assertions.assertTrue(fragment.length() > dataLength);
+
+			// nothing holds the session lock, so the repository should find it crashed.
+			LocalRepository repository = new LocalRepository("Repository Test", folder.toString());
+			repository.refresh(false, true);
+
+			SessionHeader sessionHeader = LocalRepository.loadSessionHeader(fragment.getPath());
+			Assertions.assertEquals(SessionStatus.CRASHED, sessionHeader.getStatus());
+			Assertions.assertEquals(dataLength, fragment.length(), "the preallocated space should be trimmed");
+		} finally {
+			try (Stream<Path> files = Files.walk(folder)) {
+				files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.onloupe.core.serialization;
+
+import java.time.OffsetDateTime;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.onloupe.core.metrics.MetricSampleType;
+import com.onloupe.core.serialization.monitor.CustomSampledMetricDefinitionPacket;
+import com.onloupe.core.serialization.monitor.CustomSampledMetricPacket;
+import com.onloupe.core.serialization.monitor.CustomSampledMetricSamplePacket;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.core.serialization.monitor.SessionClosePacket;
+import com.onloupe.core.serialization.monitor.ThreadInfoPacket;
+import com.onloupe.model.log.LogMessageSeverity;
+import com.onloupe.model.session.SessionStatus;
+
+public class DirectPacketTests {
+
+	@Test
+	public final void testLogMessageMatchesSerializedPacket() throws Exception {
+		LogMessagePacket packet = newLogMessage();
+		assertSameFields(packet);
+
+		packet.setException(new IllegalStateException("Outer", new IllegalArgumentException("Inner")));
+		assertSameFields(packet);
+	}
+
+	@Test
+	public final void testSampleMatchesSerializedPacket() throws Exception {
+		CustomSampledMetricDefinitionPacket definitionPacket = new CustomSampledMetricDefinitionPacket("Test",
+				"Direct", "Counter", MetricSampleType.RAW_COUNT);
+		CustomSampledMetricPacket metricPacket = new CustomSampledMetricPacket(definitionPacket, "Instance");
+		CustomSampledMetricSamplePacket packet = new CustomSampledMetricSamplePacket(metricPacket, 42.5, 100.0);
+		packet.setTimestamp(OffsetDateTime.now());
+		assertSameFields(packet);
+	}
+
+	@Test
+	public final void testUndeclaredLevelFallsBack() throws Exception {
+		// SessionClosePacket adds fields without a direct writer of its own.
+		SessionClosePacket packet = new SessionClosePacket(SessionStatus.NORMAL);
+		packet.setTimestamp(OffsetDateTime.now());
+		Assertions.assertTrue(packet instanceof IDirectPacket);
+		assertSameFields(packet);
+	}
+
+	@Test
+	public final void testSerializerWorkedOutOncePerType() throws Exception {
+		PacketSerializer serializer = PacketSerializer.forType(LogMessagePacket.class);
+		Assertions.assertSame(serializer, PacketSerializer.forType(LogMessagePacket.class));
+		Assertions.assertTrue(serializer.writesDirect());
+		Assertions.assertTrue(serializer.definesFields());
+		Assertions.assertTrue(serializer.readsFields());
+		Assertions.assertFalse(PacketSerializer.forType(SessionClosePacket.class).writesDirect());
+		Assertions.assertFalse(PacketSerializer.forType(ThreadInfoPacket.class).writesDirect());
+
+		// packets read back are made through the bound constructor.
+		Assertions.assertTrue(serializer.newPacket() instanceof LogMessagePacket);
+		Assertions.assertNotSame(serializer.newPacket(), serializer.newPacket());
+		Assertions.assertTrue(new SimplePacketFactory(LogMessagePacket.class).isValid());
+		Assertions.assertFalse(new SimplePacketFactory(String.class).isValid());
+	}
+
+	private static LogMessagePacket newLogMessage() {
+		ThreadInfoPacket threadInfo = new ThreadInfoPacket(1, 7, "Main", 0, "Test Domain", false);
+		LogMessagePacket packet = new LogMessagePacket();
+		packet.setThreadInfoPacket(threadInfo);
+		packet.setThreadIndex(1);
+		packet.setThreadId(7);
+		packet.setSeverity(LogMessageSeverity.WARNING);
+		packet.setLogSystem("Loupe");
+		packet.setCategoryName("Test.Direct");
+		packet.setUserName("tester");
+		packet.setCaption("A caption with some unicode \u00e9\u4e2d");
+		packet.setDescription("A description\r\n");
+		packet.setClassName(DirectPacketTests.class.getName());
+		packet.setMethodName("newLogMessage");
+		packet.setFileName("DirectPacketTests.java");
+		packet.setLineNumber(42);
+		packet.setTimestamp(OffsetDateTime.now());
+		return packet;
+	}
+
+	/**
+	 * Check the packet writes exactly the same bytes whichever way its fields go
+	 * out.
+	 */
+	private static void assertSameFields(IPacket packet) throws Exception {
+		PacketDefinition definition = PacketDefinition.createPacketDefinition(packet);
+
+		FieldWriter directWriter = new FieldWriter();
+		definition.writeFields(packet, directWriter);
+
+		PacketDefinition outermostIPacketDefinition = definition.getImplementsIPacket() ? definition
+				: definition.getParentIPacket();
+		SerializedPacket serializedPacket = new SerializedPacket(outermostIPacketDefinition);
+		packet.writeFields(outermostIPacketDefinition, serializedPacket);
+		FieldWriter serializedWriter = new FieldWriter();
+		outermostIPacketDefinition.writeToOutput(serializedPacket, serializedWriter);
+
+		Assertions.assertArrayEquals(serializedWriter.toArray(), directWriter.toArray(),
+				packet.getClass().getSimpleName());
+	}
+}
@@ -0,0 +1,158 @@
+package com.onloupe.core.serialization;
+
+import java.net.ConnectException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.Benchmark;
+import com.onloupe.core.serialization.monitor.ExceptionInfoPacket;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.core.util.TypeUtils;
+import com.onloupe.model.data.IExceptionInfo;
+
+public class ExceptionChainTests {
+	private static final int EXCEPTIONS_PER_BENCHMARK = 20000;
+
+	@Test
+	public final void testRendersLikePrintStackTrace() {
+		Exception root = new IllegalArgumentException("bad id");
+		Exception middle = new IllegalStateException("lookup failed", root);
+		Exception outer = new RuntimeException(middle);
+
+		LogMessagePacket packet = new LogMessagePacket();
+		packet.setException(outer);
+		IExceptionInfo[] exceptions = packet.getExceptions();
+		Assertions.assertEquals(3, exceptions.length);
+		Throwable[] throwables = new Throwable[] { outer, middle, root };
+		for (int i = 0; i < throwables.length; i++) {
+			Assertions.assertEquals(throwables[i].getClass().getName(), exceptions[i].getTypeName());
+			Assertions.assertEquals(throwables[i].getMessage(), exceptions[i].getMessage());
+			Assertions.assertEquals("bad id", exceptions[i].getSource());
+			Assertions.assertEquals(TypeUtils.getStackTrace(throwables[i]), exceptions[i].getStackTrace());
+			Assertions.assertSame((i + 1 < throwables.length) ? exceptions[i + 1] : null,
+					exceptions[i].getInnerException());
+		}
+		Assertions.assertTrue(packet.getHasException());
+		Assertions.assertSame(exceptions[0], packet.getException());
+
+		packet.setException(null);
+		Assertions.assertFalse(packet.getHasException());
+		Assertions.assertEquals(0, packet.getExceptions().length);
+		Assertions.assertNull(new LogMessagePacket().getExceptions());
+	}
+
+	@Test
+	public final void testSharesRepeatedExceptions() {
+		IExceptionInfo[] first = null;
+		for (int attempt = 0; attempt < 3; attempt++) {
+			// a new exception each time, thrown from the same place with the same message.
+			LogMessagePacket packet = new LogMessagePacket();
+			packet.setException(connect("orders"));
+			if (first == null) {
+				first = packet.getExceptions();
+			} else {
+				Assertions.assertSame(first[0], packet.getExceptions()[0]);
+				Assertions.assertSame(first[1], packet.getExceptions()[1]);
+			}
+		}
+
+		// a different message is a different chain.
+		LogMessagePacket packet = new LogMessagePacket();
+		packet.setException(connect("billing"));
+		Assertions.assertNotSame(first[0], packet.getExceptions()[0]);
+		Assertions.assertTrue(packet.getExceptions()[0].getStackTrace().contains("billing"));
+
+		// and so is a different stack.
+		packet.setException(new IllegalStateException("Unable to reach orders"));
+		Assertions.assertNotSame(first[0], packet.getExceptions()[0]);
+	}
+
+	@Test
+	public final void testSharedExceptionsCantBeChanged() {
+		LogMessagePacket first = new LogMessagePacket();
+		first.setException(connect("orders"));
+		LogMessagePacket second = new LogMessagePacket();
+		second.setException(connect("orders"));
+
+		// each caller gets its own array, so one packet can't change another's.
+		IExceptionInfo[] exceptions = first.getExceptions();
+		Assertions.assertNotSame(exceptions, second.getExceptions());
+		exceptions[0] = null;
+		exceptions[1] = null;
+		Assertions.assertNotNull(first.getException());
+		Assertions.assertEquals(2, second.getExceptions().length);
+		Assertions.assertSame(second.getExceptions()[1], second.getException().getInnerException());
+		Assertions.assertEquals("Unable to reach orders", second.getException().getMessage());
+	}
+
+	@Test
+	public final void testUnusualChains() {
+		// suppressed exceptions are rendered, just not shared.
+		Exception suppressing = new IllegalStateException("close failed");
+		suppressing.addSuppressed(new IllegalArgumentException("also failed"));
+		LogMessagePacket packet = new LogMessagePacket();
+		packet.setException(suppressing);
+		Assertions.assertEquals(TypeUtils.getStackTrace(suppressing), packet.getExceptions()[0].getStackTrace());
+		Assertions.assertTrue(packet.getExceptions()[0].getStackTrace().contains("also failed"));
+
+		// a chain of causes that comes back around ends where it started repeating.
+		Exception first = new IllegalStateException("first");
+		Exception second = new IllegalStateException("second", first);
+		first.initCause(second);
+		packet.setException(first);
+		Assertions.assertEquals(2, packet.getExceptions().length);
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureRepeatedExceptions(TestReporter reporter) {
+		long[] nanos = new long[2];
+		long[] bytes = new long[2];
+		long count = 0;
+		for (boolean measured : Benchmark.passes()) {
+			for (int mode = 0; mode < 2; mode++) {
+				long startBytes = Benchmark.getAllocatedBytes();
+				long start = System.nanoTime();
+				for (int attempt = 0; attempt < EXCEPTIONS_PER_BENCHMARK; attempt++) {
+					Exception exception = connect("orders");
+					if (mode == 0) {
+						// what we used to do for every one.
+						for (Throwable link = exception; link != null; link = link.getCause()) {
+							count += new ExceptionInfoPacket(link).getStackTrace().length();
+						}
+					} else {
+						LogMessagePacket packet = new LogMessagePacket();
+						packet.setException(exception);
+						count += packet.getExceptions()[0].getStackTrace().length();
+					}
+				}
+				if (measured) {
+					nanos[mode] += System.nanoTime() - start;
+					bytes[mode] += Benchmark.getAllocatedBytes() - startBytes;
+				}
+			}
+		}
+		Assertions.assertTrue(count > 0);
+
+		reporter.publishEntry(String.format(
+				"Repeated exception chain: rendered %,d ns/op %,d bytes/op, cached %,d ns/op %,d bytes/op.",
+				nanos[0] / Benchmark.PASSES / EXCEPTIONS_PER_BENCHMARK,
+				bytes[0] / Benchmark.PASSES / EXCEPTIONS_PER_BENCHMARK,
+				nanos[1] / Benchmark.PASSES / EXCEPTIONS_PER_BENCHMARK,
+				bytes[1] / Benchmark.PASSES / EXCEPTIONS_PER_BENCHMARK));
+	}
+
+	/**
+	 * Fail to connect, as a retry loop would over and over.
+	 */
+	private static Exception connect(String service) {
+		try {
+			throw new ConnectException("Connection refused");
+		} catch (Exception e) {
+			return new IllegalStateException("Unable to reach " + service, e);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.onloupe.core.serialization;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PacketDefinitionListTests {
+
+	@Test
+	public final void testIndexOfStaticTypes() {
+		PacketDefinitionList list = new PacketDefinitionList();
+		LogPacket logPacket = new LogPacket("Caption");
+		ThreadInfo threadInfo = new ThreadInfo(1);
+		Assertions.assertEquals(-1, list.indexOf(logPacket));
+
+		Assertions.assertEquals(0, list.add(PacketDefinition.createPacketDefinition(logPacket)));
+		Assertions.assertEquals(1, list.add(PacketDefinition.createPacketDefinition(threadInfo)));
+		list.commit();
+
+		// ask more than once so both the cached and the most recent type paths are checked.
+		for (int pass = 0; pass < 3; pass++) {
+			Assertions.assertEquals(0, list.indexOf(new LogPacket("Another")));
+			Assertions.assertEquals(0, list.indexOf(logPacket));
+			Assertions.assertEquals(1, list.indexOf(threadInfo));
+		}
+		Assertions.assertEquals(0, list.indexOf("LogPacket"));
+		Assertions.assertEquals(1, list.indexOf("ThreadInfo"));
+	}
+
+	@Test
+	public final void testIndexOfDynamicTypes() {
+		PacketDefinitionList list = new PacketDefinitionList();
+		DynoPacket first = new DynoPacket(1, 2);
+		DynoPacket second = new DynoPacket(3, 1);
+
+		Assertions.assertEquals(0, list.add(PacketDefinition.createPacketDefinition(first)));
+		Assertions.assertEquals(-1, list.indexOf(second));
+		Assertions.assertEquals(1, list.add(PacketDefinition.createPacketDefinition(second)));
+		list.commit();
+
+		for (int pass = 0; pass < 3; pass++) {
+			Assertions.assertEquals(0, list.indexOf(first));
+			Assertions.assertEquals(1, list.indexOf(second));
+		}
+		Assertions.assertEquals(1, list.indexOf("DynoPacket+" + second.getDynamicTypeName()));
+	}
+
+	@Test
+	public final void testRollbackForgetsTypes() {
+		PacketDefinitionList list = new PacketDefinitionList();
+		LogPacket logPacket = new LogPacket("Caption");
+		DynoPacket dynoPacket = new DynoPacket(1, 1);
+		list.add(PacketDefinition.createPacketDefinition(new ThreadInfo(1)));
+		list.commit();
+
+		list.add(PacketDefinition.createPacketDefinition(logPacket));
+		list.add(PacketDefinition.createPacketDefinition(dynoPacket));
+		Assertions.assertEquals(1, list.indexOf(logPacket));
+		Assertions.assertEquals(2, list.indexOf(dynoPacket));
+		list.rollback();
+
+		Assertions.assertEquals(1, list.getCount());
+		Assertions.assertEquals(-1, list.indexOf(logPacket));
+		Assertions.assertEquals(-1, list.indexOf(dynoPacket));
+		Assertions.assertEquals(-1, list.indexOf("LogPacket"));
+
+		// and they can be added again in a different order.
+		Assertions.assertEquals(1, list.add(PacketDefinition.createPacketDefinition(dynoPacket)));
+		Assertions.assertEquals(2, list.add(PacketDefinition.createPacketDefinition(logPacket)));
+		Assertions.assertEquals(1, list.indexOf(dynoPacket));
+		Assertions.assertEquals(2, list.indexOf(logPacket));
+	}
+}
@@ -0,0 +1,98 @@
+package com.onloupe.core.serialization;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.core.serialization.monitor.ThreadInfoPacket;
+import com.onloupe.model.log.LogMessageSeverity;
+
+/**
+ * Measures how much the packet writer allocates and how fast it goes when
+ * serializing a steady stream of small packets.
+ */
+public class PacketWriterAllocationTests {
+	private static final int WARMUP_PACKETS = 50000;
+	private static final int PACKETS_PER_TEST = 200000;
+
+	@Test
+	@Tag("benchmark")
+	public final void measureAllocationPerPacket(TestReporter reporter) throws Exception {
+		String caption = "This is a typical log message caption with a value of 42 and a little more text after it";
+		measure("Packet writer", () -> new LogPacket(caption), reporter);
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureAllocationPerLogMessage(TestReporter reporter) throws Exception {
+		ThreadInfoPacket threadInfo = new ThreadInfoPacket(1, Thread.currentThread().getId(),
+				Thread.currentThread().getName(), 0, "Test Domain", false);
+		threadInfo.setTimestamp(OffsetDateTime.now());
+		measure("Log messages", () -> {
+			LogMessagePacket packet = new LogMessagePacket();
+			packet.setThreadInfoPacket(threadInfo);
+			packet.setThreadIndex(1);
+			packet.setThreadId(threadInfo.getThreadId());
+			packet.setSeverity(LogMessageSeverity.INFORMATION);
+			packet.setLogSystem("Loupe");
+			packet.setCategoryName("Test.Allocation");
+			packet.setCaption("This is a typical log message caption with a value of 42");
+			packet.setDescription("And a description with a bit more text after it\r\n");
+			packet.setTimestamp(OffsetDateTime.now());
+			return packet;
+		}, reporter);
+	}
+
+	private static void measure(String name, Supplier<IPacket> packets, TestReporter reporter) throws Exception {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assumptions.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		Assumptions.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+		allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+		PacketWriter writer = new PacketWriter(new DiscardOutputStream());
+
+		// measure how much just creating the packets costs so we can take it out.
+		long threadId = Thread.currentThread().getId();
+		long startBytes = allocationBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < PACKETS_PER_TEST; i++) {
+			packets.get();
+		}
+		long packetBytes = allocationBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+		for (int i = 0; i < WARMUP_PACKETS; i++) {
+			writer.write(packets.get());
+		}
+
+		startBytes = allocationBean.getThreadAllocatedBytes(threadId);
+		long startTime = System.nanoTime();
+		for (int i = 0; i < PACKETS_PER_TEST; i++) {
+			writer.write(packets.get());
+		}
+		long duration = System.nanoTime() - startTime;
+		long writeBytes = allocationBean.getThreadAllocatedBytes(threadId) - startBytes - packetBytes;
+
+		reporter.publishEntry(String.format("%s: %,d bytes allocated per packet, %,d packets/sec.", name,
+				writeBytes / PACKETS_PER_TEST, PACKETS_PER_TEST * TimeUnit.SECONDS.toNanos(1) / Math.max(duration, 1)));
+
+		writer.close();
+	}
+
+	private static class DiscardOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
@@ -3,10 +3,13 @@ package com.onloupe.core.serialization;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import com.onloupe.core.util.IOUtils;
+
 public class StringSerializationTests {
 
 	@Test
@@ -52,4 +55,148 @@ public class StringSerializationTests {
 		Assertions.assertEquals("Hello", reader.readString());
 		Assertions.assertEquals("Hi", reader.readString());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public final void testNonAsciiStrings() throws IOException, NoSuchMethodException, SecurityException {
+		String[] values = new String[] { "caf\u00e9", "\u65e5\u672c\u8a9e", "emoji \ud83d\ude00 here",
+				"unpaired \ud83d high", "unpaired \ude00 low", "trailing \ud83d" };
+
+		FieldWriter writer = new FieldWriter(2, 0);
+		int expectedLength = 0;
+		for (String value : values) {
+			writer.write(value);
+
+			// we should take exactly as many bytes as the standard UTF-8 encoding plus a one byte length.
+			expectedLength += value.getBytes(StandardCharsets.UTF_8).length + 1;
+			Assertions.assertEquals(expectedLength, writer.getLength(), "Expected position ");
+		}
+
+		IFieldReader reader = new FieldReader(new ByteArrayInputStream(writer.toArray()), 2, 0);
+		for (String value : values) {
+			Assertions.assertEquals(new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8),
+					reader.readString());
+		}
+	}
+
+	@Test
+	public final void testStringTable() throws IOException, NoSuchMethodException, SecurityException {
+		FieldWriter writer = new FieldWriter(2, 3);
+
+		// null and empty strings take one byte each
+		writer.write((String) null);
+		writer.write("");
+		Assertions.assertEquals(2, writer.getLength(), "Expected position ");
+
+		// the first time a name is written it's written in full and defined...
+		writer.write("Hello");
+		Assertions.assertEquals(8, writer.getLength(), "Expected position ");
+		writer.write("Hi");
+		Assertions.assertEquals(11, writer.getLength(), "Expected position ");
+
+		// ...and after that it's just its ID.
+		writer.write("Hello");
+		Assertions.assertEquals(12, writer.getLength(), "Expected position ");
+		writer.write("Hi");
+		Assertions.assertEquals(13, writer.getLength(), "Expected position ");
+
+		// messages aren't added to the table when first written, so they're written in full.
+		writer.write("Hello there");
+		writer.write("Hello there");
+		Assertions.assertEquals(37, writer.getLength(), "Expected position ");
+
+		IFieldReader reader = new FieldReader(new ByteArrayInputStream(writer.toArray()), 2, 3);
+		Assertions.assertNull(reader.readString());
+		Assertions.assertEquals("", reader.readString());
+		String hello = reader.readString();
+		Assertions.assertEquals("Hello", hello);
+		Assertions.assertEquals("Hi", reader.readString());
+		Assertions.assertSame(hello, reader.readString());
+		Assertions.assertEquals("Hi", reader.readString());
+		Assertions.assertEquals("Hello there", reader.readString());
+		Assertions.assertEquals("Hello there", reader.readString());
+	}
+
+	@Test
+	public final void testRepeatedMessagesInStringTable() throws IOException, NoSuchMethodException, SecurityException {
+		FieldWriter writer = new FieldWriter(2, 3);
+		StringBuilder builder = new StringBuilder("java.lang.IllegalStateException: Unable to connect");
+		for (int frame = 0; frame < 20; frame++) {
+			builder.append("\n\tat com.example.orders.OrderRepository.findById(OrderRepository.java:").append(frame)
+					.append(')');
+		}
+		String stackTrace = builder.toString();
+		int fullLength = stackTrace.length() + 2;
+
+		// the same string written again, like the stack trace of a retried exception,
+		// is defined the second time and just its ID after that.
+		writer.write(stackTrace);
+		writer.write(stackTrace);
+		Assertions.assertEquals(2 * fullLength, writer.getLength(), "Expected position ");
+		writer.write(stackTrace);
+		Assertions.assertEquals(2 * fullLength + 1, writer.getLength(), "Expected position ");
+
+		// an equal string is found in the table too.
+		writer.write(new String(stackTrace));
+		Assertions.assertEquals(2 * fullLength + 2, writer.getLength(), "Expected position ");
+
+		// but a different message written once is still written in full every time.
+		writer.write(new String("Hello there"));
+		writer.write(new String("Hello there"));
+		Assertions.assertEquals(2 * fullLength + 26, writer.getLength(), "Expected position ");
+
+		IFieldReader reader = new FieldReader(new ByteArrayInputStream(writer.toArray()), 2, 3);
+		Assertions.assertEquals(stackTrace, reader.readString());
+		String defined = reader.readString();
+		Assertions.assertEquals(stackTrace, defined);
+		Assertions.assertSame(defined, reader.readString());
+		Assertions.assertSame(defined, reader.readString());
+		Assertions.assertEquals("Hello there", reader.readString());
+		Assertions.assertEquals("Hello there", reader.readString());
+	}
+
+	@Test
+	public final void testStringTableRollback() throws IOException, NoSuchMethodException, SecurityException {
+		FieldWriter writer = new FieldWriter(2, 3);
+		writer.write("Kept");
+		writer.commit();
+		writer.reset();
+
+		// a packet that's abandoned can't leave its strings behind, the reader never sees them.
+		writer.write("Abandoned");
+		writer.rollback();
+		writer.reset();
+
+		writer.write("Kept");
+		writer.write("Abandoned");
+		writer.write("Abandoned");
+		byte[] data = writer.toArray();
+		Assertions.assertEquals(1 + 10 + 1, data.length, "Expected length ");
+
+		PacketStreamState streamState = new PacketStreamState();
+		streamState.addString("Kept");
+		IFieldReader reader = new FieldReader(new ByteArrayInputStream(data), streamState, 2, 3);
+		Assertions.assertEquals("Kept", reader.readString());
+		Assertions.assertEquals("Abandoned", reader.readString());
+		Assertions.assertEquals("Abandoned", reader.readString());
+	}
+
+	@Test
+	public final void testStringTableAcrossPackets() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		PacketWriter writer = new PacketWriter(outputStream, 2, 3);
+		WrapperPacket[] packets = new WrapperPacket[] { new WrapperPacket("Test1", 100),
+				new WrapperPacket("Test2", 200), new WrapperPacket("Test1", 300) };
+		for (WrapperPacket packet : packets) {
+			writer.write(packet);
+		}
+
+		PacketReader reader = new PacketReader(new ByteArrayInputStream(outputStream.toByteArray()), true, 2, 3);
+		reader.registerType(WrapperPacket.class);
+		for (WrapperPacket packet : packets) {
+			Assertions.assertEquals(packet, reader.read());
+		}
+
+		IOUtils.closeQuietly(writer);
+		IOUtils.closeQuietly(reader);
+	}
+}
@@ -261,10 +261,45 @@ public final class Loupe {
 		return Log.getAgentVersion();
 	}
 
+	/**
+	 * Indicates if messages of a severity in a category would be logged.
+	 * 
+	 * <p>
+	 * Which messages are logged is set by the Publisher.LogFilter setting, and can
+	 * be changed while running with Log.setLogFilter. Messages that aren't logged
+	 * are dropped before anything else is done for them.
+	 * </p>
+	 * 
+	 * @param severity The severity of the log message.
+	 * @param category The application subsystem or logging category that the log
+	 *                 message would be associated with.
+	 * @return True if the messages are logged.
+	 */
+	public static boolean isEnabled(LogMessageSeverity severity, String category) {
+		return Log.isLoggingActive() && Log.isEnabled(severity, category);
+	}
+
 	//
 	// VERBOSE
 	//
 
+	/**
+	 * Indicates if Verbose messages in a category would be logged.
+	 * 
+	 * <p>
+	 * Loupe checks this itself before doing anything else with a message, so
+	 * there's no need to call it first. It's for skipping the work of building a
+	 * message that won't be logged, such as formatting an expensive description.
+	 * </p>
+	 * 
+	 * @param category The application subsystem or logging category that the log
+	 *                 message would be associated with.
+	 * @return True if Verbose messages in the category are logged.
+	 */
+	public static boolean isVerboseEnabled(String category) {
+		return Log.isLoggingActive() && Log.isEnabled(LogMessageSeverity.VERBOSE, category);
+	}
+
 	/**
 	 * Write a categorized Verbose message directly to the Loupe log.
 	 * 
@@ -304,7 +339,7 @@ public final class Loupe {
 	 */
 	public static void verbose(String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
 			return;
 		}
 
@@ -365,7 +400,7 @@ public final class Loupe {
 	public static void verbose(Throwable exception, ThreadInfo threadInfo, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
 			return;
 		}
 
@@ -425,7 +460,7 @@ public final class Loupe {
 	public static void verbose(LogWriteMode writeMode, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
 			return;
 		}
 
@@ -495,7 +530,7 @@ public final class Loupe {
 	public static void verbose(Throwable exception, ThreadInfo threadInfo, LogWriteMode writeMode, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
 			return;
 		}
 
@@ -536,7 +571,7 @@ public final class Loupe {
 	public static void verboseDetail(String detailsXml, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
 			return;
 		}
 
@@ -585,7 +620,7 @@ public final class Loupe {
 	public static void verboseDetail(Throwable exception, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
 			return;
 		}
 
@@ -626,7 +661,7 @@ public final class Loupe {
 	public static void verboseDetail(LogWriteMode writeMode, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
 			return;
 		}
 
@@ -676,7 +711,7 @@ public final class Loupe {
 	public static void verboseDetail(Throwable exception, LogWriteMode writeMode, String detailsXml,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, category)) {
 			return;
 		}
 
@@ -690,6 +725,23 @@ public final class Loupe {
 	// INFORMATION
 	//
 
+	/**
+	 * Indicates if Information messages in a category would be logged.
+	 * 
+	 * <p>
+	 * Loupe checks this itself before doing anything else with a message, so
+	 * there's no need to call it first. It's for skipping the work of building a
+	 * message that won't be logged, such as formatting an expensive description.
+	 * </p>
+	 * 
+	 * @param category The application subsystem or logging category that the log
+	 *                 message would be associated with.
+	 * @return True if Information messages in the category are logged.
+	 */
+	public static boolean isInformationEnabled(String category) {
+		return Log.isLoggingActive() && Log.isEnabled(LogMessageSeverity.INFORMATION, category);
+	}
+
 	/**
 	 * Write a categorized Information message directly to the Loupe log.
 	 * 
@@ -729,7 +781,7 @@ public final class Loupe {
 	 */
 	public static void information(String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, category)) {
 			return;
 		}
 
@@ -790,7 +842,7 @@ public final class Loupe {
 	public static void information(Throwable exception, ThreadInfo threadInfo, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, category)) {
 			return;
 		}
 
@@ -850,7 +902,7 @@ public final class Loupe {
 	public static void information(LogWriteMode writeMode, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, category)) {
 			return;
 		}
 
@@ -920,7 +972,7 @@ public final class Loupe {
 	public static void information(Throwable exception, ThreadInfo threadInfo, LogWriteMode writeMode, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, category)) {
 			return;
 		}
 
@@ -962,7 +1014,7 @@ public final class Loupe {
 	public static void informationDetail(String detailsXml, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, category)) {
 			return;
 		}
 
@@ -1011,7 +1063,7 @@ public final class Loupe {
 	public static void informationDetail(Throwable exception, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, category)) {
 			return;
 		}
 
@@ -1052,7 +1104,7 @@ public final class Loupe {
 	public static void informationDetail(LogWriteMode writeMode, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, category)) {
 			return;
 		}
 
@@ -1102,7 +1154,7 @@ public final class Loupe {
 	public static void informationDetail(Throwable exception, LogWriteMode writeMode, String detailsXml,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, category)) {
 			return;
 		}
 
@@ -1117,6 +1169,23 @@ public final class Loupe {
 	// WARNING
 	//
 
+	/**
+	 * Indicates if Warning messages in a category would be logged.
+	 * 
+	 * <p>
+	 * Loupe checks this itself before doing anything else with a message, so
+	 * there's no need to call it first. It's for skipping the work of building a
+	 * message that won't be logged, such as formatting an expensive description.
+	 * </p>
+	 * 
+	 * @param category The application subsystem or logging category that the log
+	 *                 message would be associated with.
+	 * @return True if Warning messages in the category are logged.
+	 */
+	public static boolean isWarningEnabled(String category) {
+		return Log.isLoggingActive() && Log.isEnabled(LogMessageSeverity.WARNING, category);
+	}
+
 	/**
 	 * Write a categorized Warning message directly to the Loupe log.
 	 * 
@@ -1156,7 +1225,7 @@ public final class Loupe {
 	 */
 	public static void warning(String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, category)) {
 			return;
 		}
 
@@ -1217,7 +1286,7 @@ public final class Loupe {
 	public static void warning(Throwable exception, ThreadInfo threadInfo, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, category)) {
 			return;
 		}
 
@@ -1277,7 +1346,7 @@ public final class Loupe {
 	public static void warning(LogWriteMode writeMode, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, category)) {
 			return;
 		}
 
@@ -1347,7 +1416,7 @@ public final class Loupe {
 	public static void warning(Throwable exception, ThreadInfo threadInfo, LogWriteMode writeMode, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, category)) {
 			return;
 		}
 
@@ -1388,7 +1457,7 @@ public final class Loupe {
 	public static void warningDetail(String detailsXml, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, category)) {
 			return;
 		}
 
@@ -1437,7 +1506,7 @@ public final class Loupe {
 	public static void warningDetail(Throwable exception, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, category)) {
 			return;
 		}
 
@@ -1478,7 +1547,7 @@ public final class Loupe {
 	public static void warningDetail(LogWriteMode writeMode, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, category)) {
 			return;
 		}
 
@@ -1528,7 +1597,7 @@ public final class Loupe {
 	public static void warningDetail(Throwable exception, LogWriteMode writeMode, String detailsXml,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, category)) {
 			return;
 		}
 
@@ -1542,6 +1611,23 @@ public final class Loupe {
 	// ERROR
 	//
 
+	/**
+	 * Indicates if Error messages in a category would be logged.
+	 * 
+	 * <p>
+	 * Loupe checks this itself before doing anything else with a message, so
+	 * there's no need to call it first. It's for skipping the work of building a
+	 * message that won't be logged, such as formatting an expensive description.
+	 * </p>
+	 * 
+	 * @param category The application subsystem or logging category that the log
+	 *                 message would be associated with.
+	 * @return True if Error messages in the category are logged.
+	 */
+	public static boolean isErrorEnabled(String category) {
+		return Log.isLoggingActive() && Log.isEnabled(LogMessageSeverity.ERROR, category);
+	}
+
 	/**
 	 * Write a categorized Error message directly to the Loupe log.
 	 * 
@@ -1581,7 +1667,7 @@ public final class Loupe {
 	 */
 	public static void error(String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -1642,7 +1728,7 @@ public final class Loupe {
 	public static void error(Throwable exception, ThreadInfo threadInfo, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -1709,7 +1795,7 @@ public final class Loupe {
 	public static void error(Throwable exception, ThreadInfo threadInfo, boolean attributeToException, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -1769,7 +1855,7 @@ public final class Loupe {
 	public static void error(LogWriteMode writeMode, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -1839,7 +1925,7 @@ public final class Loupe {
 	public static void error(Throwable exception, ThreadInfo threadInfo, LogWriteMode writeMode, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -1915,7 +2001,7 @@ public final class Loupe {
 	public static void error(Throwable exception, ThreadInfo threadInfo, boolean attributeToException, LogWriteMode writeMode,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -1956,7 +2042,7 @@ public final class Loupe {
 	public static void errorDetail(String detailsXml, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -2005,7 +2091,7 @@ public final class Loupe {
 	public static void errorDetail(Throwable exception, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -2060,7 +2146,7 @@ public final class Loupe {
 	public static void errorDetail(Throwable exception, boolean attributeToException, String detailsXml,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -2101,7 +2187,7 @@ public final class Loupe {
 	public static void errorDetail(LogWriteMode writeMode, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -2151,7 +2237,7 @@ public final class Loupe {
 	public static void errorDetail(Throwable exception, LogWriteMode writeMode, String detailsXml,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -2207,7 +2293,7 @@ public final class Loupe {
 	public static void errorDetail(Throwable exception, boolean attributeToException, LogWriteMode writeMode,
 			String detailsXml, String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, category)) {
 			return;
 		}
 
@@ -2221,6 +2307,23 @@ public final class Loupe {
 	// CRITICAL
 	//
 
+	/**
+	 * Indicates if Critical messages in a category would be logged.
+	 * 
+	 * <p>
+	 * Loupe checks this itself before doing anything else with a message, so
+	 * there's no need to call it first. It's for skipping the work of building a
+	 * message that won't be logged, such as formatting an expensive description.
+	 * </p>
+	 * 
+	 * @param category The application subsystem or logging category that the log
+	 *                 message would be associated with.
+	 * @return True if Critical messages in the category are logged.
+	 */
+	public static boolean isCriticalEnabled(String category) {
+		return Log.isLoggingActive() && Log.isEnabled(LogMessageSeverity.CRITICAL, category);
+	}
+
 	/**
 	 * Write a categorized Critical message directly to the Loupe log.
 	 * 
@@ -2260,7 +2363,7 @@ public final class Loupe {
 	 */
 	public static void critical(String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2321,7 +2424,7 @@ public final class Loupe {
 	public static void critical(Throwable exception, ThreadInfo threadInfo, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2388,7 +2491,7 @@ public final class Loupe {
 	public static void critical(Throwable exception, ThreadInfo threadInfo, boolean attributeToException, String category,
 			String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2448,7 +2551,7 @@ public final class Loupe {
 	public static void critical(LogWriteMode writeMode, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2518,7 +2621,7 @@ public final class Loupe {
 	public static void critical(Throwable exception, ThreadInfo threadInfo, LogWriteMode writeMode, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2595,7 +2698,7 @@ public final class Loupe {
 	public static void critical(Throwable exception, ThreadInfo threadInfo, boolean attributeToException, LogWriteMode writeMode,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2637,7 +2740,7 @@ public final class Loupe {
 	public static void criticalDetail(String detailsXml, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2686,7 +2789,7 @@ public final class Loupe {
 	public static void criticalDetail(Throwable exception, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2741,7 +2844,7 @@ public final class Loupe {
 	public static void criticalDetail(Throwable exception, boolean attributeToException, String detailsXml,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2782,7 +2885,7 @@ public final class Loupe {
 	public static void criticalDetail(LogWriteMode writeMode, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2833,7 +2936,7 @@ public final class Loupe {
 	public static void criticalDetail(Throwable exception, LogWriteMode writeMode, String detailsXml,
 			String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -2890,7 +2993,7 @@ public final class Loupe {
 	public static void criticalDetail(Throwable exception, boolean attributeToException, LogWriteMode writeMode,
 			String detailsXml, String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, category)) {
 			return;
 		}
 
@@ -3712,7 +3815,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	public static void write(LogMessageSeverity severity, Throwable throwable, StackTraceElement element, int skipFrames, Set<String> exclusions, 
 			ThreadInfo threadInfo, String logSystem, String category, String caption, String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(severity, category)) {
 			return;
 		}
 
@@ -3793,7 +3896,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 			LogWriteMode writeMode, String detailsXml, String category, String caption, String description,
 			Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(severity, category)) {
 			return;
 		}
 
@@ -3903,7 +4006,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 			boolean attributeToException, LogWriteMode writeMode, String detailsXml, String category, String caption,
 			String description, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(severity, category)) {
 			return;
 		}
 
@@ -4037,7 +4140,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceVerbose(String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, CATEGORY)) {
 			return;
 		}
 
@@ -4078,7 +4181,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceVerbose(Throwable exception, String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.VERBOSE, CATEGORY)) {
 			return;
 		}
 
@@ -4107,7 +4210,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceInformation(String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, CATEGORY)) {
 			return;
 		}
 
@@ -4148,7 +4251,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceInformation(Throwable exception, String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.INFORMATION, CATEGORY)) {
 			return;
 		}
 
@@ -4179,7 +4282,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceWarning(String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, CATEGORY)) {
 			return;
 		}
 
@@ -4220,7 +4323,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceWarning(Throwable exception, String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.WARNING, CATEGORY)) {
 			return;
 		}
 
@@ -4251,7 +4354,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceError(String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, CATEGORY)) {
 			return;
 		}
 
@@ -4292,7 +4395,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceError(Throwable exception, String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.ERROR, CATEGORY)) {
 			return;
 		}
 
@@ -4323,7 +4426,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceCritical(String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, CATEGORY)) {
 			return;
 		}
 
@@ -4364,7 +4467,7 @@ public static void critical(StackTraceElement element, ThreadInfo threadInfo, St
 	 */
 	public static void traceCritical(Throwable exception, String format, Object... args) {
 		// don't do jack if we aren't initialized.
-		if (!Log.isLoggingActive()) {
+		if (!Log.isLoggingActive() || !Log.isEnabled(LogMessageSeverity.CRITICAL, CATEGORY)) {
 			return;
 		}
 
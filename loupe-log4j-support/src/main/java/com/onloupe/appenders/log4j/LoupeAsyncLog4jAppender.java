@@ -0,0 +1,143 @@
+package com.onloupe.appenders.log4j;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.LoggingEvent;
+
+import com.onloupe.core.logging.AsyncLogWriter;
+import com.onloupe.core.util.LogSystems;
+import com.onloupe.model.log.LogMessageSeverity;
+
+/**
+ * A Loupe appender that buffers events in a bounded queue and writes them to
+ * Loupe in batches from a background thread, so logging threads don't wait on
+ * Loupe's publisher.
+ *
+ * The rendered message and, when captured, the location are taken on the
+ * logging thread, along with the event's timestamp. An event at or above
+ * FlushThreshold (ERROR by default) is committed with its batch before the
+ * thread that logged it carries on, and closing the appender writes what's
+ * left in the buffer, waiting up to MaxFlushTime. Set BufferSize, BatchSize and
+ * Blocking as for log4j's own AsyncAppender.
+ */
+public class LoupeAsyncLog4jAppender extends LoupeLog4jAppender {
+
+	private final AsyncLogWriter writer = new AsyncLogWriter(LogSystems.LOG4J);
+	private boolean started;
+
+	public LoupeAsyncLog4jAppender() {
+		writer.setQueueSize(128);
+		writer.setDiscardSeverity(null);
+		writer.setFlushSeverity(LogMessageSeverity.ERROR);
+	}
+
+	@Override
+	public void activateOptions() {
+		super.activateOptions();
+		start();
+	}
+
+	@Override
+	protected void write(LoggingEvent event, LogMessageSeverity severity, Throwable throwable,
+			StackTraceElement source) {
+		// appended events are already synchronized on the appender.
+		if (!started) {
+			start();
+		}
+
+		writer.write(severity, event.getLoggerName(), source, throwable, null, event.getTimeStamp(),
+				event.getRenderedMessage());
+	}
+
+	@Override
+	public void close() {
+		if (this.closed)
+			return;
+		this.closed = true;
+
+		writer.close();
+		if (writer.getDroppedCount() > 0 || writer.getQueuedCount() > 0) {
+			LogLog.warn(String.format("Loupe dropped %d and didn't write %d buffered events.",
+					writer.getDroppedCount(), writer.getQueuedCount()));
+		}
+		super.close();
+	}
+
+	public int getBufferSize() {
+		return writer.getQueueSize();
+	}
+
+	public void setBufferSize(int bufferSize) {
+		writer.setQueueSize(bufferSize);
+	}
+
+	public int getBatchSize() {
+		return writer.getBatchSize();
+	}
+
+	public void setBatchSize(int batchSize) {
+		writer.setBatchSize(batchSize);
+	}
+
+	public boolean getBlocking() {
+		return !writer.getNeverBlock();
+	}
+
+	public void setBlocking(boolean blocking) {
+		writer.setNeverBlock(!blocking);
+	}
+
+	public String getFlushThreshold() {
+		LogMessageSeverity severity = writer.getFlushSeverity();
+		if (severity == null)
+			return Level.OFF.toString();
+
+		switch (severity) {
+		case CRITICAL:
+			return Level.FATAL.toString();
+		case ERROR:
+			return Level.ERROR.toString();
+		case WARNING:
+			return Level.WARN.toString();
+		case INFORMATION:
+			return Level.INFO.toString();
+		default:
+			return Level.DEBUG.toString();
+		}
+	}
+
+	public void setFlushThreshold(String level) {
+		LogMessageSeverity severity = mapSeverity(Level.toLevel(level, Level.ERROR));
+		writer.setFlushSeverity(severity != LogMessageSeverity.UNKNOWN ? severity : null);
+	}
+
+	public long getMaxFlushTime() {
+		return writer.getMaxFlushTime();
+	}
+
+	public void setMaxFlushTime(long maxFlushTime) {
+		writer.setMaxFlushTime(maxFlushTime);
+	}
+
+	/**
+	 * The number of events dropped because the buffer was full and Blocking is
+	 * false.
+	 */
+	public long getDroppedCount() {
+		return writer.getDroppedCount();
+	}
+
+	/**
+	 * The number of events waiting to be written to Loupe.
+	 */
+	public int getQueuedCount() {
+		return writer.getQueuedCount();
+	}
+
+	private synchronized void start() {
+		if (!started && !this.closed) {
+			started = true;
+			writer.start();
+		}
+	}
+}
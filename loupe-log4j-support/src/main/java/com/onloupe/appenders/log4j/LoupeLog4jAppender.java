@@ -39,16 +39,16 @@ public class LoupeLog4jAppender extends AppenderSkeleton {
 			}
 		}
 		
-		// the event only provides the thread name. Identifying the rest based on the name is more
-		// expensive than just digging up the thread itself.
-		ThreadInfo threadInfo = new ThreadInfo();
+		LogMessageSeverity severity = mapSeverity(event.getLevel());
+		if (!Log.isEnabled(severity, event.getLoggerName()))
+			return;
 		
 		Throwable throwable = event.getThrowableInformation() != null ? event.getThrowableInformation().getThrowable()
 				: null;
 		
 		StackTraceElement source = null;
-		
-		if (event.locationInformationExists()) {
+		// location information walks the stack, so only ask for it if it's wanted.
+		if (Log.isCallerInfoCaptured(event.getLoggerName(), severity) && event.locationInformationExists()) {
 			// try to get a stack trace element from the location information.
 			try {
 				source = new StackTraceElement(event.getLocationInformation().getClassName(),
@@ -59,9 +59,17 @@ public class LoupeLog4jAppender extends AppenderSkeleton {
 			} 
 		}
 		
-		Log.write(mapSeverity(event.getLevel()), throwable, source, SKIP_FRAMES, EXCLUSIONS, threadInfo, LOG_SYSTEM,
-				event.getLoggerName(), event.getRenderedMessage(), null);
+		write(event, severity, throwable, source);
+	}
+
+	protected void write(LoggingEvent event, LogMessageSeverity severity, Throwable throwable,
+			StackTraceElement source) {
+		// the event only provides the thread name. Identifying the rest based on the name is more
+		// expensive than just digging up the thread itself.
+		ThreadInfo threadInfo = new ThreadInfo();
 
+		Log.write(severity, throwable, source, SKIP_FRAMES, EXCLUSIONS, threadInfo, LOG_SYSTEM,
+				event.getLoggerName(), event.getRenderedMessage(), null);
 	}
 	
 	
@@ -76,7 +84,7 @@ public class LoupeLog4jAppender extends AppenderSkeleton {
 		return false;
 	}
 	
-	private LogMessageSeverity mapSeverity(Level level) {
+	protected LogMessageSeverity mapSeverity(Level level) {
 		if (level != null) {
 			switch (level.toInt()) {
 			case Level.FATAL_INT:
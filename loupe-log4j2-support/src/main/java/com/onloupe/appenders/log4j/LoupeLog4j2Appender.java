@@ -1,10 +1,11 @@
 package com.onloupe.appenders.log4j;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.Appender;
@@ -14,18 +15,30 @@ import org.apache.logging.log4j.core.appender.AbstractAppender;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
 import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
 
+import com.onloupe.agent.IMessageSourceProvider;
+import com.onloupe.agent.logging.MessageSourceProvider;
 import com.onloupe.core.logging.Log;
+import com.onloupe.core.logging.LogWriteMode;
 import com.onloupe.core.logging.ThreadInfo;
+import com.onloupe.core.logging.ThreadInfoCache;
+import com.onloupe.core.messaging.IMessengerPacket;
 import com.onloupe.core.util.LogSystems;
 import com.onloupe.model.log.LogMessageSeverity;
 
 @Plugin(name="LoupeLog4jAppender", category= Core.CATEGORY_NAME, elementType= Appender.ELEMENT_TYPE, printObject=true)
-public final class LoupeLog4j2Appender extends AbstractAppender {
+public class LoupeLog4j2Appender extends AbstractAppender {
 
 	private static final String LOG_SYSTEM = LogSystems.LOG4J;
-	private static final int SKIP_FRAMES = 4;
-	private static final Set<String> EXCLUSIONS = new HashSet<>(Arrays.asList("org.apache.log4j"));
+	private static final int MAX_CACHED_SOURCES = 4096;
+	private static final int MAX_MESSAGE_BUILDER_CAPACITY = 16 * 1024;
+	private static final ThreadLocal<StringBuilder> MESSAGE_BUILDER = ThreadLocal.withInitial(StringBuilder::new);
+	private final ThreadInfoCache threadInfos = new ThreadInfoCache();
+	private final ZoneId zone = ZoneId.systemDefault();
+	private final ConcurrentHashMap<StackTraceElement, IMessageSourceProvider> locationSources = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, IMessageSourceProvider> categorySources = new ConcurrentHashMap<>();
 	private UUID appenderRef;
 	private boolean failed;
 
@@ -34,9 +47,94 @@ public final class LoupeLog4j2Appender extends AbstractAppender {
 		if (failed || event == null || Level.OFF.equals(event.getLevel()))
 			return;
 
-		Log.write(mapSeverity(event.getLevel()), event.getThrown(), event.getSource(), SKIP_FRAMES, EXCLUSIONS,
-				new ThreadInfo(event.getThreadId(), event.getThreadName()), LOG_SYSTEM, event.getLoggerName(),
-				event.getMessage() != null ? event.getMessage().getFormattedMessage() : null, null);
+		// everything here comes from the event, never the current thread, which
+		// isn't the one that logged it with async loggers.
+		LogMessageSeverity severity = mapSeverity(event.getLevel());
+		String category = event.getLoggerName();
+		if (!Log.isEnabled(severity, category))
+			return;
+
+		IMessengerPacket packet = makePacket(severity, category, getSource(event, category, severity),
+				event.getThrown(), threadInfos.get(event.getThreadId(), event.getThreadName()),
+				getMessage(event.getMessage()));
+		if (packet == null)
+			return;
+
+		// with async loggers we get the event a while after it was logged.
+		packet.setTimestamp(OffsetDateTime.ofInstant(Instant.ofEpochMilli(event.getTimeMillis()), zone));
+		write(packet);
+	}
+
+	/**
+	 * Make the packet for an event.
+	 *
+	 * @return the packet, or null if Loupe isn't logging or it's a suppressed repeat
+	 */
+	protected IMessengerPacket makePacket(LogMessageSeverity severity, String category, IMessageSourceProvider source,
+			Throwable throwable, ThreadInfo threadInfo, String message) {
+		if (!Log.getInitialized() || !Log.getMessageSuppressor().admit(severity, category, source, message))
+			return null;
+
+		return Log.makeLogPacket(severity, LOG_SYSTEM, category, source, null, throwable, threadInfo, null, message,
+				null, (Object[]) null);
+	}
+
+	/**
+	 * Write a packet to Loupe.
+	 */
+	protected void write(IMessengerPacket packet) {
+		Log.write(new IMessengerPacket[] { packet }, LogWriteMode.QUEUED);
+	}
+
+	private IMessageSourceProvider getSource(LogEvent event, String category, LogMessageSeverity severity) {
+		// without includeLocation there is no location, and we mustn't go looking
+		// for it ourselves.
+		StackTraceElement location = null;
+		if (event.isIncludeLocation() && Log.isCallerInfoCaptured(category, severity)) {
+			location = event.getSource();
+		}
+
+		IMessageSourceProvider source;
+		if (location != null) {
+			source = locationSources.get(location);
+			if (source == null) {
+				source = new MessageSourceProvider(location);
+
+				// once full we stop adding, there are only so many call sites.
+				if (locationSources.size() < MAX_CACHED_SOURCES) {
+					locationSources.putIfAbsent(location, source);
+				}
+			}
+		} else {
+			// recorded as coming from the logger, as when the caller info policy skips it.
+			String key = (category != null) ? category : "";
+			source = categorySources.get(key);
+			if (source == null) {
+				source = new MessageSourceProvider(category, null);
+				if (categorySources.size() < MAX_CACHED_SOURCES) {
+					categorySources.putIfAbsent(key, source);
+				}
+			}
+		}
+		return source;
+	}
+
+	private static String getMessage(Message message) {
+		if (message == null)
+			return null;
+
+		// reusable and garbage-free messages can format themselves into our builder.
+		if (message instanceof StringBuilderFormattable) {
+			StringBuilder builder = MESSAGE_BUILDER.get();
+			builder.setLength(0);
+			((StringBuilderFormattable) message).formatTo(builder);
+			String text = builder.toString();
+			if (builder.capacity() > MAX_MESSAGE_BUILDER_CAPACITY) {
+				MESSAGE_BUILDER.remove();
+			}
+			return text;
+		}
+		return message.getFormattedMessage();
 	}
 
 	protected LoupeLog4j2Appender(String name) {
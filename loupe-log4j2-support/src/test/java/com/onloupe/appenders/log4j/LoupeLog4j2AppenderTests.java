@@ -0,0 +1,229 @@
+package com.onloupe.appenders.log4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.impl.MutableLogEvent;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.message.ReusableSimpleMessage;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import com.onloupe.agent.IMessageSourceProvider;
+import com.onloupe.core.Benchmark;
+import com.onloupe.core.logging.ThreadInfo;
+import com.onloupe.core.messaging.IMessengerPacket;
+import com.onloupe.core.serialization.monitor.LogMessagePacket;
+import com.onloupe.model.log.LogMessageSeverity;
+
+public class LoupeLog4j2AppenderTests {
+	private static final int EVENTS_PER_BENCHMARK = 200000;
+
+	private static final String LOGGER = "com.acme.orders.Shipping";
+
+	@Test
+	public final void testReusesThreadInfo() {
+		RecordingAppender appender = new RecordingAppender();
+		for (int index = 0; index < 3; index++) {
+			appender.append(makeEvent(new ParameterizedMessage("Order {} shipped", index), 7, "pool-1-thread-7"));
+		}
+		appender.append(makeEvent(new ParameterizedMessage("Order shipped"), 8, "pool-1-thread-8"));
+
+		// events come in on log4j's thread with async loggers, so it's the event's thread that counts.
+		Assertions.assertEquals(4, appender.packets.size());
+		Assertions.assertSame(appender.threadInfos.get(0), appender.threadInfos.get(1));
+		Assertions.assertSame(appender.threadInfos.get(0), appender.threadInfos.get(2));
+		Assertions.assertEquals(7, appender.threadInfos.get(0).getThreadId());
+		Assertions.assertEquals("pool-1-thread-7", appender.threadInfos.get(0).getThreadName());
+		Assertions.assertNotSame(appender.threadInfos.get(0), appender.threadInfos.get(3));
+		Assertions.assertEquals(8, appender.threadInfos.get(3).getThreadId());
+	}
+
+	@Test
+	public final void testSourceIsLoggerWithoutLocation() {
+		RecordingAppender appender = new RecordingAppender();
+		StackTraceElement location = new StackTraceElement(LOGGER, "ship", "Shipping.java", 42);
+		Thread current = Thread.currentThread();
+		appender.append(Log4jLogEvent.newBuilder().setLoggerName(LOGGER).setLevel(Level.INFO)
+				.setMessage(new ParameterizedMessage("Without location")).setThreadId(current.getId())
+				.setThreadName(current.getName()).setSource(location).setIncludeLocation(false).build());
+		appender.append(Log4jLogEvent.newBuilder().setLoggerName(LOGGER).setLevel(Level.INFO)
+				.setMessage(new ParameterizedMessage("With location")).setThreadId(current.getId())
+				.setThreadName(current.getName()).setSource(location).setIncludeLocation(true).build());
+
+		Assertions.assertEquals(2, appender.packets.size());
+		Assertions.assertEquals(LOGGER, appender.packets.get(0).getClassName());
+		Assertions.assertNull(appender.packets.get(0).getMethodName());
+		Assertions.assertEquals(LOGGER, appender.packets.get(1).getClassName());
+		Assertions.assertEquals("ship", appender.packets.get(1).getMethodName());
+		Assertions.assertEquals(42, appender.packets.get(1).getLineNumber());
+	}
+
+	@Test
+	public final void testFormatsIntoBuilder() {
+		RecordingAppender appender = new RecordingAppender();
+		appender.append(makeEvent(new FormattableMessage(), 1, "main"));
+
+		Assertions.assertEquals(1, appender.packets.size());
+		Assertions.assertEquals("Formatted into the builder", appender.packets.get(0).getCaption());
+	}
+
+	@Test
+	public final void testKeepsEventTime() {
+		RecordingAppender appender = new RecordingAppender();
+		long logged = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1);
+		Thread current = Thread.currentThread();
+		appender.append(Log4jLogEvent.newBuilder().setLoggerName(LOGGER).setLevel(Level.WARN)
+				.setMessage(new ParameterizedMessage("A minute ago")).setThreadId(current.getId())
+				.setThreadName(current.getName()).setTimeMillis(logged).build());
+		appender.append(Log4jLogEvent.newBuilder().setLoggerName(LOGGER).setLevel(Level.OFF)
+				.setMessage(new ParameterizedMessage("Off")).build());
+
+		Assertions.assertEquals(1, appender.packets.size());
+		Assertions.assertEquals(LogMessageSeverity.WARNING, appender.packets.get(0).getSeverity());
+		Assertions.assertEquals(logged, appender.packets.get(0).getTimestamp().toInstant().toEpochMilli());
+	}
+
+	@Test
+	@Tag("benchmark")
+	public final void measureAllocationPerEvent(TestReporter reporter) {
+		// the packet is made and written as before, so this is what the appender
+		// itself costs for each event.
+		RecordingAppender appender = new RecordingAppender();
+		appender.record = false;
+		Thread current = Thread.currentThread();
+
+		// as async loggers hand them over, the same event refilled each time.
+		ReusableSimpleMessage message = new ReusableSimpleMessage();
+		message.set("Order 42 shipped to Denver");
+		MutableLogEvent reusable = new MutableLogEvent();
+		reusable.setLoggerName(LOGGER);
+		reusable.setLevel(Level.INFO);
+		reusable.setMessage(message);
+		reusable.setThreadId(current.getId());
+		reusable.setThreadName(current.getName());
+		reusable.setTimeMillis(System.currentTimeMillis());
+
+		LogEvent immutable = makeEvent(new ParameterizedMessage("Order {} shipped to {}", 42, "Denver"),
+				current.getId(), current.getName());
+
+		LogEvent located = Log4jLogEvent.newBuilder().setLoggerName(LOGGER).setLevel(Level.WARN)
+				.setMessage(new ParameterizedMessage("Order {} is late", 42)).setThreadId(current.getId())
+				.setThreadName(current.getName()).setTimeMillis(System.currentTimeMillis()).setIncludeLocation(true)
+				.setSource(new StackTraceElement(LOGGER, "ship", "Shipping.java", 42)).build();
+
+		LogEvent[] events = new LogEvent[] { reusable, immutable, located };
+		long[] bytes = new long[events.length];
+		for (boolean measured : Benchmark.passes()) {
+			for (int kind = 0; kind < events.length; kind++) {
+				long startBytes = Benchmark.getAllocatedBytes();
+				for (int index = 0; index < EVENTS_PER_BENCHMARK; index++) {
+					appender.append(events[kind]);
+				}
+				if (measured) {
+					bytes[kind] += Benchmark.getAllocatedBytes() - startBytes;
+				}
+			}
+		}
+		Assertions.assertEquals((long) (Benchmark.PASSES + 1) * events.length * EVENTS_PER_BENCHMARK,
+				appender.packetCount);
+
+		reporter.publishEntry(String.format(
+				"Appending an event: reusable %,d bytes/op, immutable %,d bytes/op, with location %,d bytes/op.",
+				bytes[0] / Benchmark.PASSES / EVENTS_PER_BENCHMARK, bytes[1] / Benchmark.PASSES / EVENTS_PER_BENCHMARK,
+				bytes[2] / Benchmark.PASSES / EVENTS_PER_BENCHMARK));
+	}
+
+	private static LogEvent makeEvent(Message message, long threadId, String threadName) {
+		return Log4jLogEvent.newBuilder().setLoggerName(LOGGER).setLevel(Level.INFO).setMessage(message)
+				.setThreadId(threadId).setThreadName(threadName).setTimeMillis(System.currentTimeMillis()).build();
+	}
+
+	/**
+	 * A message that can only be told apart by formatting it into a builder.
+	 */
+	public static class FormattableMessage implements Message, StringBuilderFormattable {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void formatTo(StringBuilder buffer) {
+			buffer.append("Formatted into the builder");
+		}
+
+		@Override
+		public String getFormattedMessage() {
+			return "Formatted as a string";
+		}
+
+		@Override
+		public String getFormat() {
+			return null;
+		}
+
+		@Override
+		public Object[] getParameters() {
+			return null;
+		}
+
+		@Override
+		public Throwable getThrowable() {
+			return null;
+		}
+	}
+
+	/**
+	 * Records the packets the appender makes rather than handing them to Loupe,
+	 * which isn't running.
+	 */
+	private static class RecordingAppender extends LoupeLog4j2Appender {
+		private final List<LogMessagePacket> packets = new ArrayList<LogMessagePacket>();
+
+		private final List<ThreadInfo> threadInfos = new ArrayList<ThreadInfo>();
+
+		private final LogMessagePacket reused = new LogMessagePacket();
+
+		private boolean record = true;
+
+		private long packetCount;
+
+		RecordingAppender() {
+			super("Unit Tests");
+		}
+
+		@Override
+		protected IMessengerPacket makePacket(LogMessageSeverity severity, String category,
+				IMessageSourceProvider source, Throwable throwable, ThreadInfo threadInfo, String message) {
+			if (!this.record) {
+				return this.reused;
+			}
+
+			LogMessagePacket packet = new LogMessagePacket();
+			packet.setSeverity(severity);
+			packet.setCategoryName(category);
+			packet.setClassName(source.getClassName());
+			packet.setMethodName(source.getMethodName());
+			packet.setLineNumber(source.getLineNumber());
+			packet.setThreadId(threadInfo.getThreadId());
+			packet.setThreadIndex(threadInfo.getThreadIndex());
+			packet.setCaption(message);
+			this.threadInfos.add(threadInfo);
+			return packet;
+		}
+
+		@Override
+		protected void write(IMessengerPacket packet) {
+			this.packetCount++;
+			if (this.record) {
+				this.packets.add((LogMessagePacket) packet);
+			}
+		}
+	}
+}
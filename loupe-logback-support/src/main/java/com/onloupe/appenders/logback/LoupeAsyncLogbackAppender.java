@@ -0,0 +1,122 @@
+package com.onloupe.appenders.logback;
+
+import com.onloupe.core.logging.AsyncLogWriter;
+import com.onloupe.core.util.LogSystems;
+import com.onloupe.model.log.LogMessageSeverity;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * A Loupe appender that queues events and writes them to Loupe in batches from
+ * a background thread, so logging threads don't wait on Loupe.
+ *
+ * The caller data, when captured, and the formatted message are taken on the
+ * logging thread; everything else happens on the writer's thread. Set
+ * queueSize, batchSize, discardBelowLevel (TRACE to discard nothing),
+ * neverBlock and maxFlushTime as for logback's own AsyncAppender.
+ */
+public class LoupeAsyncLogbackAppender extends LoupeLogbackAppender {
+
+	private final AsyncLogWriter writer = new AsyncLogWriter(LogSystems.LOGBACK);
+
+	@Override
+	protected void write(ILoggingEvent event, LogMessageSeverity severity, Throwable throwable,
+			StackTraceElement source) {
+		writer.write(severity, event.getLoggerName(), source, throwable, null, event.getTimeStamp(),
+				event.getFormattedMessage());
+	}
+
+	@Override
+	public void start() {
+		super.start();
+		writer.start();
+	}
+
+	@Override
+	public void stop() {
+		writer.close();
+		if (writer.getDroppedCount() > 0 || writer.getDiscardedCount() > 0 || writer.getQueuedCount() > 0) {
+			addWarn(String.format("Loupe dropped %d, discarded %d and didn't write %d queued events.",
+					writer.getDroppedCount(), writer.getDiscardedCount(), writer.getQueuedCount()));
+		}
+		super.stop();
+	}
+
+	public int getQueueSize() {
+		return writer.getQueueSize();
+	}
+
+	public void setQueueSize(int queueSize) {
+		writer.setQueueSize(queueSize);
+	}
+
+	public int getBatchSize() {
+		return writer.getBatchSize();
+	}
+
+	public void setBatchSize(int batchSize) {
+		writer.setBatchSize(batchSize);
+	}
+
+	public String getDiscardBelowLevel() {
+		LogMessageSeverity severity = writer.getDiscardSeverity();
+		if (severity == null)
+			return Level.TRACE.toString();
+
+		switch (severity) {
+		case CRITICAL:
+		case ERROR:
+			return Level.ERROR.toString();
+		case WARNING:
+			return Level.WARN.toString();
+		case INFORMATION:
+			return Level.INFO.toString();
+		default:
+			return Level.TRACE.toString();
+		}
+	}
+
+	public void setDiscardBelowLevel(String level) {
+		LogMessageSeverity severity = mapSeverity(Level.toLevel(level, Level.INFO));
+		writer.setDiscardSeverity(severity != LogMessageSeverity.UNKNOWN ? severity : null);
+	}
+
+	public boolean isNeverBlock() {
+		return writer.getNeverBlock();
+	}
+
+	public void setNeverBlock(boolean neverBlock) {
+		writer.setNeverBlock(neverBlock);
+	}
+
+	public long getMaxFlushTime() {
+		return writer.getMaxFlushTime();
+	}
+
+	public void setMaxFlushTime(long maxFlushTime) {
+		writer.setMaxFlushTime(maxFlushTime);
+	}
+
+	/**
+	 * The number of events dropped because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return writer.getDroppedCount();
+	}
+
+	/**
+	 * The number of events below discardBelowLevel discarded because the queue was
+	 * nearly full.
+	 */
+	public long getDiscardedCount() {
+		return writer.getDiscardedCount();
+	}
+
+	/**
+	 * The number of events waiting to be written to Loupe.
+	 */
+	public int getQueuedCount() {
+		return writer.getQueuedCount();
+	}
+}
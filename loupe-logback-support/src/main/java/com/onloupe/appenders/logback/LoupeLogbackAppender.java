@@ -28,17 +28,30 @@ public class LoupeLogbackAppender extends AppenderBase<ILoggingEvent> {
 		if (failed || event == null || Level.OFF.equals(event.getLevel()))
 			return;
 		
+		LogMessageSeverity severity = mapSeverity(event.getLevel());
+		if (!Log.isEnabled(severity, event.getLoggerName()))
+			return;
+		
 		Throwable throwable = null;
 		if (event.getThrowableProxy() instanceof ThrowableProxy) {
 			throwable = ((ThrowableProxy)event.getThrowableProxy()).getThrowable();
 		}
 		
+		// caller data walks the stack, so only ask for it if it's wanted.
 		StackTraceElement source = null;
-		if (event.getCallerData() != null && event.getCallerData().length > 0) {
-			source = event.getCallerData()[0];
+		if (Log.isCallerInfoCaptured(event.getLoggerName(), severity)) {
+			StackTraceElement[] callerData = event.getCallerData();
+			if (callerData != null && callerData.length > 0) {
+				source = callerData[0];
+			}
 		}
 
-		Log.write(mapSeverity(event.getLevel()), throwable, source, SKIP_FRAMES, EXCLUSIONS, null, LOG_SYSTEM,
+		write(event, severity, throwable, source);
+	}
+
+	protected void write(ILoggingEvent event, LogMessageSeverity severity, Throwable throwable,
+			StackTraceElement source) {
+		Log.write(severity, throwable, source, SKIP_FRAMES, EXCLUSIONS, null, LOG_SYSTEM,
 				event.getLoggerName(), event.getMessage(), null);
 	}
 	
@@ -59,7 +72,7 @@ public class LoupeLogbackAppender extends AppenderBase<ILoggingEvent> {
 		super.stop();
 	}
 	
-	private LogMessageSeverity mapSeverity(Level level) {
+	protected LogMessageSeverity mapSeverity(Level level) {
 		if (level != null) {
 			switch (level.levelInt) {
 			case Level.ERROR_INT: